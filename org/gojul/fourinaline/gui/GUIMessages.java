@@ -215,6 +215,12 @@ public final class GUIMessages implements Serializable
 	 */
 	public final static GUIMessages SCORE_MESSAGE = new GUIMessages("Score: ");
 	
+	/**
+	 * The rating message.<br/>
+	 * Value : &quot;Rating: &quot;
+	 */
+	public final static GUIMessages RATING_MESSAGE = new GUIMessages("Rating: ");
+	
 	/**
 	 * The no game running message.<br/>
 	 * Value : &quot;No game running.&quot;
@@ -463,6 +469,12 @@ public final class GUIMessages implements Serializable
 	 */
 	public final static GUIMessages THE_SELECTED_GAME_IS_FULL = new GUIMessages("Impossible to register a player to the selected game since it is already full.");
 	
+	/**
+	 * The server is busy message.<br/>
+	 * Value : &quot;The server is busy. Please try again later.&quot;
+	 */
+	public final static GUIMessages THE_SERVER_IS_BUSY = new GUIMessages("The server is busy. Please try again later.");
+	
 	/**
 	 * The play again message.<br/>
 	 * Value : &quot;Play again ?&quot;
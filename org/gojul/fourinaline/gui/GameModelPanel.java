@@ -37,6 +37,7 @@ import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.rmi.RemoteException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.EventListener;
 import java.util.EventObject;
 import java.util.Iterator;
@@ -54,6 +55,7 @@ import javax.swing.SwingUtilities;
 import javax.swing.border.BevelBorder;
 import javax.swing.event.EventListenerList;
 
+import org.gojul.fourinaline.model.FlightEvents;
 import org.gojul.fourinaline.model.GameModel;
 import org.gojul.fourinaline.model.GamePlayer;
 import org.gojul.fourinaline.model.HumanGameClient;
@@ -295,8 +297,10 @@ public final class GameModelPanel extends JPanel implements Observer
 			add(iconPanel, BorderLayout.WEST);
 			
 			// Text
+			// The rating is only displayed for the rated players.
+			String rating = gamePlayer.getRating() > 0 ? " - " + GUIMessages.RATING_MESSAGE + gamePlayer.getRating() : "";
 			JLabel label = new JLabel("<html><font face=\"arial\" size=3><b>" + gamePlayer.getName() + "</b></font><br>"
-					+ "<font face=\"courier\" size=2>" + GUIMessages.SCORE_MESSAGE + gamePlayer.getScore() + "</font></html>");
+					+ "<font face=\"courier\" size=2>" + GUIMessages.SCORE_MESSAGE + gamePlayer.getScore() + rating + "</font></html>");
 						
 			add(label, BorderLayout.CENTER);
 				
@@ -395,6 +399,8 @@ public final class GameModelPanel extends JPanel implements Observer
 			// component may be updated while it's being painted,
 			// which would lead to some very bad issues.
 			
+			Object flightEvent = FlightEvents.beginRepaint();
+			
 			super.paintComponent(g);
 			
 			Graphics2D g2d = (Graphics2D) g;
@@ -493,41 +499,8 @@ public final class GameModelPanel extends JPanel implements Observer
 				g.setColor(winColor);
 				g.fillPolygon(xCoords, yCoords, xCoords.length);
 			}
-		}
-		
-		/**
-		 * In case the game model <code>model</code> contains only one chip, return
-		 * its coordinates. Otherwise return null.
-		 * @param model the model to test.
-		 * @return the coordinate of the cell which contains the chip if applicable,
-		 * null otherwise.
-		 */
-		private synchronized CellCoord getChipIfOnlyOneInserted(final GameModel model)
-		{
-			CellCoord result = null;
-			int nbCellsOccupied = 0;
 			
-			for (int i = 0; i < model.getRowCount() && nbCellsOccupied <= 1; i++)
-			{
-				for (int j = 0; j < model.getColCount() && nbCellsOccupied <= 1; j++)
-				{
-					if (model.getCell(i, j) != null)
-					{
-						if (nbCellsOccupied == 0)
-						{
-							result = new CellCoord(i, j);
-						}
-						else
-						{
-							result = null;
-						}
-						
-						nbCellsOccupied++;
-					}
-				}
-			}
-			
-			return result;
+			FlightEvents.endRepaint(flightEvent, getWidth(), getHeight());
 		}
 		
 		/**
@@ -540,43 +513,28 @@ public final class GameModelPanel extends JPanel implements Observer
 		 */
 		private synchronized CellCoord getLastInsertedChip(final GameModel model)
 		{
-			CellCoord result = null;
-			
 			// In case the dimensions of model are not the same as the dimensions
 			// of gameModel, returns null.
 			if (model.getRowCount() != gameModel.getRowCount()
 					|| model.getColCount() != gameModel.getColCount())
-				return result;
+				return null;
 			
-			// There must be only one different cell between model and gameModel
-			// and this must be a newly played cell.
-			for (int i = 0; i < model.getRowCount(); i++)
-			{
-				for (int j = 0; j < model.getColCount(); j++)
-				{
-					if (model.getCell(i, j) != null && !model.getCell(i, j).equals(gameModel.getCell(i, j)))
-					{
-						if (result == null)
-							result = new CellCoord(i, j);
-						else
-						{
-							// Here the new model is not a successor of the old one, so 
-							// we do not return any information.
-							return null;
-						}
-					}
-				}
-			}
+			// The play history tells exactly which chip has been inserted, provided
+			// that model is gameModel plus one play.
+			int[] previousColumns = gameModel.getPlayedColumns(0);
+			int[] columns = model.getPlayedColumns(0);
+			
+			if (columns.length == previousColumns.length + 1
+				&& Arrays.equals(previousColumns, Arrays.copyOf(columns, previousColumns.length)))
+				return model.getLastPlayedCell();
 			
 			// In some conditions in a multiplayer environment, one of the client
 			// may only get the model once the other has already played. In that
-			// case we have to check that if there's only one chip inserted,
-			// and if this is the case we return it since no difference between
-			// the two models could be detected.
-			if (result == null)
-				result = getChipIfOnlyOneInserted(model);
+			// case the chip is displayed if it's the only one of the game.
+			if (columns.length == 1)
+				return model.getLastPlayedCell();
 			
-			return result;
+			return null;
 		}
 		
 		/**
@@ -31,7 +31,6 @@ import java.awt.event.ActionListener;
 import java.rmi.AlreadyBoundException;
 import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
-import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
 import java.util.Vector;
 
@@ -51,7 +50,10 @@ import javax.swing.event.ChangeListener;
 import org.gojul.fourinaline.gui.PlayerSelectionFrame.AIGameLevel;
 import org.gojul.fourinaline.model.GameServer;
 import org.gojul.fourinaline.model.GlobalServer;
+import org.gojul.fourinaline.model.MiscUtils;
+import org.gojul.fourinaline.model.GlobalServer.GameDescriptor;
 import org.gojul.fourinaline.model.GameModel.PlayerMark;
+import org.gojul.fourinaline.model.GameServer.ServerBusyException;
 import org.gojul.fourinaline.model.GameServer.ServerTicketException;
 
 /**
@@ -131,7 +133,7 @@ public final class GlobalLoginFrame extends JDialog implements ActionListener, C
 	/**
 	 * Constructor.<br/>
 	 * Does not make the frame visible.
-	 * @param serverAddress the name of the global server address.
+	 * @param serverAddress the address of the global server, which has the form <code>host[:port]</code>.
 	 * @throws NullPointerException if <code>serverAddress</code> is null.
 	 * @throws RemoteException if a remote error occurs while trying to connect the
 	 * game server.
@@ -156,8 +158,13 @@ public final class GlobalLoginFrame extends JDialog implements ActionListener, C
 		
 		globalServer = getGlobalServer();
 		
-		// Fullfills the game join combo box with all the existing games.
-		Vector<String> v = new Vector<String>(globalServer.getGames());
+		// Fullfills the game join combo box with the first games the player can join.
+		// The combo box is editable, so that the other games can still be joined.
+		Vector<String> v = new Vector<String>();
+		
+		for (GameDescriptor game: globalServer.getGames(0, GlobalServer.MAX_GAME_PAGE_SIZE, null, true).getGames())
+			v.add(game.getGameName());
+		
 		gameJoinComboBox.setModel(new DefaultComboBoxModel(v));
 	}
 	
@@ -316,7 +323,7 @@ public final class GlobalLoginFrame extends JDialog implements ActionListener, C
 	 */
 	private GlobalServer getGlobalServer() throws RemoteException, NotBoundException
 	{
-		Registry registry = LocateRegistry.getRegistry(remoteServerAddress);
+		Registry registry = MiscUtils.getRegistry(remoteServerAddress);
 		return (GlobalServer) registry.lookup(GlobalServer.STUB_NAME);
 	}
 	
@@ -341,8 +348,8 @@ public final class GlobalLoginFrame extends JDialog implements ActionListener, C
 		{
 			globalServer.createGame(gameName);
 			
-			Registry registry = LocateRegistry.getRegistry(remoteServerAddress);
-			gameServer = (GameServer) registry.lookup(GlobalServer.SINGLE_GAME_SERVER_STUB_PREFIX + gameName);
+			// The game may be hosted by another node of the global server.
+			gameServer = globalServer.getGameServer(gameName);
 			
 		}
 		catch (RemoteException e)
@@ -361,6 +368,11 @@ public final class GlobalLoginFrame extends JDialog implements ActionListener, C
 			gameCreationNameTextField.requestFocusInWindow();
 			return;
 		}
+		catch (ServerBusyException e)
+		{
+			JOptionPane.showMessageDialog(this, GUIMessages.THE_SERVER_IS_BUSY.toString(), GUIMessages.ERROR_TEXT.toString(), JOptionPane.ERROR_MESSAGE);
+			return;
+		}
 		
 		PlayerSelectionFrame psFrame = null;
 		
@@ -400,8 +412,7 @@ public final class GlobalLoginFrame extends JDialog implements ActionListener, C
 		
 		try
 		{
-			Registry registry = LocateRegistry.getRegistry(remoteServerAddress);
-			gameServer = (GameServer) registry.lookup(GlobalServer.SINGLE_GAME_SERVER_STUB_PREFIX + gameName);
+			gameServer = globalServer.getGameServer(gameName);
 			
 			if (gameServer.getPlayers().size() == PlayerMark.getNumberOfPlayerMarks())
 			{
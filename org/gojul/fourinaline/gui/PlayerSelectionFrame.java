@@ -55,6 +55,7 @@ import org.gojul.fourinaline.model.GameClient;
 import org.gojul.fourinaline.model.GamePlayer;
 import org.gojul.fourinaline.model.GameServer;
 import org.gojul.fourinaline.model.HumanGameClient;
+import org.gojul.fourinaline.model.MiscUtils;
 import org.gojul.fourinaline.model.GameClient.ComputerGameClient;
 import org.gojul.fourinaline.model.GameModel.PlayerMark;
 import org.gojul.fourinaline.model.GameServer.PlayerRegisterException;
@@ -454,7 +455,7 @@ final class PlayerSelectionFrame extends JDialog implements Runnable, WindowList
 					playerName += " " + computerPlayerIndex;
 				
 				GameClient AIclient = new AIGameClient(gameServer, aiServerTicket, playerName, new DefaultEvalScore(), aiPlayerGameLevel.getLevel());
-				new Thread(AIclient).start();
+				MiscUtils.startClientThread(AIclient);
 				continueTryingCreateAIGameClient = false;
 			}
 			catch (PlayerRegisterException e)
@@ -692,7 +693,7 @@ final class PlayerSelectionFrame extends JDialog implements Runnable, WindowList
 		
 			// Starts the client thread AFTER the main frame in order to ensure
 			// to capture all the update events.
-			new Thread(gameClient).start();
+			MiscUtils.startClientThread(gameClient);
 			
 		}
 
@@ -29,6 +29,7 @@ import javax.swing.UIManager;
 import org.gojul.fourinaline.gui.LoginFrame;
 import org.gojul.fourinaline.model.GameServerImpl;
 import org.gojul.fourinaline.model.MiscUtils;
+import org.gojul.fourinaline.model.ServerMetrics;
 
 /**
  * The program launcher, from the user point of view.
@@ -60,6 +61,7 @@ public class FourInALine
 			if (args[0].equalsIgnoreCase("-server"))
 			{
 				GameServerImpl.startDaemon();
+				ServerMetrics.startHttpServer();
 				
 				while (true)
 				{
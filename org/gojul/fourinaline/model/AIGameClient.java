@@ -27,17 +27,20 @@ import java.io.Serializable;
 import java.rmi.RemoteException;
 import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.Random;
-import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.gojul.fourinaline.model.GameClient.ComputerGameClient;
 import org.gojul.fourinaline.model.GameModel.GameModelException;
 import org.gojul.fourinaline.model.GameModel.GameStatus;
 import org.gojul.fourinaline.model.GameModel.PlayerMark;
 import org.gojul.fourinaline.model.GameServer.PlayerRegisterException;
+import org.gojul.fourinaline.model.GameServer.ServerBusyException;
 import org.gojul.fourinaline.model.GameServer.ServerTicket;
 import org.gojul.fourinaline.model.GameServer.ServerTicketException;
 
@@ -77,6 +80,198 @@ public final class AIGameClient extends ComputerGameClient
 			throws NullPointerException;
 	}
 	
+	/**
+	 * The <code>MultiPlayerEvalScore</code> interface is implemented by the
+	 * evaluation functions that can evaluate a game model for all the players
+	 * at once, which is required by the max^n search of games of more than two
+	 * players.<br/>
+	 * The scores must be positive or zero, and their sum must not exceed the
+	 * value returned by <code>getMaxScoreSum</code>.
+	 * 
+	 * @author Julien Aubin
+	 */
+	public static interface MultiPlayerEvalScore extends EvalScore
+	{
+		
+		/**
+		 * Evaluates the game model <code>gameModel</code> for all the player
+		 * marks of <code>playerMarks</code>.
+		 * @param gameModel the game model to consider.
+		 * @param playerMarks the player marks to consider.
+		 * @param scores the array to fill, in which <code>scores[i]</code> is the
+		 * score of <code>playerMarks[i]</code>.
+		 * @throws NullPointerException if any of the method parameter is null.
+		 */
+		public void evaluate(final GameModel gameModel, final PlayerMark[] playerMarks, final int[] scores)
+			throws NullPointerException;
+		
+		/**
+		 * Returns the maximum sum of the scores computed by <code>evaluate</code>
+		 * for game models of the same geometry as <code>gameModel</code>, with
+		 * <code>playerCount</code> players.
+		 * @param gameModel the game model to consider.
+		 * @param playerCount the number of players.
+		 * @return the maximum sum of the scores.
+		 * @throws NullPointerException if <code>gameModel</code> is null.
+		 */
+		public int getMaxScoreSum(final GameModel gameModel, final int playerCount)
+			throws NullPointerException;
+	}
+	
+	/**
+	 * The search mode in which, in games of more than two players, the AI
+	 * player considers that all the other players play against it. This is
+	 * the default mode.
+	 */
+	public final static int PARANOID_SEARCH = 0;
+	
+	/**
+	 * The search mode in which, in games of more than two players, every player
+	 * is considered to maximize its own score. This mode requires a
+	 * <code>MultiPlayerEvalScore</code>, elsewhere the paranoid search is used.
+	 */
+	public final static int MAX_N_SEARCH = 1;
+	
+	/**
+	 * The time, in milliseconds, after which a search that is still running
+	 * starts to be watched.
+	 */
+	private final static int SEARCH_WATCH_DELAY = 1000;
+	
+	/**
+	 * The <code>SearchWatcher</code> class waits, while the AI player is
+	 * searching, for the changes of the server state, and checks after each
+	 * of them that the game it is searching on is still the current game of
+	 * the server. If this is no longer the case, i.e. the game has been ended
+	 * or replaced, or if the server is unreachable, the search is cancelled.<br/>
+	 * Since no other player plays during the search, the server state seldom
+	 * changes, so that the watcher costs a waiting call and a game version read
+	 * per change instead of a periodic transfer of the whole game. The watcher
+	 * only starts calling the server once the search has lasted for
+	 * <code>SEARCH_WATCH_DELAY</code> milliseconds, so that the short searches
+	 * still cost a single call per turn.
+	 *
+	 * @author Julien Aubin
+	 */
+	private final static class SearchWatcher implements Runnable
+	{
+		/**
+		 * The AI game client.
+		 */
+		private AIGameClient gameClient;
+		
+		/**
+		 * The version of the game the client is searching on.
+		 */
+		private long gameVersion;
+		
+		/**
+		 * Boolean indicating whether the search is over.
+		 */
+		private boolean stopped;
+		
+		/**
+		 * Constructor.
+		 * @param client the AI game client.
+		 * @param version the version of the game the client is searching on.
+		 */
+		public SearchWatcher(final AIGameClient client, final long version)
+		{
+			gameClient = client;
+			gameVersion = version;
+			stopped = false;
+		}
+		
+		/**
+		 * Stops watching the search, which is over.
+		 */
+		public synchronized void stop()
+		{
+			stopped = true;
+			notifyAll();
+		}
+		
+		/**
+		 * Waits for <code>SEARCH_WATCH_DELAY</code> milliseconds, unless the
+		 * search is over before.
+		 * @return true if the search is still running after the delay.
+		 * @throws InterruptedException if the thread is interrupted while waiting.
+		 */
+		private synchronized boolean awaitWatchDelay() throws InterruptedException
+		{
+			long end = System.currentTimeMillis() + SEARCH_WATCH_DELAY;
+			long remaining = SEARCH_WATCH_DELAY;
+			
+			while (!stopped && remaining > 0)
+			{
+				wait(remaining);
+				remaining = end - System.currentTimeMillis();
+			}
+			
+			return !stopped;
+		}
+		
+		/**
+		 * Returns true if the search is over, false elsewhere.
+		 * @return true if the search is over.
+		 */
+		private synchronized boolean isStopped()
+		{
+			return stopped;
+		}
+		
+		/**
+		 * Cancels the search, unless it is over. A search which is over
+		 * must not be cancelled, since the cancellation would concern the
+		 * next search.
+		 */
+		private synchronized void cancelSearch()
+		{
+			if (!stopped)
+				gameClient.alphaBeta.cancel();
+		}
+
+		/**
+		 * @see java.lang.Runnable#run()
+		 */
+		public void run()
+		{
+			try
+			{
+				if (!awaitWatchDelay())
+					return;
+				
+				GameServer server = gameClient.getServer();
+				
+				// The state version is read before the game version, so that
+				// a change of the game between both reads ends the wait at once.
+				long stateVersion = server.getStateVersion();
+				
+				// The search ends with a play, which wakes the watcher up.
+				while (!isStopped())
+				{
+					if (!gameClient.isConnectedToServer() || server.getGameVersion() != gameVersion)
+					{
+						cancelSearch();
+						return;
+					}
+					
+					stateVersion = server.awaitStateChange(stateVersion, SERVER_STATE_WAIT_TIMEOUT);
+				}
+			}
+			catch (Throwable t)
+			{
+				cancelSearch();
+			}
+		}
+	}
+	
+	/**
+	 * The executor that runs the search watchers of all the AI players.
+	 */
+	private final static ExecutorService searchWatchExecutor = Executors.newCachedThreadPool(
+		new DaemonThreadFactory(MiscUtils.getClientThreadFactory(), "AI search watcher"));
+	
 	/**
 	 * The alpha beta algorithm.
 	 */
@@ -98,6 +293,30 @@ public final class AIGameClient extends ComputerGameClient
 	 */
 	public AIGameClient(final GameServer server, final ServerTicket ticket, final String playerName, final EvalScore evalScore, final int deepness)
 		throws NullPointerException, IllegalArgumentException, PlayerRegisterException, RemoteException, ServerTicketException
+	{
+		this(server, ticket, playerName, evalScore, deepness, PARANOID_SEARCH);
+	}
+	
+	/**
+	 * Constructor.
+	 * @param server the game server.
+	 * @param ticket the server ticket.
+	 * @param playerName the player name.
+	 * @param evalScore the game evaluation function.
+	 * @param deepness the search deepness.
+	 * @param multiPlayerSearchMode the search mode used in games of more than
+	 * two players, i.e. <code>PARANOID_SEARCH</code> or <code>MAX_N_SEARCH</code>.
+	 * @throws IllegalArgumentException if <code>deepness</code> is smaller than 0,
+	 * or if <code>multiPlayerSearchMode</code> is not a valid search mode.
+	 * @throws NullPointerException if any of the method parameter is null.
+	 * @throws PlayerRegisterException if there's an error while registering
+	 * the player which has for name <code>playerName</code>.
+	 * @throws ServerTicketException if no more server ticket is available.
+	 * @throws RemoteException if a remote error occurs while registering the game.
+	 */
+	public AIGameClient(final GameServer server, final ServerTicket ticket, final String playerName, final EvalScore evalScore, final int deepness,
+		final int multiPlayerSearchMode)
+		throws NullPointerException, IllegalArgumentException, PlayerRegisterException, RemoteException, ServerTicketException
 	{
 		super(server, ticket, playerName);
 		
@@ -107,7 +326,7 @@ public final class AIGameClient extends ComputerGameClient
 		if (deepness < 0)
 			throw new IllegalArgumentException("Invalid search deepness : " + deepness);
 		
-		alphaBeta = new AlphaBeta(evalScore, deepness);
+		alphaBeta = new AlphaBeta(evalScore, deepness, 0.5f, multiPlayerSearchMode);
 	}
 	
 	/**
@@ -117,6 +336,25 @@ public final class AIGameClient extends ComputerGameClient
 	{
 		PlayerMark playerMark = getPlayer().getPlayerMark();
 		
+		// The last known version of the server state. Its initial
+		// value makes the first wait return immediately.
+		long stateVersion = -1;
+		
+		// The game returned by the latest play, or null if the game must be got again.
+		GameModel gameModel = null;
+		
+		// The cancellation count of the searches, read before the game
+		// is got so that the cancellations that occur afterwards, like
+		// when the game is ended, abort the search on this game.
+		long cancelCount = alphaBeta.getCancelCount();
+		
+		// The number of calls rejected in a row because the server was busy.
+		int rejectionCount = 0;
+		
+		// The index of the column whose play has been rejected because the
+		// server was busy, or -1 if the next play must be searched.
+		int rejectedColumnIndex = -1;
+		
 		// The thread stops if the server is no longer running,
 		// or at the first exception encountered.
 		while (isConnectedToServer())
@@ -124,39 +362,77 @@ public final class AIGameClient extends ComputerGameClient
 			
 			try
 			{
-				GameModel gameModel = getServer().getGame(getPlayer().getPlayerMark(), getTicket());
+				if (gameModel == null)
+				{
+					cancelCount = alphaBeta.getCancelCount();
+					gameModel = getGame();
+				}
 				
 				// No problem here : the AI waits until a new game has been launched
 				// when the previous game is over and checks that it's up to it to play
 				// in order to avoid bad issues due to control instructions like start game
-				// and end game.
-				if (getServer().isGameRunning() && gameModel != null && gameModel.getCurrentPlayer().equals(playerMark))
+				// and end game. If the game has been ended or replaced meanwhile, the play
+				// is ignored by the server.
+				if (gameModel != null && gameModel.getGameStatus().equals(GameStatus.CONTINUE_STATUS)
+					&& gameModel.getCurrentPlayer().equals(playerMark))
 				{		
 					try
 					{
-						int columnIndex = alphaBeta.getColumnIndex(gameModel, playerMark); 
-						getServer().play(columnIndex, playerMark, gameModel, getTicket());
+						int columnIndex = rejectedColumnIndex >= 0 ? rejectedColumnIndex
+							: searchColumnIndex(gameModel, playerMark, cancelCount);
+						
+						rejectedColumnIndex = -1;
+						
+						// The search has been cancelled since the game is over.
+						// Otherwise the play and the wait for the next turn are
+						// performed in a single call to the server.
+						if (columnIndex >= 0)
+						{
+							cancelCount = alphaBeta.getCancelCount();
+							
+							try
+							{
+								gameModel = playAndGetGame(columnIndex);
+							}
+							catch (ServerBusyException e)
+							{
+								// The turn of the AI has already been consumed, so the
+								// game is kept and the same play is sent again.
+								rejectedColumnIndex = columnIndex;
+								throw e;
+							}
+						}
+						else
+							gameModel = null;
 					}
 					// Avoids some tricky case in which a new game has been started
 					// while the AI player was playing.
 					catch (GameModelException e)
 					{
 						e.printStackTrace();
+						gameModel = null;
 					}
 				}
 				else
 				{
-					// The sleep process is here to avoid the use of an infinite
-					// loop which would consume a lot of CPU.
-					try
-					{
-						Thread.sleep(SERVER_STATUS_UPDATE_PERIOD);
-					}
-					catch (InterruptedException e)
-					{
-						throw new RuntimeException(e.getMessage());
-					}
+					// Waits for a change of the server state instead of polling
+					// the server, which would consume a lot of CPU and network.
+					// Since the version is read before the game, no change can be missed.
+					stateVersion = getServer().awaitStateChange(stateVersion, SERVER_STATE_WAIT_TIMEOUT);
+					gameModel = null;
 				}
+				
+				rejectionCount = 0;
+			}
+			catch (ServerBusyException e)
+			{
+				// The rejected call has not been performed, so it is retried
+				// later : the rejected plays with the same game, the other
+				// calls from the current game of the server.
+				if (rejectedColumnIndex < 0)
+					gameModel = null;
+				
+				waitBeforeRetry(++rejectionCount);
 			}
 			catch (RemoteException e)
 			{
@@ -170,247 +446,1299 @@ public final class AIGameClient extends ComputerGameClient
 		// Avoids blocking the server by having too many dead client.
 		disconnect();
 	}
+	
+	/**
+	 * Returns the index of the column to play for the game model <code>gameModel</code>,
+	 * or -1 if the search has been cancelled. The long searches are watched while they
+	 * run, so that they are cancelled as soon as the game is no longer the current game
+	 * of the server.
+	 * @param gameModel the game model to consider, as returned by the latest call
+	 * of <code>getGame</code> or <code>playAndGetGame</code>.
+	 * @param playerMark the player mark to consider.
+	 * @param cancelCount the cancellation count read before the game model was got.
+	 * @return the index of the column to play, or -1 if the search has been cancelled.
+	 */
+	private int searchColumnIndex(final GameModel gameModel, final PlayerMark playerMark, final long cancelCount)
+	{
+		SearchWatcher watcher = new SearchWatcher(this, getGameVersion());
+		searchWatchExecutor.execute(watcher);
+		
+		try
+		{
+			return alphaBeta.getColumnIndex(gameModel, playerMark, cancelCount);
+		}
+		finally
+		{
+			watcher.stop();
+		}
+	}
+	
+	/**
+	 * Cancels the current search, if any.
+	 * @see org.gojul.fourinaline.model.GameClient#doEndGame()
+	 */
+	@Override
+	protected void doEndGame() throws Throwable
+	{
+		alphaBeta.cancel();
+	}
+	
+	/**
+	 * Cancels the current search, if any.
+	 * @see org.gojul.fourinaline.model.GameClient#doDisconnect()
+	 */
+	@Override
+	protected void doDisconnect()
+	{
+		alphaBeta.cancel();
+	}
 
 	/**
-	 * An implementation of the alpha-beta algorithm for our purpose.
-	 * This implementation makes it possible to use any user-developed evaluation
-	 * algorithm that can be better than the one provided.<br/>
-	 * This algorithm implements a caching mechanism to improve the performance
-	 * of the AI player.
-	 * 
+	 * The <code>SearchAbortedException</code> is thrown by the alpha beta
+	 * algorithm in order to unwind the search when it must stop before
+	 * its end.
+	 *
 	 * @author Julien Aubin
 	 */
-	private final static class AlphaBeta implements Serializable
+	private final static class SearchAbortedException extends RuntimeException
 	{
 		/**
 		 * The serial version UID.
 		 */
 		final static long serialVersionUID = 1;
+	}
+	
+	/**
+	 * The <code>TranspositionTable</code> class caches the results of the
+	 * alpha beta algorithm, indexed by position hash.<br/>
+	 * It is a fixed size table in which a new entry always replaces the
+	 * previous one of the same slot.
+	 *
+	 * @author Julien Aubin
+	 */
+	private final static class TranspositionTable
+	{
+		/**
+		 * The flag of an exact score.
+		 */
+		public final static byte EXACT_SCORE = 0;
 		
 		/**
-		 * The cache initial capacity.
+		 * The flag of a score that is a lower bound of the exact score.
 		 */
-		private final static int CACHE_INITIAL_CAPACITY = 5000;
+		public final static byte LOWER_BOUND = 1;
 		
 		/**
-		 * The random which determines which column is to be played
-		 * when two columns have the same score.
+		 * The flag of a score that is an upper bound of the exact score.
 		 */
-		private final static Random random = new SecureRandom();
+		public final static byte UPPER_BOUND = 2;
 		
 		/**
-		 * The evaluation function.
+		 * The mask applied to position hashes in order to get a slot.
 		 */
-		private EvalScore evalScore;
+		private int mask;
 		
 		/**
-		 * The search deepness.
+		 * The position hashes.
 		 */
-		private int deepness;
+		private long[] keys;
 		
 		/**
-		 * The random factor.
+		 * The scores.
 		 */
-		private float randFactor;
+		private int[] scores;
 		
 		/**
-		 * The score cache.
+		 * The remaining search deepness of the scores. A negative value
+		 * indicates an empty slot.
 		 */
-		private transient Map<String, Integer> scoreCache;
+		private byte[] deepnesses;
 		
 		/**
-		 * Constructor.
-		 * @param evalScoreFunction the evaluation function used.
-		 * @param deepnessSearch the search deepness.
-		 * @throws NullPointerException if any of the method parameter
-		 * is null.
-		 * @throws IllegalArgumentException if <code>deepnessSearch</code>
-		 * is inferior or equal to 0.
+		 * The score flags.
 		 */
-		public AlphaBeta(final EvalScore evalScoreFunction, final int deepnessSearch)
-			throws NullPointerException, IllegalArgumentException
-		{
-			this(evalScoreFunction, deepnessSearch, 0.5f);
-		}
+		private byte[] flags;
+		
+		/**
+		 * The best column found, or -1 if there's none.
+		 */
+		private byte[] bestColumns;
 		
 		/**
 		 * Constructor.
-		 * @param evalScoreFunction the evaluation function used.
-		 * @param deepnessSearch the search deepness.
-		 * @param randomFactor the random factor used when two possible plays
-		 * have the same score.
-		 * @throws NullPointerException if any of the method parameter is null.
-		 * @throws IllegalArgumentException if <code>deepnessSearch</code> is
-		 * inferior or equal to 0, or if <code>randomFactor</code> is not in the
-		 * [0, 1] range.
+		 * @param sizeBits the base 2 logarithm of the number of slots.
 		 */
-		public AlphaBeta(final EvalScore evalScoreFunction, final int deepnessSearch, final float randomFactor)
-			throws NullPointerException, IllegalArgumentException
+		public TranspositionTable(final int sizeBits)
 		{
-			if (evalScoreFunction == null)
-				throw new NullPointerException();
-			
-			if (deepnessSearch <= 0)
-				throw new IllegalArgumentException("deepnessSearch");
-			
-			if (randomFactor < 0.0f || randomFactor > 1.0f) 
-				throw new IllegalArgumentException("randomFactor");
+			int size = 1 << sizeBits;
+			mask = size - 1;
+			keys = new long[size];
+			scores = new int[size];
+			deepnesses = new byte[size];
+			flags = new byte[size];
+			bestColumns = new byte[size];
 			
-			evalScore = evalScoreFunction;
-			deepness = deepnessSearch;
-			randFactor = randomFactor; 
-			scoreCache = new WeakHashMap<String, Integer>(CACHE_INITIAL_CAPACITY);
+			for (int i = 0; i < size; i++)
+				deepnesses[i] = -1;
 		}
 		
 		/**
-		 * Returns the index of the column to play, or -1 if there's no
-		 * more playable column.
-		 * @param gameModel the game model to consider.
-		 * @param playerMark the player mark to consider.
-		 * @return the index of the column to play, or -1 if there's no
-		 * more playable column.
+		 * Returns the slot of the position <code>positionHash</code>, or -1 if
+		 * this position is not in the table.
+		 * @param positionHash the position hash.
+		 * @return the slot of the position, or -1.
 		 */
-		public int getColumnIndex(final GameModel gameModel, final PlayerMark playerMark)
-		{			
-			Collection<Integer> possiblePlays = gameModel.getListOfPlayableColumns();
-			
-			int bestColumn = -1;
-			int bestScore = -Integer.MAX_VALUE;
-			
-			GameModel tempModel = new GameModel(gameModel);
-			// We iterate over the columns from the center
-			// as this is the most interesting order for us.
-			// This quirk improves greatly speed as the best
-			// scores of the alpha beta algorithm are in
-			// the middle columns.
-			List<Integer> playOrder = new ArrayList<Integer>();
-			int column = (tempModel.getColCount() - 1) / 2;
-			for (int i = 1, len = tempModel.getColCount(); i <= len; i++) 
-			{
-				playOrder.add(column);
-				column += (i % 2 == 1) ? i: -i;
-			}
-			List<Integer> iterationOrder = new ArrayList<Integer>(playOrder);
-			iterationOrder.retainAll(possiblePlays);
-			
-			for (Integer colIndex: iterationOrder)
-			{
-				tempModel.play(colIndex.intValue(), playerMark);
-				String key = tempModel.toUniqueKey();
-				int currentScore = 0;
-				
-				Integer currentScoreInt = scoreCache.get(key);
-				
-				if (currentScoreInt != null)
-				{
-					currentScore = currentScoreInt.intValue();
-				}
-				else
-				{					
-					// We build the key before performing the alpha-beta evaluation
-					// becuase tempModel is mutable.
-					currentScore = alphaBeta(playOrder, tempModel, playerMark, Integer.MIN_VALUE, -bestScore, 0);
-					scoreCache.put(key, Integer.valueOf(currentScore));
-				}	
-				
-				tempModel.cancelLastPlay();
-				
-				if (currentScore > bestScore)
-				{
-					bestScore = currentScore;
-					bestColumn = colIndex;
-				}
-				else if (currentScore == bestScore) {
-					if (random.nextFloat() >= randFactor) {
-						bestColumn = colIndex;
-					}
-				}
-			}
+		public int find(final long positionHash)
+		{
+			int slot = (int) positionHash & mask;
 			
-			return bestColumn;
+			return deepnesses[slot] >= 0 && keys[slot] == positionHash ? slot : -1;
 		}
 		
 		/**
-		 * Deserializes the AI game client in case of serialization.
-		 * @param in the input stream responsible of deserialization.
-		 * @throws IOException if an I/O error occurs while deserializing.
-		 * @throws ClassNotFoundException in case a class to be deserialized
-		 * is not found.
+		 * Returns the score of the slot <code>slot</code>.
+		 * @param slot the slot.
+		 * @return the score of the slot <code>slot</code>.
 		 */
-		private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException
+		public int getScore(final int slot)
 		{
-			in.defaultReadObject();
-			scoreCache = new WeakHashMap<String, Integer>(CACHE_INITIAL_CAPACITY);
+			return scores[slot];
 		}
+		
+		/**
+		 * Returns the remaining search deepness of the slot <code>slot</code>.
+		 * @param slot the slot.
+		 * @return the remaining search deepness of the slot <code>slot</code>.
+		 */
+		public int getDeepness(final int slot)
+		{
+			return deepnesses[slot];
+		}
+		
+		/**
+		 * Returns the score flag of the slot <code>slot</code>.
+		 * @param slot the slot.
+		 * @return the score flag of the slot <code>slot</code>.
+		 */
+		public byte getFlag(final int slot)
+		{
+			return flags[slot];
+		}
+		
+		/**
+		 * Returns the best column of the slot <code>slot</code>, or -1.
+		 * @param slot the slot.
+		 * @return the best column of the slot <code>slot</code>, or -1.
+		 */
+		public int getBestColumn(final int slot)
+		{
+			return bestColumns[slot];
+		}
+		
+		/**
+		 * Stores a search result.
+		 * @param positionHash the position hash.
+		 * @param score the score.
+		 * @param deepness the remaining search deepness.
+		 * @param flag the score flag.
+		 * @param bestColumn the best column found, or -1.
+		 */
+		public void store(final long positionHash, final int score, final int deepness, final byte flag, final int bestColumn)
+		{
+			int slot = (int) positionHash & mask;
+			
+			keys[slot] = positionHash;
+			scores[slot] = score;
+			deepnesses[slot] = (byte) Math.min(deepness, Byte.MAX_VALUE);
+			flags[slot] = flag;
+			bestColumns[slot] = (byte) bestColumn;
+		}
+	}
+
+	/**
+	 * The <code>ScoreVectorTable</code> class caches the exact score vectors
+	 * computed by the max^n algorithm, indexed by position hash. As the
+	 * <code>TranspositionTable</code>, it is a fixed size table in which a new
+	 * entry always replaces the previous one of the same slot.
+	 *
+	 * @author Julien Aubin
+	 */
+	private final static class ScoreVectorTable
+	{
+		/**
+		 * The mask applied to position hashes in order to get a slot.
+		 */
+		private int mask;
+		
+		/**
+		 * The length of the score vectors.
+		 */
+		private int vectorLength;
+		
+		/**
+		 * The position hashes.
+		 */
+		private long[] keys;
+		
+		/**
+		 * The score vectors, one after the other.
+		 */
+		private int[] vectors;
+		
+		/**
+		 * The remaining search deepness of the score vectors. A negative
+		 * value indicates an empty slot.
+		 */
+		private byte[] deepnesses;
+		
+		/**
+		 * The best column found.
+		 */
+		private byte[] bestColumns;
+		
+		/**
+		 * Constructor.
+		 * @param sizeBits the base 2 logarithm of the number of slots.
+		 * @param length the length of the score vectors.
+		 */
+		public ScoreVectorTable(final int sizeBits, final int length)
+		{
+			int size = 1 << sizeBits;
+			mask = size - 1;
+			vectorLength = length;
+			keys = new long[size];
+			vectors = new int[size * length];
+			deepnesses = new byte[size];
+			bestColumns = new byte[size];
+			
+			for (int i = 0; i < size; i++)
+				deepnesses[i] = -1;
+		}
+		
+		/**
+		 * Returns the length of the score vectors.
+		 * @return the length of the score vectors.
+		 */
+		public int getVectorLength()
+		{
+			return vectorLength;
+		}
+		
+		/**
+		 * Returns the slot of the position <code>positionHash</code>, or -1 if
+		 * this position is not in the table.
+		 * @param positionHash the position hash.
+		 * @return the slot of the position, or -1.
+		 */
+		public int find(final long positionHash)
+		{
+			int slot = (int) positionHash & mask;
+			
+			return deepnesses[slot] >= 0 && keys[slot] == positionHash ? slot : -1;
+		}
+		
+		/**
+		 * Copies the score vector of the slot <code>slot</code> to <code>scores</code>.
+		 * @param slot the slot.
+		 * @param scores the array to fill.
+		 */
+		public void getScores(final int slot, final int[] scores)
+		{
+			System.arraycopy(vectors, slot * vectorLength, scores, 0, vectorLength);
+		}
+		
+		/**
+		 * Returns the remaining search deepness of the slot <code>slot</code>.
+		 * @param slot the slot.
+		 * @return the remaining search deepness of the slot <code>slot</code>.
+		 */
+		public int getDeepness(final int slot)
+		{
+			return deepnesses[slot];
+		}
+		
+		/**
+		 * Returns the best column of the slot <code>slot</code>.
+		 * @param slot the slot.
+		 * @return the best column of the slot <code>slot</code>.
+		 */
+		public int getBestColumn(final int slot)
+		{
+			return bestColumns[slot];
+		}
+		
+		/**
+		 * Stores a search result.
+		 * @param positionHash the position hash.
+		 * @param scores the score vector.
+		 * @param deepness the remaining search deepness.
+		 * @param bestColumn the best column found.
+		 */
+		public void store(final long positionHash, final int[] scores, final int deepness, final int bestColumn)
+		{
+			int slot = (int) positionHash & mask;
+			
+			keys[slot] = positionHash;
+			System.arraycopy(scores, 0, vectors, slot * vectorLength, vectorLength);
+			deepnesses[slot] = (byte) Math.min(deepness, Byte.MAX_VALUE);
+			bestColumns[slot] = (byte) bestColumn;
+		}
+	}
 
+	/**
+	 * An implementation of the alpha-beta algorithm for our purpose.
+	 * This implementation makes it possible to use any user-developed evaluation
+	 * algorithm that can be better than the one provided.<br/>
+	 * This algorithm implements a caching mechanism to improve the performance
+	 * of the AI player : the results of the search are kept in a fixed size
+	 * transposition table of 2^18 slots, in which a new result replaces the
+	 * previous one of the same slot. The table is not cleared between the searches
+	 * of the same instance, so that a search may reuse the results of the previous
+	 * ones which have not been replaced meanwhile.
+	 * 
+	 * @author Julien Aubin
+	 */
+	final static class AlphaBeta implements Serializable
+	{
+		/**
+		 * The serial version UID.
+		 */
+		final static long serialVersionUID = 1;
+		
+		/**
+		 * The base 2 logarithm of the transposition table size.
+		 */
+		private final static int TRANSPOSITION_TABLE_SIZE_BITS = 18;
+		
+		/**
+		 * The base 2 logarithm of the score vector table size.
+		 */
+		private final static int SCORE_VECTOR_TABLE_SIZE_BITS = 16;
+		
+		/**
+		 * The score of a won game. The score of a game won after <code>n</code>
+		 * plays is <code>WIN_SCORE - n</code>.
+		 */
+		final static int WIN_SCORE = Integer.MAX_VALUE;
+		
+		/**
+		 * The scores that are greater than this threshold are won games.
+		 */
+		final static int WIN_THRESHOLD = WIN_SCORE - 1000;
+		
+		/**
+		 * The number of nodes between two checks of the search deadline
+		 * and cancellation. This must be a power of 2.
+		 */
+		private final static int NODE_CHECK_PERIOD = 1024;
+		
+		/**
+		 * The random which determines which column is to be played
+		 * when two columns have the same score.
+		 */
+		private final static Random random = new SecureRandom();
+		
+		/**
+		 * The evaluation function.
+		 */
+		private EvalScore evalScore;
+		
+		/**
+		 * The search deepness.
+		 */
+		private int deepness;
+		
+		/**
+		 * The random factor.
+		 */
+		private float randFactor;
+		
+		/**
+		 * The transposition table.
+		 */
+		private transient TranspositionTable transpositionTable;
+		
+		/**
+		 * The search deepness of the current search.
+		 */
+		private transient int searchDeepness;
+		
+		/**
+		 * The time at which the current search must stop, or
+		 * <code>Long.MAX_VALUE</code> if there's no time limit.
+		 */
+		private transient long deadline;
+		
+		/**
+		 * The number of nodes visited by the current search.
+		 */
+		private transient long nodeCount;
+		
+		/**
+		 * The number of calls of the <code>cancel</code> method.
+		 */
+		private transient volatile long cancelCount;
+		
+		/**
+		 * The cancellation count when the current search has been requested.
+		 * The search is cancelled once the cancellation count differs.
+		 */
+		private transient long searchCancelCount;
+		
+		/**
+		 * The search mode used in games of more than two players.
+		 */
+		private int multiPlayerSearchMode;
+		
+		/**
+		 * The player marks of the current multi player search, in play order.
+		 */
+		private transient PlayerMark[] searchMarks;
+		
+		/**
+		 * The score vectors of the current max^n search, one per deepness.
+		 */
+		private transient int[][] scoreBuffers;
+		
+		/**
+		 * The maximum sum of the score vectors of the current max^n search.
+		 */
+		private transient int maxScoreSum;
+		
+		/**
+		 * The score vector table of the max^n searches, which is created
+		 * by the first of them.
+		 */
+		private transient ScoreVectorTable scoreVectorTable;
+		
+		/**
+		 * Constructor.
+		 * @param evalScoreFunction the evaluation function used.
+		 * @param deepnessSearch the search deepness.
+		 * @throws NullPointerException if any of the method parameter
+		 * is null.
+		 * @throws IllegalArgumentException if <code>deepnessSearch</code>
+		 * is inferior or equal to 0.
+		 */
+		public AlphaBeta(final EvalScore evalScoreFunction, final int deepnessSearch)
+			throws NullPointerException, IllegalArgumentException
+		{
+			this(evalScoreFunction, deepnessSearch, 0.5f);
+		}
+		
+		/**
+		 * Constructor.
+		 * @param evalScoreFunction the evaluation function used.
+		 * @param deepnessSearch the search deepness.
+		 * @param randomFactor the random factor used when two possible plays
+		 * have the same score.
+		 * @throws NullPointerException if any of the method parameter is null.
+		 * @throws IllegalArgumentException if <code>deepnessSearch</code> is
+		 * inferior or equal to 0, or if <code>randomFactor</code> is not in the
+		 * [0, 1] range.
+		 */
+		public AlphaBeta(final EvalScore evalScoreFunction, final int deepnessSearch, final float randomFactor)
+			throws NullPointerException, IllegalArgumentException
+		{
+			this(evalScoreFunction, deepnessSearch, randomFactor, PARANOID_SEARCH);
+		}
+		
+		/**
+		 * Constructor.
+		 * @param evalScoreFunction the evaluation function used.
+		 * @param deepnessSearch the search deepness.
+		 * @param randomFactor the random factor used when two possible plays
+		 * have the same score.
+		 * @param searchMode the search mode used in games of more than two players.
+		 * @throws NullPointerException if any of the method parameter is null.
+		 * @throws IllegalArgumentException if <code>deepnessSearch</code> is
+		 * inferior or equal to 0, if <code>randomFactor</code> is not in the
+		 * [0, 1] range, or if <code>searchMode</code> is not a valid search mode.
+		 */
+		public AlphaBeta(final EvalScore evalScoreFunction, final int deepnessSearch, final float randomFactor, final int searchMode)
+			throws NullPointerException, IllegalArgumentException
+		{
+			if (evalScoreFunction == null)
+				throw new NullPointerException();
+			
+			if (deepnessSearch <= 0)
+				throw new IllegalArgumentException("deepnessSearch");
+			
+			if (randomFactor < 0.0f || randomFactor > 1.0f) 
+				throw new IllegalArgumentException("randomFactor");
+			
+			if (searchMode != PARANOID_SEARCH && searchMode != MAX_N_SEARCH)
+				throw new IllegalArgumentException("searchMode");
+			
+			evalScore = evalScoreFunction;
+			deepness = deepnessSearch;
+			randFactor = randomFactor; 
+			multiPlayerSearchMode = searchMode;
+			initTransientFields();
+		}
+		
+		/**
+		 * Inits the fields that are not serialized.
+		 */
+		private void initTransientFields()
+		{
+			transpositionTable = new TranspositionTable(TRANSPOSITION_TABLE_SIZE_BITS);
+			scoreVectorTable = null;
+			deadline = Long.MAX_VALUE;
+			cancelCount = 0;
+			searchCancelCount = 0;
+		}
+		
+		/**
+		 * Cancels the searches requested before this call, i.e. the searches
+		 * whose cancellation count has been read before this call, whether they
+		 * are running or not started yet. A running search stops within a few
+		 * milliseconds.<br/>
+		 * This method may be called from any thread.
+		 */
+		public synchronized void cancel()
+		{
+			cancelCount++;
+		}
+		
+		/**
+		 * Returns the cancellation count, which must be read when a search
+		 * is requested, before the game model to search on is read, and then
+		 * given to the search.
+		 * @return the cancellation count.
+		 */
+		public long getCancelCount()
+		{
+			return cancelCount;
+		}
+		
+		/**
+		 * Returns the order in which the columns are explored.<br/>
+		 * We iterate over the columns from the center
+		 * as this is the most interesting order for us.
+		 * This quirk improves greatly speed as the best
+		 * scores of the alpha beta algorithm are in
+		 * the middle columns.
+		 * @param colCount the number of columns.
+		 * @return the order in which the columns are explored.
+		 */
+		private static int[] getPlayOrder(final int colCount)
+		{
+			int[] playOrder = new int[colCount];
+			int column = (colCount - 1) / 2;
+			
+			for (int i = 1; i <= colCount; i++) 
+			{
+				playOrder[i - 1] = column;
+				column += (i % 2 == 1) ? i: -i;
+			}
+			
+			return playOrder;
+		}
+		
+		/**
+		 * Returns the index of the column to play, or -1 if there's no
+		 * more playable column. The search is only cancelled by the
+		 * cancellations that occur during this call.
+		 * @param gameModel the game model to consider.
+		 * @param playerMark the player mark to consider.
+		 * @return the index of the column to play, or -1 if there's no
+		 * more playable column or if the search has been cancelled.
+		 */
+		public int getColumnIndex(final GameModel gameModel, final PlayerMark playerMark)
+		{
+			return getColumnIndex(gameModel, playerMark, getCancelCount());
+		}
+		
+		/**
+		 * Returns the index of the column to play, or -1 if there's no
+		 * more playable column or if the search has been cancelled.
+		 * @param gameModel the game model to consider.
+		 * @param playerMark the player mark to consider.
+		 * @param requestCancelCount the cancellation count read when the search
+		 * has been requested. The search is cancelled if <code>cancel</code> has
+		 * been called since.
+		 * @return the index of the column to play, or -1 if there's no
+		 * more playable column or if the search has been cancelled.
+		 */
+		public int getColumnIndex(final GameModel gameModel, final PlayerMark playerMark, final long requestCancelCount)
+		{
+			searchCancelCount = requestCancelCount;
+			
+			Object flightEvent = FlightEvents.beginSearch();
+			int result;
+			boolean aborted = false;
+			
+			try
+			{
+				result = searchColumnIndex(gameModel, playerMark);
+			}
+			catch (SearchAbortedException e)
+			{
+				result = -1;
+				aborted = true;
+			}
+			
+			FlightEvents.endSearch(flightEvent, FlightEvents.MOVE_SEARCH, deepness, nodeCount, result, aborted);
+			
+			return result;
+		}
+		
+		/**
+		 * Returns the index of the column to play, or -1 if there's no
+		 * more playable column.
+		 * @param gameModel the game model to consider.
+		 * @param playerMark the player mark to consider.
+		 * @return the index of the column to play, or -1 if there's no
+		 * more playable column.
+		 * @throws SearchAbortedException if the search has been cancelled.
+		 */
+		private int searchColumnIndex(final GameModel gameModel, final PlayerMark playerMark) throws SearchAbortedException
+		{
+			if (PlayerMark.getNumberOfPlayerMarks() > 2)
+				return searchMultiPlayerColumnIndex(gameModel, playerMark);
+			
+			Collection<Integer> possiblePlays = gameModel.getListOfPlayableColumns();
+			
+			int bestColumn = -1;
+			int bestScore = -WIN_SCORE;
+			
+			GameModel tempModel = new GameModel(gameModel);
+			int[] playOrder = getPlayOrder(tempModel.getColCount());
+			
+			searchDeepness = deepness;
+			nodeCount = 0;
+			
+			for (int colIndex: playOrder)
+			{
+				if (!possiblePlays.contains(Integer.valueOf(colIndex)))
+					continue;
+				
+				tempModel.play(colIndex, playerMark);
+				
+				// The lower bound of the window is just below the best score so
+				// that the scores equal to the best one are exact, which
+				// makes it possible to choose randomly among them.
+				int alpha = bestScore > -WIN_SCORE ? bestScore - 1 : -WIN_SCORE;
+				int currentScore = alphaBeta(playOrder, tempModel, playerMark, alpha, WIN_SCORE, 0);
+				
+				tempModel.cancelLastPlay();
+				
+				if (bestColumn == -1 || currentScore > bestScore)
+				{
+					bestScore = currentScore;
+					bestColumn = colIndex;
+				}
+				else if (currentScore == bestScore) {
+					if (random.nextFloat() >= randFactor) {
+						bestColumn = colIndex;
+					}
+				}
+			}
+			
+			return bestColumn;
+		}
+		
+		/**
+		 * Returns the index of the column to play in a game of more than two
+		 * players, or -1 if there's no more playable column.<br/>
+		 * The paranoid search is a plain alpha-beta search in which all the other
+		 * players minimize the score of <code>playerMark</code>. The max^n search
+		 * lets every player maximize its own score, with shallow pruning.
+		 * @param gameModel the game model to consider.
+		 * @param playerMark the player mark to consider.
+		 * @return the index of the column to play, or -1 if there's no
+		 * more playable column.
+		 * @throws SearchAbortedException if the search has been cancelled.
+		 */
+		private int searchMultiPlayerColumnIndex(final GameModel gameModel, final PlayerMark playerMark) throws SearchAbortedException
+		{
+			Collection<Integer> possiblePlays = gameModel.getListOfPlayableColumns();
+			
+			int bestColumn = -1;
+			int bestScore = -WIN_SCORE;
+			
+			GameModel tempModel = new GameModel(gameModel);
+			int[] playOrder = getPlayOrder(tempModel.getColCount());
+			
+			searchDeepness = deepness;
+			nodeCount = 0;
+			
+			// The marks are listed in play order.
+			int playerCount = PlayerMark.getNumberOfPlayerMarks();
+			searchMarks = new PlayerMark[playerCount];
+			searchMarks[0] = playerMark;
+			
+			for (int i = 1; i < playerCount; i++)
+				searchMarks[i] = PlayerMark.getNextMark(searchMarks[i - 1]);
+			
+			boolean maxN = multiPlayerSearchMode == MAX_N_SEARCH && evalScore instanceof MultiPlayerEvalScore;
+			
+			if (maxN)
+			{
+				// The won games score more than any evaluation.
+				maxScoreSum = ((MultiPlayerEvalScore) evalScore).getMaxScoreSum(gameModel, playerCount)
+					+ gameModel.getRowCount() * gameModel.getColCount() + 1;
+				scoreBuffers = new int[searchDeepness + 2][playerCount];
+				
+				if (scoreVectorTable == null || scoreVectorTable.getVectorLength() != playerCount)
+					scoreVectorTable = new ScoreVectorTable(SCORE_VECTOR_TABLE_SIZE_BITS, playerCount);
+			}
+			else
+				scoreBuffers = new int[1][playerCount];
+			
+			// The paranoid scores only make sense for this player.
+			long rootKey = (playerMark.hashCode() + 1) * 0x9E3779B97F4A7C15L;
+			
+			try
+			{
+				for (int colIndex: playOrder)
+				{
+					if (!possiblePlays.contains(Integer.valueOf(colIndex)))
+						continue;
+					
+					tempModel.play(colIndex, playerMark);
+					
+					int currentScore;
+					
+					// As in the two players search, the bounds are set just below the
+					// best score so that the scores equal to the best one are exact.
+					if (maxN)
+					{
+						int[] scores = scoreBuffers[searchDeepness + 1];
+						maxN(playOrder, tempModel, rootKey, 0, bestColumn == -1 ? -1 : bestScore - 1, 0, scores);
+						currentScore = scores[0];
+					}
+					else
+					{
+						int alpha = bestScore > -WIN_SCORE ? bestScore - 1 : -WIN_SCORE;
+						currentScore = paranoid(playOrder, tempModel, playerMark, rootKey, alpha, WIN_SCORE, 0);
+					}
+					
+					tempModel.cancelLastPlay();
+					
+					if (bestColumn == -1 || currentScore > bestScore)
+					{
+						bestScore = currentScore;
+						bestColumn = colIndex;
+					}
+					else if (currentScore == bestScore) {
+						if (random.nextFloat() >= randFactor) {
+							bestColumn = colIndex;
+						}
+					}
+				}
+			}
+			finally
+			{
+				searchMarks = null;
+				scoreBuffers = null;
+			}
+			
+			return bestColumn;
+		}
+		
+		/**
+		 * Throws a <code>SearchAbortedException</code> if the search must stop.
+		 * The checks are only performed every <code>NODE_CHECK_PERIOD</code> nodes
+		 * since reading the clock is not that cheap.
+		 * @throws SearchAbortedException if the search must stop.
+		 */
+		private void checkNode() throws SearchAbortedException
+		{
+			nodeCount++;
+			
+			if ((nodeCount & (NODE_CHECK_PERIOD - 1)) == 0 && (cancelCount != searchCancelCount || System.currentTimeMillis() > deadline))
+				throw new SearchAbortedException();
+		}
+		
+		/**
+		 * Performs a paranoid alpha-beta algorithm over the game model <code>gameModel</code>,
+		 * in which <code>playerMark</code> has just played. The first player mark of the search
+		 * maximizes its score, all the others minimize it.
+		 * @param playOrder the play order in which we iterate over the board.
+		 * @param gameModel the game model to consider.
+		 * @param playerMark the player mark that has just played.
+		 * @param rootKey the key that distinguishes the transposition table entries
+		 * of this search from those of the searches of other players.
+		 * @param alpha the alpha value.
+		 * @param beta the beta value.
+		 * @param currentDeepness the deepness in the alpha-beta tree.
+		 * @return the score of the game model for the first player mark of the search.
+		 * The score is exact if it is strictly between <code>alpha</code> and <code>beta</code>,
+		 * it is a bound otherwise.
+		 */
+		private int paranoid(final int[] playOrder, final GameModel gameModel, final PlayerMark playerMark, final long rootKey,
+			final int alpha, final int beta, final int currentDeepness)
+		{
+			checkNode();
+			
+			PlayerMark rootMark = searchMarks[0];
+			
+			if (gameModel.getGameStatus() == GameStatus.WON_STATUS)
+				return playerMark.equals(rootMark) ? WIN_SCORE - currentDeepness : -(WIN_SCORE - currentDeepness);
+			else if (gameModel.getGameStatus() == GameStatus.TIE_STATUS)
+				return 0;
+			else if (currentDeepness >= searchDeepness)
+			{
+				if (evalScore instanceof MultiPlayerEvalScore)
+				{
+					// The score of the player against the best of the others.
+					int[] scores = scoreBuffers[0];
+					((MultiPlayerEvalScore) evalScore).evaluate(gameModel, searchMarks, scores);
+					
+					int bestOther = 0;
+					
+					for (int i = 1; i < scores.length; i++)
+						bestOther = Math.max(bestOther, scores[i]);
+					
+					return scores[0] - bestOther;
+				}
+				else
+					return evalScore.evaluate(gameModel, rootMark);
+			}
+			
+			long positionKey = gameModel.getPositionHash() ^ rootKey;
+			int remainingDeepness = searchDeepness - currentDeepness;
+			int cachedColumn = -1;
+			
+			int slot = transpositionTable.find(positionKey);
+			
+			if (slot >= 0)
+			{
+				cachedColumn = transpositionTable.getBestColumn(slot);
+				
+				if (transpositionTable.getDeepness(slot) >= remainingDeepness)
+				{
+					int score = fromStoredScore(transpositionTable.getScore(slot), currentDeepness);
+					byte flag = transpositionTable.getFlag(slot);
+					
+					if (flag == TranspositionTable.EXACT_SCORE
+						|| (flag == TranspositionTable.LOWER_BOUND && score >= beta)
+						|| (flag == TranspositionTable.UPPER_BOUND && score <= alpha))
+						return score;
+				}
+			}
+			
+			PlayerMark tempMark = PlayerMark.getNextMark(playerMark);
+			boolean maximize = tempMark.equals(rootMark);
+			
+			int currentAlpha = alpha;
+			int currentBeta = beta;
+			int bestScore = maximize ? -WIN_SCORE : WIN_SCORE;
+			int bestColumn = -1;
+			
+			for (int i = -1; i < playOrder.length && currentAlpha < currentBeta; i++)
+			{
+				int colIndex = i < 0 ? cachedColumn : playOrder[i];
+				
+				if (colIndex < 0 || (i >= 0 && colIndex == cachedColumn) || gameModel.getFreeRowIndexForColumn(colIndex) < 0)
+					continue;
+				
+				gameModel.play(colIndex, tempMark);
+				
+				int currentScore = paranoid(playOrder, gameModel, tempMark, rootKey, currentAlpha, currentBeta, currentDeepness + 1);
+				
+				gameModel.cancelLastPlay();
+				
+				if (maximize ? currentScore > bestScore : currentScore < bestScore)
+				{
+					bestScore = currentScore;
+					bestColumn = colIndex;
+					
+					if (maximize)
+						currentAlpha = Math.max(currentAlpha, bestScore);
+					else
+						currentBeta = Math.min(currentBeta, bestScore);
+				}
+			}
+			
+			byte flag = TranspositionTable.EXACT_SCORE;
+			
+			if (bestScore <= alpha)
+				flag = TranspositionTable.UPPER_BOUND;
+			else if (bestScore >= beta)
+				flag = TranspositionTable.LOWER_BOUND;
+			
+			transpositionTable.store(positionKey, toStoredScore(bestScore, currentDeepness), remainingDeepness, flag, bestColumn);
+			
+			return bestScore;
+		}
+		
+		/**
+		 * Performs a max^n algorithm with shallow pruning over the game model <code>gameModel</code>,
+		 * in which the player mark of index <code>playerIndex</code> has just played.<br/>
+		 * Since the sum of the scores is bounded by <code>maxScoreSum</code>, a node is pruned
+		 * as soon as the player to play gets a score that leaves at most <code>bound</code> to
+		 * the player that has just played, since this one has already better elsewhere.
+		 * @param playOrder the play order in which we iterate over the board.
+		 * @param gameModel the game model to consider.
+		 * @param rootKey the key that distinguishes the score vector table entries
+		 * of this search from those of the searches of other players.
+		 * @param playerIndex the index in <code>searchMarks</code> of the player that has just played.
+		 * @param bound the best score the player that has just played is guaranteed
+		 * to get elsewhere, or -1 if there's none.
+		 * @param currentDeepness the deepness in the max^n tree.
+		 * @param result the array in which the score vector is written, indexed like
+		 * <code>searchMarks</code>.
+		 */
+		private void maxN(final int[] playOrder, final GameModel gameModel, final long rootKey, final int playerIndex, final int bound,
+			final int currentDeepness, final int[] result)
+		{
+			checkNode();
+			
+			if (gameModel.getGameStatus() == GameStatus.WON_STATUS)
+			{
+				Arrays.fill(result, 0);
+				result[playerIndex] = maxScoreSum - currentDeepness;
+				return;
+			}
+			else if (gameModel.getGameStatus() == GameStatus.TIE_STATUS)
+			{
+				Arrays.fill(result, 0);
+				return;
+			}
+			else if (currentDeepness >= searchDeepness)
+			{
+				((MultiPlayerEvalScore) evalScore).evaluate(gameModel, searchMarks, result);
+				return;
+			}
+			
+			long positionKey = gameModel.getPositionHash() ^ rootKey;
+			int remainingDeepness = searchDeepness - currentDeepness;
+			int cachedColumn = -1;
+			
+			int slot = scoreVectorTable.find(positionKey);
+			
+			if (slot >= 0)
+			{
+				if (scoreVectorTable.getDeepness(slot) >= remainingDeepness)
+				{
+					scoreVectorTable.getScores(slot, result);
+					return;
+				}
+				
+				cachedColumn = scoreVectorTable.getBestColumn(slot);
+			}
+			
+			int nextIndex = (playerIndex + 1) % searchMarks.length;
+			PlayerMark tempMark = searchMarks[nextIndex];
+			int[] scores = scoreBuffers[currentDeepness];
+			int bestColumn = -1;
+			
+			// The best column of a previous search is explored first.
+			for (int i = -1; i < playOrder.length; i++)
+			{
+				int colIndex = i < 0 ? cachedColumn : playOrder[i];
+				
+				if (colIndex < 0 || (i >= 0 && colIndex == cachedColumn) || gameModel.getFreeRowIndexForColumn(colIndex) < 0)
+					continue;
+				
+				gameModel.play(colIndex, tempMark);
+				
+				maxN(playOrder, gameModel, rootKey, nextIndex, bestColumn >= 0 ? result[nextIndex] : -1, currentDeepness + 1, scores);
+				
+				gameModel.cancelLastPlay();
+				
+				if (bestColumn < 0 || scores[nextIndex] > result[nextIndex])
+				{
+					System.arraycopy(scores, 0, result, 0, result.length);
+					bestColumn = colIndex;
+					
+					// Shallow pruning : the result is then only a bound, which
+					// is not stored. An immediate win cannot be improved either.
+					if (result[nextIndex] >= maxScoreSum - bound)
+						return;
+					
+					if (result[nextIndex] == maxScoreSum - currentDeepness - 1)
+						break;
+				}
+			}
+			
+			scoreVectorTable.store(positionKey, result, remainingDeepness, bestColumn);
+		}
+		
+		/**
+		 * Analyses all the playable columns of the game model <code>gameModel</code>
+		 * for its current player, by iterative deepening up to <code>maxDeepness</code>
+		 * plays or until the time limit is reached.<br/>
+		 * Every column gets an exact score, computed with a full window and without
+		 * any cutoff between the columns, so that an iteration costs about one search
+		 * per playable column. The transposition table only saves the positions
+		 * that several columns lead to, and orders the plays of the next iteration.
+		 * @param gameModel the game model to analyse.
+		 * @param maxDeepness the maximum number of plays to explore, including the analysed column.
+		 * @param timeLimit the time limit in milliseconds, or 0 if there's no time limit.
+		 * The first iteration is always completed, unless the analysis is cancelled.
+		 * @param requestCancelCount the cancellation count read when the analysis
+		 * has been requested. The analysis is cancelled if <code>cancel</code> has
+		 * been called since.
+		 * @return the analysis of the playable columns, sorted from the best score
+		 * to the worst one, as computed by the last completed iteration.
+		 */
+		public List<GameAnalyzer.ColumnAnalysis> analyse(final GameModel gameModel, final int maxDeepness, final long timeLimit,
+			final long requestCancelCount)
+		{
+			long startTime = System.currentTimeMillis();
+			PlayerMark playerMark = gameModel.getCurrentPlayer();
+			
+			GameModel tempModel = new GameModel(gameModel);
+			int[] playOrder = getPlayOrder(tempModel.getColCount());
+			
+			List<Integer> rootOrder = new ArrayList<Integer>();
+			Collection<Integer> possiblePlays = gameModel.getListOfPlayableColumns();
+			
+			for (int colIndex: playOrder)
+			{
+				if (possiblePlays.contains(Integer.valueOf(colIndex)))
+					rootOrder.add(Integer.valueOf(colIndex));
+			}
+			
+			List<GameAnalyzer.ColumnAnalysis> result = new ArrayList<GameAnalyzer.ColumnAnalysis>();
+			nodeCount = 0;
+			searchCancelCount = requestCancelCount;
+			
+			Object flightEvent = FlightEvents.beginSearch();
+			boolean aborted = false;
+			
+			try
+			{
+				for (int currentDeepness = 1; currentDeepness <= maxDeepness; currentDeepness++)
+				{
+					searchDeepness = currentDeepness - 1;
+					
+					List<GameAnalyzer.ColumnAnalysis> iteration = new ArrayList<GameAnalyzer.ColumnAnalysis>();
+					
+					for (Integer colIndex: rootOrder)
+					{
+						tempModel.play(colIndex.intValue(), playerMark);
+						
+						int score = alphaBeta(playOrder, tempModel, playerMark, -WIN_SCORE, WIN_SCORE, 0);
+						int[] principalVariation = getPrincipalVariation(tempModel, colIndex.intValue(), currentDeepness);
+						
+						tempModel.cancelLastPlay();
+						
+						iteration.add(new GameAnalyzer.ColumnAnalysis(colIndex.intValue(), score, currentDeepness, principalVariation));
+					}
+					
+					// The sort is stable, so that columns which have the same score
+					// stay in the center first order.
+					Collections.sort(iteration);
+					result = iteration;
+					
+					// The next iteration explores the best columns first.
+					rootOrder.clear();
+					for (GameAnalyzer.ColumnAnalysis analysis: iteration)
+						rootOrder.add(Integer.valueOf(analysis.getColIndex()));
+					
+					if (timeLimit > 0)
+						deadline = startTime + timeLimit;
+				}
+			}
+			catch (SearchAbortedException e)
+			{
+				// The unfinished iteration is dropped.
+				aborted = true;
+			}
+			finally
+			{
+				deadline = Long.MAX_VALUE;
+			}
+			
+			if (result.isEmpty())
+				FlightEvents.endSearch(flightEvent, FlightEvents.ANALYSIS_SEARCH, 0, nodeCount, -1, aborted);
+			else
+				FlightEvents.endSearch(flightEvent, FlightEvents.ANALYSIS_SEARCH, result.get(0).getDeepness(), nodeCount, result.get(0).getColIndex(), aborted);
+			
+			return result;
+		}
+		
+		/**
+		 * Returns the principal variation that starts with the play at column
+		 * <code>colIndex</code>, as stored in the transposition table.
+		 * @param gameModel the game model, in which <code>colIndex</code> has just been played.
+		 * It is restored to its initial state before returning.
+		 * @param colIndex the first column of the variation.
+		 * @param maxLength the maximum length of the variation.
+		 * @return the principal variation.
+		 */
+		private int[] getPrincipalVariation(final GameModel gameModel, final int colIndex, final int maxLength)
+		{
+			List<Integer> variation = new ArrayList<Integer>();
+			variation.add(Integer.valueOf(colIndex));
+			
+			while (variation.size() < maxLength && gameModel.getGameStatus().equals(GameStatus.CONTINUE_STATUS))
+			{
+				int slot = transpositionTable.find(gameModel.getPositionHash());
+				int nextColumn = slot >= 0 ? transpositionTable.getBestColumn(slot) : -1;
+				
+				if (nextColumn < 0 || gameModel.getFreeRowIndexForColumn(nextColumn) < 0)
+					break;
+				
+				gameModel.play(nextColumn, gameModel.getCurrentPlayer());
+				variation.add(Integer.valueOf(nextColumn));
+			}
+			
+			int[] result = new int[variation.size()];
+			
+			for (int i = 0; i < result.length; i++)
+				result[i] = variation.get(i).intValue();
+			
+			for (int i = 1; i < result.length; i++)
+				gameModel.cancelLastPlay();
+			
+			return result;
+		}
+		
+		/**
+		 * Deserializes the AI game client in case of serialization.
+		 * @param in the input stream responsible of deserialization.
+		 * @throws IOException if an I/O error occurs while deserializing.
+		 * @throws ClassNotFoundException in case a class to be deserialized
+		 * is not found.
+		 */
+		private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException
+		{
+			in.defaultReadObject();
+			initTransientFields();
+		}
+		
+		/**
+		 * Converts the score <code>score</code> of a node at deepness <code>currentDeepness</code>
+		 * to a score that can be stored in the transposition table, i.e. a score in
+		 * which the distance to won games is relative to the node.
+		 * @param score the score.
+		 * @param currentDeepness the node deepness.
+		 * @return the score to store.
+		 */
+		private static int toStoredScore(final int score, final int currentDeepness)
+		{
+			if (score > WIN_THRESHOLD)
+				return score + currentDeepness;
+			else if (score < -WIN_THRESHOLD)
+				return score - currentDeepness;
+			else
+				return score;
+		}
+		
+		/**
+		 * Converts the score <code>score</code> read from the transposition table to the score
+		 * of a node at deepness <code>currentDeepness</code>.
+		 * @param score the stored score.
+		 * @param currentDeepness the node deepness.
+		 * @return the node score.
+		 */
+		private static int fromStoredScore(final int score, final int currentDeepness)
+		{
+			if (score > WIN_THRESHOLD)
+				return score - currentDeepness;
+			else if (score < -WIN_THRESHOLD)
+				return score + currentDeepness;
+			else
+				return score;
+		}
 		
 		/**
 		 * Performs an alpha-beta algorithm over the game model <code>gameModel</code>,
-		 * with current player <code>playerMark</code>.
+		 * in which <code>playerMark</code> has just played.
 		 * @param playOrder the play order in which we iterate over the board.
 		 * @param gameModel the game model to consider. 
 		 * @param playerMark the player mark to consider.
-		 * @param alpha the alpha value.
-		 * @param beta the beta value.
+		 * @param alpha the alpha value, for the player <code>playerMark</code>.
+		 * @param beta the beta value, for the player <code>playerMark</code>.
 		 * @param currentDeepness the deepness in the alpha-beta tree.
-		 * @return the score of each possibility of the alpha beta model.
+		 * @return the score of the game model for the player <code>playerMark</code>.
+		 * The score is exact if it is strictly between <code>alpha</code> and <code>beta</code>,
+		 * it is a bound otherwise.
 		 */
-		private int alphaBeta(final List<Integer> playOrder, final GameModel gameModel, final PlayerMark playerMark, final int alpha, final int beta, final int currentDeepness)
-		{		
+		private int alphaBeta(final int[] playOrder, final GameModel gameModel, final PlayerMark playerMark, final int alpha, final int beta, final int currentDeepness)
+		{
+			checkNode();
+			
 			// Game won by the player.
 			if (gameModel.getGameStatus() == GameStatus.WON_STATUS)
 			{
-				return Integer.MAX_VALUE - currentDeepness;
+				return WIN_SCORE - currentDeepness;
 			}
 			// Tie game.
 			else if (gameModel.getGameStatus() == GameStatus.TIE_STATUS)
 				return 0;
 			// Maximum deepness.
-			else if (currentDeepness >= deepness)
+			else if (currentDeepness >= searchDeepness)
 				return evalScore.evaluate(gameModel, playerMark);
 			else
 			{
-				int bestScore = Integer.MIN_VALUE;
+				long positionHash = gameModel.getPositionHash();
+				int remainingDeepness = searchDeepness - currentDeepness;
+				int cachedColumn = -1;
 				
-				PlayerMark tempMark = PlayerMark.getNextMark(playerMark);
+				int slot = transpositionTable.find(positionHash);
 				
-				int alphaEval = alpha;
+				if (slot >= 0)
+				{
+					cachedColumn = transpositionTable.getBestColumn(slot);
+					
+					if (transpositionTable.getDeepness(slot) >= remainingDeepness)
+					{
+						int score = fromStoredScore(transpositionTable.getScore(slot), currentDeepness);
+						byte flag = transpositionTable.getFlag(slot);
+						
+						if (flag == TranspositionTable.EXACT_SCORE
+							|| (flag == TranspositionTable.LOWER_BOUND && score >= beta)
+							|| (flag == TranspositionTable.UPPER_BOUND && score <= alpha))
+							return score;
+					}
+				}
 				
-				Collection<Integer> possiblePlays = gameModel.getListOfPlayableColumns();
-				List<Integer> iterationOrder = new ArrayList<Integer>(playOrder);
-				iterationOrder.retainAll(possiblePlays);
+				// The scores of the next player are the opposite of ours,
+				// so is its window.
+				int nextAlpha = -beta;
+				int nextBeta = -alpha;
 				
-				for (Integer colIndex: iterationOrder)
-				{		
+				int bestScore = -WIN_SCORE;
+				int bestColumn = -1;
+				
+				PlayerMark tempMark = PlayerMark.getNextMark(playerMark);
+				
+				// The best column of a previous search is explored first.
+				for (int i = -1; i < playOrder.length && nextAlpha < nextBeta; i++)
+				{
+					int colIndex = i < 0 ? cachedColumn : playOrder[i];
+					
+					if (colIndex < 0 || (i >= 0 && colIndex == cachedColumn) || gameModel.getFreeRowIndexForColumn(colIndex) < 0)
+						continue;
+					
 					// We avoid there multiple copies of the game model
 					// which are unuseful in our case...
-					gameModel.play(colIndex.intValue(), tempMark);
+					gameModel.play(colIndex, tempMark);
 					
-					// We cannot use the cache there since it would bring
-					// erroneous results.
-					int	currentScore = alphaBeta(playOrder, gameModel, tempMark, -beta, -alphaEval, currentDeepness + 1);
+					int currentScore = alphaBeta(playOrder, gameModel, tempMark, nextAlpha, nextBeta, currentDeepness + 1);
 					
 					gameModel.cancelLastPlay();
 					
 					if (currentScore > bestScore)
 					{
 						bestScore = currentScore;
+						bestColumn = colIndex;
 						
-						if (bestScore > alphaEval)
-						{
-							alphaEval = bestScore;
-							
-							if (alphaEval > beta)
-							{
-								// What is good for the other player is bad for this one.
-								return -bestScore;
-							}
-						}
+						if (bestScore > nextAlpha)
+							nextAlpha = bestScore;
 					}
 				}
 				
 				// What is good for the other player is bad for this one.
-				return -bestScore;
+				int result = -bestScore;
+				
+				byte flag = TranspositionTable.EXACT_SCORE;
+				
+				if (result <= alpha)
+					flag = TranspositionTable.UPPER_BOUND;
+				else if (result >= beta)
+					flag = TranspositionTable.LOWER_BOUND;
+				
+				transpositionTable.store(positionHash, toStoredScore(result, currentDeepness), remainingDeepness, flag, bestColumn);
+				
+				return result;
 			}
 		}
 		
@@ -0,0 +1,439 @@
+/*
+ * AdmissionControl.java
+ *
+ * Created: 2026/10/19
+ *
+ * Copyright (C) 2026 Julien Aubin
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.gojul.fourinaline.model;
+
+import java.lang.management.ManagementFactory;
+import java.rmi.server.RemoteServer;
+import java.rmi.server.ServerNotActiveException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.gojul.fourinaline.model.GameServer.ServerBusyException;
+import org.gojul.fourinaline.model.GameServer.ServerTicket;
+
+/**
+ * The <code>AdmissionControl</code> class bounds the load a client may put on
+ * the game servers and the global servers of the JVM, so that a noisy client does
+ * not degrade the other games.<br/>
+ * The calls are rate limited by token buckets, one per ticket and one per source
+ * address : a client may call the servers in bursts, but not faster than the
+ * configured rate on average. The game creations of the global server are also
+ * bounded, since they export and bind a new RMI object. The rejected calls throw
+ * a <code>ServerBusyException</code> before the server does any work for them.<br/>
+ * The limits are set through system properties, a limit of 0 disabling the
+ * matching check. The counters of the admissions and rejections are exported
+ * through JMX.
+ *
+ * @author Julien Aubin
+ */
+final class AdmissionControl implements AdmissionControlMBean
+{
+	/**
+	 * The property that contains the average number of calls per second allowed
+	 * for a ticket. The bursts may be twice as big. Defaults to 100.
+	 */
+	public final static String TICKET_CALL_RATE_PROPERTY = "org.gojul.fourinaline.ticketCallRate";
+	
+	/**
+	 * The property that contains the average number of calls per second allowed
+	 * for a source address, whatever the server called. The bursts may be twice as
+	 * big. Defaults to 1000.
+	 */
+	public final static String ADDRESS_CALL_RATE_PROPERTY = "org.gojul.fourinaline.addressCallRate";
+	
+	/**
+	 * The property that contains the maximum number of games created at the
+	 * same time by the global server. Defaults to 16.
+	 */
+	public final static String MAX_GAME_CREATIONS_PROPERTY = "org.gojul.fourinaline.maxGameCreations";
+	
+	/**
+	 * The name under which the counters are exported through JMX.
+	 */
+	public final static String MBEAN_NAME = "org.gojul.fourinaline:type=AdmissionControl";
+	
+	/**
+	 * The number of rate limited clients beyond which the buckets
+	 * of the idle clients are purged.
+	 */
+	private final static int MAX_IDLE_BUCKETS = 4096;
+	
+	/**
+	 * The control instance, created on first use.
+	 */
+	private static AdmissionControl instance = null;
+	
+	/**
+	 * The <code>TokenBucket</code> class is the token bucket of a client.
+	 *
+	 * @author Julien Aubin
+	 */
+	private final static class TokenBucket
+	{
+		/**
+		 * The number of tokens added per nanosecond.
+		 */
+		private double rate;
+		
+		/**
+		 * The maximum number of tokens.
+		 */
+		private double capacity;
+		
+		/**
+		 * The number of tokens available.
+		 */
+		private double tokens;
+		
+		/**
+		 * The time at which the tokens have been refilled.
+		 */
+		private long refillTime;
+		
+		/**
+		 * Constructor. The bucket is full.
+		 * @param callRate the number of tokens added per second.
+		 */
+		private TokenBucket(final int callRate)
+		{
+			rate = callRate / 1e9;
+			capacity = 2.0 * callRate;
+			tokens = capacity;
+			refillTime = System.nanoTime();
+		}
+		
+		/**
+		 * Adds the tokens earned since the last refill.
+		 * @param now the current time in nanoseconds.
+		 */
+		private void refill(final long now)
+		{
+			tokens = Math.min(capacity, tokens + (now - refillTime) * rate);
+			refillTime = now;
+		}
+		
+		/**
+		 * Takes a token from the bucket if there's one.
+		 * @return true if a token has been taken, false elsewhere.
+		 */
+		private synchronized boolean tryAcquire()
+		{
+			refill(System.nanoTime());
+			
+			if (tokens < 1)
+				return false;
+			
+			tokens--;
+			
+			return true;
+		}
+		
+		/**
+		 * Returns true if the bucket is full, i.e. if its client has
+		 * been idle for long enough to forget it.
+		 * @return true if the bucket is full, false elsewhere.
+		 */
+		private synchronized boolean isFull()
+		{
+			refill(System.nanoTime());
+			
+			return tokens >= capacity;
+		}
+	}
+	
+	/**
+	 * The number of calls per second allowed for a ticket, or 0 if unlimited.
+	 */
+	private int ticketCallRate;
+	
+	/**
+	 * The number of calls per second allowed for an address, or 0 if unlimited.
+	 */
+	private int addressCallRate;
+	
+	/**
+	 * The map that ties a ticket to its bucket.
+	 */
+	private ConcurrentMap<ServerTicket, TokenBucket> ticketBuckets;
+	
+	/**
+	 * The map that ties a source address to its bucket.
+	 */
+	private ConcurrentMap<String, TokenBucket> addressBuckets;
+	
+	/**
+	 * The semaphore that bounds the game creations, or null if unlimited.
+	 */
+	private Semaphore gameCreationSemaphore;
+	
+	/**
+	 * The maximum number of games created at the same time, or 0 if unlimited.
+	 */
+	private int maxGameCreations;
+	
+	/**
+	 * The number of calls admitted.
+	 */
+	private AtomicLong admittedCallCount;
+	
+	/**
+	 * The number of calls rejected by the ticket rate limit.
+	 */
+	private AtomicLong rejectedTicketCallCount;
+	
+	/**
+	 * The number of calls rejected by the address rate limit.
+	 */
+	private AtomicLong rejectedAddressCallCount;
+	
+	/**
+	 * The number of game creations rejected.
+	 */
+	private AtomicLong rejectedGameCreationCount;
+	
+	/**
+	 * Constructor.
+	 */
+	private AdmissionControl()
+	{
+		ticketCallRate = Integer.getInteger(TICKET_CALL_RATE_PROPERTY, 100).intValue();
+		addressCallRate = Integer.getInteger(ADDRESS_CALL_RATE_PROPERTY, 1000).intValue();
+		maxGameCreations = Integer.getInteger(MAX_GAME_CREATIONS_PROPERTY, 16).intValue();
+		
+		ticketBuckets = new ConcurrentHashMap<ServerTicket, TokenBucket>();
+		addressBuckets = new ConcurrentHashMap<String, TokenBucket>();
+		gameCreationSemaphore = maxGameCreations > 0 ? new Semaphore(maxGameCreations) : null;
+		
+		admittedCallCount = new AtomicLong();
+		rejectedTicketCallCount = new AtomicLong();
+		rejectedAddressCallCount = new AtomicLong();
+		rejectedGameCreationCount = new AtomicLong();
+	}
+	
+	/**
+	 * Returns the control instance. The counters are exported through
+	 * JMX when the instance is created.
+	 * @return the control instance.
+	 */
+	static synchronized AdmissionControl getInstance()
+	{
+		if (instance == null)
+		{
+			instance = new AdmissionControl();
+			
+			try
+			{
+				ManagementFactory.getPlatformMBeanServer().registerMBean(instance, new ObjectName(MBEAN_NAME));
+			}
+			catch (JMException e)
+			{
+				// The counters are just not exported.
+				e.printStackTrace();
+			}
+		}
+		
+		return instance;
+	}
+	
+	/**
+	 * Takes a token from the bucket of <code>key</code> in <code>buckets</code>,
+	 * which is created if needed.
+	 * @param <K> the key type.
+	 * @param buckets the buckets to consider.
+	 * @param key the key of the client.
+	 * @param callRate the call rate of the client.
+	 * @return true if a token has been taken, false elsewhere.
+	 */
+	private static <K> boolean tryAcquire(final ConcurrentMap<K, TokenBucket> buckets, final K key, final int callRate)
+	{
+		TokenBucket bucket = buckets.get(key);
+		
+		if (bucket == null)
+		{
+			if (buckets.size() >= MAX_IDLE_BUCKETS)
+				purgeIdleBuckets(buckets);
+			
+			TokenBucket newBucket = new TokenBucket(callRate);
+			bucket = buckets.putIfAbsent(key, newBucket);
+			
+			if (bucket == null)
+				bucket = newBucket;
+		}
+		
+		return bucket.tryAcquire();
+	}
+	
+	/**
+	 * Removes from <code>buckets</code> the buckets of the clients that have been idle
+	 * long enough to refill their bucket. Such clients are not limited anyway.
+	 * @param <K> the key type.
+	 * @param buckets the buckets to purge.
+	 */
+	private static <K> void purgeIdleBuckets(final ConcurrentMap<K, TokenBucket> buckets)
+	{
+		Iterator<TokenBucket> it = buckets.values().iterator();
+		
+		while (it.hasNext())
+		{
+			if (it.next().isFull())
+				it.remove();
+		}
+	}
+	
+	/**
+	 * Admits a call made with the ticket <code>serverTicket</code>.
+	 * @param serverTicket the ticket of the call.
+	 * @throws ServerBusyException if the ticket is used too often.
+	 */
+	void admitTicketCall(final ServerTicket serverTicket) throws ServerBusyException
+	{
+		if (ticketCallRate > 0 && !tryAcquire(ticketBuckets, serverTicket, ticketCallRate))
+		{
+			rejectedTicketCallCount.incrementAndGet();
+			throw new ServerBusyException("Too many calls for this ticket");
+		}
+	}
+	
+	/**
+	 * Forgets the ticket <code>serverTicket</code>, which has been released.
+	 * @param serverTicket the released ticket.
+	 */
+	void ticketReleased(final ServerTicket serverTicket)
+	{
+		ticketBuckets.remove(serverTicket);
+	}
+	
+	/**
+	 * Admits a call from the source address <code>address</code>.
+	 * @param address the source address of the call.
+	 * @throws ServerBusyException if the source address calls the servers too often.
+	 */
+	void admitAddressCall(final String address) throws ServerBusyException
+	{
+		if (addressCallRate > 0 && !tryAcquire(addressBuckets, address, addressCallRate))
+		{
+			rejectedAddressCallCount.incrementAndGet();
+			throw new ServerBusyException("Too many calls from " + address);
+		}
+		
+		admittedCallCount.incrementAndGet();
+	}
+	
+	/**
+	 * Admits the current call if it is an RMI call, according to its source
+	 * address. The local calls and the calls of the other transports, which
+	 * check the source address themselves, are always admitted.
+	 * @throws ServerBusyException if the source address calls the servers too often.
+	 */
+	void admitRemoteCall() throws ServerBusyException
+	{
+		String address;
+		
+		try
+		{
+			address = RemoteServer.getClientHost();
+		}
+		catch (ServerNotActiveException e)
+		{
+			return;
+		}
+		
+		admitAddressCall(address);
+	}
+	
+	/**
+	 * Starts a game creation, which must be ended by the <code>endGameCreation</code>
+	 * method.
+	 * @throws ServerBusyException if too many games are being created.
+	 */
+	void beginGameCreation() throws ServerBusyException
+	{
+		if (gameCreationSemaphore != null && !gameCreationSemaphore.tryAcquire())
+		{
+			rejectedGameCreationCount.incrementAndGet();
+			throw new ServerBusyException("Too many games are being created");
+		}
+	}
+	
+	/**
+	 * Ends a game creation started by the <code>beginGameCreation</code> method.
+	 */
+	void endGameCreation()
+	{
+		if (gameCreationSemaphore != null)
+			gameCreationSemaphore.release();
+	}
+
+	/**
+	 * @see org.gojul.fourinaline.model.AdmissionControlMBean#getAdmittedCallCount()
+	 */
+	public long getAdmittedCallCount()
+	{
+		return admittedCallCount.get();
+	}
+
+	/**
+	 * @see org.gojul.fourinaline.model.AdmissionControlMBean#getRejectedTicketCallCount()
+	 */
+	public long getRejectedTicketCallCount()
+	{
+		return rejectedTicketCallCount.get();
+	}
+
+	/**
+	 * @see org.gojul.fourinaline.model.AdmissionControlMBean#getRejectedAddressCallCount()
+	 */
+	public long getRejectedAddressCallCount()
+	{
+		return rejectedAddressCallCount.get();
+	}
+
+	/**
+	 * @see org.gojul.fourinaline.model.AdmissionControlMBean#getRejectedGameCreationCount()
+	 */
+	public long getRejectedGameCreationCount()
+	{
+		return rejectedGameCreationCount.get();
+	}
+
+	/**
+	 * @see org.gojul.fourinaline.model.AdmissionControlMBean#getActiveGameCreationCount()
+	 */
+	public int getActiveGameCreationCount()
+	{
+		return gameCreationSemaphore == null ? 0 : maxGameCreations - gameCreationSemaphore.availablePermits();
+	}
+
+	/**
+	 * @see org.gojul.fourinaline.model.AdmissionControlMBean#getRateLimitedClientCount()
+	 */
+	public int getRateLimitedClientCount()
+	{
+		return ticketBuckets.size() + addressBuckets.size();
+	}
+}
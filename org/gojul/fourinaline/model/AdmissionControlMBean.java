@@ -0,0 +1,70 @@
+/*
+ * AdmissionControlMBean.java
+ *
+ * Created: 2026/10/19
+ *
+ * Copyright (C) 2026 Julien Aubin
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.gojul.fourinaline.model;
+
+/**
+ * The <code>AdmissionControlMBean</code> interface exports the counters
+ * of the admission control of the game servers through JMX.
+ *
+ * @author Julien Aubin
+ */
+public interface AdmissionControlMBean
+{
+	/**
+	 * Returns the number of calls admitted by the source address rate limit.
+	 * @return the number of calls admitted by the source address rate limit.
+	 */
+	public long getAdmittedCallCount();
+	
+	/**
+	 * Returns the number of calls rejected since their ticket
+	 * was used too often.
+	 * @return the number of calls rejected by the ticket rate limit.
+	 */
+	public long getRejectedTicketCallCount();
+	
+	/**
+	 * Returns the number of calls rejected since their source address
+	 * called the servers too often.
+	 * @return the number of calls rejected by the address rate limit.
+	 */
+	public long getRejectedAddressCallCount();
+	
+	/**
+	 * Returns the number of game creations rejected since too many
+	 * games were being created.
+	 * @return the number of game creations rejected.
+	 */
+	public long getRejectedGameCreationCount();
+	
+	/**
+	 * Returns the number of games being created.
+	 * @return the number of games being created.
+	 */
+	public int getActiveGameCreationCount();
+	
+	/**
+	 * Returns the number of tickets and addresses that are currently rate limited.
+	 * @return the number of rate limited tickets and addresses.
+	 */
+	public int getRateLimitedClientCount();
+}
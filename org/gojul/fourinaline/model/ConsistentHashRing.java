@@ -0,0 +1,143 @@
+/*
+ * ConsistentHashRing.java
+ *
+ * Created: 2026/10/19
+ *
+ * Copyright (C) 2026 Julien Aubin
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.gojul.fourinaline.model;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The <code>ConsistentHashRing</code> class assigns keys to the nodes
+ * of a cluster by consistent hashing.<br/>
+ * Each node is placed at several points of a ring of hashes, and a key
+ * is assigned to the first node that follows its hash on the ring. Thus
+ * adding or removing a node only moves the keys of that node, and the keys
+ * are evenly spread over the nodes.<br/>
+ * The assignment only depends on the node addresses, not on their order, so
+ * that all the nodes of a cluster agree on it. This class is immutable.
+ *
+ * @author Julien Aubin
+ */
+final class ConsistentHashRing
+{
+	/**
+	 * The number of points of a node on the ring.
+	 */
+	private final static int VIRTUAL_NODE_COUNT = 160;
+	
+	/**
+	 * The node addresses.
+	 */
+	private List<String> nodes;
+	
+	/**
+	 * The map that ties a hash of the ring to a node address.
+	 */
+	private SortedMap<Long, String> ring;
+	
+	/**
+	 * Constructor.
+	 * @param nodeAddresses the node addresses.
+	 * @throws NullPointerException if <code>nodeAddresses</code> is null
+	 * or contains a null address.
+	 * @throws IllegalArgumentException if <code>nodeAddresses</code> is empty.
+	 */
+	ConsistentHashRing(final Collection<String> nodeAddresses) throws NullPointerException, IllegalArgumentException
+	{
+		if (nodeAddresses.isEmpty())
+			throw new IllegalArgumentException("No node address");
+		
+		nodes = Collections.unmodifiableList(new ArrayList<String>(nodeAddresses));
+		ring = new TreeMap<Long, String>();
+		
+		for (String address: nodes)
+		{
+			if (address == null)
+				throw new NullPointerException();
+			
+			for (int i = 0; i < VIRTUAL_NODE_COUNT; i++)
+				ring.put(hash(address + "#" + i), address);
+		}
+	}
+	
+	/**
+	 * Returns the node addresses.
+	 * @return the node addresses.
+	 */
+	List<String> getNodes()
+	{
+		return nodes;
+	}
+	
+	/**
+	 * Returns the address of the node the key <code>key</code> is assigned to.
+	 * @param key the key.
+	 * @return the address of the node of <code>key</code>.
+	 * @throws NullPointerException if <code>key</code> is null.
+	 */
+	String getNode(final String key) throws NullPointerException
+	{
+		SortedMap<Long, String> tailMap = ring.tailMap(hash(key));
+		
+		if (tailMap.isEmpty())
+			return ring.get(ring.firstKey());
+		else
+			return tailMap.get(tailMap.firstKey());
+	}
+	
+	/**
+	 * Returns the hash of <code>value</code>, made of the first 8 bytes of
+	 * its MD5 digest, which spreads the values better than <code>String.hashCode()</code>.
+	 * @param value the value to hash.
+	 * @return the hash of <code>value</code>.
+	 * @throws NullPointerException if <code>value</code> is null.
+	 */
+	private static long hash(final String value) throws NullPointerException
+	{
+		try
+		{
+			byte[] digest = MessageDigest.getInstance("MD5").digest(value.getBytes("UTF-8"));
+			long result = 0;
+			
+			for (int i = 0; i < 8; i++)
+				result = (result << 8) | (digest[i] & 0xff);
+			
+			return result;
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			// Can't happen since every JVM supports MD5.
+			throw new RuntimeException(e);
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			// Can't happen since every JVM supports UTF-8.
+			throw new RuntimeException(e);
+		}
+	}
+}
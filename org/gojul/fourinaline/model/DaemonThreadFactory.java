@@ -0,0 +1,67 @@
+/*
+ * DaemonThreadFactory.java
+ *
+ * Created: 2026/10/19
+ *
+ * Copyright (C) 2026 Julien Aubin
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.gojul.fourinaline.model;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The <code>DaemonThreadFactory</code> class decorates a thread factory
+ * in order to create named daemon threads, which do not prevent the JVM
+ * from exiting.
+ *
+ * @author Julien Aubin
+ */
+final class DaemonThreadFactory implements ThreadFactory
+{
+	/**
+	 * The decorated thread factory.
+	 */
+	private ThreadFactory threadFactory;
+
+	/**
+	 * The name of the threads.
+	 */
+	private String threadName;
+
+	/**
+	 * Constructor.
+	 * @param factory the decorated thread factory.
+	 * @param name the name of the threads.
+	 */
+	DaemonThreadFactory(final ThreadFactory factory, final String name)
+	{
+		threadFactory = factory;
+		threadName = name;
+	}
+
+	/**
+	 * @see java.util.concurrent.ThreadFactory#newThread(java.lang.Runnable)
+	 */
+	public Thread newThread(final Runnable r)
+	{
+		Thread result = threadFactory.newThread(r);
+		result.setName(threadName);
+		result.setDaemon(true);
+
+		return result;
+	}
+}
@@ -21,10 +21,11 @@
  */
 package org.gojul.fourinaline.model;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 
-import org.gojul.fourinaline.model.AIGameClient.EvalScore;
+import org.gojul.fourinaline.model.AIGameClient.MultiPlayerEvalScore;
 import org.gojul.fourinaline.model.GameModel.CellCoord;
 import org.gojul.fourinaline.model.GameModel.PlayerMark;
 
@@ -35,13 +36,95 @@ import org.gojul.fourinaline.model.GameModel.PlayerMark;
  * 
  * @author Julien Aubin
  */
-public final class DefaultEvalScore implements EvalScore
+public final class DefaultEvalScore implements MultiPlayerEvalScore
 {
 	
 	/**
 	 * The serial version UID.
 	 */
 	final static long serialVersionUID = 1;
+	
+	/**
+	 * The <code>LineCoords</code> class contains the coordinates of all
+	 * the lines of a game geometry, stored line after line in flat arrays,
+	 * which is much faster to read than the line collections of the
+	 * game model.
+	 *
+	 * @author Julien Aubin
+	 */
+	private final static class LineCoords
+	{
+		/**
+		 * The number of rows.
+		 */
+		private int rowCount;
+		
+		/**
+		 * The number of columns.
+		 */
+		private int colCount;
+		
+		/**
+		 * The line length.
+		 */
+		private int lineLength;
+		
+		/**
+		 * The row indexes of the cells of the lines.
+		 */
+		private int[] rowIndexes;
+		
+		/**
+		 * The column indexes of the cells of the lines.
+		 */
+		private int[] colIndexes;
+		
+		/**
+		 * Constructor.
+		 * @param gameModel the game model which geometry is considered.
+		 */
+		public LineCoords(final GameModel gameModel)
+		{
+			rowCount = gameModel.getRowCount();
+			colCount = gameModel.getColCount();
+			lineLength = gameModel.getWinLineLength();
+			
+			Collection<List<CellCoord>> lines = gameModel.getAllLines();
+			rowIndexes = new int[lines.size() * lineLength];
+			colIndexes = new int[rowIndexes.length];
+			
+			int index = 0;
+			
+			for (List<CellCoord> line: lines)
+			{
+				for (CellCoord coord: line)
+				{
+					rowIndexes[index] = coord.getRowIndex();
+					colIndexes[index] = coord.getColIndex();
+					index++;
+				}
+			}
+		}
+		
+		/**
+		 * Returns true if these coordinates match the geometry of the
+		 * game model <code>gameModel</code>, false elsewhere.
+		 * @param gameModel the game model to consider.
+		 * @return true if these coordinates match the geometry of the
+		 * game model <code>gameModel</code>.
+		 */
+		public boolean matches(final GameModel gameModel)
+		{
+			return rowCount == gameModel.getRowCount() && colCount == gameModel.getColCount()
+				&& lineLength == gameModel.getWinLineLength();
+		}
+	}
+	
+	/**
+	 * The line coordinates of the last game geometry evaluated by
+	 * the multi player evaluation.
+	 */
+	private transient volatile LineCoords lineCoords;
 
 	/**
 	 * @see org.gojul.fourinaline.model.AIGameClient.EvalScore#evaluate(org.gojul.fourinaline.model.GameModel, org.gojul.fourinaline.model.GameModel.PlayerMark)
@@ -55,6 +138,118 @@ public final class DefaultEvalScore implements EvalScore
 		return evaluateForOnePlayer(gameModel, playerMark) - evaluateForOnePlayer(gameModel, PlayerMark.getNextMark(playerMark));
 	}
 	
+	/**
+	 * The score of a player is its line score minus the best line score of the
+	 * other players, as in the two players evaluation, shifted by the maximum
+	 * line score so that it is never negative.
+	 * @see org.gojul.fourinaline.model.AIGameClient.MultiPlayerEvalScore#evaluate(org.gojul.fourinaline.model.GameModel, org.gojul.fourinaline.model.GameModel.PlayerMark[], int[])
+	 */
+	public void evaluate(final GameModel gameModel, final PlayerMark[] playerMarks, final int[] scores)
+		throws NullPointerException
+	{
+		if (gameModel == null || playerMarks == null || scores == null)
+			throw new NullPointerException();
+		
+		Arrays.fill(scores, 0);
+		
+		LineCoords coords = lineCoords;
+		
+		if (coords == null || !coords.matches(gameModel))
+		{
+			coords = new LineCoords(gameModel);
+			lineCoords = coords;
+		}
+		
+		int[] rowIndexes = coords.rowIndexes;
+		int[] colIndexes = coords.colIndexes;
+		int lineLength = coords.lineLength;
+		
+		// Every line is read only once for all the players.
+		for (int lineStart = 0; lineStart < rowIndexes.length; lineStart += lineLength)
+		{
+			PlayerMark lineMark = null;
+			int lineScore = 1;
+			
+			for (int i = lineStart, end = lineStart + lineLength; i < end; i++)
+			{
+				PlayerMark markTest = gameModel.getCell(rowIndexes[i], colIndexes[i]);
+				
+				if (markTest != null)
+				{
+					if (lineMark == null || lineMark.equals(markTest))
+					{
+						lineMark = markTest;
+						lineScore = 2 * lineScore;
+					}
+					else
+					{
+						lineScore = 0;
+						break;
+					}
+				}
+			}
+			
+			if (lineScore != 0)
+			{
+				for (int i = 0; i < playerMarks.length; i++)
+				{
+					if (lineMark == null || lineMark.equals(playerMarks[i]))
+						scores[i] += lineScore;
+				}
+			}
+		}
+		
+		// Index of the two best line scores.
+		int first = 0;
+		int second = -1;
+		
+		for (int i = 1; i < scores.length; i++)
+		{
+			if (scores[i] > scores[first])
+			{
+				second = first;
+				first = i;
+			}
+			else if (second < 0 || scores[i] > scores[second])
+				second = i;
+		}
+		
+		if (second >= 0)
+		{
+			int maxLineScore = getMaxLineScore(gameModel);
+			int firstScore = scores[first];
+			int secondScore = scores[second];
+			
+			for (int i = 0; i < scores.length; i++)
+				scores[i] += maxLineScore - (i == first ? secondScore : firstScore);
+		}
+	}
+	
+	/**
+	 * Returns the maximum line score of a player for the game geometry of
+	 * <code>gameModel</code>.
+	 * @param gameModel the game model to consider.
+	 * @return the maximum line score of a player.
+	 */
+	private static int getMaxLineScore(final GameModel gameModel)
+	{
+		return gameModel.getAllLines().size() << gameModel.getWinLineLength();
+	}
+	
+	/**
+	 * @see org.gojul.fourinaline.model.AIGameClient.MultiPlayerEvalScore#getMaxScoreSum(org.gojul.fourinaline.model.GameModel, int)
+	 */
+	public int getMaxScoreSum(final GameModel gameModel, final int playerCount)
+		throws NullPointerException
+	{
+		if (gameModel == null)
+			throw new NullPointerException();
+		
+		// The score of a player that leads is at most twice the maximum
+		// line score, but then the others are below it.
+		return Math.max(playerCount, 2) * getMaxLineScore(gameModel);
+	}
+	
 	/**
 	 * Evaluates the score for the player which has for mark <code>playerMark</code>.
 	 * See <A href="http://www.pomakis.com/c4/connect_generic/c4.txt">this document</A>
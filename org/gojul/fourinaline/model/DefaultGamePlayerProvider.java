@@ -0,0 +1,73 @@
+/*
+ * DefaultGamePlayerProvider.java
+ *
+ * Created: 28 oct. 08
+ *
+ * Copyright (C) 2008 Julien Aubin
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.gojul.fourinaline.model;
+
+import java.util.Set;
+
+import org.gojul.fourinaline.model.GameModel.PlayerMark;
+
+/**
+ * The <code>DefaultGamePlayerProvider</code> class provides a default implementation
+ * of the <code>GamePlayerProvider</code> interface used on a server environment.
+ *
+ * @author Julien Aubin
+ */
+final class DefaultGamePlayerProvider implements GamePlayerProvider
+{
+	
+	/**
+	 * The class serial version UID.
+	 */
+	final static long serialVersionUID = 1L;
+
+	/**
+	 * @see org.gojul.fourinaline.model.GamePlayerProvider#getGamePlayer(java.lang.String, org.gojul.fourinaline.model.GameModel.PlayerMark)
+	 */
+	public GamePlayer getGamePlayer(final String name, final PlayerMark playerMark) throws NullPointerException, RuntimeException
+	{
+		if (name == null || playerMark == null)
+			throw new NullPointerException();
+		
+		return new GamePlayerImpl(name, playerMark);
+	}
+
+	/**
+	 * @see org.gojul.fourinaline.model.GamePlayerProvider#storeGame(org.gojul.fourinaline.model.GamePlayer, java.util.Set, org.gojul.fourinaline.model.GameModel)
+	 */
+	public void storeGame(final GamePlayer winner, final Set<GamePlayer> gamePlayers, final GameModel gameModel) throws NullPointerException, RuntimeException
+	{
+		if (gamePlayers == null || gameModel == null)
+			throw new NullPointerException();
+	}
+
+	/**
+	 * @see org.gojul.fourinaline.model.GamePlayerProvider#releasePlayer(java.lang.String)
+	 */
+	public void releasePlayer(final String name) throws NullPointerException, RuntimeException
+	{
+		if (name == null)
+			throw new NullPointerException();
+	}
+
+	
+	
+}
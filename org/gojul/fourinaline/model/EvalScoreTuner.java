@@ -0,0 +1,547 @@
+/*
+ * EvalScoreTuner.java
+ *
+ * Created: 2026/10/19
+ *
+ * Copyright (C) 2026 Julien Aubin
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.gojul.fourinaline.model;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.gojul.fourinaline.model.AIGameClient.AlphaBeta;
+import org.gojul.fourinaline.model.AIGameClient.EvalScore;
+import org.gojul.fourinaline.model.GameModel.GameStatus;
+import org.gojul.fourinaline.model.GameModel.PlayerMark;
+
+/**
+ * The <code>EvalScoreTuner</code> class is a headless tool that tunes
+ * the line weights of the <code>ParameterizedEvalScore</code> class.<br/>
+ * It plays self-play games in parallel on all the available processors,
+ * between the AI using the weights being tuned and the AI using the
+ * default weights. The positions encountered are then labelled with the
+ * game result, and the weights are fitted by logistic regression on these
+ * results (Texel tuning). The process is repeated for a number of generations,
+ * and the resulting weights are written to a file that the
+ * <code>ParameterizedEvalScore</code> class can load.<br/>
+ * The games are played directly with the alpha beta algorithm used
+ * by <code>AIGameClient</code>, without any game server.
+ *
+ * @see org.gojul.fourinaline.model.ParameterizedEvalScore
+ *
+ * @author Julien Aubin
+ */
+public final class EvalScoreTuner
+{
+
+	/**
+	 * The <code>LabelledPosition</code> class is a position encountered
+	 * during a game, described by its line features, and labelled with
+	 * the game result.
+	 *
+	 * @author Julien Aubin
+	 */
+	private final static class LabelledPosition
+	{
+		/**
+		 * The line features of the position, seen by the player that has just played.
+		 */
+		private int[] features;
+
+		/**
+		 * The game result for the player that has just played :
+		 * 1 for a win, 0.5 for a tie and 0 for a loss.
+		 */
+		private double result;
+
+		/**
+		 * Constructor.
+		 * @param positionFeatures the position features.
+		 * @param gameResult the game result.
+		 */
+		public LabelledPosition(final int[] positionFeatures, final double gameResult)
+		{
+			features = positionFeatures;
+			result = gameResult;
+		}
+	}
+
+	/**
+	 * The <code>GameResult</code> class contains the outcome
+	 * of a self-play game.
+	 *
+	 * @author Julien Aubin
+	 */
+	private final static class GameResult
+	{
+		/**
+		 * The positions encountered during the game.
+		 */
+		private List<LabelledPosition> positions;
+
+		/**
+		 * The score of the tuned AI : 1 for a win, 0.5 for a tie
+		 * and 0 for a loss.
+		 */
+		private double tunedScore;
+
+		/**
+		 * Constructor.
+		 * @param gamePositions the positions encountered during the game.
+		 * @param score the score of the tuned AI.
+		 */
+		public GameResult(final List<LabelledPosition> gamePositions, final double score)
+		{
+			positions = gamePositions;
+			tunedScore = score;
+		}
+	}
+
+	/**
+	 * The <code>SelfPlayGame</code> class plays one game between
+	 * two evaluation functions.
+	 *
+	 * @author Julien Aubin
+	 */
+	private final static class SelfPlayGame implements Callable<GameResult>
+	{
+		/**
+		 * The evaluation function being tuned.
+		 */
+		private EvalScore tunedEvalScore;
+
+		/**
+		 * The reference evaluation function.
+		 */
+		private EvalScore referenceEvalScore;
+
+		/**
+		 * True if the tuned evaluation function plays first.
+		 */
+		private boolean tunedPlaysFirst;
+
+		/**
+		 * The search deepness.
+		 */
+		private int deepness;
+
+		/**
+		 * The number of random plays at the start of the game.
+		 */
+		private int openingPlays;
+
+		/**
+		 * The random generator used for opening plays.
+		 */
+		private Random random;
+
+		/**
+		 * Constructor.
+		 * @param tuned the evaluation function being tuned.
+		 * @param reference the reference evaluation function.
+		 * @param tunedFirst true if the tuned evaluation function plays first.
+		 * @param searchDeepness the search deepness.
+		 * @param randomPlays the number of random plays at the start of the game.
+		 * @param seed the random seed of the game.
+		 */
+		public SelfPlayGame(final EvalScore tuned, final EvalScore reference, final boolean tunedFirst,
+			final int searchDeepness, final int randomPlays, final long seed)
+		{
+			tunedEvalScore = tuned;
+			referenceEvalScore = reference;
+			tunedPlaysFirst = tunedFirst;
+			deepness = searchDeepness;
+			openingPlays = randomPlays;
+			random = new Random(seed);
+		}
+
+		/**
+		 * @see java.util.concurrent.Callable#call()
+		 */
+		public GameResult call()
+		{
+			GameModel gameModel = new GameModel();
+
+			PlayerMark tunedMark = tunedPlaysFirst ? gameModel.getCurrentPlayer()
+				: PlayerMark.getNextMark(gameModel.getCurrentPlayer());
+
+			// Each game uses its own alpha beta instances, since they
+			// contain a score cache.
+			AlphaBeta tunedAlphaBeta = new AlphaBeta(tunedEvalScore, deepness);
+			AlphaBeta referenceAlphaBeta = new AlphaBeta(referenceEvalScore, deepness);
+
+			List<int[]> features = new ArrayList<int[]>();
+			List<PlayerMark> movers = new ArrayList<PlayerMark>();
+
+			int playIndex = 0;
+
+			while (gameModel.getGameStatus().equals(GameStatus.CONTINUE_STATUS))
+			{
+				PlayerMark mark = gameModel.getCurrentPlayer();
+				int colIndex = -1;
+
+				if (playIndex < openingPlays)
+				{
+					List<Integer> playableColumns = new ArrayList<Integer>(gameModel.getListOfPlayableColumns());
+					colIndex = playableColumns.get(random.nextInt(playableColumns.size())).intValue();
+				}
+				else
+				{
+					AlphaBeta alphaBeta = mark.equals(tunedMark) ? tunedAlphaBeta : referenceAlphaBeta;
+					colIndex = alphaBeta.getColumnIndex(gameModel, mark);
+				}
+
+				gameModel.play(colIndex, mark);
+				playIndex++;
+
+				// Only the positions that are evaluated by the alpha beta
+				// algorithm are interesting for us.
+				if (playIndex > openingPlays && gameModel.getGameStatus().equals(GameStatus.CONTINUE_STATUS))
+				{
+					int[] positionFeatures = new int[gameModel.getWinLineLength()];
+					ParameterizedEvalScore.computeFeatures(gameModel, mark, positionFeatures);
+					features.add(positionFeatures);
+					movers.add(mark);
+				}
+			}
+
+			// When the game is won, the current player is the winner.
+			PlayerMark winner = gameModel.getGameStatus().equals(GameStatus.WON_STATUS) ? gameModel.getCurrentPlayer() : null;
+
+			List<LabelledPosition> positions = new ArrayList<LabelledPosition>(features.size());
+
+			for (int i = 0, len = features.size(); i < len; i++)
+				positions.add(new LabelledPosition(features.get(i), getScore(winner, movers.get(i))));
+
+			return new GameResult(positions, getScore(winner, tunedMark));
+		}
+
+		/**
+		 * Returns the game score of the player <code>playerMark</code>.
+		 * @param winner the game winner, or null if the game is tie.
+		 * @param playerMark the player mark.
+		 * @return the game score of the player <code>playerMark</code>.
+		 */
+		private static double getScore(final PlayerMark winner, final PlayerMark playerMark)
+		{
+			if (winner == null)
+				return 0.5;
+			else
+				return winner.equals(playerMark) ? 1.0 : 0.0;
+		}
+	}
+
+	/**
+	 * The number of gradient descent iterations per generation.
+	 */
+	private final static int FIT_ITERATIONS = 2000;
+
+	/**
+	 * The gradient descent learning rate.
+	 */
+	private final static double LEARNING_RATE = 0.5;
+
+	/**
+	 * The scale applied to the fitted weights before rounding them
+	 * to integers.
+	 */
+	private final static double WEIGHT_SCALE = 8.0;
+
+	/**
+	 * The number of games per generation.
+	 */
+	private int gamesPerGeneration;
+
+	/**
+	 * The search deepness of the self-play games.
+	 */
+	private int deepness;
+
+	/**
+	 * The number of random plays at the start of each game.
+	 */
+	private int openingPlays;
+
+	/**
+	 * The executor that plays the games.
+	 */
+	private ExecutorService executor;
+
+	/**
+	 * The random generator of game seeds.
+	 */
+	private Random random;
+
+	/**
+	 * Constructor.
+	 * @param games the number of games per generation.
+	 * @param searchDeepness the search deepness of the self-play games.
+	 * @param randomPlays the number of random plays at the start of each game.
+	 * @throws IllegalArgumentException if <code>games</code> or <code>searchDeepness</code>
+	 * is smaller or equal to 0, or if <code>randomPlays</code> is smaller than 0.
+	 */
+	public EvalScoreTuner(final int games, final int searchDeepness, final int randomPlays) throws IllegalArgumentException
+	{
+		if (games <= 0 || searchDeepness <= 0 || randomPlays < 0)
+			throw new IllegalArgumentException("Invalid tuner parameters");
+
+		gamesPerGeneration = games;
+		deepness = searchDeepness;
+		openingPlays = randomPlays;
+		executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		random = new Random();
+	}
+
+	/**
+	 * Plays a generation of games between the weights <code>lineWeights</code> and
+	 * the default ones.
+	 * @param lineWeights the weights being tuned.
+	 * @param positions the list in which the labelled positions are added.
+	 * @return the average score of the tuned weights.
+	 * @throws Exception if an error occurs while playing the games.
+	 */
+	private double playGeneration(final int[] lineWeights, final List<LabelledPosition> positions) throws Exception
+	{
+		EvalScore tuned = new ParameterizedEvalScore(lineWeights);
+		EvalScore reference = new ParameterizedEvalScore(ParameterizedEvalScore.getDefaultLineWeights(lineWeights.length));
+
+		Collection<SelfPlayGame> games = new ArrayList<SelfPlayGame>(gamesPerGeneration);
+
+		for (int i = 0; i < gamesPerGeneration; i++)
+			games.add(new SelfPlayGame(tuned, reference, i % 2 == 0, deepness, openingPlays, random.nextLong()));
+
+		double totalScore = 0.0;
+
+		for (Future<GameResult> future: executor.invokeAll(games))
+		{
+			GameResult result = future.get();
+			positions.addAll(result.positions);
+			totalScore += result.tunedScore;
+		}
+
+		return totalScore / gamesPerGeneration;
+	}
+
+	/**
+	 * Returns the logistic function of <code>x</code>.
+	 * @param x the value to consider.
+	 * @return the logistic function of <code>x</code>.
+	 */
+	private static double sigmoid(final double x)
+	{
+		return 1.0 / (1.0 + Math.exp(-x));
+	}
+
+	/**
+	 * Returns the mean squared error between the game results and the
+	 * predictions of the weights <code>weights</code> scaled by <code>k</code>.
+	 * @param positions the labelled positions.
+	 * @param weights the weights.
+	 * @param k the scaling constant.
+	 * @return the mean squared error.
+	 */
+	private static double computeError(final List<LabelledPosition> positions, final double[] weights, final double k)
+	{
+		double error = 0.0;
+
+		for (LabelledPosition position: positions)
+		{
+			double diff = position.result - sigmoid(k * dot(position.features, weights));
+			error += diff * diff;
+		}
+
+		return error / positions.size();
+	}
+
+	/**
+	 * Returns the dot product of <code>features</code> and <code>weights</code>.
+	 * @param features the features.
+	 * @param weights the weights.
+	 * @return the dot product of <code>features</code> and <code>weights</code>.
+	 */
+	private static double dot(final int[] features, final double[] weights)
+	{
+		double result = 0.0;
+
+		for (int i = 0; i < features.length; i++)
+			result += features[i] * weights[i];
+
+		return result;
+	}
+
+	/**
+	 * Fits the weights <code>initialWeights</code> on the labelled positions
+	 * <code>positions</code>.<br/>
+	 * The scaling constant of the logistic function is first chosen so that it
+	 * minimizes the error of the initial weights, and the weights are then
+	 * fitted by gradient descent.
+	 * @param positions the labelled positions.
+	 * @param initialWeights the initial weights.
+	 * @return the fitted weights, rounded to integers.
+	 */
+	private static int[] fit(final List<LabelledPosition> positions, final int[] initialWeights)
+	{
+		double[] weights = new double[initialWeights.length];
+
+		for (int i = 0; i < weights.length; i++)
+			weights[i] = initialWeights[i];
+
+		// Texel tuning : the scaling constant is the one that best
+		// matches the initial weights to the game results.
+		double bestK = 1.0;
+		double bestError = Double.MAX_VALUE;
+
+		for (double k = 1e-4; k < 10.0; k *= 1.25)
+		{
+			double error = computeError(positions, weights, k);
+
+			if (error < bestError)
+			{
+				bestError = error;
+				bestK = k;
+			}
+		}
+
+		// The gradient is normalized by the mean squared feature value so that the
+		// learning rate does not depend on the board size.
+		double[] featureScale = new double[weights.length];
+
+		for (LabelledPosition position: positions)
+		{
+			for (int i = 0; i < weights.length; i++)
+				featureScale[i] += (double) position.features[i] * position.features[i];
+		}
+
+		for (int i = 0; i < weights.length; i++)
+			featureScale[i] = Math.max(1.0, featureScale[i] / positions.size()) * bestK;
+
+		double[] gradient = new double[weights.length];
+
+		for (int iteration = 0; iteration < FIT_ITERATIONS; iteration++)
+		{
+			for (int i = 0; i < gradient.length; i++)
+				gradient[i] = 0.0;
+
+			for (LabelledPosition position: positions)
+			{
+				double prediction = sigmoid(bestK * dot(position.features, weights));
+				double factor = (prediction - position.result) * prediction * (1.0 - prediction) * bestK;
+
+				for (int i = 0; i < gradient.length; i++)
+					gradient[i] += factor * position.features[i];
+			}
+
+			for (int i = 0; i < weights.length; i++)
+				weights[i] -= LEARNING_RATE * gradient[i] / (positions.size() * featureScale[i]);
+		}
+
+		System.out.println("Scaling constant : " + bestK + " - error : " + bestError + " -> " + computeError(positions, weights, bestK));
+
+		// The weights are rescaled so that the weight of a line with a single
+		// chip is the unit, which keeps the rounding error low. The largest
+		// weight is used instead if this one has not been fitted.
+		double unit = Math.abs(weights[0]);
+
+		if (unit < 1e-6)
+		{
+			for (double weight: weights)
+				unit = Math.max(unit, Math.abs(weight));
+		}
+
+		if (unit < 1e-6)
+			unit = 1.0;
+		int[] result = new int[weights.length];
+
+		for (int i = 0; i < weights.length; i++)
+			result[i] = (int) Math.round(WEIGHT_SCALE * weights[i] / unit);
+
+		return result;
+	}
+
+	/**
+	 * Tunes the line weights for <code>generations</code> generations, starting
+	 * from the default weights.
+	 * @param generations the number of generations.
+	 * @return the tuned weights.
+	 * @throws Exception if an error occurs while tuning.
+	 */
+	public int[] tune(final int generations) throws Exception
+	{
+		int[] lineWeights = ParameterizedEvalScore.getDefaultLineWeights(new GameModel().getWinLineLength());
+
+		try
+		{
+			for (int generation = 1; generation <= generations; generation++)
+			{
+				List<LabelledPosition> positions = new ArrayList<LabelledPosition>();
+
+				long startTime = System.currentTimeMillis();
+				double score = playGeneration(lineWeights, positions);
+
+				System.out.println("Generation " + generation + " : score " + score + " against the default weights, "
+					+ positions.size() + " positions, " + (System.currentTimeMillis() - startTime) + " ms");
+
+				lineWeights = fit(positions, lineWeights);
+
+				StringBuilder sb = new StringBuilder("Weights :");
+				for (int weight: lineWeights)
+					sb.append(" ").append(weight);
+				System.out.println(sb);
+			}
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+
+		return lineWeights;
+	}
+
+	/**
+	 * Runs the tuner.
+	 * @param args the output file, followed optionally by the number of generations,
+	 * the number of games per generation, the search deepness and the number of random
+	 * opening plays.
+	 */
+	public static void main(String[] args) throws Throwable
+	{
+		if (args.length < 1)
+		{
+			System.err.println("USAGE : java " + EvalScoreTuner.class.getName() + " <output file> [generations] [games per generation] [deepness] [opening plays]");
+			return;
+		}
+
+		int generations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		int games = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+		int searchDeepness = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+		int randomPlays = args.length > 4 ? Integer.parseInt(args[4]) : 4;
+
+		EvalScoreTuner tuner = new EvalScoreTuner(games, searchDeepness, randomPlays);
+		int[] lineWeights = tuner.tune(generations);
+
+		new ParameterizedEvalScore(lineWeights).store(new File(args[0]),
+			"Line weights tuned on " + generations + " generations of " + games + " games at deepness " + searchDeepness);
+	}
+}
@@ -0,0 +1,364 @@
+/*
+ * FlightEventTypes.java
+ *
+ * Created: 2026/10/19
+ *
+ * Copyright (C) 2026 Julien Aubin
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.gojul.fourinaline.model;
+
+import java.security.MessageDigest;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import org.gojul.fourinaline.model.GameModel.PlayerMark;
+import org.gojul.fourinaline.model.GameServer.ServerTicket;
+
+/**
+ * The <code>FlightEventTypes</code> class contains the flight recorder event
+ * types of the application. It must only be loaded if the flight recorder is
+ * available, which is why it is only used through the {@link FlightEvents}
+ * class.<br/>
+ * An event object is always created, but it is only filled and committed if
+ * its type is enabled in a running recording. Otherwise the JIT compiler
+ * removes it altogether.
+ *
+ * @author Julien Aubin
+ */
+final class FlightEventTypes
+{
+	/**
+	 * The number of game model plays per recorded play.
+	 */
+	private final static int PLAY_SAMPLING_PERIOD = Math.max(1, Integer.getInteger(FlightEvents.PLAY_SAMPLING_PERIOD_PROPERTY, 1000).intValue());
+
+	/**
+	 * The number of game model plays since the last recorded play.<br/>
+	 * The counter is only updated while the play events are enabled. It is
+	 * not synchronized since a lost update only shifts the sampling.
+	 */
+	private static int playCount = 0;
+
+	/**
+	 * The <code>PlayEvent</code> class is the event of a play in a game model.
+	 *
+	 * @author Julien Aubin
+	 */
+	@Name("org.gojul.fourinaline.Play")
+	@Label("Game Model Play")
+	@Description("A sampled play in a game model, including the plays of the AI searches")
+	@Category({"Four in a line", "Model"})
+	@Enabled(false)
+	static class PlayEvent extends Event
+	{
+		/**
+		 * The row index of the played cell.
+		 */
+		@Label("Row")
+		int rowIndex;
+
+		/**
+		 * The column index of the played cell.
+		 */
+		@Label("Column")
+		int colIndex;
+
+		/**
+		 * The mark of the player.
+		 */
+		@Label("Player Mark")
+		String playerMark;
+
+		/**
+		 * The number of plays per recorded play.
+		 */
+		@Label("Sampling Period")
+		int samplingPeriod;
+	}
+
+	/**
+	 * The <code>SearchEvent</code> class is the event of an AI search.
+	 *
+	 * @author Julien Aubin
+	 */
+	@Name("org.gojul.fourinaline.Search")
+	@Label("AI Search")
+	@Description("A search of the alpha-beta algorithm of an AI player or of a game analysis")
+	@Category({"Four in a line", "AI"})
+	@StackTrace(false)
+	static class SearchEvent extends Event
+	{
+		/**
+		 * The search operation.
+		 */
+		@Label("Operation")
+		String operation;
+
+		/**
+		 * The search depth.
+		 */
+		@Label("Depth")
+		int depth;
+
+		/**
+		 * The number of nodes visited by the search.
+		 */
+		@Label("Node Count")
+		long nodeCount;
+
+		/**
+		 * The column found by the search, or -1 if there's none.
+		 */
+		@Label("Column")
+		int column;
+
+		/**
+		 * Boolean indicating whether the search has been aborted.
+		 */
+		@Label("Aborted")
+		boolean aborted;
+	}
+
+	/**
+	 * The <code>ServerCallEvent</code> class is the event of a call
+	 * of a game server.
+	 *
+	 * @author Julien Aubin
+	 */
+	@Name("org.gojul.fourinaline.ServerCall")
+	@Label("Game Server Call")
+	@Description("A call of a game server, from its reception to its response")
+	@Category({"Four in a line", "Server"})
+	@StackTrace(false)
+	static class ServerCallEvent extends Event
+	{
+		/**
+		 * The name of the called method.
+		 */
+		@Label("Method")
+		String method;
+
+		/**
+		 * The name of the game of the server.
+		 */
+		@Label("Game Name")
+		String gameName;
+
+		/**
+		 * The digest of the ticket of the call. The ticket itself
+		 * is not recorded since it grants the access to the game.
+		 */
+		@Label("Ticket")
+		@Description("A digest of the ticket of the call")
+		String ticket;
+
+		/**
+		 * The transport of the call.
+		 */
+		@Label("Transport")
+		String transport;
+	}
+
+	/**
+	 * The <code>RepaintEvent</code> class is the event of a repaint
+	 * of the game board.
+	 *
+	 * @author Julien Aubin
+	 */
+	@Name("org.gojul.fourinaline.Repaint")
+	@Label("Game Board Repaint")
+	@Category({"Four in a line", "GUI"})
+	@StackTrace(false)
+	static class RepaintEvent extends Event
+	{
+		/**
+		 * The width of the board.
+		 */
+		@Label("Width")
+		int width;
+
+		/**
+		 * The height of the board.
+		 */
+		@Label("Height")
+		int height;
+	}
+
+	/**
+	 * Private constructor.<br/>
+	 * Prevents the class from being instanciated.
+	 */
+	private FlightEventTypes()
+	{
+
+	}
+
+	/**
+	 * @see FlightEvents#modelPlayed(int, int, PlayerMark)
+	 */
+	static void modelPlayed(final int rowIndex, final int colIndex, final PlayerMark playerMark)
+	{
+		PlayEvent event = new PlayEvent();
+
+		if (!event.isEnabled() || ++playCount < PLAY_SAMPLING_PERIOD)
+			return;
+
+		playCount = 0;
+
+		event.rowIndex = rowIndex;
+		event.colIndex = colIndex;
+		event.playerMark = playerMark.toString();
+		event.samplingPeriod = PLAY_SAMPLING_PERIOD;
+		event.commit();
+	}
+
+	/**
+	 * @see FlightEvents#beginSearch()
+	 */
+	static Object beginSearch()
+	{
+		SearchEvent event = new SearchEvent();
+
+		if (!event.isEnabled())
+			return null;
+
+		event.begin();
+
+		return event;
+	}
+
+	/**
+	 * @see FlightEvents#endSearch(Object, String, int, long, int, boolean)
+	 */
+	static void endSearch(final Object event, final String operation, final int depth, final long nodeCount,
+		final int column, final boolean aborted)
+	{
+		SearchEvent searchEvent = (SearchEvent) event;
+		searchEvent.end();
+
+		if (searchEvent.shouldCommit())
+		{
+			searchEvent.operation = operation;
+			searchEvent.depth = depth;
+			searchEvent.nodeCount = nodeCount;
+			searchEvent.column = column;
+			searchEvent.aborted = aborted;
+			searchEvent.commit();
+		}
+	}
+
+	/**
+	 * @see FlightEvents#beginServerCall()
+	 */
+	static Object beginServerCall()
+	{
+		ServerCallEvent event = new ServerCallEvent();
+
+		if (!event.isEnabled())
+			return null;
+
+		event.begin();
+
+		return event;
+	}
+
+	/**
+	 * @see FlightEvents#endServerCall(Object, String, String, ServerTicket, String)
+	 */
+	static void endServerCall(final Object event, final String method, final String gameName,
+		final ServerTicket ticket, final String transport)
+	{
+		ServerCallEvent callEvent = (ServerCallEvent) event;
+		callEvent.end();
+
+		if (callEvent.shouldCommit())
+		{
+			callEvent.method = method;
+			callEvent.gameName = gameName;
+			callEvent.ticket = ticket == null ? null : getTicketDigest(ticket);
+			callEvent.transport = transport;
+			callEvent.commit();
+		}
+	}
+
+	/**
+	 * @see FlightEvents#beginRepaint()
+	 */
+	static Object beginRepaint()
+	{
+		RepaintEvent event = new RepaintEvent();
+
+		if (!event.isEnabled())
+			return null;
+
+		event.begin();
+
+		return event;
+	}
+
+	/**
+	 * @see FlightEvents#endRepaint(Object, int, int)
+	 */
+	static void endRepaint(final Object event, final int width, final int height)
+	{
+		RepaintEvent repaintEvent = (RepaintEvent) event;
+		repaintEvent.end();
+
+		if (repaintEvent.shouldCommit())
+		{
+			repaintEvent.width = width;
+			repaintEvent.height = height;
+			repaintEvent.commit();
+		}
+	}
+
+	/**
+	 * Returns a digest of the ticket <code>ticket</code>, which identifies
+	 * it in the recordings without disclosing it.
+	 * @param ticket the ticket to consider.
+	 * @return a digest of the ticket <code>ticket</code>.
+	 */
+	private static String getTicketDigest(final ServerTicket ticket)
+	{
+		try
+		{
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			long value = ticket.getTicketValue();
+
+			for (int i = 0; i < 8; i++)
+				digest.update((byte) (value >>> (8 * i)));
+
+			byte[] hash = digest.digest();
+			StringBuilder result = new StringBuilder();
+
+			for (int i = 0; i < 4; i++)
+				result.append(String.format("%02x", Integer.valueOf(hash[i] & 0xFF)));
+
+			return result.toString();
+		}
+		catch (Exception e)
+		{
+			return null;
+		}
+	}
+}
@@ -0,0 +1,176 @@
+/*
+ * FlightEvents.java
+ *
+ * Created: 2026/10/19
+ *
+ * Copyright (C) 2026 Julien Aubin
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.gojul.fourinaline.model;
+
+import org.gojul.fourinaline.model.GameModel.PlayerMark;
+import org.gojul.fourinaline.model.GameServer.ServerTicket;
+
+/**
+ * The <code>FlightEvents</code> class records the events of the application
+ * in the Java Flight Recorder, so that a single recording can correlate the
+ * time spent by the AI players, the server calls and the repaints of the game
+ * board.<br/>
+ * The events are recorded only when a recording is running and the event type
+ * is enabled, and otherwise cost nearly nothing. The event types are only loaded
+ * if the flight recorder is available, so that the application still runs on the
+ * JVMs that do not provide it.<br/>
+ * The plays of the game models, which include the plays of the AI searches, are
+ * disabled by default and sampled, see {@link #PLAY_SAMPLING_PERIOD_PROPERTY}.
+ * They may be enabled with the <code>org.gojul.fourinaline.Play#enabled=true</code>
+ * setting.
+ *
+ * @author Julien Aubin
+ */
+public final class FlightEvents
+{
+	/**
+	 * The system property that gives the number of plays of the game
+	 * models per recorded play. Defaults to 1000.
+	 */
+	public final static String PLAY_SAMPLING_PERIOD_PROPERTY = "org.gojul.fourinaline.playSamplingPeriod";
+
+	/**
+	 * The operation of the searches of the column to play.
+	 */
+	final static String MOVE_SEARCH = "move";
+
+	/**
+	 * The operation of the searches of the game analyses.
+	 */
+	final static String ANALYSIS_SEARCH = "analysis";
+
+	/**
+	 * Boolean indicating whether the flight recorder is available.
+	 */
+	private final static boolean FLIGHT_RECORDER_AVAILABLE = isFlightRecorderAvailable();
+
+	/**
+	 * Private constructor.<br/>
+	 * Prevents the class from being instanciated.
+	 */
+	private FlightEvents()
+	{
+
+	}
+
+	/**
+	 * Returns true if the flight recorder is available, false elsewhere.
+	 * @return true if the flight recorder is available, false elsewhere.
+	 */
+	private static boolean isFlightRecorderAvailable()
+	{
+		try
+		{
+			Class.forName("jdk.jfr.Event");
+			return true;
+		}
+		catch (Throwable t)
+		{
+			return false;
+		}
+	}
+
+	/**
+	 * Records the play of <code>playerMark</code> in the cell at
+	 * <code>rowIndex</code>, <code>colIndex</code> of a game model.
+	 * @param rowIndex the row index of the cell.
+	 * @param colIndex the column index of the cell.
+	 * @param playerMark the mark of the player.
+	 */
+	static void modelPlayed(final int rowIndex, final int colIndex, final PlayerMark playerMark)
+	{
+		if (FLIGHT_RECORDER_AVAILABLE)
+			FlightEventTypes.modelPlayed(rowIndex, colIndex, playerMark);
+	}
+
+	/**
+	 * Begins the event of an AI search.
+	 * @return the event, or null if it is not recorded.
+	 */
+	static Object beginSearch()
+	{
+		return FLIGHT_RECORDER_AVAILABLE ? FlightEventTypes.beginSearch() : null;
+	}
+
+	/**
+	 * Ends the event of an AI search.
+	 * @param event the event returned by {@link #beginSearch()}.
+	 * @param operation the search operation, i.e. <code>MOVE_SEARCH</code>
+	 * or <code>ANALYSIS_SEARCH</code>.
+	 * @param depth the search depth.
+	 * @param nodeCount the number of nodes visited by the search.
+	 * @param column the column found by the search, or -1 if there's none.
+	 * @param aborted true if the search has been aborted, false elsewhere.
+	 */
+	static void endSearch(final Object event, final String operation, final int depth, final long nodeCount,
+		final int column, final boolean aborted)
+	{
+		if (event != null)
+			FlightEventTypes.endSearch(event, operation, depth, nodeCount, column, aborted);
+	}
+
+	/**
+	 * Begins the event of a call of a game server.
+	 * @return the event, or null if it is not recorded.
+	 */
+	static Object beginServerCall()
+	{
+		return FLIGHT_RECORDER_AVAILABLE ? FlightEventTypes.beginServerCall() : null;
+	}
+
+	/**
+	 * Ends the event of a call of a game server.
+	 * @param event the event returned by {@link #beginServerCall()}.
+	 * @param method the name of the called method.
+	 * @param gameName the name of the game of the server, or null if it
+	 * has no name.
+	 * @param ticket the ticket of the call, or null if there's none.
+	 * @param transport the transport of the call.
+	 */
+	static void endServerCall(final Object event, final String method, final String gameName,
+		final ServerTicket ticket, final String transport)
+	{
+		if (event != null)
+			FlightEventTypes.endServerCall(event, method, gameName, ticket, transport);
+	}
+
+	/**
+	 * Begins the event of a repaint of the game board.
+	 * @return the event, or null if it is not recorded.
+	 */
+	public static Object beginRepaint()
+	{
+		return FLIGHT_RECORDER_AVAILABLE ? FlightEventTypes.beginRepaint() : null;
+	}
+
+	/**
+	 * Ends the event of a repaint of the game board.
+	 * @param event the event returned by {@link #beginRepaint()}.
+	 * @param width the width of the board.
+	 * @param height the height of the board.
+	 */
+	public static void endRepaint(final Object event, final int width, final int height)
+	{
+		if (event != null)
+			FlightEventTypes.endRepaint(event, width, height);
+	}
+}
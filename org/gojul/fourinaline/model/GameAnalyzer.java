@@ -0,0 +1,264 @@
+/*
+ * GameAnalyzer.java
+ *
+ * Created: 2026/10/19
+ *
+ * Copyright (C) 2026 Julien Aubin
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.gojul.fourinaline.model;
+
+import java.io.Serializable;
+import java.util.List;
+
+import org.gojul.fourinaline.model.AIGameClient.AlphaBeta;
+import org.gojul.fourinaline.model.AIGameClient.EvalScore;
+import org.gojul.fourinaline.model.GameModel.GameStatus;
+
+/**
+ * The <code>GameAnalyzer</code> class computes a score and a principal
+ * variation for every playable column of a game model. It is designed
+ * to provide hints to the players and post-game analysis.<br/>
+ * It uses the same alpha beta algorithm as the AI players. The transposition
+ * table of the algorithm is kept between two analyses, so that analysing
+ * successive positions of a game is cheap.
+ *
+ * @author Julien Aubin
+ */
+public final class GameAnalyzer
+{
+	/**
+	 * The <code>ColumnAnalysis</code> class contains the analysis
+	 * of a playable column.
+	 *
+	 * @author Julien Aubin
+	 */
+	public final static class ColumnAnalysis implements Serializable, Comparable<ColumnAnalysis>
+	{
+		/**
+		 * The serial version UID.
+		 */
+		final static long serialVersionUID = 1;
+
+		/**
+		 * The column index.
+		 */
+		private int colIndex;
+
+		/**
+		 * The column score, for the player who plays the column.
+		 */
+		private int score;
+
+		/**
+		 * The number of plays explored in order to compute the score.
+		 */
+		private int deepness;
+
+		/**
+		 * The principal variation.
+		 */
+		private int[] principalVariation;
+
+		/**
+		 * Constructor.
+		 * @param col the column index.
+		 * @param columnScore the column score.
+		 * @param searchDeepness the number of plays explored.
+		 * @param variation the principal variation.
+		 */
+		ColumnAnalysis(final int col, final int columnScore, final int searchDeepness, final int[] variation)
+		{
+			colIndex = col;
+			score = columnScore;
+			deepness = searchDeepness;
+			principalVariation = variation;
+		}
+
+		/**
+		 * Returns the column index.
+		 * @return the column index.
+		 */
+		public int getColIndex()
+		{
+			return colIndex;
+		}
+
+		/**
+		 * Returns the column score, for the player who plays the column.
+		 * The higher the score, the better the column.
+		 * @return the column score.
+		 */
+		public int getScore()
+		{
+			return score;
+		}
+
+		/**
+		 * Returns the number of plays explored in order to compute the score.
+		 * @return the number of plays explored in order to compute the score.
+		 */
+		public int getDeepness()
+		{
+			return deepness;
+		}
+
+		/**
+		 * Returns the principal variation, i.e. the sequence of column indexes
+		 * that are expected to be played, starting with this column.
+		 * @return a copy of the principal variation.
+		 */
+		public int[] getPrincipalVariation()
+		{
+			return principalVariation.clone();
+		}
+
+		/**
+		 * Returns true if playing this column leads to a won game
+		 * whatever the adversary does, false elsewhere.
+		 * @return true if playing this column leads to a won game.
+		 */
+		public boolean isWinning()
+		{
+			return score > AlphaBeta.WIN_THRESHOLD;
+		}
+
+		/**
+		 * Returns true if playing this column leads to a lost game
+		 * against the best adversary plays, false elsewhere.
+		 * @return true if playing this column leads to a lost game.
+		 */
+		public boolean isLosing()
+		{
+			return score < -AlphaBeta.WIN_THRESHOLD;
+		}
+
+		/**
+		 * Sorts the analyses from the best score to the worst one.
+		 * @see java.lang.Comparable#compareTo(java.lang.Object)
+		 */
+		public int compareTo(final ColumnAnalysis o)
+		{
+			return score > o.score ? -1 : (score == o.score ? 0 : 1);
+		}
+
+		/**
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString()
+		{
+			StringBuilder sb = new StringBuilder("Column ").append(colIndex).append(" - score : ").append(score)
+				.append(" - deepness : ").append(deepness).append(" - variation :");
+
+			for (int col: principalVariation)
+				sb.append(" ").append(col);
+
+			return sb.toString();
+		}
+	}
+
+	/**
+	 * The alpha beta algorithm.
+	 */
+	private AlphaBeta alphaBeta;
+
+	/**
+	 * Constructor.
+	 * @param evalScore the game evaluation function.
+	 * @throws NullPointerException if <code>evalScore</code> is null.
+	 */
+	public GameAnalyzer(final EvalScore evalScore) throws NullPointerException
+	{
+		if (evalScore == null)
+			throw new NullPointerException();
+
+		// The search deepness is given at analysis time.
+		alphaBeta = new AlphaBeta(evalScore, 1);
+	}
+
+	/**
+	 * Analyses all the playable columns of the game model <code>gameModel</code>,
+	 * for its current player.
+	 * @param gameModel the game model to analyse. It is not modified.
+	 * @param maxDeepness the maximum number of plays to explore, including the analysed column.
+	 * @param timeLimit the time limit of the analysis in milliseconds, or 0 if there's
+	 * no time limit. The analysis of one play deepness is always performed, whatever
+	 * the time limit.
+	 * @return the analysis of every playable column, sorted from the best one to the worst one.
+	 * The list is empty if the game is over.
+	 * @throws NullPointerException if <code>gameModel</code> is null.
+	 * @throws IllegalArgumentException if <code>maxDeepness</code> is smaller or equal
+	 * to 0, or if <code>timeLimit</code> is smaller than 0.
+	 */
+	public List<ColumnAnalysis> analyse(final GameModel gameModel, final int maxDeepness, final long timeLimit)
+		throws NullPointerException, IllegalArgumentException
+	{
+		if (gameModel == null)
+			throw new NullPointerException();
+
+		if (maxDeepness <= 0)
+			throw new IllegalArgumentException("Invalid search deepness : " + maxDeepness);
+
+		if (timeLimit < 0)
+			throw new IllegalArgumentException("Invalid time limit : " + timeLimit);
+
+		// The count is read before waiting for the analysis of another thread,
+		// so that a cancellation which occurs meanwhile cancels this analysis.
+		long cancelCount = alphaBeta.getCancelCount();
+
+		synchronized (this)
+		{
+			return alphaBeta.analyse(gameModel, maxDeepness, timeLimit, cancelCount);
+		}
+	}
+
+	/**
+	 * Cancels the analyses requested before this call, whether they are running
+	 * or waiting for another analysis to end. A cancelled analysis returns the
+	 * result of its last completed iteration.<br/>
+	 * This method may be called from any thread.
+	 */
+	public void cancel()
+	{
+		alphaBeta.cancel();
+	}
+
+	public static void main(String[] args)
+	{
+		GameModel gameModel = new GameModel();
+		gameModel.play(3, gameModel.getCurrentPlayer());
+		gameModel.play(3, gameModel.getCurrentPlayer());
+		gameModel.play(4, gameModel.getCurrentPlayer());
+		System.out.println(gameModel);
+
+		GameAnalyzer analyzer = new GameAnalyzer(new DefaultEvalScore());
+
+		for (ColumnAnalysis analysis: analyzer.analyse(gameModel, 8, 2000))
+			System.out.println(analysis);
+
+		// A position where the current player wins immediately.
+		gameModel.play(2, gameModel.getCurrentPlayer());
+		gameModel.play(5, gameModel.getCurrentPlayer());
+		gameModel.play(3, gameModel.getCurrentPlayer());
+
+		System.out.println(gameModel);
+		System.out.println(gameModel.getGameStatus().equals(GameStatus.CONTINUE_STATUS));
+
+		for (ColumnAnalysis analysis: analyzer.analyse(gameModel, 6, 0))
+			System.out.println(analysis);
+	}
+}
@@ -0,0 +1,1552 @@
+/*
+ * GameArchive.java
+ *
+ * Created: 2026/10/19
+ *
+ * Copyright (C) 2026 Julien Aubin
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.gojul.fourinaline.model;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+
+/**
+ * The <code>GameArchive</code> class reads the archives of game records, which
+ * are compact, read-only files used to exchange and scan large numbers of games.<br/>
+ * An archive is made of blocks of games followed by a footer index. Every block
+ * starts with a header which contains its length, its checksum, the identifier and
+ * time of its first game and the dictionary of the player names of its games. The
+ * games follow, with all their numbers written as variable-length integers : their
+ * identifier and time are written as deltas from the previous game of the block, and
+ * each played column takes a single byte on the usual boards. The footer index
+ * contains the identifier range and the offset of every block, so that a game is
+ * found by a binary search on the blocks followed by the scan of a single block.<br/>
+ * The archives are read through memory-mapped files by cursors, which decode the
+ * games in place without creating any object, except for the player names of each
+ * block. The game models are only built when they are asked for. The archives are
+ * written by the {@link GameArchive.Writer} class.
+ *
+ * @author Julien Aubin
+ */
+public final class GameArchive implements Closeable
+{
+	/**
+	 * The default size of the blocks, in bytes. A block is closed once its
+	 * size exceeds this size.
+	 */
+	public final static int DEFAULT_BLOCK_SIZE = 16 << 10;
+
+	/**
+	 * The magic number of the archives.
+	 */
+	private final static int ARCHIVE_MAGIC = 0x46344741;
+
+	/**
+	 * The version of the archive format.
+	 */
+	private final static int ARCHIVE_VERSION = 1;
+
+	/**
+	 * The size of the archive header, i.e. of its magic number and version.
+	 */
+	private final static int ARCHIVE_HEADER_SIZE = 8;
+
+	/**
+	 * The size of the block header which precedes its checksummed content,
+	 * i.e. of its length and checksum.
+	 */
+	private final static int BLOCK_HEADER_SIZE = 8;
+
+	/**
+	 * The size of an entry of the footer index, i.e. of the identifiers of the
+	 * first and last games of a block, of its offset and of its game count.
+	 */
+	private final static int INDEX_ENTRY_SIZE = 8 + 8 + 8 + 4;
+
+	/**
+	 * The magic number of the footer.
+	 */
+	private final static int FOOTER_MAGIC = 0x46344649;
+
+	/**
+	 * The size of the footer which follows the index, i.e. of the index offset,
+	 * of the block count, of the index checksum and of the footer magic number.
+	 */
+	private final static int FOOTER_SIZE = 8 + 4 + 4 + 4;
+
+	/**
+	 * The maximum size of a mapped part of an archive.
+	 */
+	private final static long MAX_MAPPING_SIZE = 1L << 30;
+
+	/**
+	 * The charset of the player names.
+	 */
+	private final static Charset NAME_CHARSET = Charset.forName("UTF-8");
+
+	/**
+	 * The <code>ByteSink</code> class is a growable array of bytes
+	 * in which the archive numbers are written.
+	 *
+	 * @author Julien Aubin
+	 */
+	private final static class ByteSink
+	{
+		/**
+		 * The bytes.
+		 */
+		private byte[] bytes;
+
+		/**
+		 * The number of bytes.
+		 */
+		private int size;
+
+		/**
+		 * Constructor.
+		 * @param capacity the initial capacity of the sink.
+		 */
+		private ByteSink(final int capacity)
+		{
+			bytes = new byte[capacity];
+			size = 0;
+		}
+
+		/**
+		 * Makes sure that <code>count</code> more bytes may be written.
+		 * @param count the number of bytes to write.
+		 */
+		private void ensureCapacity(final int count)
+		{
+			if (size + count > bytes.length)
+				bytes = Arrays.copyOf(bytes, Math.max(size + count, 2 * bytes.length));
+		}
+
+		/**
+		 * Writes the non-negative number <code>value</code> as a variable-length
+		 * integer, i.e. seven bits per byte, the high bit of a byte being set
+		 * if another byte follows.
+		 * @param value the value to write.
+		 */
+		private void writeVarLong(final long value)
+		{
+			ensureCapacity(10);
+
+			long remaining = value;
+
+			while ((remaining & ~0x7FL) != 0)
+			{
+				bytes[size++] = (byte) (remaining | 0x80);
+				remaining >>>= 7;
+			}
+
+			bytes[size++] = (byte) remaining;
+		}
+
+		/**
+		 * Writes the number <code>value</code> on eight bytes.
+		 * @param value the value to write.
+		 */
+		private void writeLong(final long value)
+		{
+			ensureCapacity(8);
+
+			for (int shift = 56; shift >= 0; shift -= 8)
+				bytes[size++] = (byte) (value >>> shift);
+		}
+
+		/**
+		 * Writes the number <code>value</code> on four bytes.
+		 * @param value the value to write.
+		 */
+		private void writeInt(final int value)
+		{
+			ensureCapacity(4);
+
+			for (int shift = 24; shift >= 0; shift -= 8)
+				bytes[size++] = (byte) (value >>> shift);
+		}
+
+		/**
+		 * Writes the bytes <code>value</code>, preceded by their count.
+		 * @param value the bytes to write.
+		 */
+		private void writeBytes(final byte[] value)
+		{
+			writeVarLong(value.length);
+			ensureCapacity(value.length);
+			System.arraycopy(value, 0, bytes, size, value.length);
+			size += value.length;
+		}
+
+		/**
+		 * Returns a buffer which wraps the bytes of the sink.
+		 * @return a buffer which wraps the bytes of the sink.
+		 */
+		private ByteBuffer toBuffer()
+		{
+			return ByteBuffer.wrap(bytes, 0, size);
+		}
+	}
+
+	/**
+	 * The <code>Writer</code> class writes game records to a new archive.<br/>
+	 * The archive is written to a temporary file, which replaces the archive
+	 * file once the writer is closed, so that an archive is never read while
+	 * it is partially written.
+	 *
+	 * @author Julien Aubin
+	 */
+	public final static class Writer implements Closeable
+	{
+		/**
+		 * The archive file.
+		 */
+		private File archiveFile;
+
+		/**
+		 * The temporary file to which the archive is written.
+		 */
+		private File tempFile;
+
+		/**
+		 * The channel of the temporary file.
+		 */
+		private FileChannel channel;
+
+		/**
+		 * The size of the archive written so far.
+		 */
+		private long archiveSize;
+
+		/**
+		 * The size after which a block is closed.
+		 */
+		private int maxBlockSize;
+
+		/**
+		 * The games of the current block.
+		 */
+		private ByteSink blockGames;
+
+		/**
+		 * The header of the current block, i.e. the part of the
+		 * header which is covered by the checksum.
+		 */
+		private ByteSink blockHeader;
+
+		/**
+		 * The player names of the current block.
+		 */
+		private List<String> blockNames;
+
+		/**
+		 * The map that ties the player names of the current block to their index.
+		 */
+		private Map<String, Integer> blockNameIndexes;
+
+		/**
+		 * The number of games of the current block.
+		 */
+		private int blockGameCount;
+
+		/**
+		 * The identifier of the first game of the current block.
+		 */
+		private long blockFirstId;
+
+		/**
+		 * The time of the first game of the current block.
+		 */
+		private long blockFirstTime;
+
+		/**
+		 * The time of the last written game.
+		 */
+		private long lastTime;
+
+		/**
+		 * The identifier of the last written game, or 0 if there's none.
+		 */
+		private long lastId;
+
+		/**
+		 * The footer index.
+		 */
+		private ByteSink index;
+
+		/**
+		 * The number of written blocks.
+		 */
+		private int blockCount;
+
+		/**
+		 * The number of written games.
+		 */
+		private long gameCount;
+
+		/**
+		 * Boolean indicating whether the writer is closed.
+		 */
+		private boolean closed;
+
+		/**
+		 * Constructor. Creates a writer with the default block size.
+		 * @param file the archive file, which is replaced if it exists.
+		 * @throws NullPointerException if <code>file</code> is null.
+		 * @throws IOException if the archive cannot be created.
+		 */
+		public Writer(final File file) throws NullPointerException, IOException
+		{
+			this(file, DEFAULT_BLOCK_SIZE);
+		}
+
+		/**
+		 * Constructor.
+		 * @param file the archive file, which is replaced if it exists.
+		 * @param blockSize the size of the blocks, in bytes. A block is closed
+		 * once its size exceeds this size, so that the larger the blocks, the more
+		 * compact the archive but the slower the reads of a single game.
+		 * @throws NullPointerException if <code>file</code> is null.
+		 * @throws IllegalArgumentException if <code>blockSize</code> is not strictly
+		 * positive or is larger than 64 MB.
+		 * @throws IOException if the archive cannot be created.
+		 */
+		public Writer(final File file, final int blockSize) throws NullPointerException, IllegalArgumentException, IOException
+		{
+			if (file == null)
+				throw new NullPointerException();
+
+			if (blockSize <= 0 || blockSize > 64 << 20)
+				throw new IllegalArgumentException("Invalid block size : " + blockSize);
+
+			archiveFile = file;
+			tempFile = new File(file.getPath() + ".tmp");
+			maxBlockSize = blockSize;
+			blockGames = new ByteSink(blockSize + 1024);
+			blockHeader = new ByteSink(1024);
+			blockNames = new ArrayList<String>();
+			blockNameIndexes = new HashMap<String, Integer>();
+			blockGameCount = 0;
+			lastTime = 0;
+			lastId = 0;
+			index = new ByteSink(1024);
+			blockCount = 0;
+			gameCount = 0;
+			closed = false;
+
+			channel = new RandomAccessFile(tempFile, "rw").getChannel();
+			channel.truncate(0);
+
+			ByteSink header = new ByteSink(ARCHIVE_HEADER_SIZE);
+			header.writeInt(ARCHIVE_MAGIC);
+			header.writeInt(ARCHIVE_VERSION);
+			write(header.toBuffer());
+		}
+
+		/**
+		 * Writes the buffers <code>buffers</code> at the end of the archive.
+		 * @param buffers the buffers to write.
+		 * @throws IOException if an I/O error occurs.
+		 */
+		private void write(final ByteBuffer... buffers) throws IOException
+		{
+			long size = 0;
+
+			for (ByteBuffer buffer: buffers)
+				size += buffer.remaining();
+
+			long written = 0;
+
+			while (written < size)
+				written += channel.write(buffers);
+
+			archiveSize += size;
+		}
+
+		/**
+		 * Returns the index of the player name <code>name</code> in the
+		 * dictionary of the current block, and adds it if needed.
+		 * @param name the player name.
+		 * @return the index of the player name.
+		 */
+		private int getNameIndex(final String name)
+		{
+			Integer result = blockNameIndexes.get(name);
+
+			if (result == null)
+			{
+				result = Integer.valueOf(blockNames.size());
+				blockNames.add(name);
+				blockNameIndexes.put(name, result);
+			}
+
+			return result.intValue();
+		}
+
+		/**
+		 * Appends the game record <code>record</code> to the archive. The records
+		 * must be appended in increasing identifier order.
+		 * @param record the record to append.
+		 * @throws NullPointerException if <code>record</code> is null.
+		 * @throws IllegalArgumentException if the identifier of <code>record</code>
+		 * is not greater than the one of the last appended record.
+		 * @throws IOException if the writer is closed or if an I/O error occurs.
+		 */
+		public void append(final GameRecord record) throws NullPointerException, IllegalArgumentException, IOException
+		{
+			if (record == null)
+				throw new NullPointerException();
+
+			if (closed)
+				throw new IOException("The archive is closed");
+
+			if (record.getId() <= lastId)
+				throw new IllegalArgumentException("The game " + record.getId() + " does not follow the game " + lastId);
+
+			if (blockGames.size >= maxBlockSize)
+				writeBlock();
+
+			long previousId = lastId;
+			long previousTime = lastTime;
+
+			if (blockGameCount == 0)
+			{
+				blockFirstId = previousId = record.getId();
+				blockFirstTime = previousTime = record.getTime();
+			}
+
+			long timeDelta = record.getTime() - previousTime;
+
+			blockGames.writeVarLong(record.getId() - previousId);
+			// The time deltas are zigzag encoded since the games
+			// do not always end in identifier order.
+			blockGames.writeVarLong((timeDelta << 1) ^ (timeDelta >> 63));
+			blockGames.writeVarLong(record.getRowCount());
+			blockGames.writeVarLong(record.getColCount());
+			blockGames.writeVarLong(record.getWinLineLength());
+			blockGames.writeVarLong(record.getFirstPlayerMark());
+			blockGames.writeVarLong(record.getWinnerMark());
+			blockGames.writeVarLong(record.getPlayerCount());
+
+			for (int i = 0; i < record.getPlayerCount(); i++)
+			{
+				blockGames.writeVarLong(record.getPlayerMark(i));
+				blockGames.writeVarLong(getNameIndex(record.getPlayerName(i)));
+			}
+
+			int[] columns = record.getPlayedColumns();
+			blockGames.writeVarLong(columns.length);
+
+			for (int col: columns)
+				blockGames.writeVarLong(col);
+
+			lastId = record.getId();
+			lastTime = record.getTime();
+			blockGameCount++;
+			gameCount++;
+		}
+
+		/**
+		 * Writes the current block and adds it to the footer index.
+		 * @throws IOException if an I/O error occurs.
+		 */
+		private void writeBlock() throws IOException
+		{
+			blockHeader.size = 0;
+			blockHeader.writeLong(blockFirstId);
+			blockHeader.writeLong(blockFirstTime);
+			blockHeader.writeVarLong(blockGameCount);
+			blockHeader.writeVarLong(blockNames.size());
+
+			for (String name: blockNames)
+				blockHeader.writeBytes(name.getBytes(NAME_CHARSET));
+
+			CRC32 checksum = new CRC32();
+			checksum.update(blockHeader.bytes, 0, blockHeader.size);
+			checksum.update(blockGames.bytes, 0, blockGames.size);
+
+			ByteSink prefix = new ByteSink(BLOCK_HEADER_SIZE);
+			prefix.writeInt(blockHeader.size + blockGames.size);
+			prefix.writeInt((int) checksum.getValue());
+
+			index.writeLong(blockFirstId);
+			index.writeLong(lastId);
+			index.writeLong(archiveSize);
+			index.writeInt(blockGameCount);
+
+			write(prefix.toBuffer(), blockHeader.toBuffer(), blockGames.toBuffer());
+
+			blockCount++;
+			blockGames.size = 0;
+			blockNames.clear();
+			blockNameIndexes.clear();
+			blockGameCount = 0;
+		}
+
+		/**
+		 * Returns the number of games appended so far.
+		 * @return the number of games appended so far.
+		 */
+		public long getGameCount()
+		{
+			return gameCount;
+		}
+
+		/**
+		 * Writes the last block and the footer index, forces the archive to the
+		 * disk and replaces the archive file with it.
+		 * @throws IOException if an I/O error occurs.
+		 * @see java.io.Closeable#close()
+		 */
+		public void close() throws IOException
+		{
+			if (closed)
+				return;
+
+			closed = true;
+
+			try
+			{
+				if (blockGameCount > 0)
+					writeBlock();
+
+				CRC32 checksum = new CRC32();
+				checksum.update(index.bytes, 0, index.size);
+
+				ByteSink footer = new ByteSink(FOOTER_SIZE);
+				footer.writeLong(archiveSize);
+				footer.writeInt(blockCount);
+				footer.writeInt((int) checksum.getValue());
+				footer.writeInt(FOOTER_MAGIC);
+
+				write(index.toBuffer(), footer.toBuffer());
+				channel.force(true);
+			}
+			finally
+			{
+				channel.close();
+			}
+
+			// Some platforms do not replace an existing file when renaming.
+			if (!tempFile.renameTo(archiveFile) && !(archiveFile.delete() && tempFile.renameTo(archiveFile)))
+				throw new IOException("Cannot replace the archive " + archiveFile);
+		}
+	}
+
+	/**
+	 * The <code>Cursor</code> class reads the games of an archive in identifier
+	 * order. The game read is decoded in place in the cursor, which returns its
+	 * fields, so that no object is created per game.<br/>
+	 * A cursor must not be shared by several threads, but several cursors may
+	 * read the same archive concurrently.
+	 *
+	 * @author Julien Aubin
+	 */
+	public final static class Cursor
+	{
+		/**
+		 * The archive read.
+		 */
+		private GameArchive archive;
+
+		/**
+		 * The identifier of the first game to return.
+		 */
+		private long fromId;
+
+		/**
+		 * The index of the block read.
+		 */
+		private int blockIndex;
+
+		/**
+		 * The mapped part of the archive which contains the block read.
+		 */
+		private ByteBuffer buffer;
+
+		/**
+		 * The position of the next game in <code>buffer</code>.
+		 */
+		private int position;
+
+		/**
+		 * The number of games of the block which have not been read.
+		 */
+		private int remainingGameCount;
+
+		/**
+		 * The player names of the block read.
+		 */
+		private String[] names;
+
+		/**
+		 * The checksum used to check the blocks.
+		 */
+		private CRC32 checksum;
+
+		/**
+		 * The scratch array used to check the blocks.
+		 */
+		private byte[] scratch;
+
+		/**
+		 * The identifier of the game read.
+		 */
+		private long id;
+
+		/**
+		 * The time of the game read.
+		 */
+		private long time;
+
+		/**
+		 * The number of rows of the game read.
+		 */
+		private int rowCount;
+
+		/**
+		 * The number of columns of the game read.
+		 */
+		private int colCount;
+
+		/**
+		 * The number of cells of a winning line of the game read.
+		 */
+		private int winLineLength;
+
+		/**
+		 * The mark value of the player who played first.
+		 */
+		private int firstPlayerMark;
+
+		/**
+		 * The mark value of the winner, or 0 if the game is a tie.
+		 */
+		private int winnerMark;
+
+		/**
+		 * The number of players of the game read.
+		 */
+		private int playerCount;
+
+		/**
+		 * The mark values of the players of the game read.
+		 */
+		private int[] playerMarks;
+
+		/**
+		 * The name indexes of the players of the game read.
+		 */
+		private int[] playerNameIndexes;
+
+		/**
+		 * The number of plays of the game read.
+		 */
+		private int playCount;
+
+		/**
+		 * The played columns of the game read.
+		 */
+		private int[] columns;
+
+		/**
+		 * Constructor.
+		 * @param gameArchive the archive read.
+		 * @param firstId the identifier of the first game to return.
+		 */
+		private Cursor(final GameArchive gameArchive, final long firstId)
+		{
+			archive = gameArchive;
+			fromId = firstId;
+			// The first block read is the first one that ends after the first game to read.
+			blockIndex = archive.getBlockIndex(firstId) - 1;
+			buffer = null;
+			remainingGameCount = 0;
+			checksum = new CRC32();
+			scratch = new byte[256];
+			id = -1;
+			playerMarks = new int[2];
+			playerNameIndexes = new int[2];
+			columns = new int[64];
+		}
+
+		/**
+		 * Reads the variable-length integer at the current position.
+		 * @return the integer read.
+		 * @throws IllegalStateException if the integer is not valid.
+		 */
+		private long readVarLong() throws IllegalStateException
+		{
+			long result = 0;
+
+			for (int shift = 0; shift < 64; shift += 7)
+			{
+				byte b = buffer.get(position++);
+				result |= (long) (b & 0x7F) << shift;
+
+				if (b >= 0)
+					return result;
+			}
+
+			throw new IllegalStateException("Invalid number in the archive " + archive.file);
+		}
+
+		/**
+		 * Reads the variable-length integer at the current position, which
+		 * must be between 0 and <code>max</code>.
+		 * @param max the maximum value of the integer.
+		 * @return the integer read.
+		 * @throws IllegalStateException if the integer is not valid.
+		 */
+		private int readVarInt(final int max) throws IllegalStateException
+		{
+			long result = readVarLong();
+
+			if (result < 0 || result > max)
+				throw new IllegalStateException("Invalid number in the archive " + archive.file);
+
+			return (int) result;
+		}
+
+		/**
+		 * Opens the block number <code>index</code>, checks it and reads its header.
+		 * @param index the block index.
+		 * @throws IllegalStateException if the archive is closed or if the block is not valid.
+		 */
+		private void openBlock(final int index) throws IllegalStateException
+		{
+			blockIndex = index;
+
+			int mappingIndex = archive.blockMappings[index];
+			ByteBuffer mapping = archive.getMapping(mappingIndex);
+			int start = (int) (archive.blockOffsets[index] - archive.mappingOffsets[mappingIndex]);
+			int length = (int) (archive.getBlockEnd(index) - archive.blockOffsets[index]) - BLOCK_HEADER_SIZE;
+
+			if (mapping.getInt(start) != length)
+				throw new IllegalStateException("Invalid block " + index + " in the archive " + archive.file);
+
+			if (scratch.length < length)
+				scratch = new byte[Math.max(length, 2 * scratch.length)];
+
+			ByteBuffer content = mapping.duplicate();
+			content.position(start + BLOCK_HEADER_SIZE);
+			content.get(scratch, 0, length);
+
+			checksum.reset();
+			checksum.update(scratch, 0, length);
+
+			if ((int) checksum.getValue() != mapping.getInt(start + 4))
+				throw new IllegalStateException("Corrupted block " + index + " in the archive " + archive.file);
+
+			// The block limit makes the reads of a corrupted block fail.
+			buffer = mapping.duplicate();
+			buffer.limit(start + BLOCK_HEADER_SIZE + length);
+			position = start + BLOCK_HEADER_SIZE;
+
+			id = buffer.getLong(position);
+			time = buffer.getLong(position + 8);
+			position += 16;
+			remainingGameCount = readVarInt(Integer.MAX_VALUE);
+
+			if (remainingGameCount != archive.blockGameCounts[index])
+				throw new IllegalStateException("Invalid block " + index + " in the archive " + archive.file);
+
+			names = new String[readVarInt(Integer.MAX_VALUE)];
+
+			for (int i = 0; i < names.length; i++)
+			{
+				byte[] name = new byte[readVarInt(length)];
+
+				for (int j = 0; j < name.length; j++)
+					name[j] = buffer.get(position++);
+
+				names[i] = new String(name, NAME_CHARSET);
+			}
+		}
+
+		/**
+		 * Reads the game at the current position.
+		 * @throws IllegalStateException if the game is not valid.
+		 */
+		private void readGame() throws IllegalStateException
+		{
+			id += readVarLong();
+
+			long timeDelta = readVarLong();
+			time += (timeDelta >>> 1) ^ -(timeDelta & 1);
+
+			rowCount = readVarInt(0xFFFF);
+			colCount = readVarInt(0xFFFF);
+			winLineLength = readVarInt(0xFFFF);
+			firstPlayerMark = readVarInt(0xFFFF);
+			winnerMark = readVarInt(0xFFFF);
+			playerCount = readVarInt(0xFF);
+
+			if (playerMarks.length < playerCount)
+			{
+				playerMarks = new int[playerCount];
+				playerNameIndexes = new int[playerCount];
+			}
+
+			for (int i = 0; i < playerCount; i++)
+			{
+				playerMarks[i] = readVarInt(0xFFFF);
+				playerNameIndexes[i] = readVarInt(names.length - 1);
+			}
+
+			playCount = readVarInt(buffer.limit() - position);
+
+			if (columns.length < playCount)
+				columns = new int[Math.max(playCount, 2 * columns.length)];
+
+			for (int i = 0; i < playCount; i++)
+				columns[i] = readVarInt(0xFFFF);
+
+			remainingGameCount--;
+		}
+
+		/**
+		 * Moves the cursor to the next game.
+		 * @return true if the cursor is on a game, false if
+		 * there's no more game to read.
+		 * @throws IllegalStateException if the archive is closed,
+		 * or if the block of the next game is not valid.
+		 */
+		public boolean next() throws IllegalStateException
+		{
+			try
+			{
+				while (true)
+				{
+					while (remainingGameCount == 0)
+					{
+						if (blockIndex + 1 >= archive.blockOffsets.length)
+						{
+							id = -1;
+							return false;
+						}
+
+						openBlock(blockIndex + 1);
+					}
+
+					readGame();
+
+					if (id >= fromId)
+						return true;
+				}
+			}
+			catch (IndexOutOfBoundsException e)
+			{
+				// The reads beyond the limit of a block.
+				throw new IllegalStateException("Invalid block " + blockIndex + " in the archive " + archive.file, e);
+			}
+		}
+
+		/**
+		 * Makes sure that the cursor is on a game.
+		 * @throws IllegalStateException if the cursor is not on a game.
+		 */
+		private void checkGame() throws IllegalStateException
+		{
+			if (id < 0)
+				throw new IllegalStateException("The cursor is not on a game");
+		}
+
+		/**
+		 * Returns the identifier of the game read.
+		 * @return the identifier of the game read.
+		 * @throws IllegalStateException if the cursor is not on a game.
+		 */
+		public long getId() throws IllegalStateException
+		{
+			checkGame();
+
+			return id;
+		}
+
+		/**
+		 * Returns the time at which the game read has ended, in milliseconds since the epoch.
+		 * @return the time at which the game read has ended.
+		 * @throws IllegalStateException if the cursor is not on a game.
+		 */
+		public long getTime() throws IllegalStateException
+		{
+			checkGame();
+
+			return time;
+		}
+
+		/**
+		 * Returns the number of rows of the game read.
+		 * @return the number of rows of the game read.
+		 * @throws IllegalStateException if the cursor is not on a game.
+		 */
+		public int getRowCount() throws IllegalStateException
+		{
+			checkGame();
+
+			return rowCount;
+		}
+
+		/**
+		 * Returns the number of columns of the game read.
+		 * @return the number of columns of the game read.
+		 * @throws IllegalStateException if the cursor is not on a game.
+		 */
+		public int getColCount() throws IllegalStateException
+		{
+			checkGame();
+
+			return colCount;
+		}
+
+		/**
+		 * Returns the number of cells of a winning line of the game read.
+		 * @return the number of cells of a winning line of the game read.
+		 * @throws IllegalStateException if the cursor is not on a game.
+		 */
+		public int getWinLineLength() throws IllegalStateException
+		{
+			checkGame();
+
+			return winLineLength;
+		}
+
+		/**
+		 * Returns the mark value of the player who played first.
+		 * @return the mark value of the player who played first.
+		 * @throws IllegalStateException if the cursor is not on a game.
+		 */
+		public int getFirstPlayerMark() throws IllegalStateException
+		{
+			checkGame();
+
+			return firstPlayerMark;
+		}
+
+		/**
+		 * Returns the mark value of the winner, or 0 if the game is a tie.
+		 * @return the mark value of the winner, or 0 if the game is a tie.
+		 * @throws IllegalStateException if the cursor is not on a game.
+		 */
+		public int getWinnerMark() throws IllegalStateException
+		{
+			checkGame();
+
+			return winnerMark;
+		}
+
+		/**
+		 * Returns the number of players of the game read.
+		 * @return the number of players of the game read.
+		 * @throws IllegalStateException if the cursor is not on a game.
+		 */
+		public int getPlayerCount() throws IllegalStateException
+		{
+			checkGame();
+
+			return playerCount;
+		}
+
+		/**
+		 * Returns the mark value of the player number <code>index</code>.
+		 * The players are sorted by increasing mark value.
+		 * @param index the player index.
+		 * @return the mark value of the player number <code>index</code>.
+		 * @throws IllegalStateException if the cursor is not on a game.
+		 * @throws IndexOutOfBoundsException if <code>index</code> is not valid.
+		 */
+		public int getPlayerMark(final int index) throws IllegalStateException, IndexOutOfBoundsException
+		{
+			checkGame();
+
+			if (index < 0 || index >= playerCount)
+				throw new IndexOutOfBoundsException("Invalid player index : " + index);
+
+			return playerMarks[index];
+		}
+
+		/**
+		 * Returns the name of the player number <code>index</code>.
+		 * The players are sorted by increasing mark value.
+		 * @param index the player index.
+		 * @return the name of the player number <code>index</code>.
+		 * @throws IllegalStateException if the cursor is not on a game.
+		 * @throws IndexOutOfBoundsException if <code>index</code> is not valid.
+		 */
+		public String getPlayerName(final int index) throws IllegalStateException, IndexOutOfBoundsException
+		{
+			checkGame();
+
+			if (index < 0 || index >= playerCount)
+				throw new IndexOutOfBoundsException("Invalid player index : " + index);
+
+			return names[playerNameIndexes[index]];
+		}
+
+		/**
+		 * Returns the number of plays of the game read.
+		 * @return the number of plays of the game read.
+		 * @throws IllegalStateException if the cursor is not on a game.
+		 */
+		public int getPlayCount() throws IllegalStateException
+		{
+			checkGame();
+
+			return playCount;
+		}
+
+		/**
+		 * Returns the index of the column of the play number <code>index</code>.
+		 * @param index the play index.
+		 * @return the index of the column of the play number <code>index</code>.
+		 * @throws IllegalStateException if the cursor is not on a game.
+		 * @throws IndexOutOfBoundsException if <code>index</code> is not valid.
+		 */
+		public int getPlayedColumn(final int index) throws IllegalStateException, IndexOutOfBoundsException
+		{
+			checkGame();
+
+			if (index < 0 || index >= playCount)
+				throw new IndexOutOfBoundsException("Invalid play index : " + index);
+
+			return columns[index];
+		}
+
+		/**
+		 * Returns the indexes of the played columns of the game read, in play order.
+		 * @return the indexes of the played columns.
+		 * @throws IllegalStateException if the cursor is not on a game.
+		 */
+		public int[] getPlayedColumns() throws IllegalStateException
+		{
+			checkGame();
+
+			return Arrays.copyOf(columns, playCount);
+		}
+
+		/**
+		 * Returns the game model of the game read, rebuilt by replaying its plays.
+		 * @return the game model of the game read.
+		 * @throws IllegalStateException if the cursor is not on a game, if a mark
+		 * of the game is unknown, or if the plays of the game are not valid.
+		 */
+		public GameModel toGameModel() throws IllegalStateException
+		{
+			checkGame();
+
+			try
+			{
+				GameModel result = new GameModel(rowCount, colCount, winLineLength, GameRecord.getPlayerMarkOf(firstPlayerMark));
+
+				for (int i = 0; i < playCount; i++)
+					result.play(columns[i], result.getCurrentPlayer());
+
+				return result;
+			}
+			catch (RuntimeException e)
+			{
+				throw new IllegalStateException("Invalid game " + id + " : " + e.getMessage(), e);
+			}
+		}
+	}
+
+	/**
+	 * The archive file.
+	 */
+	private File file;
+
+	/**
+	 * The mapped parts of the archive, or null if the archive is closed.
+	 * Each part contains whole blocks.
+	 */
+	private volatile MappedByteBuffer[] mappings;
+
+	/**
+	 * The offsets of the mapped parts in the archive.
+	 */
+	private long[] mappingOffsets;
+
+	/**
+	 * The identifiers of the first games of the blocks.
+	 */
+	private long[] blockFirstIds;
+
+	/**
+	 * The identifiers of the last games of the blocks.
+	 */
+	private long[] blockLastIds;
+
+	/**
+	 * The offsets of the blocks in the archive.
+	 */
+	private long[] blockOffsets;
+
+	/**
+	 * The numbers of games of the blocks.
+	 */
+	private int[] blockGameCounts;
+
+	/**
+	 * The indexes of the mapped parts which contain the blocks.
+	 */
+	private int[] blockMappings;
+
+	/**
+	 * The offset of the footer index, i.e. the end of the last block.
+	 */
+	private long indexOffset;
+
+	/**
+	 * The number of games of the archive.
+	 */
+	private long gameCount;
+
+	/**
+	 * Constructor. Opens the archive and maps it in memory.
+	 * @param archiveFile the archive file.
+	 * @throws NullPointerException if <code>archiveFile</code> is null.
+	 * @throws IOException if the archive cannot be read or is not valid.
+	 */
+	public GameArchive(final File archiveFile) throws NullPointerException, IOException
+	{
+		if (archiveFile == null)
+			throw new NullPointerException();
+
+		file = archiveFile;
+
+		RandomAccessFile randomAccessFile = new RandomAccessFile(archiveFile, "r");
+
+		try
+		{
+			FileChannel channel = randomAccessFile.getChannel();
+			long size = channel.size();
+
+			if (size < ARCHIVE_HEADER_SIZE + FOOTER_SIZE)
+				throw new IOException("Invalid archive " + archiveFile);
+
+			ByteBuffer header = read(channel, 0, ARCHIVE_HEADER_SIZE);
+
+			if (header.getInt() != ARCHIVE_MAGIC || header.getInt() != ARCHIVE_VERSION)
+				throw new IOException("Invalid archive " + archiveFile);
+
+			ByteBuffer footer = read(channel, size - FOOTER_SIZE, FOOTER_SIZE);
+			indexOffset = footer.getLong();
+			int blockCount = footer.getInt();
+			int indexChecksum = footer.getInt();
+
+			if (footer.getInt() != FOOTER_MAGIC || blockCount < 0 || indexOffset < ARCHIVE_HEADER_SIZE
+				|| indexOffset + (long) blockCount * INDEX_ENTRY_SIZE != size - FOOTER_SIZE)
+				throw new IOException("Invalid archive footer in " + archiveFile);
+
+			ByteBuffer index = read(channel, indexOffset, blockCount * INDEX_ENTRY_SIZE);
+			CRC32 checksum = new CRC32();
+			checksum.update(index.array(), 0, index.limit());
+
+			if ((int) checksum.getValue() != indexChecksum)
+				throw new IOException("Corrupted archive index in " + archiveFile);
+
+			blockFirstIds = new long[blockCount];
+			blockLastIds = new long[blockCount];
+			blockOffsets = new long[blockCount];
+			blockGameCounts = new int[blockCount];
+			gameCount = 0;
+
+			for (int i = 0; i < blockCount; i++)
+			{
+				blockFirstIds[i] = index.getLong();
+				blockLastIds[i] = index.getLong();
+				blockOffsets[i] = index.getLong();
+				blockGameCounts[i] = index.getInt();
+				gameCount += blockGameCounts[i];
+
+				if (blockOffsets[i] < (i == 0 ? ARCHIVE_HEADER_SIZE : blockOffsets[i - 1] + BLOCK_HEADER_SIZE)
+					|| blockOffsets[i] + BLOCK_HEADER_SIZE > indexOffset || blockGameCounts[i] <= 0
+					|| blockFirstIds[i] > blockLastIds[i] || (i > 0 && blockFirstIds[i] <= blockLastIds[i - 1]))
+					throw new IOException("Invalid archive index in " + archiveFile);
+			}
+
+			map(channel);
+		}
+		finally
+		{
+			// The mappings stay valid once the file is closed.
+			randomAccessFile.close();
+		}
+	}
+
+	/**
+	 * Reads <code>length</code> bytes at the offset <code>offset</code> of the
+	 * channel <code>channel</code>.
+	 * @param channel the channel to read.
+	 * @param offset the offset of the bytes to read.
+	 * @param length the number of bytes to read.
+	 * @return a heap buffer which contains the bytes read.
+	 * @throws IOException if an I/O error occurs or if the channel is too short.
+	 */
+	private static ByteBuffer read(final FileChannel channel, final long offset, final int length) throws IOException
+	{
+		ByteBuffer result = ByteBuffer.allocate(length);
+
+		while (result.hasRemaining())
+		{
+			if (channel.read(result, offset + result.position()) < 0)
+				throw new IOException("Unexpected end of file");
+		}
+
+		result.flip();
+
+		return result;
+	}
+
+	/**
+	 * Returns the offset of the end of the block number <code>index</code>.
+	 * @param index the block index.
+	 * @return the offset of the end of the block.
+	 */
+	private long getBlockEnd(final int index)
+	{
+		return index + 1 < blockOffsets.length ? blockOffsets[index + 1] : indexOffset;
+	}
+
+	/**
+	 * Maps the blocks of the archive in parts of at most <code>MAX_MAPPING_SIZE</code>
+	 * bytes, so that archives larger than the buffer size limit may be read.
+	 * @param channel the channel of the archive.
+	 * @throws IOException if an I/O error occurs or if a block is too large.
+	 */
+	private void map(final FileChannel channel) throws IOException
+	{
+		List<MappedByteBuffer> mappingList = new ArrayList<MappedByteBuffer>();
+		List<Long> offsetList = new ArrayList<Long>();
+		blockMappings = new int[blockOffsets.length];
+
+		int firstBlock = 0;
+
+		while (firstBlock < blockOffsets.length)
+		{
+			int lastBlock = firstBlock;
+
+			while (lastBlock + 1 < blockOffsets.length && getBlockEnd(lastBlock + 1) - blockOffsets[firstBlock] <= MAX_MAPPING_SIZE)
+				lastBlock++;
+
+			long mappingSize = getBlockEnd(lastBlock) - blockOffsets[firstBlock];
+
+			if (mappingSize > MAX_MAPPING_SIZE)
+				throw new IOException("Too large block " + firstBlock + " in the archive " + file);
+
+			for (int i = firstBlock; i <= lastBlock; i++)
+				blockMappings[i] = mappingList.size();
+
+			offsetList.add(Long.valueOf(blockOffsets[firstBlock]));
+			mappingList.add(channel.map(FileChannel.MapMode.READ_ONLY, blockOffsets[firstBlock], mappingSize));
+
+			firstBlock = lastBlock + 1;
+		}
+
+		mappingOffsets = new long[offsetList.size()];
+
+		for (int i = 0; i < mappingOffsets.length; i++)
+			mappingOffsets[i] = offsetList.get(i).longValue();
+
+		mappings = mappingList.toArray(new MappedByteBuffer[mappingList.size()]);
+	}
+
+	/**
+	 * Returns the mapped part number <code>index</code>.
+	 * @param index the index of the mapped part.
+	 * @return the mapped part number <code>index</code>.
+	 * @throws IllegalStateException if the archive is closed.
+	 */
+	private ByteBuffer getMapping(final int index) throws IllegalStateException
+	{
+		MappedByteBuffer[] currentMappings = mappings;
+
+		if (currentMappings == null)
+			throw new IllegalStateException("The archive " + file + " is closed");
+
+		return currentMappings[index];
+	}
+
+	/**
+	 * Returns the index of the first block whose last game has an identifier
+	 * greater than or equal to <code>gameId</code>, or the block count if
+	 * there's none.
+	 * @param gameId the game identifier.
+	 * @return the index of the first block that may contain the game.
+	 */
+	private int getBlockIndex(final long gameId)
+	{
+		int low = 0;
+		int high = blockLastIds.length;
+
+		while (low < high)
+		{
+			int middle = (low + high) >>> 1;
+
+			if (blockLastIds[middle] < gameId)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+
+		return low;
+	}
+
+	/**
+	 * Returns the number of games of the archive.
+	 * @return the number of games of the archive.
+	 */
+	public long getGameCount()
+	{
+		return gameCount;
+	}
+
+	/**
+	 * Returns the identifier of the first game of the archive, or 0 if the archive is empty.
+	 * @return the identifier of the first game of the archive.
+	 */
+	public long getFirstGameId()
+	{
+		return blockFirstIds.length == 0 ? 0 : blockFirstIds[0];
+	}
+
+	/**
+	 * Returns the identifier of the last game of the archive, or 0 if the archive is empty.
+	 * @return the identifier of the last game of the archive.
+	 */
+	public long getLastGameId()
+	{
+		return blockLastIds.length == 0 ? 0 : blockLastIds[blockLastIds.length - 1];
+	}
+
+	/**
+	 * Returns a cursor over the games of the archive whose identifier is greater
+	 * than or equal to <code>fromId</code>, in identifier order. The cursor is
+	 * positioned before its first game.
+	 * @param fromId the identifier of the first game to read.
+	 * @return a cursor over the games of the archive.
+	 */
+	public Cursor getCursor(final long fromId)
+	{
+		return new Cursor(this, fromId);
+	}
+
+	/**
+	 * Returns the game model of the game <code>gameId</code>, rebuilt by replaying
+	 * its plays, or null if the game is not in the archive.
+	 * @param gameId the game identifier.
+	 * @return the game model of the game <code>gameId</code>.
+	 * @throws IllegalStateException if the archive is closed, or if the
+	 * game or its block is not valid.
+	 */
+	public GameModel getGameModel(final long gameId) throws IllegalStateException
+	{
+		int blockIndex = getBlockIndex(gameId);
+
+		// Only the block that may contain the game is read.
+		if (blockIndex == blockFirstIds.length || blockFirstIds[blockIndex] > gameId)
+			return null;
+
+		Cursor cursor = getCursor(gameId);
+
+		return cursor.next() && cursor.getId() == gameId ? cursor.toGameModel() : null;
+	}
+
+	/**
+	 * Returns an iterator over the game models of the games of the archive whose
+	 * identifier is greater than or equal to <code>fromId</code>, in identifier
+	 * order. The game models are built when the iterator returns them.
+	 * @param fromId the identifier of the first game to read.
+	 * @return an iterator over the game models of the archive.
+	 */
+	public Iterator<GameModel> readGameModels(final long fromId)
+	{
+		final Cursor cursor = getCursor(fromId);
+
+		return new Iterator<GameModel>()
+		{
+			/**
+			 * Boolean indicating whether the cursor is on a game
+			 * which has not been returned yet.
+			 */
+			private boolean hasGame = false;
+
+			/**
+			 * Boolean indicating whether all the games have been read.
+			 */
+			private boolean done = false;
+
+			/**
+			 * @see java.util.Iterator#hasNext()
+			 */
+			public boolean hasNext()
+			{
+				if (!hasGame && !done)
+				{
+					hasGame = cursor.next();
+					done = !hasGame;
+				}
+
+				return hasGame;
+			}
+
+			/**
+			 * @see java.util.Iterator#next()
+			 */
+			public GameModel next()
+			{
+				if (!hasNext())
+					throw new NoSuchElementException();
+
+				hasGame = false;
+
+				return cursor.toGameModel();
+			}
+
+			/**
+			 * @see java.util.Iterator#remove()
+			 */
+			public void remove()
+			{
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * Closes the archive. The cursors of the archive can no longer read new blocks
+	 * once it is closed, and the mapped memory is released once they are garbage
+	 * collected.
+	 * @see java.io.Closeable#close()
+	 */
+	public void close()
+	{
+		mappings = null;
+	}
+
+	/**
+	 * Exports the records of the log <code>log</code> whose identifier is greater
+	 * than or equal to <code>fromId</code> to the archive <code>archiveFile</code>.
+	 * @param log the log to export.
+	 * @param fromId the identifier of the first record to export.
+	 * @param archiveFile the archive file, which is replaced if it exists.
+	 * @return the number of exported records.
+	 * @throws NullPointerException if any of the method parameter is null.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public static long export(final GameRecordLog log, final long fromId, final File archiveFile)
+		throws NullPointerException, IOException
+	{
+		if (log == null || archiveFile == null)
+			throw new NullPointerException();
+
+		Writer writer = new Writer(archiveFile);
+
+		try
+		{
+			Iterator<GameRecord> it = log.read(fromId);
+
+			while (it.hasNext())
+				writer.append(it.next());
+		}
+		finally
+		{
+			writer.close();
+		}
+
+		return writer.getGameCount();
+	}
+
+	/**
+	 * Exports the records of a log to an archive, scans an archive or shows a game
+	 * of an archive, depending on the arguments :
+	 * <ul>
+	 * <li><code>export &lt;record directory&gt; &lt;archive file&gt; [first game id]</code></li>
+	 * <li><code>scan &lt;archive file&gt;</code></li>
+	 * <li><code>show &lt;archive file&gt; &lt;game id&gt;</code></li>
+	 * </ul>
+	 * @param args the arguments.
+	 * @throws Throwable if an error occurs.
+	 */
+	public static void main(String[] args) throws Throwable
+	{
+		if (args.length >= 3 && args[0].equals("export"))
+		{
+			GameRecordLog log = new GameRecordLog(new File(args[1]));
+			long startTime = System.currentTimeMillis();
+			long count = export(log, args.length > 3 ? Long.parseLong(args[3]) : 1, new File(args[2]));
+
+			System.out.println(count + " games exported in " + (System.currentTimeMillis() - startTime) + " ms, "
+				+ new File(args[2]).length() + " bytes");
+
+			log.close();
+		}
+		else if (args.length == 2 && args[0].equals("scan"))
+		{
+			GameArchive archive = new GameArchive(new File(args[1]));
+			long startTime = System.currentTimeMillis();
+			Cursor cursor = archive.getCursor(0);
+			long tieCount = 0;
+			long playCount = 0;
+
+			while (cursor.next())
+			{
+				if (cursor.getWinnerMark() == 0)
+					tieCount++;
+
+				playCount += cursor.getPlayCount();
+			}
+
+			System.out.println(archive.getGameCount() + " games, " + tieCount + " ties, " + playCount + " plays scanned in "
+				+ (System.currentTimeMillis() - startTime) + " ms");
+
+			archive.close();
+		}
+		else if (args.length == 3 && args[0].equals("show"))
+		{
+			GameArchive archive = new GameArchive(new File(args[1]));
+			GameModel gameModel = archive.getGameModel(Long.parseLong(args[2]));
+
+			System.out.println(gameModel == null ? "No such game" : gameModel.toString());
+
+			archive.close();
+		}
+		else
+		{
+			System.err.println("Usage : GameArchive export <record directory> <archive file> [first game id]");
+			System.err.println("        GameArchive scan <archive file>");
+			System.err.println("        GameArchive show <archive file> <game id>");
+			System.exit(1);
+		}
+	}
+}
@@ -27,6 +27,9 @@ import java.util.List;
 import java.util.Observable;
 import java.util.Set;
 
+import org.gojul.fourinaline.model.GameModel.GameModelException;
+import org.gojul.fourinaline.model.GameModel.PlayerMark;
+import org.gojul.fourinaline.model.GameServer.GameVersion;
 import org.gojul.fourinaline.model.GameServer.PlayerDescriptor;
 import org.gojul.fourinaline.model.GameServer.PlayerRegisterException;
 import org.gojul.fourinaline.model.GameServer.ServerTicket;
@@ -54,76 +57,26 @@ public abstract class GameClient extends Observable implements Runnable
 	final static long serialVersionUID = 1;
 	
 	/**
-	 * The <code>GameServerCaller</code> class calls every two seconds the server
-	 * in order to ensure it is running. If this is no longer the case,
-	 * notifies the client to stop its thread.
-	 * 
-	 * @author Julien Aubin
+	 * The maximum time in milliseconds during which a client waits for a change of
+	 * the server state, in case a game is not running.<br/>
+	 * The clients wait on the server instead of polling it, which would be very
+	 * consuming. The timeout only makes it possible to check regularly that the client
+	 * is still connected.
 	 */
-	private final static class GameServerCaller implements Runnable
-	{		
-		/**
-		 * The call period in milliseconds.
-		 */
-		private final static int CALL_PERIOD = 10000;
-		
-		/**
-		 * The game client to update.
-		 */
-		private GameClient gameClient;
-		
-		/**
-		 * The game server to call.
-		 */
-		private GameServer gameServer;
-		
-		/**
-		 * Constructor.
-		 * @param client the client.
-		 * @param server the server.
-		 */
-		public GameServerCaller(final GameClient client, final GameServer server)
-		{
-			gameClient = client;
-			gameServer = server;
-		}
-
-		/**
-		 * @see java.lang.Runnable#run()
-		 */
-		public void run()
-		{
-			try
-			{
-				while (true)
-				{
-					gameServer.isGameRunning();
-					
-					try
-					{
-						Thread.sleep(CALL_PERIOD);
-					}
-					catch (InterruptedException e)
-					{
-						e.printStackTrace();
-					}
-				}
-			}
-			catch (Throwable t)
-			{
-				gameClient.setConnectedToServer(false);
-			}
-			
-		}
-		
-		
-	}
+	protected final static int SERVER_STATE_WAIT_TIMEOUT = 30000;
+	
+	/**
+	 * The delay in milliseconds after which a client retries a call the server has
+	 * rejected because it was busy. The delay doubles at every rejection in a row,
+	 * up to <code>MAX_SERVER_BUSY_RETRY_DELAY</code>.
+	 */
+	protected final static int SERVER_BUSY_RETRY_DELAY = 100;
 	
 	/**
-	 * The server status update period in milliseconds, in case a game is not running.<br/>
-	 * This avoid an infinite loop which would be very consuming.
+	 * The maximum delay in milliseconds after which a client retries a call
+	 * the server has rejected because it was busy.
 	 */
-	protected final static int SERVER_STATUS_UPDATE_PERIOD = 100;
+	protected final static int MAX_SERVER_BUSY_RETRY_DELAY = 5000;
 
 	/**
 	 * The game server used.
@@ -150,6 +103,17 @@ public abstract class GameClient extends Observable implements Runnable
 	 */
 	private boolean isGameOwner;
 	
+	/**
+	 * The copy of the current game of the server, which is kept up to date
+	 * by the <code>getGame</code> method, or null if there's no current game.
+	 */
+	private GameModel syncGameModel;
+	
+	/**
+	 * The number of the game of <code>syncGameModel</code>.
+	 */
+	private int syncGameNumber;
+	
 	/**
 	 * Constructor.
 	 * @param server the server.
@@ -180,10 +144,8 @@ public abstract class GameClient extends Observable implements Runnable
 		gamePlayer = descriptor.getGamePlayer();
 		isGameOwner = descriptor.isGameOwner();
 		
-		// Here the fact that we launch the thread in the class constructor
-		// is not a bug. The thread acts as a daemon that is supposed to
-		// stop the client thread if the server is halted.
-		new Thread(new GameServerCaller(this, gameServer)).start();
+		// The heartbeat service stops the client thread if the server is halted.
+		HeartbeatService.getInstance().register(this, gameServer);
 	}
 	
 	/**
@@ -263,6 +225,95 @@ public abstract class GameClient extends Observable implements Runnable
 		return false;
 	}
 	
+	/**
+	 * Returns a copy of the current game, or null if there's no current game.
+	 * As the <code>getGame</code> method of the server, this method only returns
+	 * when it's up to the player of this client to play, or when the game is over.<br/>
+	 * Only the plays performed since the previous call are transfered from the server,
+	 * the whole game is only transfered when a new game has started.<br/>
+	 * This method must only be called by the client thread.
+	 * @return a copy of the current game, or null if there's no current game.
+	 * @throws RemoteException if a remote error occurs while getting the game.
+	 */
+	protected final GameModel getGame() throws RemoteException
+	{
+		PlayerMark playerMark = gamePlayer.getPlayerMark();
+		int[] moves = null;
+		
+		if (syncGameModel != null)
+			moves = gameServer.getMovesSince(playerMark, serverTicket, GameVersion.getVersion(syncGameNumber, syncGameModel.getPlayCount()));
+		
+		if (moves != null)
+		{
+			for (int colIndex: moves)
+				syncGameModel.play(colIndex, syncGameModel.getCurrentPlayer());
+		}
+		else
+		{
+			// The version is read before the game, so that if a new game starts
+			// in between, the next call detects it and gets the whole game again.
+			long version = gameServer.getGameVersion();
+			syncGameModel = gameServer.getGame(playerMark, serverTicket);
+			syncGameNumber = GameVersion.getGameNumber(version);
+		}
+		
+		return syncGameModel != null ? new GameModel(syncGameModel) : null;
+	}
+	
+	/**
+	 * Plays at the column <code>colIndex</code> on the game returned by the latest call
+	 * of the <code>getGame</code> method, then returns the game as the <code>getGame</code>
+	 * method does, i.e. when it's up to the player of this client to play again or when
+	 * the game is over.<br/>
+	 * The play and the wait usually cost a single call to the server. The play is ignored
+	 * if the game has changed meanwhile, like when it has been ended by another client.<br/>
+	 * This method must only be called by the client thread.
+	 * @param colIndex the index of the column to play.
+	 * @return a copy of the current game, or null if there's no current game.
+	 * @throws GameModelException if the play at the column <code>colIndex</code>
+	 * is not valid.
+	 * @throws RemoteException if a remote error occurs while playing.
+	 */
+	protected final GameModel playAndGetGame(final int colIndex) throws GameModelException, RemoteException
+	{
+		int[] moves = null;
+		
+		if (syncGameModel != null)
+			moves = gameServer.playAndAwaitTurn(colIndex, gamePlayer.getPlayerMark(),
+				GameVersion.getVersion(syncGameNumber, syncGameModel.getPlayCount()), serverTicket);
+		
+		if (moves == null)
+		{
+			// The version of the copy of the game may be wrong if a new game started
+			// while the game was got. The play is then sent with the game model, which
+			// the server compares to its own one, since the turn of the player has already
+			// been consumed. The whole game must then be got again.
+			if (syncGameModel != null)
+				gameServer.play(colIndex, gamePlayer.getPlayerMark(), syncGameModel, serverTicket);
+			
+			syncGameModel = null;
+			return getGame();
+		}
+		
+		for (int index: moves)
+			syncGameModel.play(index, syncGameModel.getCurrentPlayer());
+		
+		return new GameModel(syncGameModel);
+	}
+	
+	/**
+	 * Returns the version of the game returned by the latest call of the
+	 * <code>getGame</code> or <code>playAndGetGame</code> method, or -1
+	 * if there was no current game.<br/>
+	 * This method must only be called by the client thread.
+	 * @return the version of the game returned by the latest call.
+	 * @see GameServer.GameVersion
+	 */
+	protected final long getGameVersion()
+	{
+		return syncGameModel != null ? GameVersion.getVersion(syncGameNumber, syncGameModel.getPlayCount()) : -1;
+	}
+	
 	/**
 	 * Returns the game model. This method must only be used for
 	 * display purposes.
@@ -346,6 +397,52 @@ public abstract class GameClient extends Observable implements Runnable
 		return isGameOwner;
 	}
 	
+	/**
+	 * Hook for subclassers in order to add specific handlings
+	 * when the client is disconnected from the server, either
+	 * because the <code>disconnect</code> method has been called or
+	 * because the server is no longer reachable.<br/>
+	 * This hook may be called from any thread.
+	 */
+	protected void doDisconnect()
+	{
+		
+	}
+	
+	/**
+	 * Waits before retrying a call the server has rejected because it was busy.
+	 * The delay grows with the number of rejections in a row, and is randomized
+	 * so that the clients which share the same budget, like the clients of the
+	 * same host, do not retry all at once.<br/>
+	 * The client is disconnected if its thread is interrupted while waiting.
+	 * @param rejectionCount the number of rejections in a row, including the last one.
+	 * @throws RuntimeException if the thread is interrupted while waiting.
+	 */
+	protected final void waitBeforeRetry(final int rejectionCount) throws RuntimeException
+	{
+		long maxDelay = Math.min((long) SERVER_BUSY_RETRY_DELAY << Math.min(rejectionCount - 1, 16), MAX_SERVER_BUSY_RETRY_DELAY);
+		
+		try
+		{
+			Thread.sleep(maxDelay / 2 + (long) (Math.random() * maxDelay / 2));
+		}
+		catch (InterruptedException e)
+		{
+			disconnect();
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * Notifies the client that its server is no longer reachable.
+	 * Called by the heartbeat service.
+	 */
+	void serverLost()
+	{
+		setConnectedToServer(false);
+		doDisconnect();
+	}
+	
 	/**
 	 * Disconnects from the server.<br/>
 	 * This method must be called when the game client
@@ -361,6 +458,8 @@ public abstract class GameClient extends Observable implements Runnable
 			{
 				// Notifies of a disconnection of the server.				
 				setConnectedToServer(false);
+				HeartbeatService.getInstance().unregister(this, gameServer);
+				doDisconnect();
 				
 				gameServer.endGame(serverTicket);
 				gameServer.releaseTicket(serverTicket);
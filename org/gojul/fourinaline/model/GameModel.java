@@ -29,6 +29,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
@@ -261,10 +262,12 @@ public final class GameModel implements Serializable
 		}
 		
 		/**
-		 * Returns the next player.
+		 * Returns the next player.<br/>
+		 * This method is synchronized since game models may be created
+		 * concurrently, for instance by several game servers.
 		 * @return the next player.
 		 */
-		private final static PlayerMark getNextPlayer()
+		private final static synchronized PlayerMark getNextPlayer()
 		{						
 			if (itPlayers == null || !itPlayers.hasNext())
 				itPlayers = players.iterator();
@@ -515,7 +518,19 @@ public final class GameModel implements Serializable
 	 * However it's thread safe.
 	 */
 	private Map<CellCoord, Set<List<CellCoord>>> winLinesMap;
-	
+
+	/**
+	 * The map that ties the parameters of a game model to a model whose
+	 * lines and win line map are shared by the new game models with the same
+	 * parameters, so that they are computed only once.
+	 */
+	private final static Map<Long, GameModel> lineTemplates = new ConcurrentHashMap<Long, GameModel>();
+
+	/**
+	 * The hash of the cells of the game tab, updated at every play.
+	 */
+	private long boardHash;
+
 	/**
 	 * Constructor.
 	 */
@@ -538,6 +553,28 @@ public final class GameModel implements Serializable
 	public GameModel(final int rows, final int cols, final int winLength)
 	   throws IllegalArgumentException
 	{
+		this(rows, cols, winLength, PlayerMark.getNextPlayer());
+	}
+	
+	/**
+	 * Constructor.
+	 * @param rows the number of rows.
+	 * @param cols the number of columns.
+	 * @param winLength the number of cells to get in order to have
+	 * a winning line.
+	 * @param firstPlayer the mark of the player who plays first.
+	 * @throws NullPointerException if <code>firstPlayer</code> is null.
+	 * @throws IllegalArgumentException if any of the parameters is smaller
+	 * or equal to 0, or if the number of cells for a winning line is 
+	 * greater than <code>Math.min(rows, cols)</code>, or if <code>winLength</code>
+	 * is smaller or equal to 2.
+	 */
+	public GameModel(final int rows, final int cols, final int winLength, final PlayerMark firstPlayer)
+	   throws NullPointerException, IllegalArgumentException
+	{
+		if (firstPlayer == null)
+			throw new NullPointerException();
+		
 		if (rows <= 0 || cols <= 0)
 			throw new IllegalArgumentException("Illegal dimenstions. Rows : " + rows + " - Columns : " + cols);
 		
@@ -546,17 +583,31 @@ public final class GameModel implements Serializable
 		
 		gameTab = new PlayerMark[rows][cols];
 		winLineLength = winLength;
-		currentPlayer = PlayerMark.getNextPlayer();
+		currentPlayer = firstPlayer;
 		gameStatus = GameStatus.CONTINUE_STATUS;
-		winLinesMap = new ConcurrentHashMap<CellCoord, Set<List<CellCoord>>>();
 		winLine = null;
 		playHistory = new LinkedList<PlayStep>();
 		
-		lines = new HashSet<List<CellCoord>>();
-		for (int i = 0; i < rows; i++) {
-			for (int j = 0; j < cols; j++) {
-				lines.addAll(getAllLines(i, j));
+		Long parameters = Long.valueOf((long) rows << 32 | (long) cols << 16 | winLength);
+		GameModel lineTemplate = lineTemplates.get(parameters);
+		
+		if (lineTemplate != null)
+		{
+			winLinesMap = lineTemplate.winLinesMap;
+			lines = lineTemplate.lines;
+		}
+		else
+		{
+			winLinesMap = new ConcurrentHashMap<CellCoord, Set<List<CellCoord>>>();
+			lines = new HashSet<List<CellCoord>>();
+			for (int i = 0; i < rows; i++) {
+				for (int j = 0; j < cols; j++) {
+					lines.addAll(getAllLines(i, j));
+				}
 			}
+			
+			// The template is a copy, so that this model is not kept.
+			lineTemplates.put(parameters, new GameModel(this));
 		}
 	}
 	
@@ -576,6 +627,7 @@ public final class GameModel implements Serializable
 		// Here it is safe to copy the win line map - nothing particular
 		// to a given instance of a game model is written here. 
 		winLinesMap = gameModel.winLinesMap;
+		boardHash = gameModel.boardHash;
 		lines = gameModel.lines;
 		
 		// Here it is safe to copy the win line, since it is readonly.
@@ -645,6 +697,80 @@ public final class GameModel implements Serializable
 		return winLinesMap.hashCode();
 	}
 
+	/**
+	 * Returns a 64 bit hash of the current position, i.e. of the game tab
+	 * and of the current player.<br/>
+	 * This hash is maintained incrementally at every play, and does not depend
+	 * on the JVM it is computed on, so that it can be stored.
+	 * @return a 64 bit hash of the current position.
+	 */
+	public long getPositionHash()
+	{
+		return boardHash ^ mixHash(~((long) currentPlayer.hashCode()));
+	}
+
+	/**
+	 * Returns the hashes of the successive positions of a game, as returned by
+	 * <code>getPositionHash()</code>, without building its game model. The hash
+	 * number <code>i</code> is the hash of the position after <code>i</code> plays.<br/>
+	 * The plays are not checked, and the game is supposed to be over after the
+	 * last play, so that the turn does not pass after it.
+	 * @param rows the number of rows of the game tab.
+	 * @param cols the number of columns of the game tab.
+	 * @param firstPlayer the mark of the player who plays first.
+	 * @param columns the played columns, in play order.
+	 * @return the hashes of the successive positions of the game.
+	 */
+	static long[] getPositionHashes(final int rows, final int cols, final PlayerMark firstPlayer, final int[] columns)
+	{
+		long[] result = new long[columns.length + 1];
+		int[] heights = new int[cols];
+		PlayerMark player = firstPlayer;
+		long hash = 0;
+		
+		result[0] = mixHash(~((long) player.hashCode()));
+		
+		for (int i = 0; i < columns.length; i++)
+		{
+			int colIndex = columns[i];
+			hash ^= getCellHash(rows - 1 - heights[colIndex]++, colIndex, player);
+			
+			if (i < columns.length - 1)
+				player = PlayerMark.getNextMark(player);
+			
+			result[i + 1] = hash ^ mixHash(~((long) player.hashCode()));
+		}
+		
+		return result;
+	}
+
+	/**
+	 * Returns the hash of the cell <code>rowIndex, colIndex</code> filled
+	 * with the mark <code>playerMark</code>.
+	 * @param rowIndex the row index.
+	 * @param colIndex the column index.
+	 * @param playerMark the player mark.
+	 * @return the hash of the cell.
+	 */
+	private static long getCellHash(final int rowIndex, final int colIndex, final PlayerMark playerMark)
+	{
+		return mixHash(((long) rowIndex << 40) ^ ((long) colIndex << 20) ^ playerMark.hashCode());
+	}
+
+	/**
+	 * Returns the mix of the value <code>value</code>, using the
+	 * finalizer of the SplitMix64 generator.
+	 * @param value the value to mix.
+	 * @return the mix of the value <code>value</code>.
+	 */
+	private static long mixHash(final long value)
+	{
+		long z = value + 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
 	/**
 	 * Returns the current player.
 	 * @return the current player.
@@ -836,8 +962,10 @@ public final class GameModel implements Serializable
 		if (!playerMark.equals(currentPlayer))
 			throw new GameModelException("This is not the turn of player " + playerMark + ". Current turn : " + currentPlayer);
 		
-		gameTab[getFreeRowIndexForColumn(colIndex)][colIndex] = playerMark;
-		
+		int rowIndex = getFreeRowIndexForColumn(colIndex);
+		gameTab[rowIndex][colIndex] = playerMark;
+		boardHash ^= getCellHash(rowIndex, colIndex, playerMark);
+
 		playHistory.add(new PlayStep(colIndex, gameStatus, currentPlayer));
 		
 		updateGameStatus(colIndex);
@@ -846,6 +974,8 @@ public final class GameModel implements Serializable
 		{
 			currentPlayer = PlayerMark.getNextMark(currentPlayer);
 		}
+		
+		FlightEvents.modelPlayed(rowIndex, colIndex, playerMark);
 	}
 	
 	/**
@@ -862,9 +992,69 @@ public final class GameModel implements Serializable
 		gameStatus = lastStep.getGameStatus();
 		currentPlayer = lastStep.getPlayerMark();
 		int colIndex = lastStep.getColIndex();
-		gameTab[getFreeRowIndexForColumn(colIndex) + 1][colIndex] = null;
+		int rowIndex = getFreeRowIndexForColumn(colIndex) + 1;
+		gameTab[rowIndex][colIndex] = null;
+		boardHash ^= getCellHash(rowIndex, colIndex, currentPlayer);
+	}
+
+	/**
+	 * Returns the number of plays performed since the start of the game.
+	 * @return the number of plays performed since the start of the game.
+	 */
+	public int getPlayCount()
+	{
+		return playHistory.size();
 	}
 	
+	/**
+	 * Returns the indexes of the columns played since the play number <code>fromPlay</code>,
+	 * in play order. Replaying these columns on a copy of this game model taken when
+	 * it had <code>fromPlay</code> plays makes it equal to this game model.
+	 * @param fromPlay the number of plays after which the columns are returned.
+	 * @return the indexes of the columns played since the play number <code>fromPlay</code>.
+	 * @throws IndexOutOfBoundsException if <code>fromPlay</code> is strictly smaller than 0
+	 * or strictly greater than the number of plays.
+	 */
+	public int[] getPlayedColumns(final int fromPlay) throws IndexOutOfBoundsException
+	{
+		int[] result = new int[playHistory.size() - fromPlay];
+		
+		ListIterator<PlayStep> it = playHistory.listIterator(fromPlay);
+		
+		for (int i = 0; i < result.length; i++)
+			result[i] = it.next().getColIndex();
+		
+		return result;
+	}
+	
+	/**
+	 * Returns the mark of the player who played first in this game model.
+	 * @return the mark of the player who played first in this game model.
+	 */
+	public PlayerMark getFirstPlayer()
+	{
+		if (playHistory.isEmpty())
+			return currentPlayer;
+		
+		return playHistory.get(0).getPlayerMark();
+	}
+	
+	/**
+	 * Returns the coordinates of the cell of the last play, or null if
+	 * there's no play yet.
+	 * @return the coordinates of the cell of the last play, or null if
+	 * there's no play yet.
+	 */
+	public CellCoord getLastPlayedCell()
+	{
+		if (playHistory.isEmpty())
+			return null;
+		
+		int colIndex = playHistory.get(playHistory.size() - 1).getColIndex();
+		
+		return new CellCoord(getFreeRowIndexForColumn(colIndex) + 1, colIndex);
+	}
+
 	/**
 	 * Returns the first free row index for the column which has for
 	 * index <code>colIndex</code>, i.e. the row index of the first
@@ -56,219 +56,11 @@ public interface GamePlayer extends Serializable
 	 * @return the player score.
 	 */
 	public int getScore();
-}
-
-/**
- * The <code>GamePlayerImpl</code> class is the
- * default implementation of the <code>GamePlayer</code>
- * class.
- * 
- * @author Julien Aubin
- */
-final class GamePlayerImpl implements GamePlayer
-{
-	/**
-	 * The serial version UID.
-	 */
-	final static long serialVersionUID = 1;
-	
-	/**
-	 * The player name.
-	 */
-	private String playerName;
-	
-	/**
-	 * The player mark.
-	 */
-	private PlayerMark playerMark;
-	
-	/**
-	 * The player score.
-	 */
-	private int score;
-	
-	/**
-	 * Constructor.
-	 * @param name the player name.
-	 * @param mark the player mark.
-	 * @throws NullPointerException if any of the method parameter is null.
-	 */
-	public GamePlayerImpl(final String name, final PlayerMark mark)
-		throws NullPointerException
-	{
-		if (name == null || mark == null)
-			throw new NullPointerException();
-		
-		playerName = name;
-		playerMark = mark;
-		score = 0;
-	}
-	
-	
-	/**
-	 * @see org.gojul.fourinaline.model.GamePlayer#incrementScore()
-	 */
-	public final void incrementScore() throws UnsupportedOperationException
-	{
-		score++;
-	}
-	
 	
 	/**
-	 * @see org.gojul.fourinaline.model.GamePlayer#getName()
+	 * Returns the persistent rating of the player, or 0 if the
+	 * player is not rated.
+	 * @return the persistent rating of the player.
 	 */
-	public final String getName()
-	{
-		return playerName;
-	}
-	
-	
-	/**
-	 * @see org.gojul.fourinaline.model.GamePlayer#getPlayerMark()
-	 */
-	public final PlayerMark getPlayerMark()
-	{
-		return playerMark;
-	}
-
-	/**
-	 * @see org.gojul.fourinaline.model.GamePlayer#getScore()
-	 */
-	public int getScore()
-	{
-		return score;
-	}
-
-	/**
-	 * @see java.lang.Object#equals(java.lang.Object)
-	 */
-	@Override
-	public boolean equals(final Object obj)
-	{
-		if (obj !=  null && obj instanceof GamePlayer)
-		{
-			GamePlayer gpTest = (GamePlayer) obj;
-			
-			return gpTest.getPlayerMark().equals(playerMark)
-				&& gpTest.getName().equals(playerName);
-		}
-		else
-			return false;
-	}
-
-	/**
-	 * @see java.lang.Object#hashCode()
-	 */
-	@Override
-	public int hashCode()
-	{		
-		return super.hashCode();
-	}
-
-
-	/**
-	 * @see java.lang.Object#toString()
-	 */
-	@Override
-	public String toString()
-	{
-		return new StringBuffer("Name: ").append(playerName).append(" - mar : ").append(playerMark)
-		   .append(" - score: ").append(score).toString();
-	}
-	
-	
-}
-
-/**
- * The <code>UnmodifiableGamePlayer</code> class is a decorator
- * over a standard player that makes it immutable.
- * 
- * @author Julien Aubin
- */
-final class UnmodifiableGamePlayer implements GamePlayer
-{
-	/**
-	 * The serial version UID.
-	 */
-	final static long serialVersionUID = 1;
-
-	/**
-	 * The decorated game player.
-	 */
-	private GamePlayer gamePlayer;
-	
-	/**
-	 * Constructor.
-	 * @param player the player to decorate.
-	 * @throws NullPointerException if any of the method parameter is null.
-	 */
-	public UnmodifiableGamePlayer(final GamePlayer player) throws NullPointerException
-	{
-		if (player == null)
-			throw new NullPointerException();
-		
-		gamePlayer = player;
-	}
-	
-	/**
-	 * @see org.gojul.fourinaline.model.GamePlayer#getScore()
-	 */
-	public int getScore()
-	{
-		return gamePlayer.getScore();
-	}
-
-	/**
-	 * @see org.gojul.fourinaline.model.GamePlayer#getName()
-	 */
-	public String getName()
-	{		
-		return gamePlayer.getName();
-	}
-
-	/**
-	 * @see org.gojul.fourinaline.model.GamePlayer#getPlayerMark()
-	 */
-	public PlayerMark getPlayerMark()
-	{
-		return gamePlayer.getPlayerMark();
-	}
-
-	/**
-	 * @see org.gojul.fourinaline.model.GamePlayer#incrementScore()
-	 */
-	public void incrementScore() throws UnsupportedOperationException
-	{
-		throw new UnsupportedOperationException();		
-	}
-
-	/**
-	 * @see java.lang.Object#equals(java.lang.Object)
-	 */
-	@Override
-	public boolean equals(final Object obj)
-	{
-		return gamePlayer.equals(obj);
-	}
-
-	/**
-	 * @see java.lang.Object#hashCode()
-	 */
-	@Override
-	public int hashCode()
-	{
-		return gamePlayer.hashCode();
-	}
-
-	/**
-	 * @see java.lang.Object#toString()
-	 */
-	@Override
-	public String toString()
-	{
-		// TODO Raccord de méthode auto-généré
-		return gamePlayer.toString();
-	}
-	
-	
+	public int getRating();
 }
@@ -0,0 +1,205 @@
+/*
+ * GamePlayerImpl.java
+ *
+ * Created: 2008/02/23
+ *
+ * Copyright (C) 2008 Julien Aubin
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.gojul.fourinaline.model;
+
+import org.gojul.fourinaline.model.GameModel.PlayerMark;
+
+/**
+ * The <code>GamePlayerImpl</code> class is the
+ * default implementation of the <code>GamePlayer</code>
+ * class.
+ * 
+ * @author Julien Aubin
+ */
+final class GamePlayerImpl implements GamePlayer
+{
+	/**
+	 * The serial version UID.
+	 */
+	final static long serialVersionUID = 1;
+	
+	/**
+	 * The player name.
+	 */
+	private String playerName;
+	
+	/**
+	 * The player mark.
+	 */
+	private PlayerMark playerMark;
+	
+	/**
+	 * The player score.
+	 */
+	private int score;
+	
+	/**
+	 * The player rating, or 0 if the player is not rated.
+	 */
+	private int rating;
+	
+	/**
+	 * Constructor.
+	 * @param name the player name.
+	 * @param mark the player mark.
+	 * @throws NullPointerException if any of the method parameter is null.
+	 */
+	public GamePlayerImpl(final String name, final PlayerMark mark)
+		throws NullPointerException
+	{
+		this(name, mark, 0);
+	}
+	
+	/**
+	 * Constructor.
+	 * @param name the player name.
+	 * @param mark the player mark.
+	 * @param initialScore the initial player score.
+	 * @throws NullPointerException if any of the method parameter is null.
+	 * @throws IllegalArgumentException if <code>initialScore</code> is strictly
+	 * smaller than 0.
+	 */
+	public GamePlayerImpl(final String name, final PlayerMark mark, final int initialScore)
+		throws NullPointerException, IllegalArgumentException
+	{
+		this(name, mark, initialScore, 0);
+	}
+	
+	/**
+	 * Constructor.
+	 * @param name the player name.
+	 * @param mark the player mark.
+	 * @param initialScore the initial player score.
+	 * @param playerRating the player rating, or 0 if the player is not rated.
+	 * @throws NullPointerException if any of the method parameter is null.
+	 * @throws IllegalArgumentException if <code>initialScore</code> or
+	 * <code>playerRating</code> is strictly smaller than 0.
+	 */
+	public GamePlayerImpl(final String name, final PlayerMark mark, final int initialScore, final int playerRating)
+		throws NullPointerException, IllegalArgumentException
+	{
+		if (name == null || mark == null)
+			throw new NullPointerException();
+		
+		if (initialScore < 0)
+			throw new IllegalArgumentException("Invalid score : " + initialScore);
+		
+		if (playerRating < 0)
+			throw new IllegalArgumentException("Invalid rating : " + playerRating);
+		
+		playerName = name;
+		playerMark = mark;
+		score = initialScore;
+		rating = playerRating;
+	}
+	
+	
+	/**
+	 * @see org.gojul.fourinaline.model.GamePlayer#incrementScore()
+	 */
+	public final void incrementScore() throws UnsupportedOperationException
+	{
+		score++;
+	}
+	
+	
+	/**
+	 * @see org.gojul.fourinaline.model.GamePlayer#getName()
+	 */
+	public final String getName()
+	{
+		return playerName;
+	}
+	
+	
+	/**
+	 * @see org.gojul.fourinaline.model.GamePlayer#getPlayerMark()
+	 */
+	public final PlayerMark getPlayerMark()
+	{
+		return playerMark;
+	}
+
+	/**
+	 * @see org.gojul.fourinaline.model.GamePlayer#getScore()
+	 */
+	public int getScore()
+	{
+		return score;
+	}
+	
+	/**
+	 * @see org.gojul.fourinaline.model.GamePlayer#getRating()
+	 */
+	public int getRating()
+	{
+		return rating;
+	}
+	
+	/**
+	 * Sets the player rating.
+	 * @param playerRating the player rating.
+	 */
+	void setRating(final int playerRating)
+	{
+		rating = playerRating;
+	}
+
+	/**
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(final Object obj)
+	{
+		if (obj !=  null && obj instanceof GamePlayer)
+		{
+			GamePlayer gpTest = (GamePlayer) obj;
+			
+			return gpTest.getPlayerMark().equals(playerMark)
+				&& gpTest.getName().equals(playerName);
+		}
+		else
+			return false;
+	}
+
+	/**
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode()
+	{		
+		return super.hashCode();
+	}
+
+
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		return new StringBuffer("Name: ").append(playerName).append(" - mar : ").append(playerMark)
+		   .append(" - score: ").append(score).toString();
+	}
+	
+	
+}
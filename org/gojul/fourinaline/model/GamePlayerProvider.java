@@ -49,12 +49,13 @@ public interface GamePlayerProvider extends Serializable
 	 * Stores in statistics the game won by <code>winner</code>. This
 	 * method should be called by the game server every time a game
 	 * has ended.
-	 * @param winner the game winner.
+	 * @param winner the game winner, or null if the game is a tie.
 	 * @param gamePlayers the set of game players who attended to the game. 
-	 * @throws NullPointerException if <code>gamePlayers</code> is null.
+	 * @param gameModel the game model of the game.
+	 * @throws NullPointerException if <code>gamePlayers</code> or <code>gameModel</code> is null.
 	 * @throws RuntimeException if an error occured while storing the mae.
 	 */
-	public void storeGame(final GamePlayer winner, final Set<GamePlayer> gamePlayers) throws NullPointerException, RuntimeException;
+	public void storeGame(final GamePlayer winner, final Set<GamePlayer> gamePlayers, final GameModel gameModel) throws NullPointerException, RuntimeException;
 	
 	/**
 	 * Releases the player which has for name <code>name</code> for the current game.
@@ -67,50 +68,3 @@ public interface GamePlayerProvider extends Serializable
 	 */
 	public void releasePlayer(final String name) throws NullPointerException, RuntimeException;
 }
-
-/**
- * The <code>DefaultGamePlayerProvider</code> class provides a default implementation
- * of the <code>GamePlayerProvider</code> interface used on a server environment.
- *
- * @author Julien Aubin
- */
-final class DefaultGamePlayerProvider implements GamePlayerProvider
-{
-	
-	/**
-	 * The class serial version UID.
-	 */
-	final static long serialVersionUID = 1L;
-
-	/**
-	 * @see org.gojul.fourinaline.model.GamePlayerProvider#getGamePlayer(java.lang.String, org.gojul.fourinaline.model.GameModel.PlayerMark)
-	 */
-	public GamePlayer getGamePlayer(final String name, final PlayerMark playerMark) throws NullPointerException, RuntimeException
-	{
-		if (name == null || playerMark == null)
-			throw new NullPointerException();
-		
-		return new GamePlayerImpl(name, playerMark);
-	}
-
-	/**
-	 * @see org.gojul.fourinaline.model.GamePlayerProvider#storeGame(org.gojul.fourinaline.model.GamePlayer, java.util.Set)
-	 */
-	public void storeGame(final GamePlayer winner, final Set<GamePlayer> gamePlayers) throws NullPointerException, RuntimeException
-	{
-		if (gamePlayers == null)
-			throw new NullPointerException();
-	}
-
-	/**
-	 * @see org.gojul.fourinaline.model.GamePlayerProvider#releasePlayer(java.lang.String)
-	 */
-	public void releasePlayer(final String name) throws NullPointerException, RuntimeException
-	{
-		if (name == null)
-			throw new NullPointerException();
-	}
-
-	
-	
-}
@@ -0,0 +1,432 @@
+/*
+ * GameRecord.java
+ *
+ * Created: 2026/10/19
+ *
+ * Copyright (C) 2026 Julien Aubin
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.gojul.fourinaline.model;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.gojul.fourinaline.model.GameModel.PlayerMark;
+
+/**
+ * The <code>GameRecord</code> class is the record of a finished game : its
+ * players, its winner, its geometry and its plays. It is stored in a compact
+ * binary form by the {@link GameRecordLog} class.<br/>
+ * The player marks are kept as their values, i.e. their hash codes, so that
+ * the records may be read by a JVM in which the marks of the games of more
+ * than two players have not been created yet.
+ *
+ * @author Julien Aubin
+ */
+public final class GameRecord
+{
+	/**
+	 * The charset of the player names.
+	 */
+	private final static Charset NAME_CHARSET = Charset.forName("UTF-8");
+
+	/**
+	 * The record identifier, or -1 if the record has not been stored yet.
+	 */
+	private long id;
+
+	/**
+	 * The time at which the game has ended, in milliseconds since the epoch.
+	 */
+	private long time;
+
+	/**
+	 * The number of rows of the game.
+	 */
+	private int rowCount;
+
+	/**
+	 * The number of columns of the game.
+	 */
+	private int colCount;
+
+	/**
+	 * The number of cells of a winning line.
+	 */
+	private int winLineLength;
+
+	/**
+	 * The mark value of the player who played first.
+	 */
+	private int firstPlayerMark;
+
+	/**
+	 * The mark value of the winner, or 0 if the game is a tie.
+	 */
+	private int winnerMark;
+
+	/**
+	 * The mark values of the players, in increasing order.
+	 */
+	private int[] playerMarks;
+
+	/**
+	 * The names of the players, in the order of their marks.
+	 */
+	private String[] playerNames;
+
+	/**
+	 * The played columns, in play order.
+	 */
+	private int[] columns;
+
+	/**
+	 * Constructor.
+	 * @param gameModel the game model of the finished game.
+	 * @param winner the game winner, or null if the game is a tie.
+	 * @param gamePlayers the players of the game.
+	 * @throws NullPointerException if <code>gameModel</code> or <code>gamePlayers</code>
+	 * is null.
+	 */
+	public GameRecord(final GameModel gameModel, final GamePlayer winner, final Set<GamePlayer> gamePlayers)
+		throws NullPointerException
+	{
+		if (gameModel == null || gamePlayers == null)
+			throw new NullPointerException();
+
+		id = -1;
+		time = System.currentTimeMillis();
+		rowCount = gameModel.getRowCount();
+		colCount = gameModel.getColCount();
+		winLineLength = gameModel.getWinLineLength();
+		firstPlayerMark = gameModel.getFirstPlayer().hashCode();
+		winnerMark = winner == null ? 0 : winner.getPlayerMark().hashCode();
+		columns = gameModel.getPlayedColumns(0);
+
+		GamePlayer[] players = gamePlayers.toArray(new GamePlayer[gamePlayers.size()]);
+		playerMarks = new int[players.length];
+		playerNames = new String[players.length];
+
+		for (int i = 0; i < players.length; i++)
+			playerMarks[i] = players[i].getPlayerMark().hashCode();
+
+		Arrays.sort(playerMarks);
+
+		for (GamePlayer player: players)
+			playerNames[Arrays.binarySearch(playerMarks, player.getPlayerMark().hashCode())] = player.getName();
+	}
+
+	/**
+	 * Constructor used when reading a record.
+	 * @param recordId the record identifier.
+	 */
+	private GameRecord(final long recordId)
+	{
+		id = recordId;
+	}
+
+	/**
+	 * Returns the record identifier, which increases with the order in which
+	 * the records are stored, or -1 if the record has not been stored yet.
+	 * @return the record identifier.
+	 */
+	public long getId()
+	{
+		return id;
+	}
+
+	/**
+	 * Returns the time at which the game has ended, in milliseconds since the epoch.
+	 * @return the time at which the game has ended.
+	 */
+	public long getTime()
+	{
+		return time;
+	}
+
+	/**
+	 * Returns the number of rows of the game.
+	 * @return the number of rows of the game.
+	 */
+	public int getRowCount()
+	{
+		return rowCount;
+	}
+
+	/**
+	 * Returns the number of columns of the game.
+	 * @return the number of columns of the game.
+	 */
+	public int getColCount()
+	{
+		return colCount;
+	}
+
+	/**
+	 * Returns the number of cells of a winning line.
+	 * @return the number of cells of a winning line.
+	 */
+	public int getWinLineLength()
+	{
+		return winLineLength;
+	}
+
+	/**
+	 * Returns the mark value of the player who played first.
+	 * @return the mark value of the player who played first.
+	 */
+	public int getFirstPlayerMark()
+	{
+		return firstPlayerMark;
+	}
+
+	/**
+	 * Returns the mark value of the winner, or 0 if the game is a tie.
+	 * @return the mark value of the winner, or 0 if the game is a tie.
+	 */
+	public int getWinnerMark()
+	{
+		return winnerMark;
+	}
+
+	/**
+	 * Returns the name of the winner, or null if the game is a tie.
+	 * @return the name of the winner, or null if the game is a tie.
+	 */
+	public String getWinnerName()
+	{
+		int index = Arrays.binarySearch(playerMarks, winnerMark);
+
+		return index >= 0 ? playerNames[index] : null;
+	}
+
+	/**
+	 * Returns the number of players of the game.
+	 * @return the number of players of the game.
+	 */
+	public int getPlayerCount()
+	{
+		return playerMarks.length;
+	}
+
+	/**
+	 * Returns the mark value of the player number <code>index</code>.
+	 * The players are sorted by increasing mark value.
+	 * @param index the player index.
+	 * @return the mark value of the player number <code>index</code>.
+	 * @throws IndexOutOfBoundsException if <code>index</code> is not valid.
+	 */
+	public int getPlayerMark(final int index) throws IndexOutOfBoundsException
+	{
+		return playerMarks[index];
+	}
+
+	/**
+	 * Returns the name of the player number <code>index</code>.
+	 * The players are sorted by increasing mark value.
+	 * @param index the player index.
+	 * @return the name of the player number <code>index</code>.
+	 * @throws IndexOutOfBoundsException if <code>index</code> is not valid.
+	 */
+	public String getPlayerName(final int index) throws IndexOutOfBoundsException
+	{
+		return playerNames[index];
+	}
+
+	/**
+	 * Returns the indexes of the played columns, in play order.
+	 * @return the indexes of the played columns.
+	 */
+	public int[] getPlayedColumns()
+	{
+		return columns.clone();
+	}
+
+	/**
+	 * Returns the game model of the game, rebuilt by replaying its plays.
+	 * @return the game model of the game.
+	 * @throws IllegalStateException if a mark of the record is unknown,
+	 * or if the plays of the record are not valid.
+	 */
+	public GameModel toGameModel() throws IllegalStateException
+	{
+		try
+		{
+			GameModel result = new GameModel(rowCount, colCount, winLineLength, getPlayerMarkOf(firstPlayerMark));
+
+			for (int col: columns)
+				result.play(col, result.getCurrentPlayer());
+
+			return result;
+		}
+		catch (RuntimeException e)
+		{
+			throw new IllegalStateException("Invalid game record " + id + " : " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Returns the hashes of the successive positions of the game, as returned
+	 * by <code>GameModel.getPositionHash()</code>. The hash number <code>i</code>
+	 * is the hash of the position after <code>i</code> plays.
+	 * @return the hashes of the successive positions of the game.
+	 * @throws IllegalStateException if the mark of the first player is unknown.
+	 */
+	long[] getPositionHashes() throws IllegalStateException
+	{
+		return GameModel.getPositionHashes(rowCount, colCount, getPlayerMarkOf(firstPlayerMark), columns);
+	}
+
+	/**
+	 * Returns the player mark which has for value <code>markValue</code>.
+	 * @param markValue the mark value.
+	 * @return the player mark which has for value <code>markValue</code>.
+	 * @throws IllegalStateException if there's no such mark.
+	 */
+	static PlayerMark getPlayerMarkOf(final int markValue) throws IllegalStateException
+	{
+		Iterator<PlayerMark> it = PlayerMark.getPlayerIterator();
+
+		while (it.hasNext())
+		{
+			PlayerMark playerMark = it.next();
+
+			if (playerMark.hashCode() == markValue)
+				return playerMark;
+		}
+
+		throw new IllegalStateException("Unknown player mark : " + markValue);
+	}
+
+	/**
+	 * Returns true if the played columns are stored on two bytes,
+	 * false if they are stored on one byte.
+	 * @return true if the played columns are stored on two bytes.
+	 */
+	private boolean hasWideColumns()
+	{
+		return colCount > 256;
+	}
+
+	/**
+	 * Returns an upper bound of the size of the record once written.
+	 * @return an upper bound of the size of the record once written.
+	 */
+	int getMaxSize()
+	{
+		int result = 8 + 5 * 2 + 1 + 4 + columns.length * (hasWideColumns() ? 2 : 1);
+
+		for (String name: playerNames)
+			result += 2 + 2 + name.length() * 3;
+
+		return result;
+	}
+
+	/**
+	 * Writes this record to <code>buffer</code>, without its identifier.
+	 * @param buffer the buffer to write, which must have at least
+	 * <code>getMaxSize()</code> bytes remaining.
+	 */
+	void write(final ByteBuffer buffer)
+	{
+		buffer.putLong(time);
+		buffer.putShort((short) rowCount);
+		buffer.putShort((short) colCount);
+		buffer.putShort((short) winLineLength);
+		buffer.putShort((short) firstPlayerMark);
+		buffer.putShort((short) winnerMark);
+		buffer.put((byte) playerMarks.length);
+
+		for (int i = 0; i < playerMarks.length; i++)
+		{
+			byte[] name = playerNames[i].getBytes(NAME_CHARSET);
+
+			buffer.putShort((short) playerMarks[i]);
+			buffer.putShort((short) name.length);
+			buffer.put(name);
+		}
+
+		buffer.putInt(columns.length);
+
+		for (int col: columns)
+		{
+			if (hasWideColumns())
+				buffer.putShort((short) col);
+			else
+				buffer.put((byte) col);
+		}
+	}
+
+	/**
+	 * Reads a record written by <code>write</code> from <code>buffer</code>.
+	 * @param recordId the record identifier.
+	 * @param buffer the buffer to read.
+	 * @return the record read.
+	 * @throws java.nio.BufferUnderflowException if the record is truncated.
+	 */
+	static GameRecord read(final long recordId, final ByteBuffer buffer)
+	{
+		GameRecord result = new GameRecord(recordId);
+
+		result.time = buffer.getLong();
+		result.rowCount = buffer.getShort() & 0xFFFF;
+		result.colCount = buffer.getShort() & 0xFFFF;
+		result.winLineLength = buffer.getShort() & 0xFFFF;
+		result.firstPlayerMark = buffer.getShort() & 0xFFFF;
+		result.winnerMark = buffer.getShort() & 0xFFFF;
+
+		int playerCount = buffer.get() & 0xFF;
+		result.playerMarks = new int[playerCount];
+		result.playerNames = new String[playerCount];
+
+		for (int i = 0; i < playerCount; i++)
+		{
+			result.playerMarks[i] = buffer.getShort() & 0xFFFF;
+
+			byte[] name = new byte[buffer.getShort() & 0xFFFF];
+			buffer.get(name);
+			result.playerNames[i] = new String(name, NAME_CHARSET);
+		}
+
+		result.columns = new int[buffer.getInt()];
+
+		for (int i = 0; i < result.columns.length; i++)
+			result.columns[i] = result.hasWideColumns() ? buffer.getShort() & 0xFFFF : buffer.get() & 0xFF;
+
+		return result;
+	}
+
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		StringBuilder result = new StringBuilder();
+		result.append("Game ").append(id).append(" ").append(rowCount).append("x").append(colCount);
+
+		for (int i = 0; i < playerMarks.length; i++)
+			result.append(" ").append(playerMarks[i]).append(":").append(playerNames[i]);
+
+		result.append(" winner ").append(winnerMark == 0 ? "none" : String.valueOf(winnerMark));
+		result.append(" plays ").append(Arrays.toString(columns));
+
+		return result.toString();
+	}
+}
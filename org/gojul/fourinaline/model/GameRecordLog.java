@@ -0,0 +1,810 @@
+/*
+ * GameRecordLog.java
+ *
+ * Created: 2026/10/19
+ *
+ * Copyright (C) 2026 Julien Aubin
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.gojul.fourinaline.model;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+/**
+ * The <code>GameRecordLog</code> class is a durable, append-only log of
+ * game records.<br/>
+ * The log is made of segment files stored in a directory, each of which is
+ * named after the identifier of its first record. Every record is preceded by
+ * its length and by a CRC32 checksum, so that a record which has been partially
+ * written when the JVM stopped is detected and dropped when the log is opened.<br/>
+ * The appends are group committed : they are written by a single thread, which
+ * writes all the records appended meanwhile at once and then forces them to the
+ * disk, so that a single <code>fsync</code> is performed for many records. An append
+ * returns once its record is on the disk.<br/>
+ * The records are read through memory-mapped segments, which makes the scans
+ * of the log fast. The log may be read while records are appended. The record
+ * listeners are notified of the appended records once they are on the disk.
+ *
+ * @author Julien Aubin
+ */
+public final class GameRecordLog implements Closeable
+{
+	/**
+	 * The <code>RecordListener</code> interface is notified of the records
+	 * appended to the log.
+	 *
+	 * @author Julien Aubin
+	 */
+	public static interface RecordListener
+	{
+		/**
+		 * Called when the record <code>record</code> has been appended with
+		 * the identifier <code>id</code> and is on the disk, before the append
+		 * returns. This method is called in identifier order by the thread that
+		 * writes the records, so that it must return quickly.
+		 * @param id the record identifier.
+		 * @param record the record appended.
+		 */
+		public void recordAppended(final long id, final GameRecord record);
+	}
+
+	/**
+	 * The default maximum size of a segment, in bytes.
+	 */
+	public final static long DEFAULT_SEGMENT_SIZE = 64L << 20;
+
+	/**
+	 * The magic number of the segments.
+	 */
+	private final static int SEGMENT_MAGIC = 0x46344C47;
+
+	/**
+	 * The version of the segment format.
+	 */
+	private final static int SEGMENT_VERSION = 1;
+
+	/**
+	 * The size of the segment header, i.e. of its magic number and version.
+	 */
+	private final static int SEGMENT_HEADER_SIZE = 8;
+
+	/**
+	 * The size of the record header, i.e. of its length and checksum.
+	 */
+	private final static int RECORD_HEADER_SIZE = 8;
+
+	/**
+	 * The prefix of the segment file names.
+	 */
+	private final static String SEGMENT_PREFIX = "games-";
+
+	/**
+	 * The suffix of the segment file names.
+	 */
+	private final static String SEGMENT_SUFFIX = ".log";
+
+	/**
+	 * The directory of the segments.
+	 */
+	private File directory;
+
+	/**
+	 * The maximum size of a segment.
+	 */
+	private long maxSegmentSize;
+
+	/**
+	 * The channel of the segment being written, or null if there's none yet.
+	 * Only used by the writer thread once the log is open.
+	 */
+	private FileChannel segmentChannel;
+
+	/**
+	 * The size of the segment being written.
+	 */
+	private long segmentSize;
+
+	/**
+	 * The records appended and not written yet, in their binary form.
+	 */
+	private List<ByteBuffer> pendingRecords;
+
+	/**
+	 * The records appended and not written yet.
+	 */
+	private List<GameRecord> pendingGameRecords;
+
+	/**
+	 * The record listeners.
+	 */
+	private List<RecordListener> recordListeners;
+
+	/**
+	 * The identifier of the next appended record.
+	 */
+	private long nextId;
+
+	/**
+	 * The identifier of the last record forced to the disk.
+	 */
+	private long durableId;
+
+	/**
+	 * The error that occurred while writing the records, or null if there's none.
+	 * The log can no longer be appended once an error has occurred.
+	 */
+	private IOException failure;
+
+	/**
+	 * Boolean indicating whether the log is closed.
+	 */
+	private boolean closed;
+
+	/**
+	 * The thread that writes the records.
+	 */
+	private Thread writerThread;
+
+	/**
+	 * Constructor. Opens the log with the default segment size.
+	 * @param logDirectory the directory of the log, which is created
+	 * if it does not exist.
+	 * @throws NullPointerException if <code>logDirectory</code> is null.
+	 * @throws IOException if the log cannot be opened.
+	 */
+	public GameRecordLog(final File logDirectory) throws NullPointerException, IOException
+	{
+		this(logDirectory, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Constructor. The records which have been partially written when
+	 * the log was last closed are dropped.
+	 * @param logDirectory the directory of the log, which is created
+	 * if it does not exist.
+	 * @param segmentSize the maximum size of a segment, in bytes. A record
+	 * larger than this size gets a segment of its own.
+	 * @throws NullPointerException if <code>logDirectory</code> is null.
+	 * @throws IllegalArgumentException if <code>segmentSize</code> is smaller than
+	 * or equal to the segment header size.
+	 * @throws IOException if the log cannot be opened.
+	 */
+	public GameRecordLog(final File logDirectory, final long segmentSize)
+		throws NullPointerException, IllegalArgumentException, IOException
+	{
+		if (logDirectory == null)
+			throw new NullPointerException();
+
+		if (segmentSize <= SEGMENT_HEADER_SIZE)
+			throw new IllegalArgumentException("Invalid segment size : " + segmentSize);
+
+		if (!logDirectory.isDirectory() && !logDirectory.mkdirs())
+			throw new IOException("Cannot create the directory " + logDirectory);
+
+		directory = logDirectory;
+		maxSegmentSize = segmentSize;
+		pendingRecords = new ArrayList<ByteBuffer>();
+		pendingGameRecords = new ArrayList<GameRecord>();
+		recordListeners = new CopyOnWriteArrayList<RecordListener>();
+		failure = null;
+		closed = false;
+
+		recover();
+
+		durableId = nextId - 1;
+
+		writerThread = new DaemonThreadFactory(Executors.defaultThreadFactory(), "GameRecordLog").newThread(new Runnable()
+		{
+			/**
+			 * @see java.lang.Runnable#run()
+			 */
+			public void run()
+			{
+				writeRecords();
+			}
+		});
+		writerThread.start();
+	}
+
+	/**
+	 * Returns the segment files of the directory <code>logDirectory</code>,
+	 * sorted by identifier of their first record.
+	 * @param logDirectory the directory of the log.
+	 * @return the segment files of the directory.
+	 */
+	private static File[] listSegments(final File logDirectory)
+	{
+		File[] result = logDirectory.listFiles(new FileFilter()
+		{
+			/**
+			 * @see java.io.FileFilter#accept(java.io.File)
+			 */
+			public boolean accept(final File file)
+			{
+				return file.getName().startsWith(SEGMENT_PREFIX) && file.getName().endsWith(SEGMENT_SUFFIX);
+			}
+		});
+
+		if (result == null)
+			return new File[0];
+
+		// The identifiers are padded, so that the names are sorted like them.
+		Arrays.sort(result);
+
+		return result;
+	}
+
+	/**
+	 * Returns the identifier of the first record of the segment <code>segment</code>.
+	 * @param segment the segment file.
+	 * @return the identifier of the first record of the segment.
+	 */
+	private static long getFirstId(final File segment)
+	{
+		String name = segment.getName();
+
+		return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+	}
+
+	/**
+	 * Returns the length of the record which starts at the position of
+	 * <code>buffer</code>, i.e. the length of its identifier and content,
+	 * or -1 if there's no valid record at this position.
+	 * @param buffer the buffer to consider.
+	 * @param checksum the checksum used to check the record.
+	 * @param scratch a scratch array, which is replaced by a larger one if
+	 * it is too small to contain the record.
+	 * @return the length of the record, or -1 if there's no valid record.
+	 */
+	private static int getRecordLength(final ByteBuffer buffer, final CRC32 checksum, final byte[][] scratch)
+	{
+		int position = buffer.position();
+
+		if (buffer.limit() - position < RECORD_HEADER_SIZE + 8)
+			return -1;
+
+		int length = buffer.getInt(position);
+
+		if (length < 8 || length > buffer.limit() - position - RECORD_HEADER_SIZE)
+			return -1;
+
+		if (scratch[0].length < length)
+			scratch[0] = new byte[Math.max(length, 2 * scratch[0].length)];
+
+		ByteBuffer content = buffer.duplicate();
+		content.position(position + RECORD_HEADER_SIZE);
+		content.get(scratch[0], 0, length);
+
+		checksum.reset();
+		checksum.update(scratch[0], 0, length);
+
+		return (int) checksum.getValue() == buffer.getInt(position + 4) ? length : -1;
+	}
+
+	/**
+	 * Opens the last segment of the log, drops its partially written records
+	 * and computes the identifier of the next record.
+	 * @throws IOException if an I/O error occurs or if the last segment is not valid.
+	 */
+	private void recover() throws IOException
+	{
+		File[] segments = listSegments(directory);
+
+		nextId = 1;
+
+		if (segments.length == 0)
+			return;
+
+		File segment = segments[segments.length - 1];
+		RandomAccessFile file = new RandomAccessFile(segment, "rw");
+
+		try
+		{
+			FileChannel channel = file.getChannel();
+
+			// The segment is read in the heap, since a mapped
+			// file cannot be truncated on every platform.
+			ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+
+			while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) >= 0)
+				;
+
+			buffer.flip();
+
+			// The header of a segment is forced with its first records,
+			// so that a segment without header has no record.
+			if (buffer.limit() < SEGMENT_HEADER_SIZE)
+			{
+				file.close();
+
+				if (!segment.delete())
+					throw new IOException("Cannot delete the empty segment " + segment);
+
+				recover();
+				return;
+			}
+
+			if (buffer.getInt() != SEGMENT_MAGIC || buffer.getInt() != SEGMENT_VERSION)
+				throw new IOException("Invalid segment " + segment);
+
+			nextId = getFirstId(segment);
+
+			CRC32 checksum = new CRC32();
+			byte[][] scratch = new byte[][] {new byte[256]};
+			int length;
+
+			while ((length = getRecordLength(buffer, checksum, scratch)) >= 0)
+			{
+				nextId = buffer.getLong(buffer.position() + RECORD_HEADER_SIZE) + 1;
+				buffer.position(buffer.position() + RECORD_HEADER_SIZE + length);
+			}
+
+			// The records after the first invalid one have not been
+			// acknowledged, since the records are written in order.
+			channel.truncate(buffer.position());
+			channel.force(true);
+			channel.position(buffer.position());
+
+			segmentChannel = channel;
+			segmentSize = buffer.position();
+		}
+		catch (IOException e)
+		{
+			file.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Creates a new segment whose first record has for identifier <code>firstId</code>,
+	 * after having closed the current one.
+	 * @param firstId the identifier of the first record of the segment.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	private void openSegment(final long firstId) throws IOException
+	{
+		if (segmentChannel != null)
+			segmentChannel.close();
+
+		String name = SEGMENT_PREFIX + String.format("%020d", Long.valueOf(firstId)) + SEGMENT_SUFFIX;
+		segmentChannel = new RandomAccessFile(new File(directory, name), "rw").getChannel();
+		segmentChannel.truncate(0);
+
+		ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+		header.putInt(SEGMENT_MAGIC);
+		header.putInt(SEGMENT_VERSION);
+		header.flip();
+
+		while (header.hasRemaining())
+			segmentChannel.write(header);
+
+		segmentSize = SEGMENT_HEADER_SIZE;
+	}
+
+	/**
+	 * Appends the record <code>record</code> to the log, and waits until it
+	 * is on the disk.
+	 * @param record the record to append.
+	 * @return the identifier of the record in the log.
+	 * @throws NullPointerException if <code>record</code> is null.
+	 * @throws IOException if the log is closed or if the record cannot be written.
+	 */
+	public long append(final GameRecord record) throws NullPointerException, IOException
+	{
+		if (record == null)
+			throw new NullPointerException();
+
+		ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + 8 + record.getMaxSize());
+		buffer.position(RECORD_HEADER_SIZE + 8);
+		record.write(buffer);
+		buffer.flip();
+
+		long result;
+
+		synchronized (this)
+		{
+			if (closed)
+				throw new IOException("The log is closed");
+
+			if (failure != null)
+				throw failure;
+
+			// The identifier is set under the lock so that
+			// the records are written in identifier order.
+			result = nextId++;
+			buffer.putLong(RECORD_HEADER_SIZE, result);
+
+			CRC32 checksum = new CRC32();
+			checksum.update(buffer.array(), RECORD_HEADER_SIZE, buffer.limit() - RECORD_HEADER_SIZE);
+			buffer.putInt(0, buffer.limit() - RECORD_HEADER_SIZE);
+			buffer.putInt(4, (int) checksum.getValue());
+
+			pendingRecords.add(buffer);
+			pendingGameRecords.add(record);
+			notifyAll();
+
+			try
+			{
+				while (durableId < result && failure == null)
+					wait();
+			}
+			catch (InterruptedException e)
+			{
+				// The record is written anyway, and its listeners are notified.
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			}
+
+			if (durableId < result)
+				throw failure;
+		}
+
+		return result;
+	}
+
+	/**
+	 * Writes the appended records until the log is closed.
+	 */
+	private void writeRecords()
+	{
+		while (true)
+		{
+			List<ByteBuffer> batch;
+			List<GameRecord> batchRecords;
+			long firstId;
+
+			synchronized (this)
+			{
+				try
+				{
+					while (pendingRecords.isEmpty() && !closed)
+						wait();
+				}
+				catch (InterruptedException e)
+				{
+					// The writer thread is never interrupted.
+				}
+
+				if (pendingRecords.isEmpty())
+					return;
+
+				batch = pendingRecords;
+				batchRecords = pendingGameRecords;
+				pendingRecords = new ArrayList<ByteBuffer>();
+				pendingGameRecords = new ArrayList<GameRecord>();
+				firstId = durableId + 1;
+			}
+
+			IOException error = null;
+
+			try
+			{
+				writeBatch(batch, firstId);
+			}
+			catch (IOException e)
+			{
+				error = e;
+			}
+
+			// The listeners are notified before the appends are acknowledged,
+			// so that the appending threads see the effects of their records.
+			if (error == null)
+			{
+				for (RecordListener listener: recordListeners)
+				{
+					for (int i = 0; i < batchRecords.size(); i++)
+					{
+						try
+						{
+							listener.recordAppended(firstId + i, batchRecords.get(i));
+						}
+						catch (RuntimeException e)
+						{
+							e.printStackTrace();
+						}
+					}
+				}
+			}
+
+			synchronized (this)
+			{
+				if (error == null)
+					durableId = firstId + batch.size() - 1;
+				else
+					failure = error;
+
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Writes the records <code>batch</code> and forces them to the disk.
+	 * @param batch the records to write.
+	 * @param firstId the identifier of the first record.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	private void writeBatch(final List<ByteBuffer> batch, final long firstId) throws IOException
+	{
+		long batchSize = 0;
+
+		for (ByteBuffer buffer: batch)
+			batchSize += buffer.remaining();
+
+		if (segmentChannel == null || (segmentSize + batchSize > maxSegmentSize && segmentSize > SEGMENT_HEADER_SIZE))
+			openSegment(firstId);
+
+		ByteBuffer[] buffers = batch.toArray(new ByteBuffer[batch.size()]);
+		long written = 0;
+
+		while (written < batchSize)
+			written += segmentChannel.write(buffers);
+
+		// The metadata are forced too, since the size of the segment changes.
+		segmentChannel.force(true);
+		segmentSize += batchSize;
+	}
+
+	/**
+	 * Adds the record listener <code>listener</code>. The listener is notified
+	 * of the records which are on the disk after this call, and possibly of some
+	 * records which are on the disk before.
+	 * @param listener the listener to add.
+	 * @throws NullPointerException if <code>listener</code> is null.
+	 */
+	public void addRecordListener(final RecordListener listener) throws NullPointerException
+	{
+		if (listener == null)
+			throw new NullPointerException();
+
+		recordListeners.add(listener);
+	}
+
+	/**
+	 * Removes the record listener <code>listener</code>.
+	 * @param listener the listener to remove.
+	 */
+	public void removeRecordListener(final RecordListener listener)
+	{
+		recordListeners.remove(listener);
+	}
+
+	/**
+	 * Returns the identifier of the last record on the disk, or 0
+	 * if the log is empty.
+	 * @return the identifier of the last record on the disk.
+	 */
+	public synchronized long getLastId()
+	{
+		return durableId;
+	}
+
+	/**
+	 * Returns an iterator over the records of the log whose identifier is
+	 * greater than or equal to <code>fromId</code>, in identifier order.<br/>
+	 * The iterator reads the records through memory-mapped segments. It may
+	 * return the records appended after its creation, but not necessarily.
+	 * @param fromId the identifier of the first record to read.
+	 * @return an iterator over the records of the log.
+	 */
+	public Iterator<GameRecord> read(final long fromId)
+	{
+		File[] segments = listSegments(directory);
+		int firstSegment = 0;
+
+		// The first segment read is the last one that starts
+		// before the first record to read.
+		while (firstSegment < segments.length - 1 && getFirstId(segments[firstSegment + 1]) <= fromId)
+			firstSegment++;
+
+		return new RecordIterator(Arrays.asList(segments).subList(firstSegment, segments.length), fromId);
+	}
+
+	/**
+	 * Closes the log once the records appended so far are written.
+	 * @throws IOException if the last segment cannot be closed.
+	 * @see java.io.Closeable#close()
+	 */
+	public void close() throws IOException
+	{
+		synchronized (this)
+		{
+			if (closed)
+				return;
+
+			closed = true;
+			notifyAll();
+		}
+
+		try
+		{
+			writerThread.join();
+		}
+		catch (InterruptedException e)
+		{
+			throw new RuntimeException(e);
+		}
+
+		if (segmentChannel != null)
+			segmentChannel.close();
+	}
+
+	/**
+	 * The <code>RecordIterator</code> class iterates over the records
+	 * of memory-mapped segments.
+	 *
+	 * @author Julien Aubin
+	 */
+	private final static class RecordIterator implements Iterator<GameRecord>
+	{
+		/**
+		 * The segments to read.
+		 */
+		private Iterator<File> segments;
+
+		/**
+		 * The identifier of the first record to return.
+		 */
+		private long fromId;
+
+		/**
+		 * The mapped segment being read, or null if there's none.
+		 */
+		private MappedByteBuffer buffer;
+
+		/**
+		 * The checksum used to check the records.
+		 */
+		private CRC32 checksum;
+
+		/**
+		 * The scratch array used to check the records.
+		 */
+		private byte[][] scratch;
+
+		/**
+		 * The next record, or null if it has not been read yet.
+		 */
+		private GameRecord nextRecord;
+
+		/**
+		 * Constructor.
+		 * @param segmentFiles the segments to read.
+		 * @param firstId the identifier of the first record to return.
+		 */
+		private RecordIterator(final List<File> segmentFiles, final long firstId)
+		{
+			segments = new ArrayList<File>(segmentFiles).iterator();
+			fromId = firstId;
+			buffer = null;
+			checksum = new CRC32();
+			scratch = new byte[][] {new byte[256]};
+			nextRecord = null;
+		}
+
+		/**
+		 * Maps the segment <code>segment</code>.
+		 * @param segment the segment to map.
+		 * @return the mapped segment, positioned after its header, or null
+		 * if the segment is not valid.
+		 * @throws IOException if an I/O error occurs.
+		 */
+		private static MappedByteBuffer map(final File segment) throws IOException
+		{
+			RandomAccessFile file = new RandomAccessFile(segment, "r");
+
+			try
+			{
+				// The mapping stays valid once the file is closed.
+				MappedByteBuffer result = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+
+				if (result.limit() < SEGMENT_HEADER_SIZE || result.getInt() != SEGMENT_MAGIC || result.getInt() != SEGMENT_VERSION)
+					return null;
+
+				return result;
+			}
+			finally
+			{
+				file.close();
+			}
+		}
+
+		/**
+		 * @see java.util.Iterator#hasNext()
+		 */
+		public boolean hasNext()
+		{
+			while (nextRecord == null)
+			{
+				if (buffer == null)
+				{
+					if (!segments.hasNext())
+						return false;
+
+					try
+					{
+						buffer = map(segments.next());
+					}
+					catch (IOException e)
+					{
+						throw new IllegalStateException(e);
+					}
+
+					continue;
+				}
+
+				int length = getRecordLength(buffer, checksum, scratch);
+
+				// The end of the segment, or its partially written records.
+				if (length < 0)
+				{
+					buffer = null;
+					continue;
+				}
+
+				long id = buffer.getLong(buffer.position() + RECORD_HEADER_SIZE);
+				int next = buffer.position() + RECORD_HEADER_SIZE + length;
+
+				if (id >= fromId)
+				{
+					buffer.position(buffer.position() + RECORD_HEADER_SIZE + 8);
+					nextRecord = GameRecord.read(id, buffer);
+				}
+
+				buffer.position(next);
+			}
+
+			return true;
+		}
+
+		/**
+		 * @see java.util.Iterator#next()
+		 */
+		public GameRecord next()
+		{
+			if (!hasNext())
+				throw new NoSuchElementException();
+
+			GameRecord result = nextRecord;
+			nextRecord = null;
+
+			return result;
+		}
+
+		/**
+		 * @see java.util.Iterator#remove()
+		 */
+		public void remove()
+		{
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * GameRecordPlayerProvider.java
+ *
+ * Created: 2026/10/19
+ *
+ * Copyright (C) 2026 Julien Aubin
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.gojul.fourinaline.model;
+
+import java.io.IOException;
+import java.util.Set;
+
+import org.gojul.fourinaline.model.GameModel.PlayerMark;
+
+/**
+ * The <code>GameRecordPlayerProvider</code> class is a game player provider
+ * that appends every finished game to a game record log, so that the games
+ * survive the restarts of the server.<br/>
+ * The games are stored once they are on the disk. Since the appends of the
+ * log are group committed, the servers whose games end at the same time
+ * share the same disk writes.<br/>
+ * The stored games also update the ratings of their players, if the provider
+ * has a rating service. The players are then provided with their rating.
+ *
+ * @author Julien Aubin
+ */
+final class GameRecordPlayerProvider implements GamePlayerProvider
+{
+	/**
+	 * The class serial version UID.
+	 */
+	final static long serialVersionUID = 1L;
+
+	/**
+	 * The system property that gives the directory of the game record log
+	 * of the global server. The games are not recorded if it is not set.
+	 */
+	final static String DIRECTORY_PROPERTY = "org.gojul.fourinaline.gameRecordDirectory";
+
+	/**
+	 * The log of the games. The provider is not meant to be
+	 * serialized along with its log.
+	 */
+	private transient GameRecordLog recordLog;
+
+	/**
+	 * The rating service of the players, or null if the players are not rated.
+	 */
+	private transient RatingService ratingService;
+
+	/**
+	 * Constructor.
+	 * @param log the log of the games.
+	 * @param ratings the rating service of the players, or null if the
+	 * players are not rated.
+	 * @throws NullPointerException if <code>log</code> is null.
+	 */
+	GameRecordPlayerProvider(final GameRecordLog log, final RatingService ratings) throws NullPointerException
+	{
+		if (log == null)
+			throw new NullPointerException();
+
+		recordLog = log;
+		ratingService = ratings;
+	}
+
+	/**
+	 * @see org.gojul.fourinaline.model.GamePlayerProvider#getGamePlayer(java.lang.String, org.gojul.fourinaline.model.GameModel.PlayerMark)
+	 */
+	public GamePlayer getGamePlayer(final String name, final PlayerMark playerMark) throws NullPointerException, RuntimeException
+	{
+		if (name == null || playerMark == null)
+			throw new NullPointerException();
+
+		if (ratingService == null)
+			return new GamePlayerImpl(name, playerMark);
+		else
+			return new GamePlayerImpl(name, playerMark, 0, ratingService.getRating(name));
+	}
+
+	/**
+	 * @see org.gojul.fourinaline.model.GamePlayerProvider#storeGame(org.gojul.fourinaline.model.GamePlayer, java.util.Set, org.gojul.fourinaline.model.GameModel)
+	 */
+	public void storeGame(final GamePlayer winner, final Set<GamePlayer> gamePlayers, final GameModel gameModel) throws NullPointerException, RuntimeException
+	{
+		if (gamePlayers == null || gameModel == null)
+			throw new NullPointerException();
+
+		GameRecord record = new GameRecord(gameModel, winner, gamePlayers);
+
+		try
+		{
+			recordLog.append(record);
+		}
+		catch (IOException e)
+		{
+			throw new RuntimeException("Cannot store the game", e);
+		}
+
+		// The rating service has taken the game into account, since
+		// the log notifies its listeners before the append returns.
+		if (ratingService != null)
+		{
+			// The given players get their new rating, which the
+			// server gives to its own players once the game is stored.
+			for (GamePlayer player: gamePlayers)
+			{
+				if (player instanceof GamePlayerImpl)
+					((GamePlayerImpl) player).setRating(ratingService.getRating(player.getName()));
+			}
+		}
+	}
+
+	/**
+	 * @see org.gojul.fourinaline.model.GamePlayerProvider#releasePlayer(java.lang.String)
+	 */
+	public void releasePlayer(final String name) throws NullPointerException, RuntimeException
+	{
+		if (name == null)
+			throw new NullPointerException();
+	}
+}
@@ -37,7 +37,9 @@ import org.gojul.fourinaline.model.GameModel.PlayerMark;
  * It has been designed to be used with RMI, and the clients
  * use it as an RMI server. However it is very easy to adapt the
  * main programs and GUI to that the server is no longer used as an RMI
- * server but as a local server instead.
+ * server but as a local server instead.<br/>
+ * Any method may throw a <code>ServerBusyException</code> if the server rejects
+ * the call because its client calls the server too often.
  * 
  * @author Julien Aubin
  */
@@ -84,6 +86,25 @@ public interface GameServer extends Remote, Serializable
 		{
 			ticketValue = ticketRandom.nextLong();
 		}
+		
+		/**
+		 * Constructor. Used by the transports that do not rely
+		 * on serialization in order to rebuild the tickets they receive.
+		 * @param value the ticket value.
+		 */
+		ServerTicket(final long value)
+		{
+			ticketValue = value;
+		}
+		
+		/**
+		 * Returns the ticket value.
+		 * @return the ticket value.
+		 */
+		long getTicketValue()
+		{
+			return ticketValue;
+		}
 
 		/**
 		 * @see java.lang.Object#equals(java.lang.Object)
@@ -131,6 +152,30 @@ public interface GameServer extends Remote, Serializable
 		}
 	}
 	
+	/**
+	 * Exception thrown when the server rejects a call, because the client
+	 * calls the server too often or because the server is overloaded.
+	 * The call may be retried later.
+	 * 
+	 * @author Julien Aubin
+	 */
+	public final static class ServerBusyException extends RuntimeException
+	{
+		/**
+		 * The serial version UID.
+		 */
+		final static long serialVersionUID = 1;
+		
+		/**
+		 * Constructor.
+		 * @param message the message to display.
+		 */
+		protected ServerBusyException(final String message)
+		{
+			super(message);
+		}
+	}
+	
 	/**
 	 * Exception thrown when there are error dealing with player registering
 	 * and unregistering.
@@ -218,6 +263,58 @@ public interface GameServer extends Remote, Serializable
 		
 	}
 	
+	/**
+	 * The <code>GameVersion</code> class decodes and encodes the versions of
+	 * the games of a server. A game version contains the number of the game,
+	 * incremented by the server for every new game, in its 32 upper bits, and
+	 * the number of plays of the game in its 32 lower bits. Thus the versions
+	 * of a given game grow with its plays.
+	 *
+	 * @author Julien Aubin
+	 */
+	public final static class GameVersion
+	{
+		/**
+		 * Constructor. This class is not to be instanciated.
+		 */
+		private GameVersion()
+		{
+			
+		}
+		
+		/**
+		 * Returns the game version of the game number <code>gameNumber</code>
+		 * after <code>playCount</code> plays.
+		 * @param gameNumber the game number.
+		 * @param playCount the number of plays.
+		 * @return the game version.
+		 */
+		public final static long getVersion(final int gameNumber, final int playCount)
+		{
+			return ((long) gameNumber << 32) | (playCount & 0xFFFFFFFFL);
+		}
+		
+		/**
+		 * Returns the game number of the game version <code>version</code>.
+		 * @param version the game version.
+		 * @return the game number.
+		 */
+		public final static int getGameNumber(final long version)
+		{
+			return (int) (version >> 32);
+		}
+		
+		/**
+		 * Returns the number of plays of the game version <code>version</code>.
+		 * @param version the game version.
+		 * @return the number of plays.
+		 */
+		public final static int getPlayCount(final long version)
+		{
+			return (int) version;
+		}
+	}
+	
 	/**
 	 * Returns a server ticket used in order to send orders.
 	 * @return a server ticket used in order to send orders.
@@ -274,6 +371,31 @@ public interface GameServer extends Remote, Serializable
 	 */
 	public boolean isGameRunning() throws RemoteException;
 	
+	/**
+	 * Returns the version of the server state. The version is incremented every
+	 * time a game is started or ended, a play is done, or a player registers or
+	 * leaves the server.
+	 * @return the version of the server state.
+	 * @throws RemoteException if a RMI exception occurs.
+	 */
+	public long getStateVersion() throws RemoteException;
+	
+	/**
+	 * Waits until the version of the server state becomes greater than
+	 * <code>sinceVersion</code>, or until <code>timeout</code> milliseconds
+	 * have elapsed.<br/>
+	 * This method must be used by the clients that wait for a change of the
+	 * server state, for instance a new game, instead of polling the server.
+	 * @param sinceVersion the last version of the server state known by the client.
+	 * @param timeout the maximum time to wait in milliseconds.
+	 * @return the current version of the server state, which is still equal to
+	 * <code>sinceVersion</code> if the timeout has elapsed.
+	 * @throws IllegalArgumentException if <code>timeout</code> is smaller or equal to 0.
+	 * @throws RuntimeException if the waiting thread is interrupted.
+	 * @throws RemoteException if a RMI exception occurs.
+	 */
+	public long awaitStateChange(final long sinceVersion, final long timeout) throws IllegalArgumentException, RuntimeException, RemoteException;
+	
 	/**
 	 * Returns all the game players. The order in which the
 	 * players are returned is always the same.
@@ -334,6 +456,38 @@ public interface GameServer extends Remote, Serializable
 	 */
 	public GameModel getGame(final PlayerMark playerMark, final ServerTicket serverTicket) throws NullPointerException, ServerTicketException, RuntimeException, RemoteException;
 	
+	/**
+	 * Returns the version of the current game, or -1 if there's no current game.
+	 * @return the version of the current game, or -1 if there's no current game.
+	 * @throws RemoteException if a remote exception occurs.
+	 * @see GameVersion
+	 */
+	public long getGameVersion() throws RemoteException;
+	
+	/**
+	 * Returns the indexes of the columns played in the current game since its version
+	 * <code>sinceVersion</code>, in play order. This method is synchronous, like the
+	 * <code>getGame</code> method, and only returns when it's up to the player which has
+	 * for mark <code>playerMark</code> to play, or when the game is over.<br/>
+	 * The clients apply the columns to their copy of the game model, which avoids
+	 * transfering the whole game model for every play.
+	 * @param playerMark the mark of the player which requests the plays.
+	 * @param serverTicket the ticket of the calling client.
+	 * @param sinceVersion the game version of the copy of the game model of the client.
+	 * @return the indexes of the columns played since <code>sinceVersion</code>, or null
+	 * if there's no current game or if <code>sinceVersion</code> is not a version of the
+	 * current game. In that case the client must get the whole game with the
+	 * <code>getGame</code> method.
+	 * @throws NullPointerException if any of the method parameter is null.
+	 * @throws ServerTicketException if <code>serverTicket</code>
+	 * is not valid.
+	 * @throws RuntimeException if an unexpected error occurs.
+	 * @throws RemoteException if a remote exception occurs.
+	 * @see GameVersion
+	 */
+	public int[] getMovesSince(final PlayerMark playerMark, final ServerTicket serverTicket, final long sinceVersion)
+		throws NullPointerException, ServerTicketException, RuntimeException, RemoteException;
+	
 	/**
 	 * Notifies the game server of play at the column <code>colIndex</code>.
 	 * Gives the hand to the next player if the play is successful.
@@ -351,4 +505,32 @@ public interface GameServer extends Remote, Serializable
 	 * the game.
 	 */
 	public void play(final int colIndex, final PlayerMark playerMark, final GameModel clientGameModel, final ServerTicket serverTicket) throws NullPointerException, RemoteException, ServerTicketException, GameModelException;
+	
+	/**
+	 * Plays at the column <code>colIndex</code>, then waits until it's up to the player
+	 * which has for mark <code>playerMark</code> to play again, or until the game is over.
+	 * This method has the same effect as a call to the <code>play</code> method followed by
+	 * a call to the <code>getMovesSince</code> method, but in a single call.<br/>
+	 * The play is only performed if <code>gameVersion</code> is the latest version of the
+	 * current game, which replaces the comparison of the game models of the <code>play</code>
+	 * method.
+	 * @param colIndex the index of the column that is played.
+	 * @param playerMark the mark of the player which plays.
+	 * @param gameVersion the game version of the copy of the game model of the client.
+	 * @param serverTicket the ticket of the calling client.
+	 * @return the indexes of the columns played since <code>gameVersion</code>, starting
+	 * with the column played by the player, or null if <code>gameVersion</code> is not the
+	 * latest version of the current game. In that case nothing is played and the client
+	 * must get the whole game with the <code>getGame</code> method.
+	 * @throws GameModelException if the attempted play at the
+	 * column number <code>colIndex</code> is not valid.
+	 * @throws ServerTicketException if <code>serverTicket</code>
+	 * is not valid.
+	 * @throws NullPointerException if any of the method parameter is null.
+	 * @throws RuntimeException if an unexpected error occurs.
+	 * @throws RemoteException if a remote exception occurs.
+	 * @see GameVersion
+	 */
+	public int[] playAndAwaitTurn(final int colIndex, final PlayerMark playerMark, final long gameVersion, final ServerTicket serverTicket)
+		throws NullPointerException, RemoteException, ServerTicketException, GameModelException, RuntimeException;
 }
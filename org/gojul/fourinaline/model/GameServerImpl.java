@@ -21,24 +21,31 @@
  */
 package org.gojul.fourinaline.model;
 
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
 import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
-import java.rmi.server.UnicastRemoteObject;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Observable;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Semaphore;
-
-import javax.swing.Timer;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.gojul.fourinaline.model.GameModel.GameModelException;
 import org.gojul.fourinaline.model.GameModel.GameStatus;
@@ -50,12 +57,18 @@ import org.gojul.fourinaline.model.GameModel.PlayerMark;
  * This implementation is completely synchronous, i.e. it does not need
  * to use the callback pattern. Each client gets the game when it's up
  * to them to play.<br/>
+ * The server state is only modified by one thread at a time, which holds
+ * the server monitor. Every modification publishes an immutable snapshot
+ * of the state, from which the methods that only read the state, like
+ * <code>isGameRunning()</code> or <code>getPlayers()</code>, are served
+ * without locking : a client that polls the server never waits for
+ * another client to play, and the writers never wait for the readers.<br/>
  * <br/>
  * This server extends the <code>Observable</code> class in order
  * 
  * @author Julien Aubin
  */
-public final class GameServerImpl extends Observable implements GameServer, ActionListener
+public final class GameServerImpl extends Observable implements GameServer
 {
 	
 	/**
@@ -63,6 +76,136 @@ public final class GameServerImpl extends Observable implements GameServer, Acti
 	 */
 	final static long serialVersionUID = 1L;
 	
+	/**
+	 * The system property that contains the delay in seconds after which a game
+	 * server is released if none of its tickets has been used. The default
+	 * delay is 30 minutes.
+	 */
+	public final static String GAME_TIMEOUT_PROPERTY = "org.gojul.fourinaline.gameTimeout";
+	
+	/**
+	 * The system property that contains the delay in seconds after which a ticket
+	 * that has not been used is released, like the ticket of a client that has crashed.
+	 * The tickets are not released by default. This delay must be longer than the
+	 * time a player may think about their play.
+	 */
+	public final static String TICKET_LEASE_PROPERTY = "org.gojul.fourinaline.ticketLease";
+	
+	/**
+	 * The number of threads that store the games which are over. Since the game
+	 * record log writes the games appended meanwhile at once, a few threads are
+	 * enough to keep the disk busy.
+	 */
+	private final static int GAME_STORAGE_THREAD_COUNT = 4;
+	
+	/**
+	 * The maximum number of games which wait to be stored by each
+	 * game storage thread.
+	 */
+	private final static int GAME_STORAGE_QUEUE_SIZE = 1024;
+	
+	/**
+	 * The executors that store the games which are over, for all the game servers.<br/>
+	 * The games are stored outside of the server monitor, since storing a game
+	 * may wait for the disk. The games of a server are always stored by the same
+	 * single threaded executor, so that they are stored and their ratings published
+	 * in the order in which they have ended. When the queue of an executor is full,
+	 * i.e. when the disk can't keep up, the server which ends a game stores it itself,
+	 * which slows it down instead of letting the pending games pile up. This game may
+	 * then be stored before the pending ones, but every published rating has been read
+	 * after the game that publishes it has been stored.
+	 */
+	private final static ExecutorService[] gameStorageExecutors = newGameStorageExecutors();
+	
+	/**
+	 * The <code>ServerSnapshot</code> class is an immutable snapshot of the
+	 * server state, as returned to the clients.<br/>
+	 * A snapshot is never modified once it has been published.
+	 *
+	 * @author Julien Aubin
+	 */
+	final static class ServerSnapshot
+	{
+		/**
+		 * The copy of the game model, or null if there's no game.
+		 */
+		private final GameModel gameModel;
+		
+		/**
+		 * The copies of the players registered on the server.
+		 */
+		private final Set<GamePlayer> players;
+		
+		/**
+		 * Boolean that indicates whether the game is running or not.
+		 */
+		private final boolean isGameRunning;
+		
+		/**
+		 * The game version, or -1 if there's no game.
+		 */
+		private final long gameVersion;
+		
+		/**
+		 * Constructor.
+		 * @param model the game model, which is copied, or null if there's no game.
+		 * @param gamePlayers the players registered on the server, which are copied
+		 * since their score and rating change afterwards.
+		 * @param gameNumber the number of the game.
+		 */
+		private ServerSnapshot(final GameModel model, final Collection<GamePlayer> gamePlayers, final int gameNumber)
+		{
+			Set<GamePlayer> playerSet = new LinkedHashSet<GamePlayer>();
+			
+			for (GamePlayer player: gamePlayers)
+				playerSet.add(new UnmodifiableGamePlayer(new GamePlayerImpl(player.getName(), player.getPlayerMark(),
+					player.getScore(), player.getRating())));
+			
+			players = Collections.unmodifiableSet(playerSet);
+			
+			if (model == null)
+			{
+				gameModel = null;
+				isGameRunning = false;
+				gameVersion = -1;
+			}
+			else
+			{
+				gameModel = new GameModel(model);
+				isGameRunning = model.getGameStatus().equals(GameStatus.CONTINUE_STATUS);
+				gameVersion = GameVersion.getVersion(gameNumber, model.getPlayCount());
+			}
+		}
+		
+		/**
+		 * Returns the game model of the snapshot, or null if there's no game.
+		 * This game model must not be modified.
+		 * @return the game model of the snapshot, or null if there's no game.
+		 */
+		GameModel getGameModel()
+		{
+			return gameModel;
+		}
+		
+		/**
+		 * Returns true if the game of the snapshot is running, false elsewhere.
+		 * @return true if the game of the snapshot is running, false elsewhere.
+		 */
+		boolean isGameRunning()
+		{
+			return isGameRunning;
+		}
+		
+		/**
+		 * Returns the game version of the snapshot, or -1 if there's no game.
+		 * @return the game version of the snapshot, or -1 if there's no game.
+		 */
+		long getGameVersion()
+		{
+			return gameVersion;
+		}
+	}
+	
 	/**
 	 * The game model used.
 	 */
@@ -121,11 +264,60 @@ public final class GameServerImpl extends Observable implements GameServer, Acti
 	private GamePlayerProvider gamePlayerProvider;
 	
 	/**
-	 * The timer that notifies the global server repository that the game
-	 * must be ended. It is reset every time a player plays.<br/>
-	 * It has a 30 minute delay.
+	 * The timeout that notifies the global server repository that the game
+	 * must be ended. It is reset every time a ticket is used.
 	 */
-	private Timer timeoutTimer;
+	private HashedWheelTimer.Timeout idleTimeout;
+	
+	/**
+	 * The ticket lease delay in milliseconds, or 0 if the tickets
+	 * are not released when they are not used.
+	 */
+	private long ticketLeaseDelay;
+	
+	/**
+	 * The map that ties a used server ticket to its lease timeout.
+	 */
+	private Map<ServerTicket, HashedWheelTimer.Timeout> ticketLeases;
+	
+	/**
+	 * The version of the server state.
+	 */
+	private long stateVersion;
+	
+	/**
+	 * The lock that guards the version of the server state.<br/>
+	 * The clients wait for a change of the server state on a condition of this lock
+	 * instead of the server monitor, which does not block the carrier thread when the
+	 * waiting threads are virtual threads.
+	 */
+	private Lock stateLock;
+	
+	/**
+	 * The condition signalled every time the server state changes.
+	 */
+	private Condition stateChangeCondition;
+	
+	/**
+	 * The number of the current game.
+	 */
+	private int gameNumber;
+	
+	/**
+	 * The listeners notified every time the server state changes.
+	 */
+	private List<Runnable> stateChangeListeners;
+	
+	/**
+	 * The latest published snapshot of the server state.
+	 */
+	private volatile ServerSnapshot snapshot;
+	
+	/**
+	 * The journal that saves the server state every time it changes,
+	 * or null if the state is not saved.
+	 */
+	private ServerStateJournal stateJournal;
 	
 	/**
 	 * Constructor.
@@ -170,8 +362,19 @@ public final class GameServerImpl extends Observable implements GameServer, Acti
 		gamePlayerProvider = playerProvider;
 		serverName = name;
 		
-		// The timer has a 30 minute delay.
-		timeoutTimer = new Timer(30 * 60 * 1000, this);
+		// The timeouts are checked by a timer shared by all the game servers.
+		idleTimeout = HashedWheelTimer.getInstance().newTimeout(new Runnable()
+		{
+			/**
+			 * @see java.lang.Runnable#run()
+			 */
+			public void run()
+			{
+				idleTimeoutExpired();
+			}
+		}, Long.getLong(GAME_TIMEOUT_PROPERTY, 30 * 60).longValue() * 1000);
+		ticketLeaseDelay = Long.getLong(TICKET_LEASE_PROPERTY, 0).longValue() * 1000;
+		ticketLeases = new HashMap<ServerTicket, HashedWheelTimer.Timeout>();
 		
 		players = new LinkedHashMap<String, GamePlayer>();
 		// We use a map there that is thread safe.
@@ -181,6 +384,10 @@ public final class GameServerImpl extends Observable implements GameServer, Acti
 		usedTickets = new HashMap<ServerTicket, String>();
 		usedPlayerMarks = new HashSet<PlayerMark>();
 		gameOwnerPlayerName = null;
+		stateChangeListeners = new CopyOnWriteArrayList<Runnable>();
+		stateLock = new ReentrantLock();
+		stateChangeCondition = stateLock.newCondition();
+		snapshot = new ServerSnapshot(null, players.values(), gameNumber);
 		
 		Iterator<PlayerMark> it = PlayerMark.getPlayerIterator();
 		
@@ -190,6 +397,74 @@ public final class GameServerImpl extends Observable implements GameServer, Acti
 			unusedTickets.add(new ServerTicket());
 			playerMarkSemaphores.put(playerMark, new Semaphore(0));
 		}
+		
+		ServerMetrics.getInstance().serverCreated(this);
+	}
+	
+	/**
+	 * Constructor. Restores the server from its saved state <code>state</code>.
+	 * The clients keep their tickets and their players, and the current game
+	 * goes on from its last play. The time outs start again.
+	 * @param state the saved server state.
+	 * @param playerProvider the game player provider used to deliver players to the
+	 * server.
+	 * @param journal the journal that saves the server state, or null if the
+	 * state must not be saved.
+	 * @throws NullPointerException if <code>state</code> or <code>playerProvider</code> is null.
+	 * @throws IllegalStateException if the saved state is not valid.
+	 */
+	GameServerImpl(final GameServerState state, final GamePlayerProvider playerProvider, final ServerStateJournal journal)
+		throws NullPointerException, IllegalStateException
+	{
+		this(state.getServerName(), false, playerProvider);
+		
+		unusedTickets.clear();
+		
+		for (int i = 0; i < state.getTicketCount(); i++)
+		{
+			ServerTicket ticket = state.getTicket(i);
+			
+			if (!state.isTicketUsed(i))
+			{
+				unusedTickets.add(ticket);
+			}
+			else
+			{
+				usedTickets.put(ticket, state.getTicketPlayerName(i));
+				
+				if (ticketLeaseDelay > 0)
+					ticketLeases.put(ticket, newTicketLease(ticket));
+			}
+		}
+		
+		for (int i = 0; i < state.getPlayerCount(); i++)
+		{
+			GamePlayer player = gamePlayerProvider.getGamePlayer(state.getPlayerName(i), state.getPlayerMark(i));
+			
+			// The players have no score setter, and their scores are small.
+			for (int j = 0; j < state.getPlayerScore(i); j++)
+				player.incrementScore();
+			
+			players.put(player.getName(), player);
+			usedPlayerMarks.add(player.getPlayerMark());
+		}
+		
+		gameOwnerPlayerName = state.getGameOwnerName();
+		gameNumber = state.getGameNumber();
+		isScoreUpdated = state.isScoreUpdated();
+		gameModel = state.getGameModel();
+		
+		// The turn is given back to the player who had to play.
+		if (gameModel != null)
+		{
+			if (isRunning())
+				playerMarkSemaphores.get(gameModel.getCurrentPlayer()).release();
+			else
+				releaseSemaphores();
+		}
+		
+		snapshot = new ServerSnapshot(gameModel, players.values(), gameNumber);
+		stateJournal = journal;
 	}
 	
 	/**
@@ -199,16 +474,144 @@ public final class GameServerImpl extends Observable implements GameServer, Acti
 	 */
 	private void releaseServer()
 	{
+		// The server is no longer used, so its timeouts must not expire
+		// and its state must no longer be saved.
+		idleTimeout.cancel();
+		stateJournal = null;
+		
+		for (HashedWheelTimer.Timeout lease: ticketLeases.values())
+			lease.cancel();
+		
 		// Here only the player who are not disconnected
 		// are released from the game player provider.
 		// The other ones have already been released...
 		for (String playerName: players.keySet())
 			gamePlayerProvider.releasePlayer(playerName);
 		
+		ServerMetrics.getInstance().serverReleased(this);
+		
 		setChanged();
 		notifyObservers(serverName);
 	}
 	
+	/**
+	 * Publishes the new server state, as the <code>publishState</code> method,
+	 * and saves it if the server has a state journal.<br/>
+	 * This method must be called once the state has been fully modified,
+	 * since the snapshot is read without locking.
+	 */
+	private synchronized void stateChanged()
+	{
+		publishState();
+		journalState();
+	}
+	
+	/**
+	 * Publishes a new snapshot of the server state, increments the
+	 * version of the server state and wakes up the clients that wait
+	 * for a change.<br/>
+	 * This method must be called once the state has been fully modified,
+	 * since the snapshot is read without locking.
+	 */
+	private synchronized void publishState()
+	{
+		snapshot = new ServerSnapshot(gameModel, players.values(), gameNumber);
+		
+		stateLock.lock();
+		
+		try
+		{
+			stateVersion++;
+			stateChangeCondition.signalAll();
+		}
+		finally
+		{
+			stateLock.unlock();
+		}
+		
+		for (Runnable listener: stateChangeListeners)
+			listener.run();
+	}
+	
+	/**
+	 * Returns a copy of the current server state, to be saved.
+	 * @return a copy of the current server state.
+	 */
+	synchronized GameServerState getState()
+	{
+		ServerTicket[] tickets = new ServerTicket[unusedTickets.size() + usedTickets.size()];
+		boolean[] isTicketUsed = new boolean[tickets.length];
+		String[] ticketPlayers = new String[tickets.length];
+		int i = 0;
+		
+		for (ServerTicket ticket: unusedTickets)
+			tickets[i++] = ticket;
+		
+		for (Map.Entry<ServerTicket, String> entry: usedTickets.entrySet())
+		{
+			tickets[i] = entry.getKey();
+			isTicketUsed[i] = true;
+			ticketPlayers[i++] = entry.getValue();
+		}
+		
+		return new GameServerState(serverName, gameNumber, gameOwnerPlayerName, isScoreUpdated,
+			tickets, isTicketUsed, ticketPlayers, players.values().toArray(new GamePlayer[players.size()]), gameModel);
+	}
+	
+	/**
+	 * Sets the journal that saves the server state every time it changes,
+	 * and saves the current state.
+	 * @param journal the journal to use.
+	 * @throws NullPointerException if <code>journal</code> is null.
+	 */
+	synchronized void setStateJournal(final ServerStateJournal journal) throws NullPointerException
+	{
+		if (journal == null)
+			throw new NullPointerException();
+		
+		stateJournal = journal;
+		journalState();
+	}
+	
+	/**
+	 * Saves the current server state if the server has a state journal.
+	 * The method does not wait until the state is on the disk.<br/>
+	 * The frequent changes of the state are saved as deltas instead,
+	 * since saving the whole state costs as much as the state grows.
+	 */
+	private synchronized void journalState()
+	{
+		if (stateJournal != null)
+			stateJournal.stateChanged(getState());
+	}
+	
+	/**
+	 * Adds the listener <code>listener</code>, which is run every time the server
+	 * state changes. This makes it possible for the non blocking transports to
+	 * resume the calls that wait for a state change.<br/>
+	 * The listener is run while the server monitor is held, once the new state
+	 * snapshot is published, so it must return quickly and must only call the
+	 * server methods that read the state snapshot.
+	 * @param listener the listener to add.
+	 * @throws NullPointerException if <code>listener</code> is null.
+	 */
+	void addStateChangeListener(final Runnable listener) throws NullPointerException
+	{
+		if (listener == null)
+			throw new NullPointerException();
+		
+		stateChangeListeners.add(listener);
+	}
+	
+	/**
+	 * Removes the state change listener <code>listener</code>.
+	 * @param listener the listener to remove.
+	 */
+	void removeStateChangeListener(final Runnable listener)
+	{
+		stateChangeListeners.remove(listener);
+	}
+	
 	/**
 	 * Releases all the currently blocked processes.
 	 */
@@ -233,11 +636,14 @@ public final class GameServerImpl extends Observable implements GameServer, Acti
 	 */
 	public synchronized void endGame(final ServerTicket serverTicket) throws NullPointerException, ServerTicketException, RemoteException
 	{
+		AdmissionControl.getInstance().admitRemoteCall();
+		
 		checkTicket(serverTicket);
 		
 		gameModel = null;
 		
 		releaseSemaphores();
+		stateChanged();
 	}
 
 	/**
@@ -245,6 +651,8 @@ public final class GameServerImpl extends Observable implements GameServer, Acti
 	 */
 	public synchronized ServerTicket getTicket() throws ServerTicketException, RemoteException
 	{		
+		AdmissionControl.getInstance().admitRemoteCall();
+		
 		if (unusedTickets.isEmpty())
 			throw new ServerTicketException("No more ticket available");
 		
@@ -253,22 +661,66 @@ public final class GameServerImpl extends Observable implements GameServer, Acti
 		unusedTickets.remove(ticket);
 		usedTickets.put(ticket, null);
 		
+		if (ticketLeaseDelay > 0)
+			ticketLeases.put(ticket, newTicketLease(ticket));
+		
+		if (stateJournal != null)
+			stateJournal.ticketUsed(serverName, ticket);
+		
 		return ticket;
 	}
+	
+	/**
+	 * Returns a new lease of the ticket <code>ticket</code>.
+	 * @param ticket the used ticket.
+	 * @return the lease of the ticket.
+	 */
+	private HashedWheelTimer.Timeout newTicketLease(final ServerTicket ticket)
+	{
+		return HashedWheelTimer.getInstance().newTimeout(new Runnable()
+		{
+			/**
+			 * @see java.lang.Runnable#run()
+			 */
+			public void run()
+			{
+				ticketLeaseExpired(ticket);
+			}
+		}, ticketLeaseDelay);
+	}
 
 	/**
 	 * @see org.gojul.fourinaline.model.GameServer#releaseTicket(org.gojul.fourinaline.model.GameServer.ServerTicket)
 	 */
 	public synchronized void releaseTicket(final ServerTicket serverTicket) throws ServerTicketException, RemoteException, NullPointerException
 	{
+		AdmissionControl.getInstance().admitRemoteCall();
+		
 		checkTicket(serverTicket);	
 		
+		doReleaseTicket(serverTicket);
+	}
+	
+	/**
+	 * Releases the valid ticket <code>serverTicket</code>.
+	 * @param serverTicket the ticket to release.
+	 */
+	private synchronized void doReleaseTicket(final ServerTicket serverTicket)
+	{
+		HashedWheelTimer.Timeout lease = ticketLeases.remove(serverTicket);
+		
+		if (lease != null)
+			lease.cancel();
+		
+		AdmissionControl.getInstance().ticketReleased(serverTicket);
+		
 		String playerName = usedTickets.remove(serverTicket);
 		
 		if (playerName != null)
 			unregisterPlayer(playerName);
 		
 		unusedTickets.add(serverTicket);
+		journalState();
 		
 		// Notifies the global server that the game must be ended.
 		// This is the case if there's no more player or if the game owner has left.
@@ -276,14 +728,54 @@ public final class GameServerImpl extends Observable implements GameServer, Acti
 			releaseServer();
 	}
 
+	/**
+	 * Releases the server as none of its tickets has been used
+	 * for the game timeout delay.
+	 */
+	private synchronized void idleTimeoutExpired()
+	{
+		releaseServer();
+	}
+	
+	/**
+	 * Releases the ticket <code>serverTicket</code> as it has not been
+	 * used for the ticket lease delay.
+	 * @param serverTicket the expired ticket.
+	 */
+	private synchronized void ticketLeaseExpired(final ServerTicket serverTicket)
+	{
+		// The ticket may have been released meanwhile, and even got again.
+		if (usedTickets.containsKey(serverTicket) && ticketLeases.get(serverTicket) != null
+			&& ticketLeases.get(serverTicket).isExpired())
+			doReleaseTicket(serverTicket);
+	}
+	
+	/**
+	 * Checks that the ticket <code>serverTicket</code> is valid and is not used
+	 * too often, and if so resets the time out timer and the ticket lease.<br/>
+	 * This method must be called once per call of the client.
+	 * @param serverTicket the server ticket to test.
+	 * @throws NullPointerException if <code>serverTicket</code> is null.
+	 * @throws ServerTicketException if <code>serverTicket</code> is not valid.
+	 * @throws ServerBusyException if <code>serverTicket</code> is used too often.
+	 */
+	synchronized void checkTicket(final ServerTicket serverTicket) throws NullPointerException, ServerTicketException, ServerBusyException
+	{
+		touchTicket(serverTicket);
+		
+		AdmissionControl.getInstance().admitTicketCall(serverTicket);
+	}
+	
 	/**
 	 * Checks that the ticket <code>serverTicket</code> is valid, and if so resets
-	 * the time out timer.
+	 * the time out timer and the ticket lease. Unlike the <code>checkTicket</code>
+	 * method, this method does not count a call of the client, so that it can be
+	 * called while a call which has already been checked waits.
 	 * @param serverTicket the server ticket to test.
 	 * @throws NullPointerException if <code>serverTicket</code> is null.
 	 * @throws ServerTicketException if <code>serverTicket</code> is not valid.
 	 */
-	private synchronized void checkTicket(final ServerTicket serverTicket) throws NullPointerException, ServerTicketException
+	private synchronized void touchTicket(final ServerTicket serverTicket) throws NullPointerException, ServerTicketException
 	{		
 		if (serverTicket == null)
 			throw new NullPointerException();
@@ -291,7 +783,12 @@ public final class GameServerImpl extends Observable implements GameServer, Acti
 		if (! usedTickets.containsKey(serverTicket))
 			throw new ServerTicketException("Invalid server ticket");
 		
-		timeoutTimer.restart();
+		idleTimeout.touch();
+		
+		HashedWheelTimer.Timeout lease = ticketLeases.get(serverTicket);
+		
+		if (lease != null)
+			lease.touch();
 	}
 
 	
@@ -300,6 +797,8 @@ public final class GameServerImpl extends Observable implements GameServer, Acti
 	 */
 	public GameModel getGame(final PlayerMark playerMark, final ServerTicket serverTicket) throws NullPointerException, RuntimeException, RemoteException, ServerTicketException
 	{
+		AdmissionControl.getInstance().admitRemoteCall();
+		
 		checkTicket(serverTicket);
 		
 		// We want to avoid the risk of acquiring a bad semaphore reference so
@@ -310,7 +809,7 @@ public final class GameServerImpl extends Observable implements GameServer, Acti
 		// we synchronize only critical sections here.
 		synchronized(this)		
 		{
-			if (!isGameRunning())
+			if (!isRunning())
 			{
 				if (gameModel != null)
 				{
@@ -341,6 +840,8 @@ public final class GameServerImpl extends Observable implements GameServer, Acti
 		// from the current game, not the next one.
 		// This method is not that clean but there's no other possible way
 		// to deal with the issue.
+		long waitStart = System.nanoTime();
+		
 		try
 		{
 			s.acquire();
@@ -349,6 +850,8 @@ public final class GameServerImpl extends Observable implements GameServer, Acti
 		{
 			throw new RuntimeException(e);
 		}
+		
+		ServerMetrics.getInstance().turnWaited(System.nanoTime() - waitStart);
 			
 		// In order to avoid interblocking processes,
 		// we synchronize only critical sections here.
@@ -373,11 +876,187 @@ public final class GameServerImpl extends Observable implements GameServer, Acti
 	}
 	
 	
+	/**
+	 * Non blocking variant of the <code>getGame</code> and <code>getMovesSince</code>
+	 * methods, used by the non blocking transports : acquires the turn of the player
+	 * which has for mark <code>playerMark</code> if it's up to them to play, or does
+	 * nothing if there's no running game. The call must have been checked with
+	 * the <code>checkTicket</code> method before, as it may be attempted several times.
+	 * @param playerMark the mark of the player which requests the game.
+	 * @param serverTicket the ticket of the calling client.
+	 * @return true if the game can be returned to the player, false if it must
+	 * wait for another player to play.
+	 * @throws NullPointerException if any of the method parameter is null.
+	 * @throws ServerTicketException if <code>serverTicket</code>
+	 * is not valid.
+	 */
+	synchronized boolean tryAcquireTurn(final PlayerMark playerMark, final ServerTicket serverTicket)
+		throws NullPointerException, ServerTicketException
+	{
+		touchTicket(serverTicket);
+		
+		if (playerMark == null)
+			throw new NullPointerException();
+		
+		if (!isRunning())
+			return true;
+		
+		return playerMarkSemaphores.get(playerMark).tryAcquire();
+	}
+	
+	/**
+	 * Variant of the <code>tryAcquireTurn</code> method for the <code>getMovesSince</code>
+	 * method : like the latter, no turn is acquired if <code>sinceVersion</code> is not
+	 * a version of the current game.
+	 * @param playerMark the mark of the player which requests the plays.
+	 * @param serverTicket the ticket of the calling client.
+	 * @param sinceVersion the game version of the copy of the game model of the client.
+	 * @return true if the plays can be returned to the player, false if it must
+	 * wait for another player to play.
+	 * @throws NullPointerException if any of the method parameter is null.
+	 * @throws ServerTicketException if <code>serverTicket</code>
+	 * is not valid.
+	 */
+	synchronized boolean tryAcquireTurn(final PlayerMark playerMark, final ServerTicket serverTicket, final long sinceVersion)
+		throws NullPointerException, ServerTicketException
+	{
+		touchTicket(serverTicket);
+		
+		if (playerMark == null)
+			throw new NullPointerException();
+		
+		if (!isCurrentGameVersion(sinceVersion) || !isRunning())
+			return true;
+		
+		return playerMarkSemaphores.get(playerMark).tryAcquire();
+	}
+	
+	/**
+	 * Returns the indexes of the columns played in the current game since its version
+	 * <code>sinceVersion</code>, without waiting for the turn of any player.
+	 * @param sinceVersion the game version to consider.
+	 * @return the indexes of the columns played since <code>sinceVersion</code>, or null
+	 * if <code>sinceVersion</code> is not a version of the current game.
+	 */
+	synchronized int[] getPlayedColumnsSince(final long sinceVersion)
+	{
+		if (!isCurrentGameVersion(sinceVersion))
+			return null;
+		
+		return gameModel.getPlayedColumns(GameVersion.getPlayCount(sinceVersion));
+	}
+	
+	/**
+	 * Returns true if <code>version</code> is a version of the current game,
+	 * false elsewhere.
+	 * @param version the game version to test.
+	 * @return true if <code>version</code> is a version of the current game.
+	 */
+	synchronized boolean isCurrentGameVersion(final long version)
+	{
+		return gameModel != null && GameVersion.getGameNumber(version) == gameNumber
+			&& GameVersion.getPlayCount(version) >= 0 && GameVersion.getPlayCount(version) <= gameModel.getPlayCount();
+	}
+	
+	/**
+	 * @see org.gojul.fourinaline.model.GameServer#getGameVersion()
+	 */
+	public long getGameVersion() throws RemoteException
+	{
+		AdmissionControl.getInstance().admitRemoteCall();
+		
+		return snapshot.gameVersion;
+	}
+	
+	/**
+	 * Returns the latest published snapshot of the server state, whose
+	 * game model and game version are consistent with each other.
+	 * @return the latest published snapshot of the server state.
+	 */
+	ServerSnapshot getSnapshot()
+	{
+		return snapshot;
+	}
+	
+	/**
+	 * Returns the server name, or null if the server has no name.
+	 * @return the server name, or null if the server has no name.
+	 */
+	String getServerName()
+	{
+		return serverName;
+	}
+	
+	/**
+	 * @see org.gojul.fourinaline.model.GameServer#getMovesSince(org.gojul.fourinaline.model.GameModel.PlayerMark, org.gojul.fourinaline.model.GameServer.ServerTicket, long)
+	 */
+	public int[] getMovesSince(final PlayerMark playerMark, final ServerTicket serverTicket, final long sinceVersion)
+		throws NullPointerException, ServerTicketException, RuntimeException, RemoteException
+	{
+		AdmissionControl.getInstance().admitRemoteCall();
+		
+		checkTicket(serverTicket);
+		
+		return awaitMovesSince(playerMark, sinceVersion);
+	}
+	
+	/**
+	 * Waits for the turn of the player with mark <code>playerMark</code>,
+	 * and returns the columns played since the version <code>sinceVersion</code>
+	 * of the current game, as the <code>getMovesSince</code> method, once the
+	 * caller has been admitted and its ticket has been checked.
+	 * @param playerMark the mark of the player which waits for its turn.
+	 * @param sinceVersion the game version of the copy of the game model of the client.
+	 * @return the columns played since <code>sinceVersion</code>, or null if
+	 * <code>sinceVersion</code> is not a version of the current game.
+	 * @throws NullPointerException if <code>playerMark</code> is null.
+	 * @throws RuntimeException if the thread is interrupted while waiting.
+	 */
+	private int[] awaitMovesSince(final PlayerMark playerMark, final long sinceVersion)
+		throws NullPointerException, RuntimeException
+	{
+		if (playerMark == null)
+			throw new NullPointerException();
+		
+		Semaphore s = null;
+		
+		// Same synchronization scheme as in the getGame() method.
+		synchronized(this)
+		{
+			if (!isCurrentGameVersion(sinceVersion))
+				return null;
+			
+			if (isRunning())
+				s = playerMarkSemaphores.get(playerMark);
+		}
+		
+		if (s != null)
+		{
+			long waitStart = System.nanoTime();
+			
+			try
+			{
+				s.acquire();
+			}
+			catch (InterruptedException e)
+			{
+				throw new RuntimeException(e);
+			}
+			
+			ServerMetrics.getInstance().turnWaited(System.nanoTime() - waitStart);
+		}
+		
+		// The game may have been ended or replaced while waiting.
+		return getPlayedColumnsSince(sinceVersion);
+	}
+	
 	/**
 	 * @see org.gojul.fourinaline.model.GameServer#play(int, org.gojul.fourinaline.model.GameModel.PlayerMark, org.gojul.fourinaline.model.GameModel, org.gojul.fourinaline.model.GameServer.ServerTicket)
 	 */
 	public synchronized void play(final int colIndex, final PlayerMark playerMark, final GameModel clientGameModel, final ServerTicket serverTicket) throws NullPointerException, RemoteException, ServerTicketException, GameModelException
 	{
+		AdmissionControl.getInstance().admitRemoteCall();
+		
 		// Here we must synchronize the play() method because it has no risk
 		// of interblocking threads but on the contrary it may release too
 		// many semaphore permits.
@@ -386,21 +1065,80 @@ public final class GameServerImpl extends Observable implements GameServer, Acti
 		
 		if (playerMark == null)
 			throw new NullPointerException();
-		
-		// By default, we consider the game is not running.
-		boolean isGameRunning = false;
-		
 
 		// In some weird case, the client game model may not be equal
 		// to the current game model, especially when the previous game
 		// has been stopped by a client.
 		if (gameModel != null && gameModel.equals(clientGameModel))
-		{
-			gameModel.play(colIndex, playerMark);
-			isGameRunning = isGameRunning();
-		}
-		else
-			return;
+			doPlay(colIndex, playerMark);
+	}
+	
+	/**
+	 * @see org.gojul.fourinaline.model.GameServer#playAndAwaitTurn(int, org.gojul.fourinaline.model.GameModel.PlayerMark, long, org.gojul.fourinaline.model.GameServer.ServerTicket)
+	 */
+	public int[] playAndAwaitTurn(final int colIndex, final PlayerMark playerMark, final long gameVersion, final ServerTicket serverTicket)
+		throws NullPointerException, RemoteException, ServerTicketException, GameModelException, RuntimeException
+	{
+		AdmissionControl.getInstance().admitRemoteCall();
+		
+		if (!playOnVersion(colIndex, playerMark, gameVersion, serverTicket))
+			return null;
+		
+		// The semaphore of the player is released as soon as the next
+		// player has played, even if it happens before this call. The
+		// call has already been admitted and its ticket checked, so that
+		// the play it has performed can't be followed by an error.
+		return awaitMovesSince(playerMark, gameVersion);
+	}
+	
+	/**
+	 * Non blocking part of the <code>playAndAwaitTurn</code> method, also used by the
+	 * non blocking transports : plays at the column <code>colIndex</code> if
+	 * <code>gameVersion</code> is the latest version of the current game.
+	 * @param colIndex the index of the column that is played.
+	 * @param playerMark the mark of the player which plays.
+	 * @param gameVersion the game version of the copy of the game model of the client.
+	 * @param serverTicket the ticket of the calling client.
+	 * @return true if the play has been performed, false if <code>gameVersion</code>
+	 * is not the latest version of the current game.
+	 * @throws GameModelException if the attempted play at the
+	 * column number <code>colIndex</code> is not valid.
+	 * @throws ServerTicketException if <code>serverTicket</code>
+	 * is not valid.
+	 * @throws NullPointerException if any of the method parameter is null.
+	 */
+	synchronized boolean playOnVersion(final int colIndex, final PlayerMark playerMark, final long gameVersion, final ServerTicket serverTicket)
+		throws NullPointerException, ServerTicketException, GameModelException
+	{
+		checkTicket(serverTicket);
+		
+		if (playerMark == null)
+			throw new NullPointerException();
+		
+		if (!isCurrentGameVersion(gameVersion) || GameVersion.getPlayCount(gameVersion) != gameModel.getPlayCount())
+			return false;
+		
+		doPlay(colIndex, playerMark);
+		
+		return true;
+	}
+	
+	/**
+	 * Plays at the column <code>colIndex</code> on the current game, gives
+	 * the hand to the next player and updates the scores if the game is over.
+	 * @param colIndex the index of the column that is played.
+	 * @param playerMark the mark of the player which plays.
+	 * @throws GameModelException if the attempted play at the
+	 * column number <code>colIndex</code> is not valid.
+	 */
+	private synchronized void doPlay(final int colIndex, final PlayerMark playerMark) throws GameModelException
+	{
+		int playCount = gameModel.getPlayCount();
+		
+		gameModel.play(colIndex, playerMark);
+		ServerMetrics.getInstance().movePlayed();
+		
+		boolean isGameRunning = isRunning();
 		
 		// In case the game is still running, we release
 		// the next player.
@@ -438,13 +1176,130 @@ public final class GameServerImpl extends Observable implements GameServer, Acti
 					}
 				}
 				
-				gamePlayerProvider.storeGame(winner, gamePlayers);
+				storeGame(winner, gamePlayers);
 			}
 			
 			releaseSemaphores();
 			
 		}
 		
+		// The state is published once the scores are up to date.
+		publishState();
+		
+		// The play is saved alone unless it ends the game, which changes the scores.
+		if (isGameRunning && stateJournal != null)
+			stateJournal.playPerformed(serverName, gameNumber, playCount, colIndex);
+		else
+			journalState();
+	}
+	
+	/**
+	 * Stores the current game, which is over, through the game player provider.
+	 * The game is stored by the game storage executor, and the ratings the provider
+	 * gives to the players are published once the game is stored.<br/>
+	 * This method must be called while the server monitor is held.
+	 * @param winner the game winner, or null if the game is a tie.
+	 * @param gamePlayers the players of the game.
+	 */
+	private void storeGame(final GamePlayer winner, final Set<GamePlayer> gamePlayers)
+	{
+		// The provider is given copies of the game and of the players,
+		// since they change afterwards while the server monitor is held.
+		final GameModel storedGameModel = new GameModel(gameModel);
+		final Set<GamePlayer> storedPlayers = new HashSet<GamePlayer>();
+		GamePlayer storedWinner = null;
+		
+		for (GamePlayer player: gamePlayers)
+		{
+			GamePlayer storedPlayer = new GamePlayerImpl(player.getName(), player.getPlayerMark(),
+				player.getScore(), player.getRating());
+			
+			storedPlayers.add(storedPlayer);
+			
+			if (player == winner)
+				storedWinner = storedPlayer;
+		}
+		
+		final GamePlayer storedGameWinner = storedWinner;
+		
+		getGameStorageExecutor().execute(new Runnable()
+		{
+			/**
+			 * @see java.lang.Runnable#run()
+			 */
+			public void run()
+			{
+				try
+				{
+					gamePlayerProvider.storeGame(storedGameWinner, storedPlayers, storedGameModel);
+				}
+				catch (Throwable t)
+				{
+					System.err.println("Cannot store the game of the server " + serverName + " : " + t);
+					return;
+				}
+				
+				updateRatings(storedPlayers);
+			}
+		});
+	}
+	
+	/**
+	 * Creates the executors that store the games which are over.
+	 * @return the executors that store the games which are over.
+	 */
+	private static ExecutorService[] newGameStorageExecutors()
+	{
+		ExecutorService[] result = new ExecutorService[GAME_STORAGE_THREAD_COUNT];
+		
+		for (int i = 0; i < result.length; i++)
+		{
+			result[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(GAME_STORAGE_QUEUE_SIZE),
+				new DaemonThreadFactory(Executors.defaultThreadFactory(), "Game storage"),
+				new ThreadPoolExecutor.CallerRunsPolicy());
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Returns the executor that stores the games of this server.
+	 * @return the executor that stores the games of this server.
+	 */
+	private ExecutorService getGameStorageExecutor()
+	{
+		int hash = serverName != null ? serverName.hashCode() : 0;
+		
+		return gameStorageExecutors[(hash & Integer.MAX_VALUE) % gameStorageExecutors.length];
+	}
+	
+	/**
+	 * Gives to the players of the server the ratings of the players
+	 * <code>storedPlayers</code>, as updated by the game player provider
+	 * when it has stored a game, and publishes them.
+	 * @param storedPlayers the stored players.
+	 */
+	private synchronized void updateRatings(final Set<GamePlayer> storedPlayers)
+	{
+		boolean isUpdated = false;
+		
+		for (GamePlayer storedPlayer: storedPlayers)
+		{
+			GamePlayer player = players.get(storedPlayer.getName());
+			
+			// The player may have left the server since the game is over.
+			if (player instanceof GamePlayerImpl && player.getPlayerMark().equals(storedPlayer.getPlayerMark())
+				&& player.getRating() != storedPlayer.getRating())
+			{
+				((GamePlayerImpl) player).setRating(storedPlayer.getRating());
+				isUpdated = true;
+			}
+		}
+		
+		// The ratings are not part of the saved state.
+		if (isUpdated)
+			publishState();
 	}
 
 	/**
@@ -453,12 +1308,14 @@ public final class GameServerImpl extends Observable implements GameServer, Acti
 	public synchronized PlayerDescriptor registerPlayer(final String playerName, final ServerTicket serverTicket) throws NullPointerException,
 		PlayerRegisterException, RemoteException, ServerTicketException, RuntimeException
 	{
+		AdmissionControl.getInstance().admitRemoteCall();
+		
 		checkTicket(serverTicket);
 		
 		if (playerName == null)
 			throw new NullPointerException();
 		
-		if (isGameRunning())
+		if (isRunning())
 			throw new RuntimeException("There's already a running game.");
 		
 		String name = usedTickets.get(serverTicket);
@@ -503,6 +1360,8 @@ public final class GameServerImpl extends Observable implements GameServer, Acti
 		if (isGameOwner)
 			gameOwnerPlayerName = playerName;
 		
+		stateChanged();
+		
 		return new PlayerDescriptor(new UnmodifiableGamePlayer(result), isGameOwner);
 	}
 	
@@ -520,37 +1379,115 @@ public final class GameServerImpl extends Observable implements GameServer, Acti
 		GamePlayer p = players.remove(playerName);
 		usedPlayerMarks.remove(p.getPlayerMark());
 		gamePlayerProvider.releasePlayer(playerName);
+		
+		stateChanged();
 	}
 
 	/**
 	 * @see org.gojul.fourinaline.model.GameServer#getGameImmediately()
 	 */
-	public synchronized GameModel getGameImmediately() throws RemoteException
+	public GameModel getGameImmediately() throws RemoteException
 	{
-		if (gameModel == null)
+		AdmissionControl.getInstance().admitRemoteCall();
+		
+		GameModel model = snapshot.gameModel;
+		
+		if (model == null)
 			return null;
 		else
-			return new GameModel(gameModel);
+			return new GameModel(model);
+	}
+
+	/**
+	 * @see org.gojul.fourinaline.model.GameServer#getStateVersion()
+	 */
+	public long getStateVersion() throws RemoteException
+	{
+		AdmissionControl.getInstance().admitRemoteCall();
+		
+		stateLock.lock();
+		
+		try
+		{
+			return stateVersion;
+		}
+		finally
+		{
+			stateLock.unlock();
+		}
+	}
+
+	/**
+	 * @see org.gojul.fourinaline.model.GameServer#awaitStateChange(long, long)
+	 */
+	public long awaitStateChange(final long sinceVersion, final long timeout) throws IllegalArgumentException, RuntimeException, RemoteException
+	{
+		AdmissionControl.getInstance().admitRemoteCall();
+		
+		if (timeout <= 0)
+			throw new IllegalArgumentException("Invalid timeout : " + timeout);
+		
+		long remainingTime = TimeUnit.MILLISECONDS.toNanos(timeout);
+		
+		stateLock.lock();
+		
+		try
+		{
+			// The server monitor is not held while waiting, so that the other
+			// clients can update the server state.
+			while (stateVersion <= sinceVersion && remainingTime > 0)
+				remainingTime = stateChangeCondition.awaitNanos(remainingTime);
+			
+			return stateVersion;
+		}
+		catch (InterruptedException e)
+		{
+			throw new RuntimeException(e);
+		}
+		finally
+		{
+			stateLock.unlock();
+		}
 	}
 
 	/**
 	 * @see org.gojul.fourinaline.model.GameServer#getPlayers()
 	 */
-	public synchronized Set<GamePlayer> getPlayers() throws RemoteException
+	public Set<GamePlayer> getPlayers() throws RemoteException
 	{			
-		Set<GamePlayer> result = new LinkedHashSet<GamePlayer>();
-		
-		for (GamePlayer player: players.values())
-			result.add(new UnmodifiableGamePlayer(player));
+		AdmissionControl.getInstance().admitRemoteCall();
 		
-		return result;
+		return new LinkedHashSet<GamePlayer>(snapshot.players);
 	}
 
 	/**
 	 * @see org.gojul.fourinaline.model.GameServer#isGameRunning()
 	 */
-	public synchronized boolean isGameRunning() throws RemoteException
+	public boolean isGameRunning() throws RemoteException
 	{	
+		AdmissionControl.getInstance().admitRemoteCall();
+		
+		return snapshot.isGameRunning;
+	}
+	
+	/**
+	 * Returns the number of players registered on the server.
+	 * @return the number of players registered on the server.
+	 */
+	int getPlayerCount()
+	{
+		return snapshot.players.size();
+	}
+	
+	/**
+	 * Returns true if the current game is running, false elsewhere.<br/>
+	 * Unlike the <code>isGameRunning()</code> method, this method reads
+	 * the current state, not its latest snapshot, and must be called while
+	 * the server monitor is held.
+	 * @return true if the current game is running, false elsewhere.
+	 */
+	private boolean isRunning()
+	{
 		return gameModel != null && gameModel.getGameStatus().equals(GameStatus.CONTINUE_STATUS);
 	}
 
@@ -560,15 +1497,18 @@ public final class GameServerImpl extends Observable implements GameServer, Acti
 	 */
 	public synchronized void newGame(final ServerTicket serverTicket) throws NullPointerException, RuntimeException, RemoteException, ServerTicketException
 	{
+		AdmissionControl.getInstance().admitRemoteCall();
+		
 		checkTicket(serverTicket);
 		
 		if (usedPlayerMarks.size() < PlayerMark.getNumberOfPlayerMarks())
 			throw new RuntimeException("Not all the players have been registered !");
 		
-		if (isGameRunning())
+		if (isRunning())
 			throw new RuntimeException("The game is already running !");
 		
 		gameModel = new GameModel();
+		gameNumber++;
 		
 		// The semaphores are reset for each game.
 		playerMarkSemaphores.put(PlayerMark.PLAYER_A_MARK, new Semaphore(0));
@@ -576,6 +1516,7 @@ public final class GameServerImpl extends Observable implements GameServer, Acti
 		
 		playerMarkSemaphores.get(gameModel.getCurrentPlayer()).release();
 		isScoreUpdated = false;
+		stateChanged();
 
 		if (debugMode)
 			System.out.println("Game running !");
@@ -587,20 +1528,14 @@ public final class GameServerImpl extends Observable implements GameServer, Acti
 	@Override
 	public String toString()
 	{
-		if (gameModel != null)
-			return gameModel.toString();
+		GameModel model = snapshot.gameModel;
+		
+		if (model != null)
+			return model.toString();
 		else
 			return "No game running";
 	}
 	
-	/**
-	 * @see java.awt.event.ActionListener#actionPerformed(java.awt.event.ActionEvent)
-	 */
-	public void actionPerformed(final ActionEvent e)
-	{
-		releaseServer();		
-	}
-
 	/**
 	 * The game server instance is kept locally, in order to
 	 * avoid system GCs at RMI startup.<br/>
@@ -622,8 +1557,8 @@ public final class GameServerImpl extends Observable implements GameServer, Acti
             
 			Registry registry = MiscUtils.initRMIServer(1099);
 			
-			// Ensure compliancy with previous JVM versions.
-			GameServer stub = (GameServer) UnicastRemoteObject.exportObject(serverInstance);
+			// The server is exported behind a proxy that measures its calls.
+			GameServer stub = (GameServer) ServerMetrics.getInstance().export(serverInstance, GameServer.class);
 			registry.rebind(STUB_NAME, stub);
             
 			System.out.println("Game daemon started !");
@@ -659,8 +1594,8 @@ public final class GameServerImpl extends Observable implements GameServer, Acti
 			
 			GameClient firstClient = new AIGameClient(gameServer, gameServer.getTicket(), "bougo", new DefaultEvalScore(), 4); 
 			
-			new Thread(firstClient).start();
-			new Thread(new AIGameClient(gameServer, gameServer.getTicket(), "bougoéland", new DefaultEvalScore(), 4)).start();
+			MiscUtils.startClientThread(firstClient);
+			MiscUtils.startClientThread(new AIGameClient(gameServer, gameServer.getTicket(), "bougoéland", new DefaultEvalScore(), 4));
 			
 			gameServer.newGame(firstClient.getTicket());
 			
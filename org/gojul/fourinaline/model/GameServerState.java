@@ -0,0 +1,526 @@
+/*
+ * GameServerState.java
+ *
+ * Created: 2026/10/19
+ *
+ * Copyright (C) 2026 Julien Aubin
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.gojul.fourinaline.model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.gojul.fourinaline.model.GameModel.PlayerMark;
+import org.gojul.fourinaline.model.GameServer.ServerTicket;
+
+/**
+ * The <code>GameServerState</code> class is an immutable copy of the state of
+ * a game server which is saved in order to restore the server after the JVM
+ * restarts : its tickets, its players and the plays of its current game.<br/>
+ * The time outs of the server and the turns of the players are not saved, since
+ * they can be deduced from the rest of the state.
+ *
+ * @author Julien Aubin
+ */
+final class GameServerState
+{
+	/**
+	 * The state of a ticket which has not been given to a client.
+	 */
+	private final static byte UNUSED_TICKET = 0;
+
+	/**
+	 * The state of a ticket which has been given to a client
+	 * which has not registered any player.
+	 */
+	private final static byte USED_TICKET = 1;
+
+	/**
+	 * The state of a ticket with which a player has been registered.
+	 */
+	private final static byte PLAYER_TICKET = 2;
+
+	/**
+	 * The server name.
+	 */
+	private String serverName;
+
+	/**
+	 * The number of the current game.
+	 */
+	private int gameNumber;
+
+	/**
+	 * The name of the game owner, or null if there's none.
+	 */
+	private String gameOwnerName;
+
+	/**
+	 * Boolean that indicates whether the scores are updated for the current game.
+	 */
+	private boolean isScoreUpdated;
+
+	/**
+	 * The values of the tickets.
+	 */
+	private long[] ticketValues;
+
+	/**
+	 * The states of the tickets.
+	 */
+	private byte[] ticketStates;
+
+	/**
+	 * The names of the players registered with the tickets, or null
+	 * for the tickets with which no player has been registered.
+	 */
+	private String[] ticketPlayerNames;
+
+	/**
+	 * The player names.
+	 */
+	private String[] playerNames;
+
+	/**
+	 * The values of the player marks.
+	 */
+	private int[] playerMarks;
+
+	/**
+	 * The player scores.
+	 */
+	private int[] playerScores;
+
+	/**
+	 * The number of rows of the game, or 0 if there's no game.
+	 */
+	private int rowCount;
+
+	/**
+	 * The number of columns of the game.
+	 */
+	private int colCount;
+
+	/**
+	 * The length of the winning lines of the game.
+	 */
+	private int winLineLength;
+
+	/**
+	 * The value of the mark of the first player of the game.
+	 */
+	private int firstPlayerMark;
+
+	/**
+	 * The columns played in the game.
+	 */
+	private int[] columns;
+
+	/**
+	 * Private constructor.<br/>
+	 * Prevents the class from being instanciated.
+	 */
+	private GameServerState()
+	{
+	}
+
+	/**
+	 * Constructor.
+	 * @param name the server name.
+	 * @param number the number of the current game.
+	 * @param ownerName the name of the game owner, or null if there's none.
+	 * @param scoreUpdated true if the scores are updated for the current game.
+	 * @param tickets the tickets.
+	 * @param usedTickets the tickets given to the clients.
+	 * @param ticketPlayers the names of the players registered with the tickets,
+	 * or null for the tickets with which no player has been registered.
+	 * @param players the players.
+	 * @param gameModel the game model, or null if there's no game.
+	 */
+	GameServerState(final String name, final int number, final String ownerName, final boolean scoreUpdated,
+		final ServerTicket[] tickets, final boolean[] usedTickets, final String[] ticketPlayers,
+		final GamePlayer[] players, final GameModel gameModel)
+	{
+		serverName = name;
+		gameNumber = number;
+		gameOwnerName = ownerName;
+		isScoreUpdated = scoreUpdated;
+		ticketValues = new long[tickets.length];
+		ticketStates = new byte[tickets.length];
+		ticketPlayerNames = ticketPlayers.clone();
+
+		for (int i = 0; i < tickets.length; i++)
+		{
+			ticketValues[i] = tickets[i].getTicketValue();
+			ticketStates[i] = !usedTickets[i] ? UNUSED_TICKET : (ticketPlayers[i] == null ? USED_TICKET : PLAYER_TICKET);
+		}
+
+		playerNames = new String[players.length];
+		playerMarks = new int[players.length];
+		playerScores = new int[players.length];
+
+		for (int i = 0; i < players.length; i++)
+		{
+			playerNames[i] = players[i].getName();
+			playerMarks[i] = players[i].getPlayerMark().hashCode();
+			playerScores[i] = players[i].getScore();
+		}
+
+		if (gameModel == null)
+		{
+			columns = new int[0];
+		}
+		else
+		{
+			rowCount = gameModel.getRowCount();
+			colCount = gameModel.getColCount();
+			winLineLength = gameModel.getWinLineLength();
+			firstPlayerMark = gameModel.getFirstPlayer().hashCode();
+			columns = gameModel.getPlayedColumns(0);
+		}
+	}
+
+	/**
+	 * Returns a copy of this state. The copy shares the arrays of
+	 * this state, which are never modified once the state is built.
+	 * @return a copy of this state.
+	 */
+	private GameServerState copy()
+	{
+		GameServerState result = new GameServerState();
+
+		result.serverName = serverName;
+		result.gameNumber = gameNumber;
+		result.gameOwnerName = gameOwnerName;
+		result.isScoreUpdated = isScoreUpdated;
+		result.ticketValues = ticketValues;
+		result.ticketStates = ticketStates;
+		result.ticketPlayerNames = ticketPlayerNames;
+		result.playerNames = playerNames;
+		result.playerMarks = playerMarks;
+		result.playerScores = playerScores;
+		result.rowCount = rowCount;
+		result.colCount = colCount;
+		result.winLineLength = winLineLength;
+		result.firstPlayerMark = firstPlayerMark;
+		result.columns = columns;
+
+		return result;
+	}
+
+	/**
+	 * Returns the state that follows this state once the column <code>column</code>
+	 * has been played in the game number <code>number</code>, after <code>playCount</code>
+	 * plays. The scores of the players do not change, so that the plays that end
+	 * the game must not be saved this way.
+	 * @param number the number of the game.
+	 * @param playCount the number of plays of the game before the play.
+	 * @param column the column played.
+	 * @return the state that follows this state.
+	 * @throws IllegalStateException if the play does not follow this state.
+	 */
+	GameServerState withPlay(final int number, final int playCount, final int column) throws IllegalStateException
+	{
+		if (rowCount == 0 || number != gameNumber || playCount != columns.length)
+			throw new IllegalStateException("The play does not follow the state of the server " + serverName);
+
+		GameServerState result = copy();
+
+		result.columns = Arrays.copyOf(columns, columns.length + 1);
+		result.columns[columns.length] = column;
+
+		return result;
+	}
+
+	/**
+	 * Returns the state that follows this state once the ticket which has
+	 * for value <code>ticketValue</code> has been given to a client.
+	 * @param ticketValue the value of the ticket.
+	 * @return the state that follows this state.
+	 * @throws IllegalStateException if the ticket is not an unused ticket of this state.
+	 */
+	GameServerState withTicketUsed(final long ticketValue) throws IllegalStateException
+	{
+		for (int i = 0; i < ticketValues.length; i++)
+		{
+			if (ticketValues[i] == ticketValue && ticketStates[i] == UNUSED_TICKET)
+			{
+				GameServerState result = copy();
+
+				result.ticketStates = ticketStates.clone();
+				result.ticketStates[i] = USED_TICKET;
+
+				return result;
+			}
+		}
+
+		throw new IllegalStateException("The ticket is not an unused ticket of the server " + serverName);
+	}
+
+	/**
+	 * Returns the server name.
+	 * @return the server name.
+	 */
+	String getServerName()
+	{
+		return serverName;
+	}
+
+	/**
+	 * Returns the number of the current game.
+	 * @return the number of the current game.
+	 */
+	int getGameNumber()
+	{
+		return gameNumber;
+	}
+
+	/**
+	 * Returns the name of the game owner, or null if there's none.
+	 * @return the name of the game owner, or null if there's none.
+	 */
+	String getGameOwnerName()
+	{
+		return gameOwnerName;
+	}
+
+	/**
+	 * Returns true if the scores are updated for the current game, false elsewhere.
+	 * @return true if the scores are updated for the current game.
+	 */
+	boolean isScoreUpdated()
+	{
+		return isScoreUpdated;
+	}
+
+	/**
+	 * Returns the number of tickets.
+	 * @return the number of tickets.
+	 */
+	int getTicketCount()
+	{
+		return ticketValues.length;
+	}
+
+	/**
+	 * Returns the ticket number <code>index</code>.
+	 * @param index the ticket index.
+	 * @return the ticket.
+	 */
+	ServerTicket getTicket(final int index)
+	{
+		return new ServerTicket(ticketValues[index]);
+	}
+
+	/**
+	 * Returns true if the ticket number <code>index</code> has been
+	 * given to a client, false elsewhere.
+	 * @param index the ticket index.
+	 * @return true if the ticket has been given to a client.
+	 */
+	boolean isTicketUsed(final int index)
+	{
+		return ticketStates[index] != UNUSED_TICKET;
+	}
+
+	/**
+	 * Returns the name of the player registered with the ticket
+	 * number <code>index</code>, or null if there's none.
+	 * @param index the ticket index.
+	 * @return the name of the player registered with the ticket.
+	 */
+	String getTicketPlayerName(final int index)
+	{
+		return ticketPlayerNames[index];
+	}
+
+	/**
+	 * Returns the number of players.
+	 * @return the number of players.
+	 */
+	int getPlayerCount()
+	{
+		return playerNames.length;
+	}
+
+	/**
+	 * Returns the name of the player number <code>index</code>.
+	 * @param index the player index.
+	 * @return the player name.
+	 */
+	String getPlayerName(final int index)
+	{
+		return playerNames[index];
+	}
+
+	/**
+	 * Returns the mark of the player number <code>index</code>.
+	 * @param index the player index.
+	 * @return the player mark.
+	 * @throws IllegalStateException if the mark is unknown.
+	 */
+	PlayerMark getPlayerMark(final int index) throws IllegalStateException
+	{
+		return GameRecord.getPlayerMarkOf(playerMarks[index]);
+	}
+
+	/**
+	 * Returns the score of the player number <code>index</code>.
+	 * @param index the player index.
+	 * @return the player score.
+	 */
+	int getPlayerScore(final int index)
+	{
+		return playerScores[index];
+	}
+
+	/**
+	 * Returns the game model of the current game, rebuilt by replaying
+	 * its plays, or null if there's no game.
+	 * @return the game model of the current game, or null if there's no game.
+	 * @throws IllegalStateException if the mark of the first player is unknown,
+	 * or if the plays are not valid.
+	 */
+	GameModel getGameModel() throws IllegalStateException
+	{
+		if (rowCount == 0)
+			return null;
+
+		try
+		{
+			GameModel result = new GameModel(rowCount, colCount, winLineLength, GameRecord.getPlayerMarkOf(firstPlayerMark));
+
+			for (int col: columns)
+				result.play(col, result.getCurrentPlayer());
+
+			return result;
+		}
+		catch (RuntimeException e)
+		{
+			throw new IllegalStateException("Invalid state of the server " + serverName + " : " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Writes the state to <code>out</code>.
+	 * @param out the output to write to.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	void write(final DataOutput out) throws IOException
+	{
+		out.writeUTF(serverName);
+		out.writeInt(gameNumber);
+		out.writeBoolean(gameOwnerName != null);
+
+		if (gameOwnerName != null)
+			out.writeUTF(gameOwnerName);
+
+		out.writeBoolean(isScoreUpdated);
+		out.writeByte(ticketValues.length);
+
+		for (int i = 0; i < ticketValues.length; i++)
+		{
+			out.writeLong(ticketValues[i]);
+			out.writeByte(ticketStates[i]);
+
+			if (ticketStates[i] == PLAYER_TICKET)
+				out.writeUTF(ticketPlayerNames[i]);
+		}
+
+		out.writeByte(playerNames.length);
+
+		for (int i = 0; i < playerNames.length; i++)
+		{
+			out.writeUTF(playerNames[i]);
+			out.writeByte(playerMarks[i]);
+			out.writeInt(playerScores[i]);
+		}
+
+		out.writeShort(rowCount);
+
+		if (rowCount > 0)
+		{
+			out.writeShort(colCount);
+			out.writeShort(winLineLength);
+			out.writeByte(firstPlayerMark);
+			out.writeShort(columns.length);
+
+			for (int col: columns)
+				out.writeShort(col);
+		}
+	}
+
+	/**
+	 * Reads a state written by the <code>write</code> method.
+	 * @param in the input to read from.
+	 * @return the state read.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	static GameServerState read(final DataInput in) throws IOException
+	{
+		GameServerState result = new GameServerState();
+
+		result.serverName = in.readUTF();
+		result.gameNumber = in.readInt();
+		result.gameOwnerName = in.readBoolean() ? in.readUTF() : null;
+		result.isScoreUpdated = in.readBoolean();
+
+		int ticketCount = in.readUnsignedByte();
+		result.ticketValues = new long[ticketCount];
+		result.ticketStates = new byte[ticketCount];
+		result.ticketPlayerNames = new String[ticketCount];
+
+		for (int i = 0; i < ticketCount; i++)
+		{
+			result.ticketValues[i] = in.readLong();
+			result.ticketStates[i] = in.readByte();
+
+			if (result.ticketStates[i] == PLAYER_TICKET)
+				result.ticketPlayerNames[i] = in.readUTF();
+		}
+
+		int playerCount = in.readUnsignedByte();
+		result.playerNames = new String[playerCount];
+		result.playerMarks = new int[playerCount];
+		result.playerScores = new int[playerCount];
+
+		for (int i = 0; i < playerCount; i++)
+		{
+			result.playerNames[i] = in.readUTF();
+			result.playerMarks[i] = in.readUnsignedByte();
+			result.playerScores[i] = in.readInt();
+		}
+
+		result.rowCount = in.readUnsignedShort();
+		result.columns = new int[0];
+
+		if (result.rowCount > 0)
+		{
+			result.colCount = in.readUnsignedShort();
+			result.winLineLength = in.readUnsignedShort();
+			result.firstPlayerMark = in.readUnsignedByte();
+			result.columns = new int[in.readUnsignedShort()];
+
+			for (int i = 0; i < result.columns.length; i++)
+				result.columns[i] = in.readUnsignedShort();
+		}
+
+		return result;
+	}
+}
@@ -23,10 +23,16 @@ package org.gojul.fourinaline.model;
 
 import java.io.Serializable;
 import java.rmi.AlreadyBoundException;
+import java.rmi.NotBoundException;
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
+import org.gojul.fourinaline.model.GameServer.ServerBusyException;
+
 /**
  * The <code>GlobalServer</code> interface is the interface
  * for all the global servers, i.e. the servers that are designed
@@ -49,6 +55,182 @@ public interface GlobalServer extends Remote, Serializable
 	 * know that the server name is prefixed with this prefix.
 	 */
 	public final static String SINGLE_GAME_SERVER_STUB_PREFIX = "FourInALine_Server_";
+	
+	/**
+	 * The maximum number of games returned in a game page.
+	 */
+	public final static int MAX_GAME_PAGE_SIZE = 100;
+	
+	/**
+	 * The <code>GameDescriptor</code> class describes a game
+	 * of the global server.
+	 *
+	 * @author Julien Aubin
+	 */
+	public final static class GameDescriptor implements Serializable
+	{
+		/**
+		 * The serial version UID.
+		 */
+		final static long serialVersionUID = 1;
+		
+		/**
+		 * The game name.
+		 */
+		private String gameName;
+		
+		/**
+		 * The number of players registered in the game.
+		 */
+		private int playerCount;
+		
+		/**
+		 * The number of players a game needs to start.
+		 */
+		private int maxPlayerCount;
+		
+		/**
+		 * Boolean that indicates whether the game is running or not.
+		 */
+		private boolean isGameRunning;
+		
+		/**
+		 * Constructor.
+		 * @param name the game name.
+		 * @param players the number of players registered in the game.
+		 * @param maxPlayers the number of players a game needs to start.
+		 * @param isRunning true if the game is running, false elsewhere.
+		 * @throws NullPointerException if <code>name</code> is null.
+		 */
+		protected GameDescriptor(final String name, final int players, final int maxPlayers, final boolean isRunning)
+			throws NullPointerException
+		{
+			if (name == null)
+				throw new NullPointerException();
+			
+			gameName = name;
+			playerCount = players;
+			maxPlayerCount = maxPlayers;
+			isGameRunning = isRunning;
+		}
+		
+		/**
+		 * Returns the game name.
+		 * @return the game name.
+		 */
+		public String getGameName()
+		{
+			return gameName;
+		}
+		
+		/**
+		 * Returns the number of players registered in the game.
+		 * @return the number of players registered in the game.
+		 */
+		public int getPlayerCount()
+		{
+			return playerCount;
+		}
+		
+		/**
+		 * Returns the number of players a game needs to start.
+		 * @return the number of players a game needs to start.
+		 */
+		public int getMaxPlayerCount()
+		{
+			return maxPlayerCount;
+		}
+		
+		/**
+		 * Returns true if the game is running, false elsewhere.
+		 * @return true if the game is running, false elsewhere.
+		 */
+		public boolean isGameRunning()
+		{
+			return isGameRunning;
+		}
+		
+		/**
+		 * Returns true if a player can join the game, i.e. if the game
+		 * is not running and is not full, false elsewhere.
+		 * @return true if a player can join the game, false elsewhere.
+		 */
+		public boolean isJoinable()
+		{
+			return !isGameRunning && playerCount < maxPlayerCount;
+		}
+		
+		/**
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString()
+		{
+			return gameName + " (" + playerCount + "/" + maxPlayerCount + ")";
+		}
+	}
+	
+	/**
+	 * The <code>GamePage</code> class is a page of the games
+	 * of the global server, sorted by name.
+	 *
+	 * @author Julien Aubin
+	 */
+	public final static class GamePage implements Serializable
+	{
+		/**
+		 * The serial version UID.
+		 */
+		final static long serialVersionUID = 1;
+		
+		/**
+		 * The games of the page.
+		 */
+		private List<GameDescriptor> games;
+		
+		/**
+		 * Boolean that indicates whether there are further games
+		 * after the games of this page.
+		 */
+		private boolean hasMoreGames;
+		
+		/**
+		 * Constructor.
+		 * @param gameList the games of the page.
+		 * @param hasMore true if there are further games after
+		 * the games of this page, false elsewhere.
+		 * @throws NullPointerException if <code>gameList</code> is null.
+		 */
+		protected GamePage(final List<GameDescriptor> gameList, final boolean hasMore)
+			throws NullPointerException
+		{
+			if (gameList == null)
+				throw new NullPointerException();
+			
+			games = Collections.unmodifiableList(new ArrayList<GameDescriptor>(gameList));
+			hasMoreGames = hasMore;
+		}
+		
+		/**
+		 * Returns the games of the page, sorted by name.
+		 * @return the games of the page, sorted by name.
+		 */
+		public List<GameDescriptor> getGames()
+		{
+			return games;
+		}
+		
+		/**
+		 * Returns true if there are further games after the games
+		 * of this page, false elsewhere.
+		 * @return true if there are further games after the games
+		 * of this page, false elsewhere.
+		 */
+		public boolean hasMoreGames()
+		{
+			return hasMoreGames;
+		}
+	}
 
 	/**
 	 * Creates the game with name <code>name</code>.
@@ -56,8 +238,10 @@ public interface GlobalServer extends Remote, Serializable
 	 * @throws NullPointerException if <code>name</code> is null.
 	 * @throws RemoteException if a remote error occurs while creating the game.
 	 * @throws AlreadyBoundException if there's another game with name <code>name</code>.
+	 * @throws ServerBusyException if too many games are being created, or if the
+	 * client calls the server too often.
 	 */
-	public void createGame(final String name) throws NullPointerException, RemoteException, AlreadyBoundException;
+	public void createGame(final String name) throws NullPointerException, RemoteException, AlreadyBoundException, ServerBusyException;
 	
 	/**
 	 * Returns the list of running games.
@@ -65,4 +249,37 @@ public interface GlobalServer extends Remote, Serializable
 	 * @throws RemoteException if a remote error while returning the list of running games.
 	 */
 	public Set<String> getGames() throws RemoteException;
+	
+	/**
+	 * Returns the page of the games sorted by name that starts at the
+	 * index <code>offset</code> and contains at most <code>limit</code> games.<br/>
+	 * Unlike the <code>getGames()</code> method, this method does not return
+	 * all the games, which matters when the server runs lots of games.
+	 * @param offset the index of the first game of the page.
+	 * @param limit the maximum number of games of the page. Only
+	 * <code>MAX_GAME_PAGE_SIZE</code> games are returned if it is greater.
+	 * @param namePrefix the prefix of the names of the games to return,
+	 * or null to return the games whatever their name.
+	 * @param joinableOnly true if only the games a player can join must
+	 * be returned, false elsewhere.
+	 * @return the page of the games.
+	 * @throws IllegalArgumentException if <code>offset</code> is negative
+	 * or if <code>limit</code> is not strictly positive.
+	 * @throws RemoteException if a remote error occurs while returning the games.
+	 */
+	public GamePage getGames(final int offset, final int limit, final String namePrefix, final boolean joinableOnly)
+		throws IllegalArgumentException, RemoteException;
+	
+	/**
+	 * Returns the game server of the game with name <code>name</code>.<br/>
+	 * The clients should use this method rather than looking the game server
+	 * up in the registry of the global server, since the game may be hosted by
+	 * another node when the global server runs as a cluster.
+	 * @param name the name of the game.
+	 * @return the game server of the game.
+	 * @throws NullPointerException if <code>name</code> is null.
+	 * @throws RemoteException if a remote error occurs while returning the game server.
+	 * @throws NotBoundException if there's no game with name <code>name</code>.
+	 */
+	public GameServer getGameServer(final String name) throws NullPointerException, RemoteException, NotBoundException;
 }
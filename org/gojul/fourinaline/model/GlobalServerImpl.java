@@ -21,28 +21,60 @@
  */
 package org.gojul.fourinaline.model;
 
+import java.io.File;
 import java.rmi.AlreadyBoundException;
+import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
 import java.rmi.registry.Registry;
-import java.rmi.server.UnicastRemoteObject;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Observable;
 import java.util.Observer;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.gojul.fourinaline.model.GameModel.PlayerMark;
+import org.gojul.fourinaline.model.GameServer.ServerBusyException;
 
 /**
  * The <code>GlobalServerImpl</code> is a simple implementation of the
  * global server.<br/>
  * It observes all the instances of <code>GameServer</code> and cleans
  * up game server instances when it is notified to do so.<br/>
+ * The games are stored in a concurrent map, so that the game list
+ * is read without locking and the games are created and deleted without
+ * holding a global lock. The sorted game list returned to the clients is
+ * cached until a game is created or deleted.<br/>
+ * The game pages are served from an index of the games sorted by name,
+ * which is updated every time the state of a game server changes.<br/>
+ * <br/>
+ * The global server can also run as a cluster of nodes, i.e. of global
+ * servers running in distinct JVMs, each one having its own RMI registry.
+ * Each game is hosted by the node its name is assigned to by consistent
+ * hashing, and any node forwards the calls about a game to the node which
+ * hosts it. The game lists are merged from the lists of all the nodes.<br/>
+ * <br/>
+ * The states of the games can be saved to a journal, so that the games are
+ * restored when the server restarts. The clients then get the restored games
+ * from the global server again, and use them with the tickets they already have.<br/>
  * <br/>
  * This class can't be instanciated directly for security reasons.
  *
  * @author Julien Aubin
  */
-public final class GlobalServerImpl implements GlobalServer, Observer
+public final class GlobalServerImpl implements GlobalServer, GlobalServerNode, Observer
 {
 	
 	/**
@@ -50,6 +82,96 @@ public final class GlobalServerImpl implements GlobalServer, Observer
 	 */
 	final static long serialVersionUID = 1L;
 	
+	/**
+	 * The <code>GameList</code> class is a cached sorted game list.
+	 *
+	 * @author Julien Aubin
+	 */
+	private final static class GameList
+	{
+		/**
+		 * The version of the game map the list has been built from.
+		 */
+		private final long version;
+		
+		/**
+		 * The sorted game names.
+		 */
+		private final Set<String> games;
+		
+		/**
+		 * Constructor.
+		 * @param mapVersion the version of the game map the list has been built from.
+		 * @param gameNames the sorted game names.
+		 */
+		private GameList(final long mapVersion, final Set<String> gameNames)
+		{
+			version = mapVersion;
+			games = gameNames;
+		}
+	}
+	
+	/**
+	 * The <code>GameNameComparator</code> class sorts the game
+	 * descriptors by game name.
+	 *
+	 * @author Julien Aubin
+	 */
+	private final static class GameNameComparator implements Comparator<GameDescriptor>
+	{
+		/**
+		 * @see java.util.Comparator#compare(java.lang.Object, java.lang.Object)
+		 */
+		public int compare(final GameDescriptor o1, final GameDescriptor o2)
+		{
+			return o1.getGameName().compareTo(o2.getGameName());
+		}
+	}
+	
+	/**
+	 * The <code>LocalNode</code> class gives access to the games hosted by
+	 * this node to the global server calls, without charging them again to
+	 * the admission control of the calling client as the remote node calls are.
+	 *
+	 * @author Julien Aubin
+	 */
+	private final class LocalNode implements GlobalServerNode
+	{
+		/**
+		 * @see org.gojul.fourinaline.model.GlobalServerNode#createLocalGame(java.lang.String)
+		 */
+		public void createLocalGame(final String name) throws NullPointerException,
+			RemoteException, AlreadyBoundException, ServerBusyException
+		{
+			doCreateLocalGame(name);
+		}
+		
+		/**
+		 * @see org.gojul.fourinaline.model.GlobalServerNode#getLocalGameServer(java.lang.String)
+		 */
+		public GameServer getLocalGameServer(final String name) throws NullPointerException, RemoteException, NotBoundException
+		{
+			return doGetLocalGameServer(name);
+		}
+		
+		/**
+		 * @see org.gojul.fourinaline.model.GlobalServerNode#getLocalGames()
+		 */
+		public Set<String> getLocalGames() throws RemoteException
+		{
+			return doGetLocalGames();
+		}
+		
+		/**
+		 * @see org.gojul.fourinaline.model.GlobalServerNode#getLocalGames(int, int, java.lang.String, boolean)
+		 */
+		public GamePage getLocalGames(final int offset, final int limit, final String namePrefix, final boolean joinableOnly)
+			throws IllegalArgumentException, RemoteException
+		{
+			return doGetLocalGames(offset, limit, namePrefix, joinableOnly);
+		}
+	}
+	
 	/**
 	 * The RMI registry instance.
 	 */
@@ -61,7 +183,56 @@ public final class GlobalServerImpl implements GlobalServer, Observer
 	 * otherwise they might be trashed by the garbage collector. A reference
 	 * to them must be put somewhere else.
 	 */
-	private Map<String, GameServer> serverMap;
+	private ConcurrentMap<String, GameServer> serverMap;
+	
+	/**
+	 * The names of the games being created.
+	 */
+	private Set<String> pendingGames;
+	
+	/**
+	 * The version of the server map, incremented every time a game
+	 * is created or deleted.
+	 */
+	private AtomicLong serverMapVersion;
+	
+	/**
+	 * The cached game list.
+	 */
+	private volatile GameList gameList;
+	
+	/**
+	 * The index that ties a game name to its descriptor.
+	 */
+	private ConcurrentSkipListMap<String, GameDescriptor> gameIndex;
+	
+	/**
+	 * The index that ties the name of a game a player can join
+	 * to its descriptor.
+	 */
+	private ConcurrentSkipListMap<String, GameDescriptor> joinableGameIndex;
+	
+	/**
+	 * The address of this node, or null if the server does not run as a cluster.
+	 */
+	private String nodeAddress;
+	
+	/**
+	 * The hash ring that assigns the games to the nodes, or null if the
+	 * server does not run as a cluster.
+	 */
+	private ConsistentHashRing hashRing;
+	
+	/**
+	 * The map that ties a node address to the node, for the nodes
+	 * that have already been looked up.
+	 */
+	private ConcurrentMap<String, GlobalServerNode> nodes;
+	
+	/**
+	 * The node used to access the games hosted by this node.
+	 */
+	private GlobalServerNode localNode;
 	
 	/**
 	 * The game server provider used in order to provide players
@@ -69,52 +240,217 @@ public final class GlobalServerImpl implements GlobalServer, Observer
 	 */
 	private GamePlayerProvider gamePlayerProvider;
 	
+	/**
+	 * The journal that saves the states of the game servers, or null
+	 * if the states are not saved.
+	 */
+	private ServerStateJournal stateJournal;
+	
+	/**
+	 * Constructor.
+	 * @param reg the RMI registry the server takes into account.
+	 * @param playerProvider the game player provider of the game servers.
+	 * @param journal the journal that saves the states of the game servers,
+	 * or null if the states must not be saved.
+	 * @throws NullPointerException if <code>reg</code> or <code>playerProvider</code> is null.
+	 */
+	private GlobalServerImpl(final Registry reg, final GamePlayerProvider playerProvider, final ServerStateJournal journal) throws NullPointerException
+	{
+		this(reg, null, null, playerProvider, journal);
+	}
+	
 	/**
 	 * Constructor.
 	 * @param reg the RMI registry the server takes into account.
-	 * @throws NullPointerException if <code>reg</code> is null.
+	 * @param address the address of this node, which has the form <code>host:port</code>,
+	 * or null if the server does not run as a cluster.
+	 * @param nodeAddresses the addresses of all the nodes of the cluster. All the
+	 * nodes must be given the same addresses. This parameter is ignored if
+	 * <code>address</code> is null.
+	 * @param playerProvider the game player provider of the game servers.
+	 * @param journal the journal that saves the states of the game servers,
+	 * or null if the states must not be saved.
+	 * @throws NullPointerException if <code>reg</code> or <code>playerProvider</code> is null,
+	 * or if <code>address</code> is not null and <code>nodeAddresses</code> is null.
 	 */
-	private GlobalServerImpl(final Registry reg) throws NullPointerException
+	private GlobalServerImpl(final Registry reg, final String address, final Collection<String> nodeAddresses,
+		final GamePlayerProvider playerProvider, final ServerStateJournal journal) throws NullPointerException
 	{
-		if (reg == null)
+		if (reg == null || playerProvider == null)
 			throw new NullPointerException();
 		
-		serverMap = new HashMap<String, GameServer>();		
+		if (address != null)
+		{
+			Set<String> addresses = new LinkedHashSet<String>(nodeAddresses);
+			addresses.add(address);
+			
+			nodeAddress = address;
+			hashRing = new ConsistentHashRing(addresses);
+		}
+		
+		nodes = new ConcurrentHashMap<String, GlobalServerNode>();
+		localNode = new LocalNode();
+		
+		serverMap = new ConcurrentSkipListMap<String, GameServer>();
+		pendingGames = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+		serverMapVersion = new AtomicLong();
+		gameIndex = new ConcurrentSkipListMap<String, GameDescriptor>();
+		joinableGameIndex = new ConcurrentSkipListMap<String, GameDescriptor>();
+		gameList = new GameList(0, Collections.unmodifiableSet(new TreeSet<String>()));
 		registry = reg;
-		gamePlayerProvider = new DefaultGamePlayerProvider();
+		gamePlayerProvider = playerProvider;
+		stateJournal = journal;
+	}
+	
+	/**
+	 * Restores the games saved in the state journal, and binds them
+	 * to the registry. The games whose state is not valid are dropped.
+	 * @throws RemoteException if a game cannot be exported.
+	 */
+	private void restoreGames() throws RemoteException
+	{
+		if (stateJournal == null)
+			return;
+		
+		for (GameServerState state: stateJournal.getRestoredStates())
+		{
+			final String name = state.getServerName();
+			GameServerImpl gameServer;
+			
+			try
+			{
+				gameServer = new GameServerImpl(state, gamePlayerProvider, stateJournal);
+			}
+			catch (IllegalStateException e)
+			{
+				System.err.println("Cannot restore the game " + name + " : " + e.getMessage());
+				stateJournal.serverDeleted(name);
+				continue;
+			}
+			
+			gameServer.addObserver(this);
+			
+			GameServer stub = (GameServer) ServerMetrics.getInstance().export(gameServer, GameServer.class);
+			registry.rebind(SINGLE_GAME_SERVER_STUB_PREFIX + name, stub);
+			
+			synchronized (gameServer)
+			{
+				addGame(name, gameServer);
+			}
+		}
+	}
+	
+	/**
+	 * Adds the game server <code>gameServer</code>, which has for name <code>name</code>
+	 * and is bound to the registry, to the server map and to the game index.<br/>
+	 * This method must be called while the monitor of <code>gameServer</code>
+	 * is held, so that its index updates are not overwritten by the initial one.
+	 * @param name the name of the game.
+	 * @param gameServer the game server.
+	 */
+	private void addGame(final String name, final GameServerImpl gameServer)
+	{
+		serverMap.put(name, gameServer);
+		serverMapVersion.incrementAndGet();
+		
+		gameServer.addStateChangeListener(new Runnable()
+		{
+			/**
+			 * @see java.lang.Runnable#run()
+			 */
+			public void run()
+			{
+				indexGame(name, gameServer);
+			}
+		});
+		indexGame(name, gameServer);
 	}
 
 	/**
 	 * @see org.gojul.fourinaline.model.GlobalServer#createGame(java.lang.String)
 	 */
-	public synchronized void createGame(final String name) throws NullPointerException,
-			RemoteException, AlreadyBoundException
+	public void createGame(final String name) throws NullPointerException,
+			RemoteException, AlreadyBoundException, ServerBusyException
+	{
+		AdmissionControl.getInstance().admitRemoteCall();
+		
+		if (name == null)
+			throw new NullPointerException();
+		
+		getGameNode(name).createLocalGame(name);
+	}
+	
+	/**
+	 * @see org.gojul.fourinaline.model.GlobalServerNode#createLocalGame(java.lang.String)
+	 */
+	public void createLocalGame(final String name) throws NullPointerException,
+			RemoteException, AlreadyBoundException, ServerBusyException, IllegalArgumentException
+	{
+		AdmissionControl.getInstance().admitRemoteCall();
+		
+		if (name == null)
+			throw new NullPointerException();
+		
+		if (hashRing != null && !hashRing.getNode(name).equals(nodeAddress))
+			throw new IllegalArgumentException("The game " + name + " is not assigned to this node");
+		
+		doCreateLocalGame(name);
+	}
+	
+	/**
+	 * Creates the game with name <code>name</code> on this node.
+	 * @param name the name of the game to create.
+	 * @throws NullPointerException if <code>name</code> is null.
+	 * @throws RemoteException if a remote error occurs while creating the game.
+	 * @throws AlreadyBoundException if there's another game with name <code>name</code>.
+	 * @throws ServerBusyException if too many games are being created on this node.
+	 */
+	private void doCreateLocalGame(final String name) throws NullPointerException,
+			RemoteException, AlreadyBoundException, ServerBusyException
 	{
 		if (name == null)
 			throw new NullPointerException();
 		
-		if (serverMap.containsKey(name))
+		// The creations are bounded since exporting and binding
+		// a server is costly.
+		AdmissionControl.getInstance().beginGameCreation();
+		
+		// The name is reserved before the server map is checked, so that the
+		// server is exported and bound without blocking the creation of the other games.
+		// The game is only put to the server map once it is bound.
+		if (!pendingGames.add(name))
+		{
+			AdmissionControl.getInstance().endGameCreation();
 			throw new AlreadyBoundException();
+		}
 		
 		try
 		{
-			GameServerImpl gameServer = new GameServerImpl(name, gamePlayerProvider);
-			gameServer.addObserver(this);	
+			if (serverMap.containsKey(name))
+				throw new AlreadyBoundException();
 			
-			serverMap.put(name, gameServer);
+			final GameServerImpl gameServer = new GameServerImpl(name, gamePlayerProvider);
+			gameServer.addObserver(this);
 			
-			GameServer stub = (GameServer) UnicastRemoteObject.exportObject(gameServer, 0);
+			GameServer stub = (GameServer) ServerMetrics.getInstance().export(gameServer, GameServer.class);
+			// This may throw an AlreadyBoundException if a game with the same
+			// name is being deleted.
 			registry.bind(SINGLE_GAME_SERVER_STUB_PREFIX + name, stub);
+			
+			// The server is indexed while its monitor is held, so that its
+			// index updates are not overwritten by the initial one.
+			synchronized (gameServer)
+			{
+				addGame(name, gameServer);
+				
+				if (stateJournal != null)
+					gameServer.setStateJournal(stateJournal);
+			}
 		}
-		catch (RemoteException e)
-		{
-			serverMap.remove(name);
-			throw e;
-		}
-		catch (AlreadyBoundException e)
+		finally
 		{
-			serverMap.remove(name);
-			throw e;
+			pendingGames.remove(name);
+			AdmissionControl.getInstance().endGameCreation();
 		}
 		
 		System.out.println("Created game " + name);
@@ -124,22 +460,339 @@ public final class GlobalServerImpl implements GlobalServer, Observer
 	/**
 	 * @see org.gojul.fourinaline.model.GlobalServer#getGames()
 	 */
-	public synchronized Set<String> getGames() throws RemoteException
+	public Set<String> getGames() throws RemoteException
 	{
-		return new TreeSet<String>(serverMap.keySet());
+		AdmissionControl.getInstance().admitRemoteCall();
+		
+		if (hashRing == null)
+			return doGetLocalGames();
+		
+		Set<String> result = new TreeSet<String>();
+		
+		for (String address: hashRing.getNodes())
+		{
+			try
+			{
+				result.addAll(getNode(address).getLocalGames());
+			}
+			catch (RemoteException e)
+			{
+				// The games of an unreachable node are not listed.
+				nodeFailed(address, e);
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * @see org.gojul.fourinaline.model.GlobalServerNode#getLocalGames()
+	 */
+	public Set<String> getLocalGames() throws RemoteException
+	{
+		AdmissionControl.getInstance().admitRemoteCall();
+		
+		return doGetLocalGames();
+	}
+	
+	/**
+	 * Returns the names of the games hosted by this node.
+	 * @return the names of the games hosted by this node.
+	 */
+	private Set<String> doGetLocalGames()
+	{
+		GameList result = gameList;
+		long version = serverMapVersion.get();
+		
+		if (result.version != version)
+		{
+			// The map version is read before the map, so that a list built
+			// while a game is being created or deleted is built again on the next call.
+			result = new GameList(version, Collections.unmodifiableSet(new TreeSet<String>(serverMap.keySet())));
+			gameList = result;
+		}
+		
+		return result.games;
+	}
+	
+	/**
+	 * @see org.gojul.fourinaline.model.GlobalServer#getGames(int, int, java.lang.String, boolean)
+	 */
+	public GamePage getGames(final int offset, final int limit, final String namePrefix, final boolean joinableOnly)
+		throws IllegalArgumentException, RemoteException
+	{
+		AdmissionControl.getInstance().admitRemoteCall();
+		
+		if (hashRing == null)
+			return doGetLocalGames(offset, limit, namePrefix, joinableOnly);
+		
+		if (offset < 0)
+			throw new IllegalArgumentException("Invalid offset : " + offset);
+		
+		if (limit <= 0)
+			throw new IllegalArgumentException("Invalid limit : " + limit);
+		
+		// The first games of each node are merged. The page may start with the
+		// games of any node, so each node must return as many games as the page
+		// offset plus the page size, and one more to know whether there are more games.
+		int pageSize = Math.min(limit, MAX_GAME_PAGE_SIZE);
+		long neededGameCount = (long) offset + pageSize + 1;
+		List<GameDescriptor> games = new ArrayList<GameDescriptor>();
+		
+		for (String address: hashRing.getNodes())
+		{
+			try
+			{
+				GlobalServerNode node = getNode(address);
+				int nodeOffset = 0;
+				GamePage page = null;
+				
+				do
+				{
+					page = node.getLocalGames(nodeOffset, MAX_GAME_PAGE_SIZE, namePrefix, joinableOnly);
+					games.addAll(page.getGames());
+					nodeOffset += page.getGames().size();
+				}
+				while (page.hasMoreGames() && nodeOffset < neededGameCount);
+			}
+			catch (RemoteException e)
+			{
+				// The games of an unreachable node are not listed.
+				nodeFailed(address, e);
+			}
+		}
+		
+		Collections.sort(games, new GameNameComparator());
+		
+		int fromIndex = Math.min(offset, games.size());
+		int toIndex = Math.min(fromIndex + pageSize, games.size());
+		
+		return new GamePage(games.subList(fromIndex, toIndex), games.size() > toIndex);
+	}
+	
+	/**
+	 * @see org.gojul.fourinaline.model.GlobalServerNode#getLocalGames(int, int, java.lang.String, boolean)
+	 */
+	public GamePage getLocalGames(final int offset, final int limit, final String namePrefix, final boolean joinableOnly)
+		throws IllegalArgumentException, RemoteException
+	{
+		AdmissionControl.getInstance().admitRemoteCall();
+		
+		return doGetLocalGames(offset, limit, namePrefix, joinableOnly);
+	}
+	
+	/**
+	 * Returns a page of the games hosted by this node.
+	 * @param offset the index of the first game of the page.
+	 * @param limit the maximum number of games of the page.
+	 * @param namePrefix the prefix of the names of the games to return,
+	 * or null to return the games whatever their name.
+	 * @param joinableOnly true if only the games a player can join must
+	 * be returned, false elsewhere.
+	 * @return the page of the games.
+	 * @throws IllegalArgumentException if <code>offset</code> is negative
+	 * or if <code>limit</code> is not strictly positive.
+	 */
+	private GamePage doGetLocalGames(final int offset, final int limit, final String namePrefix, final boolean joinableOnly)
+		throws IllegalArgumentException
+	{
+		if (offset < 0)
+			throw new IllegalArgumentException("Invalid offset : " + offset);
+		
+		if (limit <= 0)
+			throw new IllegalArgumentException("Invalid limit : " + limit);
+		
+		int pageSize = Math.min(limit, MAX_GAME_PAGE_SIZE);
+		NavigableMap<String, GameDescriptor> index = joinableOnly ? joinableGameIndex : gameIndex;
+		
+		if (namePrefix != null)
+			index = index.tailMap(namePrefix, true);
+		
+		Iterator<Map.Entry<String, GameDescriptor>> it = index.entrySet().iterator();
+		List<GameDescriptor> games = new ArrayList<GameDescriptor>(pageSize);
+		int skippedGames = 0;
+		boolean hasMoreGames = false;
+		boolean isPrefixMatched = true;
+		
+		while (it.hasNext() && isPrefixMatched && !hasMoreGames)
+		{
+			Map.Entry<String, GameDescriptor> entry = it.next();
+			
+			// The games that start with the prefix are the first games of the tail map.
+			if (namePrefix != null && !entry.getKey().startsWith(namePrefix))
+				isPrefixMatched = false;
+			else if (skippedGames < offset)
+				skippedGames++;
+			else if (games.size() < pageSize)
+				games.add(entry.getValue());
+			else
+				hasMoreGames = true;
+		}
+		
+		return new GamePage(games, hasMoreGames);
+	}
+	
+	/**
+	 * @see org.gojul.fourinaline.model.GlobalServer#getGameServer(java.lang.String)
+	 */
+	public GameServer getGameServer(final String name) throws NullPointerException, RemoteException, NotBoundException
+	{
+		AdmissionControl.getInstance().admitRemoteCall();
+		
+		if (name == null)
+			throw new NullPointerException();
+		
+		return getGameNode(name).getLocalGameServer(name);
+	}
+	
+	/**
+	 * @see org.gojul.fourinaline.model.GlobalServerNode#getLocalGameServer(java.lang.String)
+	 */
+	public GameServer getLocalGameServer(final String name) throws NullPointerException, RemoteException, NotBoundException
+	{
+		AdmissionControl.getInstance().admitRemoteCall();
+		
+		return doGetLocalGameServer(name);
+	}
+	
+	/**
+	 * Returns the game server of the game with name <code>name</code> hosted by this node.
+	 * @param name the name of the game.
+	 * @return the game server of the game.
+	 * @throws NullPointerException if <code>name</code> is null.
+	 * @throws RemoteException if the game server can't be looked up.
+	 * @throws NotBoundException if this node hosts no game with name <code>name</code>.
+	 */
+	private GameServer doGetLocalGameServer(final String name) throws NullPointerException, RemoteException, NotBoundException
+	{
+		if (name == null)
+			throw new NullPointerException();
+		
+		if (!serverMap.containsKey(name))
+			throw new NotBoundException(name);
+		
+		return (GameServer) registry.lookup(SINGLE_GAME_SERVER_STUB_PREFIX + name);
+	}
+	
+	/**
+	 * Returns the node which hosts the game with name <code>name</code>.
+	 * @param name the name of the game.
+	 * @return the node which hosts the game.
+	 * @throws RemoteException if the node can't be looked up.
+	 */
+	private GlobalServerNode getGameNode(final String name) throws RemoteException
+	{
+		if (hashRing == null)
+			return localNode;
+		else
+			return getNode(hashRing.getNode(name));
+	}
+	
+	/**
+	 * Returns the node which has for address <code>address</code>.<br/>
+	 * The node is looked up in its RMI registry the first time it is used.
+	 * @param address the node address.
+	 * @return the node.
+	 * @throws RemoteException if the node can't be looked up.
+	 */
+	private GlobalServerNode getNode(final String address) throws RemoteException
+	{
+		if (address.equals(nodeAddress))
+			return localNode;
+		
+		GlobalServerNode result = nodes.get(address);
+		
+		if (result == null)
+		{
+			try
+			{
+				result = (GlobalServerNode) MiscUtils.getRegistry(address).lookup(STUB_NAME);
+			}
+			catch (NotBoundException e)
+			{
+				throw new RemoteException("The node " + address + " is not started", e);
+			}
+			
+			nodes.put(address, result);
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Handles the failure of a call to the node which has for address <code>address</code> :
+	 * the node is looked up again on the next call, since it may have been restarted.
+	 * @param address the node address.
+	 * @param e the failure.
+	 */
+	private void nodeFailed(final String address, final RemoteException e)
+	{
+		nodes.remove(address);
+		System.err.println("Node " + address + " unreachable : " + e.getMessage());
+	}
+	
+	/**
+	 * Updates the index entry of the game server <code>gameServer</code>,
+	 * which has for name <code>name</code>.<br/>
+	 * This method must be called while the monitor of <code>gameServer</code>
+	 * is held, so that the updates of the game server are indexed in order.
+	 * @param name the name of the game.
+	 * @param gameServer the game server.
+	 */
+	private void indexGame(final String name, final GameServerImpl gameServer)
+	{
+		// The game server may have been deleted.
+		if (serverMap.get(name) != gameServer)
+			return;
+		
+		// The snapshot is read directly, since the index updates are
+		// not remote calls and must not go through the admission control.
+		GameDescriptor descriptor = new GameDescriptor(name, gameServer.getPlayerCount(),
+			PlayerMark.getNumberOfPlayerMarks(), gameServer.getSnapshot().isGameRunning());
+		
+		gameIndex.put(name, descriptor);
+		
+		if (descriptor.isJoinable())
+			joinableGameIndex.put(name, descriptor);
+		else
+			joinableGameIndex.remove(name);
+	}
+	
+	/**
+	 * Removes the game server <code>gameServer</code>, which has for name <code>name</code>,
+	 * from the server map and from the game index.
+	 * @param name the name of the game.
+	 * @param gameServer the game server.
+	 * @return true if the game server has been removed, false if it was
+	 * already removed.
+	 */
+	private boolean removeGame(final String name, final GameServer gameServer)
+	{
+		// The monitor of the game server is held so that no index update
+		// of the game server occurs while it is removed.
+		synchronized (gameServer)
+		{
+			if (!serverMap.remove(name, gameServer))
+				return false;
+			
+			serverMapVersion.incrementAndGet();
+			gameIndex.remove(name);
+			joinableGameIndex.remove(name);
+		}
+		
+		return true;
 	}
 
 	/**
 	 * @see java.util.Observer#update(java.util.Observable, java.lang.Object)
 	 */
-	public synchronized void update(final Observable o, final Object arg)
+	public void update(final Observable o, final Object arg)
 	{		
 		if (o != null && arg != null && o instanceof GameServer && arg instanceof String)
 		{
-			if (serverMap.containsKey(arg))
+			// Only one of the concurrent notifications of a given server removes it.
+			if (removeGame((String) arg, (GameServer) o))
 			{
-				serverMap.remove(arg);
-			
 				try
 				{
 					registry.unbind(SINGLE_GAME_SERVER_STUB_PREFIX + arg);
@@ -149,6 +802,11 @@ public final class GlobalServerImpl implements GlobalServer, Observer
 					t.printStackTrace();
 				}
 				
+				ServerMetrics.getInstance().forget((GameServer) o);
+				
+				if (stateJournal != null)
+					stateJournal.serverDeleted((String) arg);
+				
 				System.out.println("Deleted game " + arg);
 			}
 		}
@@ -162,20 +820,79 @@ public final class GlobalServerImpl implements GlobalServer, Observer
 	 */
 	private static GlobalServer serverInstance = null;
 	
+	/**
+	 * Starts the global server.<br/>
+	 * Without any argument, the server runs alone with a registry on the default port.
+	 * Otherwise, the server runs as a node of a cluster : the first argument is the
+	 * address of the node, which has the form <code>host:port</code>, and the next
+	 * ones are the addresses of the other nodes of the cluster. The registry of the
+	 * node is created on the port of its address.
+	 * @param args the program arguments.
+	 * @throws Throwable if an error occurs while starting the server.
+	 */
 	public static void main(String[] args) throws Throwable
 	{	
 		System.out.println("Four in a line version " + MiscUtils.getVersion());		
 		
-		Registry registry = MiscUtils.initRMIServer(1099);
+		Registry registry = null;
 		
-		serverInstance = new GlobalServerImpl(registry);
+		// The finished games are recorded if a record directory is given,
+		// the players are rated from the recorded games and their positions
+		// are indexed.
+		String recordDirectory = System.getProperty(GameRecordPlayerProvider.DIRECTORY_PROPERTY);
+		GamePlayerProvider playerProvider = new DefaultGamePlayerProvider();
 		
-		// Ensure compliancy with previous JVM versions.
-		GlobalServer stub = (GlobalServer) UnicastRemoteObject.exportObject(serverInstance);		
+		if (recordDirectory != null)
+		{
+			GameRecordLog recordLog = new GameRecordLog(new File(recordDirectory));
+			RatingService ratingService = new RatingService(new File(recordDirectory, RatingService.SNAPSHOT_FILE_NAME), recordLog);
+			PositionIndex positionIndex = new PositionIndex(new File(recordDirectory, PositionIndex.DIRECTORY_NAME), recordLog);
+			
+			playerProvider = new GameRecordPlayerProvider(recordLog, ratingService);
+			System.out.println("Recording the games in " + recordDirectory + ", " + ratingService.getPlayerCount() + " rated players, "
+				+ positionIndex.getLastGameId() + " indexed games");
+		}
+		
+		// The states of the games are saved if a state directory is given,
+		// and the games saved before the server stopped are restored.
+		String stateDirectory = System.getProperty(ServerStateJournal.DIRECTORY_PROPERTY);
+		ServerStateJournal stateJournal = null;
+		
+		if (stateDirectory != null)
+			stateJournal = new ServerStateJournal(new File(stateDirectory));
+		
+		GlobalServerImpl server = null;
+		
+		if (args.length == 0)
+		{
+			registry = MiscUtils.initRMIServer(1099);
+			server = new GlobalServerImpl(registry, playerProvider, stateJournal);
+		}
+		else
+		{
+			registry = MiscUtils.initRMIServer(MiscUtils.getRegistryPort(args[0]));
+			server = new GlobalServerImpl(registry, args[0], Arrays.asList(args), playerProvider, stateJournal);
+			System.out.println("Cluster node " + args[0]);
+		}
+		
+		if (stateJournal != null)
+		{
+			long startTime = System.currentTimeMillis();
+			server.restoreGames();
+			System.out.println("Saving the games in " + stateDirectory + ", " + server.serverMap.size() + " games restored in "
+				+ (System.currentTimeMillis() - startTime) + " ms");
+		}
+		
+		serverInstance = server;
+		
+		// The server is exported behind a proxy that measures its calls.
+		GlobalServer stub = (GlobalServer) ServerMetrics.getInstance().export(serverInstance, GlobalServer.class, GlobalServerNode.class);
 		registry.rebind(STUB_NAME, stub);
 		
 		System.out.println("Game daemon started");
 		
+		ServerMetrics.startHttpServer();
+		
 		// Server is now waiting...
 		while (true) {
 			Thread.sleep(5000);
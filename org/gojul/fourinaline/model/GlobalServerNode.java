@@ -0,0 +1,93 @@
+/*
+ * GlobalServerNode.java
+ *
+ * Created: 2026/10/19
+ *
+ * Copyright (C) 2026 Julien Aubin
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.gojul.fourinaline.model;
+
+import java.rmi.AlreadyBoundException;
+import java.rmi.NotBoundException;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.Set;
+
+import org.gojul.fourinaline.model.GameServer.ServerBusyException;
+import org.gojul.fourinaline.model.GlobalServer.GamePage;
+
+/**
+ * The <code>GlobalServerNode</code> interface is the interface of the nodes
+ * of a cluster of global servers.<br/>
+ * Each node hosts the games assigned to it by consistent hashing of their
+ * names, and forwards the global server calls about the other games to their
+ * node. The methods of this interface are the ones the nodes call on each other :
+ * they only consider the games hosted by the called node.<br/>
+ * Since the nodes are exported on the same stub as the global server, the calls
+ * of these methods go through the same admission control as the client calls.
+ *
+ * @author Julien Aubin
+ */
+public interface GlobalServerNode extends Remote
+{
+	/**
+	 * Creates the game with name <code>name</code> on this node.
+	 * @param name the name of the game to create.
+	 * @throws NullPointerException if <code>name</code> is null.
+	 * @throws RemoteException if a remote error occurs while creating the game.
+	 * @throws AlreadyBoundException if there's another game with name <code>name</code>.
+	 * @throws ServerBusyException if too many games are being created on this node,
+	 * or if the caller performs too many calls.
+	 * @throws IllegalArgumentException if the game is not assigned to this node.
+	 */
+	public void createLocalGame(final String name) throws NullPointerException, RemoteException, AlreadyBoundException, ServerBusyException,
+		IllegalArgumentException;
+	
+	/**
+	 * Returns the game server of the game with name <code>name</code> hosted by this node.
+	 * @param name the name of the game.
+	 * @return the game server of the game.
+	 * @throws NullPointerException if <code>name</code> is null.
+	 * @throws RemoteException if a remote error occurs while returning the game server.
+	 * @throws NotBoundException if this node hosts no game with name <code>name</code>.
+	 */
+	public GameServer getLocalGameServer(final String name) throws NullPointerException, RemoteException, NotBoundException;
+	
+	/**
+	 * Returns the names of the games hosted by this node.
+	 * @return the names of the games hosted by this node.
+	 * @throws RemoteException if a remote error occurs while returning the games.
+	 */
+	public Set<String> getLocalGames() throws RemoteException;
+	
+	/**
+	 * Returns a page of the games hosted by this node.
+	 * @param offset the index of the first game of the page.
+	 * @param limit the maximum number of games of the page.
+	 * @param namePrefix the prefix of the names of the games to return,
+	 * or null to return the games whatever their name.
+	 * @param joinableOnly true if only the games a player can join must
+	 * be returned, false elsewhere.
+	 * @return the page of the games.
+	 * @throws IllegalArgumentException if <code>offset</code> is negative
+	 * or if <code>limit</code> is not strictly positive.
+	 * @throws RemoteException if a remote error occurs while returning the games.
+	 * @see GlobalServer#getGames(int, int, String, boolean)
+	 */
+	public GamePage getLocalGames(final int offset, final int limit, final String namePrefix, final boolean joinableOnly)
+		throws IllegalArgumentException, RemoteException;
+}
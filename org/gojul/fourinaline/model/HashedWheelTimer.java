@@ -0,0 +1,359 @@
+/*
+ * HashedWheelTimer.java
+ *
+ * Created: 2026/10/19
+ *
+ * Copyright (C) 2026 Julien Aubin
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.gojul.fourinaline.model;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The <code>HashedWheelTimer</code> class expires the timeouts of all the
+ * game servers of the JVM, like their idle timeout or their ticket leases.<br/>
+ * The timeouts are stored in a wheel of buckets, each bucket containing the
+ * timeouts which expire during a given tick. A single thread advances the wheel
+ * once per tick, and only checks the timeouts of the current bucket.<br/>
+ * A timeout is reset by touching it, which only records the touch time : the
+ * timeout is moved to the bucket of its new deadline when its former bucket is
+ * reached. Thus touching a timeout costs the same whatever the number of timeouts,
+ * which matters since the game servers touch their timeouts on every call.<br/>
+ * The timeout precision is one tick, which suits the timeouts of the game servers.
+ * The expired tasks are run in a pool of threads, so that a slow task does not
+ * delay the other timeouts.
+ *
+ * @author Julien Aubin
+ */
+final class HashedWheelTimer
+{
+	/**
+	 * The tick duration in milliseconds.
+	 */
+	private final static long TICK_DURATION = 1000;
+	
+	/**
+	 * The number of buckets of the wheel. This must be a power of 2.
+	 */
+	private final static int WHEEL_SIZE = 512;
+	
+	/**
+	 * The timer instance.
+	 */
+	private final static HashedWheelTimer instance = new HashedWheelTimer();
+	
+	/**
+	 * The <code>Timeout</code> class is a timeout of the timer.
+	 *
+	 * @author Julien Aubin
+	 */
+	final static class Timeout
+	{
+		/**
+		 * The state of an active timeout.
+		 */
+		private final static int ACTIVE_STATE = 0;
+		
+		/**
+		 * The state of a cancelled timeout.
+		 */
+		private final static int CANCELLED_STATE = 1;
+		
+		/**
+		 * The state of an expired timeout.
+		 */
+		private final static int EXPIRED_STATE = 2;
+		
+		/**
+		 * The task run when the timeout expires.
+		 */
+		private Runnable task;
+		
+		/**
+		 * The timeout delay in nanoseconds.
+		 */
+		private long delay;
+		
+		/**
+		 * The time in nanoseconds of the latest touch of the timeout.
+		 */
+		private volatile long touchTime;
+		
+		/**
+		 * The timeout state.
+		 */
+		private AtomicInteger state;
+		
+		/**
+		 * The number of wheel turns before the bucket of the timeout
+		 * is checked. It is only used by the timer thread.
+		 */
+		private long remainingRounds;
+		
+		/**
+		 * Constructor.
+		 * @param timeoutTask the task run when the timeout expires.
+		 * @param timeoutDelay the timeout delay in nanoseconds.
+		 */
+		private Timeout(final Runnable timeoutTask, final long timeoutDelay)
+		{
+			task = timeoutTask;
+			delay = timeoutDelay;
+			touchTime = System.nanoTime();
+			state = new AtomicInteger(ACTIVE_STATE);
+		}
+		
+		/**
+		 * Touches the timeout, i.e. restarts its delay.<br/>
+		 * This method does nothing if the timeout has expired.
+		 */
+		void touch()
+		{
+			touchTime = System.nanoTime();
+		}
+		
+		/**
+		 * Cancels the timeout, so that its task is not run.
+		 */
+		void cancel()
+		{
+			state.compareAndSet(ACTIVE_STATE, CANCELLED_STATE);
+		}
+		
+		/**
+		 * Returns true if the timeout has expired, false elsewhere.
+		 * @return true if the timeout has expired, false elsewhere.
+		 */
+		boolean isExpired()
+		{
+			return state.get() == EXPIRED_STATE;
+		}
+		
+		/**
+		 * Returns the time in nanoseconds at which the timeout expires
+		 * if it is no longer touched.
+		 * @return the expiration time of the timeout.
+		 */
+		private long getExpirationTime()
+		{
+			return touchTime + delay;
+		}
+	}
+	
+	/**
+	 * The buckets of the wheel. They are only used by the timer thread.
+	 */
+	private List<List<Timeout>> wheel;
+	
+	/**
+	 * The timeouts to add to the wheel on the next tick.
+	 */
+	private Queue<Timeout> newTimeouts;
+	
+	/**
+	 * The executor that runs the tasks of the expired timeouts.
+	 */
+	private ExecutorService taskExecutor;
+	
+	/**
+	 * The start time of the timer in nanoseconds.
+	 */
+	private long startTime;
+	
+	/**
+	 * The current tick. It is only used by the timer thread.
+	 */
+	private long tick;
+	
+	/**
+	 * Constructor.
+	 */
+	private HashedWheelTimer()
+	{
+		wheel = new ArrayList<List<Timeout>>(WHEEL_SIZE);
+		
+		for (int i = 0; i < WHEEL_SIZE; i++)
+			wheel.add(new LinkedList<Timeout>());
+		
+		newTimeouts = new ConcurrentLinkedQueue<Timeout>();
+		taskExecutor = Executors.newCachedThreadPool(new DaemonThreadFactory(MiscUtils.getClientThreadFactory(), "HashedWheelTimer-task"));
+		startTime = System.nanoTime();
+		tick = 0;
+		
+		new DaemonThreadFactory(Executors.defaultThreadFactory(), "HashedWheelTimer").newThread(new Runnable()
+		{
+			/**
+			 * @see java.lang.Runnable#run()
+			 */
+			public void run()
+			{
+				runWheel();
+			}
+		}).start();
+	}
+	
+	/**
+	 * Returns the timer instance.
+	 * @return the timer instance.
+	 */
+	static HashedWheelTimer getInstance()
+	{
+		return instance;
+	}
+	
+	/**
+	 * Creates a timeout which runs the task <code>task</code> once it has
+	 * not been touched for <code>delay</code> milliseconds.
+	 * @param task the task run when the timeout expires.
+	 * @param delay the timeout delay in milliseconds.
+	 * @return the created timeout.
+	 * @throws NullPointerException if <code>task</code> is null.
+	 * @throws IllegalArgumentException if <code>delay</code> is not strictly positive.
+	 */
+	Timeout newTimeout(final Runnable task, final long delay) throws NullPointerException, IllegalArgumentException
+	{
+		if (task == null)
+			throw new NullPointerException();
+		
+		if (delay <= 0)
+			throw new IllegalArgumentException("Invalid delay : " + delay);
+		
+		Timeout result = new Timeout(task, TimeUnit.MILLISECONDS.toNanos(delay));
+		newTimeouts.add(result);
+		
+		return result;
+	}
+	
+	/**
+	 * Advances the wheel once per tick, forever.
+	 */
+	private void runWheel()
+	{
+		long tickDuration = TimeUnit.MILLISECONDS.toNanos(TICK_DURATION);
+		
+		while (true)
+		{
+			long sleepTime = startTime + (tick + 1) * tickDuration - System.nanoTime();
+			
+			if (sleepTime > 0)
+			{
+				try
+				{
+					TimeUnit.NANOSECONDS.sleep(sleepTime);
+				}
+				catch (InterruptedException e)
+				{
+					// The timer thread is never interrupted.
+				}
+			}
+			else
+			{
+				Timeout timeout = newTimeouts.poll();
+				
+				while (timeout != null)
+				{
+					schedule(timeout);
+					timeout = newTimeouts.poll();
+				}
+				
+				expireTimeouts();
+			}
+		}
+	}
+	
+	/**
+	 * Checks the timeouts of the bucket of the current tick, runs the
+	 * tasks of the ones which have expired and moves the ones which have
+	 * been touched meanwhile, then moves to the next tick.
+	 */
+	private void expireTimeouts()
+	{
+		long now = System.nanoTime();
+		List<Timeout> touchedTimeouts = new ArrayList<Timeout>();
+		Iterator<Timeout> it = wheel.get((int) (tick & (WHEEL_SIZE - 1))).iterator();
+		
+		while (it.hasNext())
+		{
+			Timeout timeout = it.next();
+			
+			if (timeout.state.get() != Timeout.ACTIVE_STATE)
+				it.remove();
+			else if (timeout.remainingRounds > 0)
+				timeout.remainingRounds--;
+			else
+			{
+				it.remove();
+				
+				if (timeout.getExpirationTime() - now > 0)
+					touchedTimeouts.add(timeout);
+				else if (timeout.state.compareAndSet(Timeout.ACTIVE_STATE, Timeout.EXPIRED_STATE))
+					runTask(timeout.task);
+			}
+		}
+		
+		tick++;
+		
+		for (Timeout timeout: touchedTimeouts)
+			schedule(timeout);
+	}
+	
+	/**
+	 * Puts the timeout <code>timeout</code> in the bucket of its expiration time.
+	 * @param timeout the timeout to schedule.
+	 */
+	private void schedule(final Timeout timeout)
+	{
+		long timeoutTick = Math.max((timeout.getExpirationTime() - startTime) / TimeUnit.MILLISECONDS.toNanos(TICK_DURATION), tick);
+		
+		timeout.remainingRounds = (timeoutTick - tick) / WHEEL_SIZE;
+		wheel.get((int) (timeoutTick & (WHEEL_SIZE - 1))).add(timeout);
+	}
+	
+	/**
+	 * Runs the task <code>task</code> of an expired timeout.
+	 * @param task the task to run.
+	 */
+	private void runTask(final Runnable task)
+	{
+		taskExecutor.execute(new Runnable()
+		{
+			/**
+			 * @see java.lang.Runnable#run()
+			 */
+			public void run()
+			{
+				try
+				{
+					task.run();
+				}
+				catch (Throwable t)
+				{
+					t.printStackTrace();
+				}
+			}
+		});
+	}
+}
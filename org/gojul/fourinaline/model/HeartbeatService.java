@@ -0,0 +1,301 @@
+/*
+ * HeartbeatService.java
+ *
+ * Created: 2026/10/19
+ *
+ * Copyright (C) 2026 Julien Aubin
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.gojul.fourinaline.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.gojul.fourinaline.model.GameServer.ServerBusyException;
+
+/**
+ * The <code>HeartbeatService</code> class checks regularly that the game servers
+ * used by the game clients of the JVM are still reachable, and disconnects the
+ * clients of the servers that are no longer reachable.<br/>
+ * The checks are shared : whatever the number of clients of a server, the server
+ * is checked once per period, like when a human player and an AI player share the
+ * same server. A random jitter is applied to the check period so that the checks
+ * of several servers are spread over time. A failed check is retried with an
+ * exponential backoff before the server is considered as lost.<br/>
+ * The checks are scheduled by a single thread, and run in a pool of threads so that
+ * a server that does not answer does not delay the checks of the other servers.
+ *
+ * @author Julien Aubin
+ */
+final class HeartbeatService
+{
+	/**
+	 * The check period in milliseconds.
+	 */
+	private final static long CHECK_PERIOD = 10000;
+
+	/**
+	 * The maximum time in milliseconds added to or removed from the check period.
+	 */
+	private final static long CHECK_JITTER = 2000;
+
+	/**
+	 * The time in milliseconds before the first retry of a failed check.
+	 * It is doubled for each further retry.
+	 */
+	private final static long RETRY_DELAY = 1000;
+
+	/**
+	 * The number of consecutive failed checks after which a server
+	 * is considered as lost.
+	 */
+	private final static int MAX_FAILURES = 3;
+
+	/**
+	 * The service instance.
+	 */
+	private final static HeartbeatService instance = new HeartbeatService();
+
+	/**
+	 * The <code>ServerEntry</code> class contains the clients of a server
+	 * and the state of its checks.
+	 *
+	 * @author Julien Aubin
+	 */
+	private final static class ServerEntry
+	{
+		/**
+		 * The checked server.
+		 */
+		private GameServer gameServer;
+
+		/**
+		 * The clients of the server.
+		 */
+		private Set<GameClient> gameClients;
+
+		/**
+		 * The number of consecutive failed checks.
+		 */
+		private int failureCount;
+
+		/**
+		 * The next check of the server.
+		 */
+		private ScheduledFuture<?> nextCheck;
+
+		/**
+		 * Constructor.
+		 * @param server the checked server.
+		 */
+		private ServerEntry(final GameServer server)
+		{
+			gameServer = server;
+			gameClients = new LinkedHashSet<GameClient>();
+			failureCount = 0;
+			nextCheck = null;
+		}
+	}
+
+	/**
+	 * The scheduler of the checks.
+	 */
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * The executor that runs the checks.
+	 */
+	private ExecutorService checkExecutor;
+
+	/**
+	 * The map that ties a server to its entry.
+	 */
+	private Map<GameServer, ServerEntry> serverEntries;
+
+	/**
+	 * The random generator of the jitter.
+	 */
+	private Random jitterRandom;
+
+	/**
+	 * Constructor.
+	 */
+	private HeartbeatService()
+	{
+		scheduler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory(Executors.defaultThreadFactory(), "HeartbeatService"));
+		checkExecutor = Executors.newCachedThreadPool(new DaemonThreadFactory(MiscUtils.getClientThreadFactory(), "HeartbeatService-check"));
+		serverEntries = new HashMap<GameServer, ServerEntry>();
+		jitterRandom = new Random();
+	}
+
+	/**
+	 * Returns the service instance.
+	 * @return the service instance.
+	 */
+	static HeartbeatService getInstance()
+	{
+		return instance;
+	}
+
+	/**
+	 * Registers the game client <code>gameClient</code> of the server <code>gameServer</code>.
+	 * The client is disconnected if the server is lost.
+	 * @param gameClient the client to register.
+	 * @param gameServer the server of the client.
+	 * @throws NullPointerException if any of the method parameter is null.
+	 */
+	synchronized void register(final GameClient gameClient, final GameServer gameServer) throws NullPointerException
+	{
+		if (gameClient == null || gameServer == null)
+			throw new NullPointerException();
+
+		ServerEntry entry = serverEntries.get(gameServer);
+
+		if (entry == null)
+		{
+			entry = new ServerEntry(gameServer);
+			serverEntries.put(gameServer, entry);
+			scheduleCheck(entry, getCheckPeriod());
+		}
+
+		entry.gameClients.add(gameClient);
+	}
+
+	/**
+	 * Unregisters the game client <code>gameClient</code> of the server <code>gameServer</code>.
+	 * The server is no longer checked once it has no more registered client.
+	 * @param gameClient the client to unregister.
+	 * @param gameServer the server of the client.
+	 */
+	synchronized void unregister(final GameClient gameClient, final GameServer gameServer)
+	{
+		ServerEntry entry = serverEntries.get(gameServer);
+
+		if (entry != null && entry.gameClients.remove(gameClient) && entry.gameClients.isEmpty())
+		{
+			serverEntries.remove(gameServer);
+
+			if (entry.nextCheck != null)
+				entry.nextCheck.cancel(false);
+		}
+	}
+
+	/**
+	 * Returns the check period with a random jitter.
+	 * @return the check period with a random jitter.
+	 */
+	private long getCheckPeriod()
+	{
+		return CHECK_PERIOD - CHECK_JITTER + (long) (jitterRandom.nextDouble() * 2 * CHECK_JITTER);
+	}
+
+	/**
+	 * Schedules the next check of the server of <code>entry</code>.
+	 * @param entry the entry of the server.
+	 * @param delay the check delay in milliseconds.
+	 */
+	private synchronized void scheduleCheck(final ServerEntry entry, final long delay)
+	{
+		entry.nextCheck = scheduler.schedule(new Runnable()
+		{
+			/**
+			 * @see java.lang.Runnable#run()
+			 */
+			public void run()
+			{
+				checkExecutor.execute(new Runnable()
+				{
+					/**
+					 * @see java.lang.Runnable#run()
+					 */
+					public void run()
+					{
+						check(entry);
+					}
+				});
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Checks the server of <code>entry</code>, and schedules its next check
+	 * or disconnects its clients if it is lost.
+	 * @param entry the entry of the server.
+	 */
+	private void check(final ServerEntry entry)
+	{
+		boolean isServerReachable;
+
+		// The server is not locked while being called, since
+		// it may take a long time to answer.
+		try
+		{
+			entry.gameServer.isGameRunning();
+			isServerReachable = true;
+		}
+		catch (ServerBusyException e)
+		{
+			// The server has answered, even if it has rejected the call.
+			isServerReachable = true;
+		}
+		catch (Throwable t)
+		{
+			isServerReachable = false;
+		}
+
+		List<GameClient> lostClients = null;
+
+		synchronized (this)
+		{
+			// All the clients of the server may have been unregistered meanwhile.
+			if (serverEntries.get(entry.gameServer) != entry)
+				return;
+
+			if (isServerReachable)
+			{
+				entry.failureCount = 0;
+				scheduleCheck(entry, getCheckPeriod());
+			}
+			else if (++entry.failureCount < MAX_FAILURES)
+			{
+				scheduleCheck(entry, RETRY_DELAY << (entry.failureCount - 1));
+			}
+			else
+			{
+				serverEntries.remove(entry.gameServer);
+				lostClients = new ArrayList<GameClient>(entry.gameClients);
+			}
+		}
+
+		// The clients are notified outside of the lock since their
+		// disconnection hooks may take some time.
+		if (lostClients != null)
+		{
+			for (GameClient gameClient: lostClients)
+				gameClient.serverLost();
+		}
+	}
+}
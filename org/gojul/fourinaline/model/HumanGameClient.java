@@ -29,10 +29,13 @@ import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
 import java.util.Observable;
 import java.util.Observer;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.gojul.fourinaline.model.GameModel.GameModelException;
 import org.gojul.fourinaline.model.GameModel.GameStatus;
 import org.gojul.fourinaline.model.GameServer.PlayerRegisterException;
+import org.gojul.fourinaline.model.GameServer.ServerBusyException;
 import org.gojul.fourinaline.model.GameServer.ServerTicket;
 import org.gojul.fourinaline.model.GameServer.ServerTicketException;
 
@@ -51,6 +54,14 @@ public final class HumanGameClient extends GameClient
 	 */
 	private GameModel currentGameModel;
 	
+	/**
+	 * The lock that guards the game model.<br/>
+	 * A lock is used instead of the client monitor since the server is called
+	 * while it is held : a virtual thread that waits for a server call while
+	 * holding a monitor would block its carrier thread.
+	 */
+	private Lock gameModelLock;
+	
 	/**
 	 * Constructor.
 	 * @param gameServer the game server.
@@ -67,15 +78,25 @@ public final class HumanGameClient extends GameClient
 	{
 		super(gameServer, ticket, playerName);
 		currentGameModel = null;
+		gameModelLock = new ReentrantLock();
 	}
 	
 	/**
 	 * Returns the game model used.
 	 * @return the game model used.
 	 */
-	public synchronized GameModel getGameModel()
+	public GameModel getGameModel()
 	{
-		return currentGameModel;
+		gameModelLock.lock();
+		
+		try
+		{
+			return currentGameModel;
+		}
+		finally
+		{
+			gameModelLock.unlock();
+		}
 	}
 
 	/**
@@ -83,6 +104,13 @@ public final class HumanGameClient extends GameClient
 	 */
 	public void run()
 	{
+		// The last known version of the server state. Its initial
+		// value makes the first wait return immediately.
+		long stateVersion = -1;
+		
+		// The number of calls rejected in a row because the server was busy.
+		int rejectionCount = 0;
+		
 		// The thread stops if the server is no longer running,
 		// or at the first exception encountered.
 		while (isConnectedToServer())
@@ -90,11 +118,13 @@ public final class HumanGameClient extends GameClient
 			
 			try
 			{					
-				GameModel gameModel = getServer().getGame(getPlayer().getPlayerMark(), getTicket());
+				GameModel gameModel = getGame();
 				
 				boolean isGameRunning = true;
 				
-				synchronized(this)
+				gameModelLock.lock();
+				
+				try
 				{					
 					// We only notify the observers in case of an update of the game model
 					if ((gameModel != null && !gameModel.equals(currentGameModel))
@@ -109,25 +139,26 @@ public final class HumanGameClient extends GameClient
 					// in order to avoid bad stuff with multithread.
 					isGameRunning = getServer().isGameRunning() && currentGameModel != null; 
 				}
+				finally
+				{
+					gameModelLock.unlock();
+				}
 				
 				notifyObservers();
 				
 				// In case the game is running, the process self-blocks until the next turn
 				// at line getServer().getGame()
-				// Otherwise we need to sleep a bit in order to avoid a high CPU consumption
+				// Otherwise we wait for a change of the server state, i.e. a new game.
+				// Since the version is read before the game, no change can be missed.
 				if (!isGameRunning)
-				{
-					// The sleep process is here to avoid the use of an infinite
-					// loop which would consume a lot of CPU.
-					try
-					{
-						Thread.sleep(SERVER_STATUS_UPDATE_PERIOD);
-					}
-					catch (InterruptedException e)
-					{
-						throw new RuntimeException(e.getMessage());
-					}
-				}
+					stateVersion = getServer().awaitStateChange(stateVersion, SERVER_STATE_WAIT_TIMEOUT);
+				
+				rejectionCount = 0;
+			}
+			catch (ServerBusyException e)
+			{
+				// The rejected calls have not been performed, so they are retried later.
+				waitBeforeRetry(++rejectionCount);
 			}
 			catch (RemoteException e)
 			{
@@ -147,20 +178,29 @@ public final class HumanGameClient extends GameClient
 	 * @throws GameModelException if the play is not valid.
 	 * @throws RemoteException if an external error occurs.
 	 */
-	public synchronized void play(final int columnIndex) throws GameModelException, RemoteException
+	public void play(final int columnIndex) throws GameModelException, RemoteException
 	{		
-		if (currentGameModel != null 
-			&& currentGameModel.getGameStatus().equals(GameStatus.CONTINUE_STATUS)
-			&& currentGameModel.getCurrentPlayer().equals(getPlayer().getPlayerMark()))
+		gameModelLock.lock();
+		
+		try
 		{
-			getServer().play(columnIndex, getPlayer().getPlayerMark(), currentGameModel, getTicket());
-			
-			// We play locally AFTER having notified the server because we must be
-			// sync to the server when notifying it !!!
-			currentGameModel.play(columnIndex, getPlayer().getPlayerMark());
-			
-			setChanged();
-			notifyObservers();
+			if (currentGameModel != null 
+				&& currentGameModel.getGameStatus().equals(GameStatus.CONTINUE_STATUS)
+				&& currentGameModel.getCurrentPlayer().equals(getPlayer().getPlayerMark()))
+			{
+				getServer().play(columnIndex, getPlayer().getPlayerMark(), currentGameModel, getTicket());
+				
+				// We play locally AFTER having notified the server because we must be
+				// sync to the server when notifying it !!!
+				currentGameModel.play(columnIndex, getPlayer().getPlayerMark());
+				
+				setChanged();
+				notifyObservers();
+			}
+		}
+		finally
+		{
+			gameModelLock.unlock();
 		}
 	}
 	
@@ -253,8 +293,8 @@ public final class HumanGameClient extends GameClient
 			
 			HumanGameClient playerClient = new HumanGameClient(gameServer, gameServer.getTicket(), "Julek"); 
 			playerClient.addObserver(new SimpleObserver());
-			new Thread(playerClient).start();
-			new Thread(new AIGameClient(gameServer, gameServer.getTicket(), "bougo", new DefaultEvalScore(), 4)).start();
+			MiscUtils.startClientThread(playerClient);
+			MiscUtils.startClientThread(new AIGameClient(gameServer, gameServer.getTicket(), "bougo", new DefaultEvalScore(), 4));
 			
 			gameServer.newGame(playerClient.getTicket());
 		}
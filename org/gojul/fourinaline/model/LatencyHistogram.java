@@ -0,0 +1,196 @@
+/*
+ * LatencyHistogram.java
+ *
+ * Created: 2026/10/19
+ *
+ * Copyright (C) 2026 Julien Aubin
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.gojul.fourinaline.model;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The <code>LatencyHistogram</code> class records durations in microseconds
+ * with a bounded relative error, like an HDR histogram.<br/>
+ * The durations below 32 microseconds have their own bucket. Beyond, each
+ * power of two is split into 16 buckets, so that the percentiles are given
+ * with a relative error below 7%, from microseconds to days, in a few
+ * kilobytes of memory. The recording does not lock, so that it may be done
+ * on every call of the servers.
+ *
+ * @author Julien Aubin
+ */
+final class LatencyHistogram
+{
+	/**
+	 * The number of buckets of the durations below 32 microseconds.
+	 */
+	private final static int LINEAR_BUCKET_COUNT = 32;
+	
+	/**
+	 * The number of buckets per power of two beyond 32 microseconds.
+	 */
+	private final static int SUB_BUCKET_COUNT = 16;
+	
+	/**
+	 * The maximum power of two of the durations, beyond which the
+	 * durations are recorded in the last bucket.
+	 */
+	private final static int MAX_MAGNITUDE = 40;
+	
+	/**
+	 * The bucket counts.
+	 */
+	private AtomicLongArray counts;
+	
+	/**
+	 * The number of durations recorded.
+	 */
+	private AtomicLong count;
+	
+	/**
+	 * The sum of the durations recorded.
+	 */
+	private AtomicLong sum;
+	
+	/**
+	 * The maximum duration recorded.
+	 */
+	private AtomicLong max;
+	
+	/**
+	 * Constructor.
+	 */
+	LatencyHistogram()
+	{
+		counts = new AtomicLongArray(getBucketIndex(Long.MAX_VALUE) + 1);
+		count = new AtomicLong();
+		sum = new AtomicLong();
+		max = new AtomicLong();
+	}
+	
+	/**
+	 * Returns the index of the bucket of the duration <code>micros</code>.
+	 * @param micros the duration in microseconds.
+	 * @return the index of the bucket of the duration.
+	 */
+	private static int getBucketIndex(final long micros)
+	{
+		if (micros < LINEAR_BUCKET_COUNT)
+			return (int) Math.max(0, micros);
+		
+		int magnitude = Math.min(MAX_MAGNITUDE, 63 - Long.numberOfLeadingZeros(micros));
+		int shift = magnitude - 4;
+		long subBucket = Math.min(2 * SUB_BUCKET_COUNT - 1, micros >>> shift);
+		
+		return LINEAR_BUCKET_COUNT + (magnitude - 5) * SUB_BUCKET_COUNT + (int) (subBucket - SUB_BUCKET_COUNT);
+	}
+	
+	/**
+	 * Returns the highest duration recorded in the bucket with index <code>index</code>.
+	 * @param index the bucket index.
+	 * @return the highest duration of the bucket.
+	 */
+	private static long getBucketValue(final int index)
+	{
+		if (index < LINEAR_BUCKET_COUNT)
+			return index;
+		
+		int magnitude = (index - LINEAR_BUCKET_COUNT) / SUB_BUCKET_COUNT + 5;
+		long subBucket = (index - LINEAR_BUCKET_COUNT) % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+		int shift = magnitude - 4;
+		
+		return ((subBucket + 1) << shift) - 1;
+	}
+	
+	/**
+	 * Records the duration <code>nanos</code>.
+	 * @param nanos the duration in nanoseconds.
+	 */
+	void record(final long nanos)
+	{
+		long micros = nanos / 1000;
+		
+		counts.incrementAndGet(getBucketIndex(micros));
+		count.incrementAndGet();
+		sum.addAndGet(micros);
+		
+		long currentMax = max.get();
+		
+		while (micros > currentMax && !max.compareAndSet(currentMax, micros))
+			currentMax = max.get();
+	}
+	
+	/**
+	 * Returns the number of durations recorded.
+	 * @return the number of durations recorded.
+	 */
+	long getCount()
+	{
+		return count.get();
+	}
+	
+	/**
+	 * Returns the sum of the durations recorded, in microseconds.
+	 * @return the sum of the durations recorded.
+	 */
+	long getSum()
+	{
+		return sum.get();
+	}
+	
+	/**
+	 * Returns the maximum duration recorded, in microseconds.
+	 * @return the maximum duration recorded.
+	 */
+	long getMax()
+	{
+		return max.get();
+	}
+	
+	/**
+	 * Returns the duration below which the ratio <code>quantile</code> of the
+	 * durations recorded are, in microseconds, or 0 if no duration has been recorded.
+	 * The concurrent recordings may be ignored.
+	 * @param quantile the quantile, between 0 and 1.
+	 * @return the duration of the quantile.
+	 */
+	long getQuantile(final double quantile)
+	{
+		long total = 0;
+		
+		for (int i = 0; i < counts.length(); i++)
+			total += counts.get(i);
+		
+		if (total == 0)
+			return 0;
+		
+		long rank = Math.max(1, (long) Math.ceil(quantile * total));
+		long seen = 0;
+		
+		for (int i = 0; i < counts.length(); i++)
+		{
+			seen += counts.get(i);
+			
+			if (seen >= rank)
+				return Math.min(getBucketValue(i), getMax());
+		}
+		
+		return getMax();
+	}
+}
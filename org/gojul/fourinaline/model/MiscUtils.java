@@ -41,6 +41,7 @@ import java.rmi.registry.Registry;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.Properties;
+import java.util.concurrent.ThreadFactory;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
 
@@ -57,6 +58,36 @@ public final class MiscUtils
 	 */
 	public final static String LINE_SEP = System.getProperty("line.separator");
 	
+	/**
+	 * The system property that enables the virtual thread execution mode when
+	 * it is set to <code>true</code>. In this mode, the threads of the game clients
+	 * are virtual threads, provided the JVM supports them. Thus the number of
+	 * platform threads does not grow with the number of clients.
+	 */
+	public final static String VIRTUAL_THREADS_PROPERTY = "org.gojul.fourinaline.virtualThreads";
+	
+	/**
+	 * The factory of the threads of the game clients, or null if
+	 * it is not initialized yet.
+	 */
+	private static ThreadFactory clientThreadFactory = null;
+	
+	/**
+	 * The <code>PlatformThreadFactory</code> creates standard threads.
+	 *
+	 * @author Julien Aubin
+	 */
+	private final static class PlatformThreadFactory implements ThreadFactory
+	{
+		/**
+		 * @see java.util.concurrent.ThreadFactory#newThread(java.lang.Runnable)
+		 */
+		public Thread newThread(final Runnable r)
+		{
+			return new Thread(r);
+		}
+	}
+	
 	/**
 	 * Private constructor.<br/>
 	 * Prevents the class from being instanciated.
@@ -97,6 +128,80 @@ public final class MiscUtils
 		}
 	}
 	
+	/**
+	 * Returns the factory of virtual threads of the JVM, or null if the
+	 * JVM does not support virtual threads.<br/>
+	 * The factory is got by reflection, so that the application still runs
+	 * on JVMs that do not know virtual threads.
+	 * @return the factory of virtual threads of the JVM.
+	 */
+	private static ThreadFactory getVirtualThreadFactory()
+	{
+		try
+		{
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			
+			return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+		}
+		catch (Exception e)
+		{
+			// Either the JVM is too old, or virtual threads are a disabled preview feature.
+			return null;
+		}
+	}
+	
+	/**
+	 * Returns the factory of the threads of the game clients, i.e. of the client loops
+	 * and of the calls that wait for the server. It creates virtual threads if the virtual
+	 * thread execution mode is enabled and supported, and standard threads elsewhere.
+	 * @return the factory of the threads of the game clients.
+	 * @see #VIRTUAL_THREADS_PROPERTY
+	 */
+	public final static synchronized ThreadFactory getClientThreadFactory()
+	{
+		if (clientThreadFactory == null)
+		{
+			if (Boolean.getBoolean(VIRTUAL_THREADS_PROPERTY))
+				clientThreadFactory = getVirtualThreadFactory();
+			
+			if (clientThreadFactory == null)
+				clientThreadFactory = new PlatformThreadFactory();
+		}
+		
+		return clientThreadFactory;
+	}
+	
+	/**
+	 * Returns true if the threads of the game clients are virtual threads,
+	 * false elsewhere.
+	 * @return true if the threads of the game clients are virtual threads.
+	 * @see #VIRTUAL_THREADS_PROPERTY
+	 */
+	public final static boolean isVirtualThreadMode()
+	{
+		return !(getClientThreadFactory() instanceof PlatformThreadFactory);
+	}
+	
+	/**
+	 * Starts a game client thread that runs <code>r</code>.<br/>
+	 * Note that virtual threads do not prevent the JVM from exiting,
+	 * unlike standard threads.
+	 * @param r the runnable to run.
+	 * @return the started thread.
+	 * @throws NullPointerException if <code>r</code> is null.
+	 * @see #getClientThreadFactory()
+	 */
+	public final static Thread startClientThread(final Runnable r) throws NullPointerException
+	{
+		if (r == null)
+			throw new NullPointerException();
+		
+		Thread result = getClientThreadFactory().newThread(r);
+		result.start();
+		
+		return result;
+	}
+	
 	/**
 	 * Read the text contained in the input stream <code>is</code>
 	 * and return the text it contains.<br/>
@@ -388,5 +493,49 @@ public final class MiscUtils
 		{
 			throw new RuntimeException(t);
 		}
+	}	
+	/**
+	 * Returns the port of the RMI registry address <code>address</code>,
+	 * which has the form <code>host[:port]</code>.
+	 * @param address the RMI registry address.
+	 * @return the port of the RMI registry, or the default RMI registry
+	 * port if <code>address</code> has no port.
+	 * @throws NullPointerException if <code>address</code> is null.
+	 * @throws IllegalArgumentException if the port of <code>address</code> is not valid.
+	 */
+	public final static int getRegistryPort(final String address) throws NullPointerException, IllegalArgumentException
+	{
+		int index = address.lastIndexOf(':');
+		
+		if (index == -1)
+			return Registry.REGISTRY_PORT;
+		
+		try
+		{
+			return Integer.parseInt(address.substring(index + 1));
+		}
+		catch (NumberFormatException e)
+		{
+			throw new IllegalArgumentException("Invalid registry address : " + address);
+		}
+	}
+	
+	/**
+	 * Returns the RMI registry which has for address <code>address</code>,
+	 * which has the form <code>host[:port]</code>.
+	 * @param address the RMI registry address.
+	 * @return the RMI registry.
+	 * @throws NullPointerException if <code>address</code> is null.
+	 * @throws IllegalArgumentException if the port of <code>address</code> is not valid.
+	 * @throws RemoteException if the registry reference can't be created.
+	 */
+	public final static Registry getRegistry(final String address) throws NullPointerException, IllegalArgumentException, RemoteException
+	{
+		int index = address.lastIndexOf(':');
+		
+		if (index == -1)
+			return LocateRegistry.getRegistry(address);
+		else
+			return LocateRegistry.getRegistry(address.substring(0, index), getRegistryPort(address));
 	}
 }
@@ -0,0 +1,854 @@
+/*
+ * NeuralEvalScore.java
+ *
+ * Created: 2026/10/19
+ *
+ * Copyright (C) 2026 Julien Aubin
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.gojul.fourinaline.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import org.gojul.fourinaline.model.AIGameClient.EvalScore;
+import org.gojul.fourinaline.model.GameModel.CellCoord;
+import org.gojul.fourinaline.model.GameModel.PlayerMark;
+
+/**
+ * The <code>NeuralEvalScore</code> class is an evaluation function
+ * backed by a small quantized neural network.<br/>
+ * The network has one hidden layer fed by one input per (cell, mark)
+ * couple, seen from the point of view of each player. Each thread keeps
+ * the hidden layer accumulator of the position it has lastly evaluated, and
+ * only updates it with the cells that have changed since, so that a leaf
+ * evaluation of a search only consists in a few short integer dot products.<br/>
+ * The weights are loaded from the resource file <code>fourinaline.nnue</code>
+ * by default. The bundled weights are generated by the <code>main</code> method
+ * of this class, and encode the heuristic of the <code>DefaultEvalScore</code>
+ * class. They may be replaced by tuned ones.
+ *
+ * @see org.gojul.fourinaline.model.NeuralEvalScore.NetworkWeights
+ *
+ * @author Julien Aubin
+ */
+public final class NeuralEvalScore implements EvalScore
+{
+
+	/**
+	 * The serial version UID.
+	 */
+	final static long serialVersionUID = 1;
+
+	/**
+	 * The name of the resource that contains the default network weights.
+	 */
+	public final static String DEFAULT_WEIGHTS_RESOURCE = "fourinaline.nnue";
+
+	/**
+	 * The <code>NetworkWeights</code> class contains the quantized weights
+	 * of the network, along with the game geometry they've been computed for.<br/>
+	 * The first layer has <code>marks * rows * cols</code> inputs per point of view.
+	 * The input of index <code>(relMark * rows + row) * cols + col</code> is set when the
+	 * cell <code>(row, col)</code> contains the mark which is <code>relMark</code> marks after
+	 * the mark of the point of view.<br/>
+	 * The output layer reads the clipped hidden layer of the evaluated player first,
+	 * then the ones of the next players.
+	 *
+	 * @author Julien Aubin
+	 */
+	public final static class NetworkWeights implements Serializable
+	{
+		/**
+		 * The serial version UID.
+		 */
+		final static long serialVersionUID = 1;
+
+		/**
+		 * The magic number of a weight file.
+		 */
+		private final static int MAGIC_NUMBER = 0x43344E4E;
+
+		/**
+		 * The weight file format version.
+		 */
+		private final static int FORMAT_VERSION = 1;
+
+		/**
+		 * The number of rows.
+		 */
+		private int rowCount;
+
+		/**
+		 * The number of columns.
+		 */
+		private int colCount;
+
+		/**
+		 * The number of cells to align in order to win.
+		 */
+		private int winLineLength;
+
+		/**
+		 * The number of player marks.
+		 */
+		private int markCount;
+
+		/**
+		 * The size of the hidden layer.
+		 */
+		private int hiddenSize;
+
+		/**
+		 * The maximum value of a hidden neuron after clipping.
+		 */
+		private int activationMax;
+
+		/**
+		 * The divisor applied to the output neuron.
+		 */
+		private int outputDivisor;
+
+		/**
+		 * The first layer weights, indexed by input and then by hidden neuron.
+		 */
+		private short[] featureWeights;
+
+		/**
+		 * The first layer biases.
+		 */
+		private short[] featureBiases;
+
+		/**
+		 * The output layer weights, indexed by point of view and then by hidden neuron.
+		 */
+		private short[] outputWeights;
+
+		/**
+		 * The output layer bias.
+		 */
+		private int outputBias;
+
+		/**
+		 * Constructor.
+		 * @param rows the number of rows.
+		 * @param cols the number of columns.
+		 * @param winLength the number of cells to align in order to win.
+		 * @param marks the number of player marks.
+		 * @param hidden the size of the hidden layer.
+		 * @param actMax the maximum value of a hidden neuron after clipping.
+		 * @param outDivisor the divisor applied to the output neuron.
+		 * @throws IllegalArgumentException if any of the method parameter is smaller
+		 * or equal to 0.
+		 */
+		public NetworkWeights(final int rows, final int cols, final int winLength, final int marks,
+			final int hidden, final int actMax, final int outDivisor) throws IllegalArgumentException
+		{
+			if (rows <= 0 || cols <= 0 || winLength <= 0 || marks <= 0 || hidden <= 0 || actMax <= 0 || outDivisor <= 0)
+				throw new IllegalArgumentException("Invalid network dimensions");
+
+			rowCount = rows;
+			colCount = cols;
+			winLineLength = winLength;
+			markCount = marks;
+			hiddenSize = hidden;
+			activationMax = actMax;
+			outputDivisor = outDivisor;
+
+			featureWeights = new short[marks * rows * cols * hidden];
+			featureBiases = new short[hidden];
+			outputWeights = new short[marks * hidden];
+			outputBias = 0;
+		}
+
+		/**
+		 * Returns the number of rows.
+		 * @return the number of rows.
+		 */
+		public int getRowCount()
+		{
+			return rowCount;
+		}
+
+		/**
+		 * Returns the number of columns.
+		 * @return the number of columns.
+		 */
+		public int getColCount()
+		{
+			return colCount;
+		}
+
+		/**
+		 * Returns the number of cells to align in order to win.
+		 * @return the number of cells to align in order to win.
+		 */
+		public int getWinLineLength()
+		{
+			return winLineLength;
+		}
+
+		/**
+		 * Returns the number of player marks.
+		 * @return the number of player marks.
+		 */
+		public int getMarkCount()
+		{
+			return markCount;
+		}
+
+		/**
+		 * Returns the size of the hidden layer.
+		 * @return the size of the hidden layer.
+		 */
+		public int getHiddenSize()
+		{
+			return hiddenSize;
+		}
+
+		/**
+		 * Returns the maximum value of a hidden neuron after clipping.
+		 * @return the maximum value of a hidden neuron after clipping.
+		 */
+		public int getActivationMax()
+		{
+			return activationMax;
+		}
+
+		/**
+		 * Returns the divisor applied to the output neuron.
+		 * @return the divisor applied to the output neuron.
+		 */
+		public int getOutputDivisor()
+		{
+			return outputDivisor;
+		}
+
+		/**
+		 * Returns the first layer weights. The returned array is not a copy.
+		 * @return the first layer weights.
+		 */
+		public short[] getFeatureWeights()
+		{
+			return featureWeights;
+		}
+
+		/**
+		 * Returns the first layer biases. The returned array is not a copy.
+		 * @return the first layer biases.
+		 */
+		public short[] getFeatureBiases()
+		{
+			return featureBiases;
+		}
+
+		/**
+		 * Returns the output layer weights. The returned array is not a copy.
+		 * @return the output layer weights.
+		 */
+		public short[] getOutputWeights()
+		{
+			return outputWeights;
+		}
+
+		/**
+		 * Returns the output layer bias.
+		 * @return the output layer bias.
+		 */
+		public int getOutputBias()
+		{
+			return outputBias;
+		}
+
+		/**
+		 * Sets the output layer bias.
+		 * @param bias the output layer bias.
+		 */
+		public void setOutputBias(final int bias)
+		{
+			outputBias = bias;
+		}
+
+		/**
+		 * Returns the offset in the first layer weights of the input
+		 * <code>(relMark, row, col)</code>.
+		 * @param relMark the mark index, relative to the point of view.
+		 * @param row the row index.
+		 * @param col the column index.
+		 * @return the offset in the first layer weights of the input.
+		 */
+		public int getFeatureOffset(final int relMark, final int row, final int col)
+		{
+			return ((relMark * rowCount + row) * colCount + col) * hiddenSize;
+		}
+
+		/**
+		 * Returns true if these weights can be used with the game model <code>gameModel</code>,
+		 * false elsewhere.
+		 * @param gameModel the game model to test.
+		 * @return true if these weights can be used with the game model <code>gameModel</code>,
+		 * false elsewhere.
+		 */
+		public boolean isCompatibleWith(final GameModel gameModel)
+		{
+			return gameModel.getRowCount() == rowCount && gameModel.getColCount() == colCount
+				&& gameModel.getWinLineLength() == winLineLength
+				&& PlayerMark.getNumberOfPlayerMarks() == markCount;
+		}
+
+		/**
+		 * Writes these weights to the stream <code>os</code>. The stream is not closed.
+		 * @param os the output stream.
+		 * @throws NullPointerException if <code>os</code> is null.
+		 * @throws IOException if an I/O error occurs.
+		 */
+		public void write(final OutputStream os) throws NullPointerException, IOException
+		{
+			if (os == null)
+				throw new NullPointerException();
+
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os));
+
+			out.writeInt(MAGIC_NUMBER);
+			out.writeInt(FORMAT_VERSION);
+			out.writeInt(rowCount);
+			out.writeInt(colCount);
+			out.writeInt(winLineLength);
+			out.writeInt(markCount);
+			out.writeInt(hiddenSize);
+			out.writeInt(activationMax);
+			out.writeInt(outputDivisor);
+
+			writeShorts(out, featureWeights);
+			writeShorts(out, featureBiases);
+			writeShorts(out, outputWeights);
+			out.writeInt(outputBias);
+
+			out.flush();
+		}
+
+		/**
+		 * Reads network weights from the stream <code>is</code>. The stream is not closed.
+		 * @param is the input stream.
+		 * @return the network weights read.
+		 * @throws NullPointerException if <code>is</code> is null.
+		 * @throws IOException if an I/O error occurs, or if the stream
+		 * does not contain a valid weight file.
+		 */
+		public static NetworkWeights read(final InputStream is) throws NullPointerException, IOException
+		{
+			if (is == null)
+				throw new NullPointerException();
+
+			DataInputStream in = new DataInputStream(new BufferedInputStream(is));
+
+			if (in.readInt() != MAGIC_NUMBER)
+				throw new IOException("Not a network weight file");
+
+			int version = in.readInt();
+			if (version != FORMAT_VERSION)
+				throw new IOException("Unsupported network weight file version : " + version);
+
+			NetworkWeights result = null;
+
+			try
+			{
+				result = new NetworkWeights(in.readInt(), in.readInt(), in.readInt(), in.readInt(),
+					in.readInt(), in.readInt(), in.readInt());
+			}
+			catch (IllegalArgumentException e)
+			{
+				throw new IOException(e.getMessage());
+			}
+
+			readShorts(in, result.featureWeights);
+			readShorts(in, result.featureBiases);
+			readShorts(in, result.outputWeights);
+			result.outputBias = in.readInt();
+
+			return result;
+		}
+
+		/**
+		 * Writes the array <code>values</code> to the stream <code>out</code>.
+		 * @param out the output stream.
+		 * @param values the values to write.
+		 * @throws IOException if an I/O error occurs.
+		 */
+		private static void writeShorts(final DataOutputStream out, final short[] values) throws IOException
+		{
+			for (int i = 0; i < values.length; i++)
+				out.writeShort(values[i]);
+		}
+
+		/**
+		 * Fills the array <code>values</code> from the stream <code>in</code>.
+		 * @param in the input stream.
+		 * @param values the values to fill.
+		 * @throws IOException if an I/O error occurs.
+		 */
+		private static void readShorts(final DataInputStream in, final short[] values) throws IOException
+		{
+			for (int i = 0; i < values.length; i++)
+				values[i] = in.readShort();
+		}
+
+		/**
+		 * Builds the network weights that reproduce the line heuristic of
+		 * the <code>DefaultEvalScore</code> class for the game geometry
+		 * <code>rows, cols, winLength</code>.<br/>
+		 * There are <code>winLength + 1</code> hidden neurons per line : the neuron of
+		 * threshold <code>t</code> is activated when the line contains at least
+		 * <code>t</code> chips of the player and no chip of the other players.<br/>
+		 * The lines are sorted, so that the weights built for a given geometry
+		 * are always the same.
+		 * @param rows the number of rows.
+		 * @param cols the number of columns.
+		 * @param winLength the number of cells to align in order to win.
+		 * @return the network weights that reproduce the line heuristic.
+		 * @throws IllegalArgumentException if the geometry is not valid.
+		 */
+		public static NetworkWeights createFromLineHeuristic(final int rows, final int cols, final int winLength)
+			throws IllegalArgumentException
+		{
+			final short ACTIVATION_MAX = 127;
+
+			GameModel gameModel = new GameModel(rows, cols, winLength);
+			List<List<CellCoord>> lines = new ArrayList<List<CellCoord>>(gameModel.getAllLines());
+			int marks = PlayerMark.getNumberOfPlayerMarks();
+			int neuronsPerLine = winLength + 1;
+
+			// The lines are returned in hash order.
+			Collections.sort(lines, new Comparator<List<CellCoord>>()
+			{
+				/**
+				 * @see java.util.Comparator#compare(java.lang.Object, java.lang.Object)
+				 */
+				public int compare(final List<CellCoord> line1, final List<CellCoord> line2)
+				{
+					for (int i = 0, len = Math.min(line1.size(), line2.size()); i < len; i++)
+					{
+						CellCoord coord1 = line1.get(i);
+						CellCoord coord2 = line2.get(i);
+
+						if (coord1.getRowIndex() != coord2.getRowIndex())
+							return coord1.getRowIndex() < coord2.getRowIndex() ? -1 : 1;
+
+						if (coord1.getColIndex() != coord2.getColIndex())
+							return coord1.getColIndex() < coord2.getColIndex() ? -1 : 1;
+					}
+
+					return line1.size() - line2.size();
+				}
+			});
+
+			NetworkWeights result = new NetworkWeights(rows, cols, winLength, marks,
+				lines.size() * neuronsPerLine, ACTIVATION_MAX, ACTIVATION_MAX);
+
+			// Any chip of another player kills the line, whatever
+			// the number of chips of the player.
+			short blockingWeight = (short) (-2 * winLength * ACTIVATION_MAX);
+
+			for (int lineIndex = 0, len = lines.size(); lineIndex < len; lineIndex++)
+			{
+				for (int threshold = 0; threshold <= winLength; threshold++)
+				{
+					int neuron = lineIndex * neuronsPerLine + threshold;
+
+					result.featureBiases[neuron] = (short) ((1 - threshold) * ACTIVATION_MAX);
+
+					for (CellCoord coord: lines.get(lineIndex))
+					{
+						for (int relMark = 0; relMark < marks; relMark++)
+						{
+							int offset = result.getFeatureOffset(relMark, coord.getRowIndex(), coord.getColIndex());
+							result.featureWeights[offset + neuron] = relMark == 0 ? ACTIVATION_MAX : blockingWeight;
+						}
+					}
+
+					// The line score doubles with each chip of the player :
+					// 1 for an empty line, then 2, 4, 8... up to the full line.
+					short lineWeight = (short) (threshold == 0 ? 1 : 1 << (threshold - 1));
+
+					result.outputWeights[neuron] = lineWeight;
+
+					// Like the default evaluation function, only the next
+					// player is considered as an adversary.
+					if (marks > 1)
+						result.outputWeights[result.hiddenSize + neuron] = (short) -lineWeight;
+				}
+			}
+
+			return result;
+		}
+	}
+
+	/**
+	 * The <code>Accumulator</code> class contains the hidden layer values
+	 * of a position, for every point of view. It keeps a copy of the cells
+	 * of the position instead of a reference to its game model, so that it
+	 * does not keep the game model alive.
+	 *
+	 * @author Julien Aubin
+	 */
+	private final static class Accumulator
+	{
+		/**
+		 * The network weights.
+		 */
+		private NetworkWeights weights;
+
+		/**
+		 * The known player marks, in the order of the player registry.
+		 */
+		private PlayerMark[] marks;
+
+		/**
+		 * The cells of the position the hidden layer has been computed for.
+		 */
+		private PlayerMark[][] cells;
+
+		/**
+		 * The hidden layer values, indexed by point of view and then by neuron.
+		 */
+		private short[][] values;
+
+		/**
+		 * Constructor. The hidden layer is the one of the empty position.
+		 * @param networkWeights the network weights.
+		 * @param playerMarks the known player marks.
+		 */
+		public Accumulator(final NetworkWeights networkWeights, final PlayerMark[] playerMarks)
+		{
+			weights = networkWeights;
+			marks = playerMarks;
+			cells = new PlayerMark[weights.getRowCount()][weights.getColCount()];
+			values = new short[marks.length][];
+
+			for (int i = 0; i < marks.length; i++)
+				values[i] = weights.getFeatureBiases().clone();
+		}
+
+		/**
+		 * Updates the hidden layer with the cells of the game model <code>gameModel</code>
+		 * that differ from the ones of the position of the hidden layer. A search only
+		 * changes a few cells between two evaluations.
+		 * @param gameModel the game model to consider, whose geometry must be the one
+		 * of the weights.
+		 */
+		public void synchronize(final GameModel gameModel)
+		{
+			for (int row = 0; row < cells.length; row++)
+			{
+				PlayerMark[] rowCells = cells[row];
+
+				for (int col = 0; col < rowCells.length; col++)
+				{
+					PlayerMark oldMark = rowCells[col];
+					PlayerMark newMark = gameModel.getCell(row, col);
+
+					if (newMark == null ? oldMark != null : !newMark.equals(oldMark))
+					{
+						if (oldMark != null)
+							update(row, col, oldMark, -1);
+
+						if (newMark != null)
+							update(row, col, newMark, 1);
+
+						rowCells[col] = newMark;
+					}
+				}
+			}
+		}
+
+		/**
+		 * Adds <code>sign</code> times the inputs of the cell <code>(row, col)</code>
+		 * filled with mark <code>playerMark</code> to the hidden layers.
+		 * @param row the row index.
+		 * @param col the column index.
+		 * @param playerMark the player mark.
+		 * @param sign 1 for an insertion, -1 for a removal.
+		 */
+		private void update(final int row, final int col, final PlayerMark playerMark, final int sign)
+		{
+			int markIndex = indexOf(marks, playerMark);
+			int hidden = weights.getHiddenSize();
+			short[] featureWeights = weights.getFeatureWeights();
+
+			for (int pov = 0; pov < marks.length; pov++)
+			{
+				int relMark = (markIndex - pov + marks.length) % marks.length;
+				int offset = weights.getFeatureOffset(relMark, row, col);
+				short[] acc = values[pov];
+
+				for (int i = 0; i < hidden; i++)
+					acc[i] += sign * featureWeights[offset + i];
+			}
+		}
+
+		/**
+		 * Returns the output of the network for the player mark <code>playerMark</code>.
+		 * @param playerMark the player mark to consider.
+		 * @return the output of the network for the player mark <code>playerMark</code>.
+		 */
+		public int evaluate(final PlayerMark playerMark)
+		{
+			int markIndex = indexOf(marks, playerMark);
+			int hidden = weights.getHiddenSize();
+			int actMax = weights.getActivationMax();
+			short[] outputWeights = weights.getOutputWeights();
+
+			int result = weights.getOutputBias();
+
+			for (int k = 0; k < marks.length; k++)
+			{
+				short[] acc = values[(markIndex + k) % marks.length];
+				int offset = k * hidden;
+
+				for (int i = 0; i < hidden; i++)
+				{
+					int value = acc[i];
+
+					// Clipped ReLU.
+					if (value > 0)
+						result += (value < actMax ? value : actMax) * outputWeights[offset + i];
+				}
+			}
+
+			return result / weights.getOutputDivisor();
+		}
+	}
+
+	/**
+	 * The network weights.
+	 */
+	private NetworkWeights weights;
+
+	/**
+	 * The known player marks, in the order of the player registry.
+	 */
+	private transient PlayerMark[] marks;
+
+	/**
+	 * The accumulator of the position lastly evaluated by each thread.
+	 */
+	private transient ThreadLocal<Accumulator> currentAccumulator;
+
+	/**
+	 * Constructor. Uses the weights bundled with the game.
+	 * @throws RuntimeException if the bundled weights could not be loaded.
+	 */
+	public NeuralEvalScore() throws RuntimeException
+	{
+		this(loadDefaultWeights());
+	}
+
+	/**
+	 * Constructor.
+	 * @param networkWeights the network weights.
+	 * @throws NullPointerException if <code>networkWeights</code> is null.
+	 * @throws IllegalArgumentException if <code>networkWeights</code> does not
+	 * fit the number of player marks.
+	 */
+	public NeuralEvalScore(final NetworkWeights networkWeights) throws NullPointerException, IllegalArgumentException
+	{
+		if (networkWeights == null)
+			throw new NullPointerException();
+
+		if (networkWeights.getMarkCount() != PlayerMark.getNumberOfPlayerMarks())
+			throw new IllegalArgumentException("Invalid number of player marks : " + networkWeights.getMarkCount());
+
+		weights = networkWeights;
+		initTransientFields();
+	}
+
+	/**
+	 * Loads the weights bundled with the game.
+	 * @return the weights bundled with the game.
+	 * @throws RuntimeException if the bundled weights could not be loaded.
+	 */
+	private static NetworkWeights loadDefaultWeights() throws RuntimeException
+	{
+		InputStream is = NeuralEvalScore.class.getResourceAsStream(DEFAULT_WEIGHTS_RESOURCE);
+
+		if (is == null)
+			throw new RuntimeException("Missing resource " + DEFAULT_WEIGHTS_RESOURCE);
+
+		try
+		{
+			return NetworkWeights.read(is);
+		}
+		catch (IOException e)
+		{
+			throw new RuntimeException(e);
+		}
+		finally
+		{
+			try
+			{
+				is.close();
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Inits the fields that are not serialized.
+	 */
+	private void initTransientFields()
+	{
+		List<PlayerMark> markList = new ArrayList<PlayerMark>();
+		Iterator<PlayerMark> it = PlayerMark.getPlayerIterator();
+
+		while (it.hasNext())
+			markList.add(it.next());
+
+		marks = markList.toArray(new PlayerMark[markList.size()]);
+		currentAccumulator = new ThreadLocal<Accumulator>();
+	}
+
+	/**
+	 * Returns the network weights.
+	 * @return the network weights.
+	 */
+	public NetworkWeights getWeights()
+	{
+		return weights;
+	}
+
+	/**
+	 * Returns the index of the mark <code>playerMark</code> in the array <code>marks</code>.
+	 * @param marks the array of marks.
+	 * @param playerMark the mark to look for.
+	 * @return the index of the mark <code>playerMark</code> in the array <code>marks</code>.
+	 * @throws IllegalArgumentException if <code>playerMark</code> is unknown.
+	 */
+	private static int indexOf(final PlayerMark[] marks, final PlayerMark playerMark) throws IllegalArgumentException
+	{
+		for (int i = 0; i < marks.length; i++)
+		{
+			if (marks[i].equals(playerMark))
+				return i;
+		}
+
+		throw new IllegalArgumentException("Unknown player mark " + playerMark);
+	}
+
+	/**
+	 * @see org.gojul.fourinaline.model.AIGameClient.EvalScore#evaluate(org.gojul.fourinaline.model.GameModel, org.gojul.fourinaline.model.GameModel.PlayerMark)
+	 * @throws IllegalArgumentException if the network weights have not been
+	 * computed for the geometry of <code>gameModel</code>.
+	 */
+	public int evaluate(final GameModel gameModel, final PlayerMark playerMark)
+		throws NullPointerException, IllegalArgumentException
+	{
+		if (gameModel == null || playerMark == null)
+			throw new NullPointerException();
+
+		if (!weights.isCompatibleWith(gameModel))
+			throw new IllegalArgumentException("The network weights do not match the game model geometry");
+
+		Accumulator accumulator = currentAccumulator.get();
+
+		if (accumulator == null)
+		{
+			accumulator = new Accumulator(weights, marks);
+			currentAccumulator.set(accumulator);
+		}
+
+		// The successive positions of a search only differ by a few
+		// cells, so that the accumulator is only slightly updated.
+		accumulator.synchronize(gameModel);
+
+		return accumulator.evaluate(playerMark);
+	}
+
+	/**
+	 * Deserializes the evaluation function in case of serialization.
+	 * @param in the input stream responsible of deserialization.
+	 * @throws IOException if an I/O error occurs while deserializing.
+	 * @throws ClassNotFoundException in case a class to be deserialized
+	 * is not found.
+	 */
+	private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+		initTransientFields();
+	}
+
+	/**
+	 * Writes the weights that reproduce the default evaluation function
+	 * for the default game geometry to the file given as argument, or
+	 * compares both evaluation functions on a sample game if no argument
+	 * is given.
+	 */
+	public static void main(String[] args) throws Throwable
+	{
+		if (args.length > 0)
+		{
+			GameModel defaultModel = new GameModel();
+			NetworkWeights networkWeights = NetworkWeights.createFromLineHeuristic(defaultModel.getRowCount(),
+				defaultModel.getColCount(), defaultModel.getWinLineLength());
+
+			OutputStream os = new FileOutputStream(args[0]);
+
+			try
+			{
+				networkWeights.write(os);
+			}
+			finally
+			{
+				os.close();
+			}
+
+			return;
+		}
+
+		GameModel gameModel = new GameModel();
+		NeuralEvalScore neuralEvalScore = new NeuralEvalScore();
+		DefaultEvalScore defaultEvalScore = new DefaultEvalScore();
+
+		int[] plays = {3, 3, 4, 2, 5, 6, 4};
+
+		for (int colIndex: plays)
+		{
+			PlayerMark mark = gameModel.getCurrentPlayer();
+			gameModel.play(colIndex, mark);
+			System.out.println(neuralEvalScore.evaluate(gameModel, mark) + " - " + defaultEvalScore.evaluate(gameModel, mark));
+		}
+
+		gameModel.cancelLastPlay();
+		gameModel.cancelLastPlay();
+		PlayerMark mark = gameModel.getCurrentPlayer();
+		System.out.println(neuralEvalScore.evaluate(gameModel, mark) + " - " + defaultEvalScore.evaluate(gameModel, mark));
+	}
+}
@@ -0,0 +1,462 @@
+/*
+ * NioGameProtocol.java
+ *
+ * Created: 2026/10/19
+ *
+ * Copyright (C) 2026 Julien Aubin
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.gojul.fourinaline.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+import org.gojul.fourinaline.model.GameModel.GameModelException;
+import org.gojul.fourinaline.model.GameModel.PlayerMark;
+import org.gojul.fourinaline.model.GameServer.PlayerRegisterException;
+import org.gojul.fourinaline.model.GameServer.ServerBusyException;
+import org.gojul.fourinaline.model.GameServer.ServerTicket;
+import org.gojul.fourinaline.model.GameServer.ServerTicketException;
+
+/**
+ * The <code>NioGameProtocol</code> class contains the constants and the
+ * encoding methods of the binary protocol shared by the <code>NioGameServer</code>
+ * and the <code>NioGameServerStub</code> classes.<br/>
+ * Each request is a frame made of its length, a request identifier, an operation
+ * code and the operation parameters. Each response is a frame made of its length,
+ * the identifier of the request it answers, a status and the operation result. The
+ * responses may not be sent in the order of the requests, since some operations
+ * wait for a change of the server state.<br/>
+ * The spectators of a game receive, after the response to their subscription,
+ * update frames that answer no request : they all bear the request identifier
+ * <code>SPECTATOR_UPDATE_ID</code>, so that the same frame bytes are sent to every
+ * spectator. An update is either a snapshot of the game, or the columns played
+ * since the previous update.<br/>
+ * The game models are encoded as their geometry, their first player and the
+ * list of the columns played, instead of being serialized.
+ *
+ * @see org.gojul.fourinaline.model.NioGameServer
+ * @see org.gojul.fourinaline.model.NioGameServerStub
+ *
+ * @author Julien Aubin
+ */
+final class NioGameProtocol
+{
+	/**
+	 * The length of the frame header, i.e. the frame length
+	 * and the request identifier, and the operation code or the status.
+	 */
+	final static int HEADER_LENGTH = 9;
+
+	/**
+	 * The maximum length of a frame, excluding its length field.
+	 */
+	final static int MAX_FRAME_LENGTH = 64 * 1024;
+
+	// The operation codes, one for each method of the game server,
+	// and the subscription of a spectator.
+	final static byte GET_TICKET = 1;
+	final static byte RELEASE_TICKET = 2;
+	final static byte NEW_GAME = 3;
+	final static byte END_GAME = 4;
+	final static byte IS_GAME_RUNNING = 5;
+	final static byte GET_STATE_VERSION = 6;
+	final static byte AWAIT_STATE_CHANGE = 7;
+	final static byte GET_PLAYERS = 8;
+	final static byte REGISTER_PLAYER = 9;
+	final static byte GET_GAME_IMMEDIATELY = 10;
+	final static byte GET_GAME = 11;
+	final static byte GET_GAME_VERSION = 12;
+	final static byte GET_MOVES_SINCE = 13;
+	final static byte PLAY = 14;
+	final static byte PLAY_AND_AWAIT_TURN = 15;
+	final static byte SUBSCRIBE = 16;
+
+	/**
+	 * The names of the operations, indexed by their code.
+	 */
+	private final static String[] OPERATION_NAMES = {null, "getTicket", "releaseTicket", "newGame", "endGame",
+		"isGameRunning", "getStateVersion", "awaitStateChange", "getPlayers", "registerPlayer", "getGameImmediately",
+		"getGame", "getGameVersion", "getMovesSince", "play", "playAndAwaitTurn", "subscribe"};
+
+	/**
+	 * The request identifier of the spectator update frames, which
+	 * is never used by a request.
+	 */
+	final static int SPECTATOR_UPDATE_ID = -1;
+
+	// The kinds of spectator updates. A snapshot is followed by the game
+	// version and the game model, a delta by the previous game version,
+	// the new game version and the columns played between them.
+	final static byte SNAPSHOT_UPDATE = 0;
+	final static byte DELTA_UPDATE = 1;
+
+	// The response statuses. Every status but OK is followed by
+	// the exception message.
+	final static byte OK = 0;
+	final static byte NULL_POINTER_ERROR = 1;
+	final static byte ILLEGAL_ARGUMENT_ERROR = 2;
+	final static byte SERVER_TICKET_ERROR = 3;
+	final static byte PLAYER_REGISTER_ERROR = 4;
+	final static byte GAME_MODEL_ERROR = 5;
+	final static byte RUNTIME_ERROR = 6;
+	final static byte SERVER_BUSY_ERROR = 7;
+
+	/**
+	 * Constructor. This class is not to be instanciated.
+	 */
+	private NioGameProtocol()
+	{
+
+	}
+
+	/**
+	 * Returns the name of the operation with code <code>code</code>, which is
+	 * the name of the matching method of the game server.
+	 * @param code the operation code.
+	 * @return the name of the operation.
+	 */
+	static String getOperationName(final byte code)
+	{
+		if (code > 0 && code < OPERATION_NAMES.length)
+			return OPERATION_NAMES[code];
+		else
+			return "unknown";
+	}
+
+	/**
+	 * Returns the status that matches the exception <code>t</code>.
+	 * @param t the exception thrown by the game server.
+	 * @return the status that matches the exception <code>t</code>.
+	 */
+	static byte getErrorStatus(final Throwable t)
+	{
+		if (t instanceof NullPointerException)
+			return NULL_POINTER_ERROR;
+		else if (t instanceof IllegalArgumentException)
+			return ILLEGAL_ARGUMENT_ERROR;
+		else if (t instanceof ServerTicketException)
+			return SERVER_TICKET_ERROR;
+		else if (t instanceof PlayerRegisterException)
+			return PLAYER_REGISTER_ERROR;
+		else if (t instanceof GameModelException)
+			return GAME_MODEL_ERROR;
+		else if (t instanceof ServerBusyException)
+			return SERVER_BUSY_ERROR;
+		else
+			return RUNTIME_ERROR;
+	}
+
+	/**
+	 * Returns the unchecked exception that matches the error status <code>status</code>.
+	 * The <code>PLAYER_REGISTER_ERROR</code> status, which matches a checked exception,
+	 * must be handled by the caller.
+	 * @param status the error status.
+	 * @param message the exception message.
+	 * @return the unchecked exception that matches the error status <code>status</code>.
+	 */
+	static RuntimeException getErrorException(final byte status, final String message)
+	{
+		switch (status)
+		{
+			case NULL_POINTER_ERROR:
+				return new NullPointerException(message);
+			case ILLEGAL_ARGUMENT_ERROR:
+				return new IllegalArgumentException(message);
+			case SERVER_TICKET_ERROR:
+				return new ServerTicketException(message);
+			case GAME_MODEL_ERROR:
+				return new GameModelException(message);
+			case SERVER_BUSY_ERROR:
+				return new ServerBusyException(message);
+			default:
+				return new RuntimeException(message);
+		}
+	}
+
+	/**
+	 * Returns a stream that writes a frame. The frame is completed by
+	 * the <code>toFrame</code> method.
+	 * @param requestId the request identifier.
+	 * @param code the operation code or the status.
+	 * @return a stream that writes a frame.
+	 */
+	static FrameOutputStream newFrame(final int requestId, final byte code)
+	{
+		FrameOutputStream result = new FrameOutputStream(requestId);
+
+		try
+		{
+			// The frame length is written once the frame is complete.
+			result.data.writeInt(0);
+			result.data.writeInt(requestId);
+			result.data.writeByte(code);
+		}
+		catch (IOException e)
+		{
+			// Never happens with a byte array.
+			throw new RuntimeException(e);
+		}
+
+		return result;
+	}
+
+	/**
+	 * The <code>FrameOutputStream</code> class is a byte array stream
+	 * that writes a frame.
+	 *
+	 * @author Julien Aubin
+	 */
+	final static class FrameOutputStream extends ByteArrayOutputStream
+	{
+		/**
+		 * The identifier of the request of the frame.
+		 */
+		final int requestId;
+
+		/**
+		 * The data output that writes to this stream.
+		 */
+		final DataOutputStream data;
+
+		/**
+		 * Constructor.
+		 * @param id the identifier of the request of the frame.
+		 */
+		private FrameOutputStream(final int id)
+		{
+			super(64);
+			requestId = id;
+			data = new DataOutputStream(this);
+		}
+
+		/**
+		 * Returns the frame written, including its length.
+		 * @return the frame written.
+		 * @throws IOException if the frame is too long.
+		 */
+		byte[] toFrame() throws IOException
+		{
+			int length = count - 4;
+
+			if (length > MAX_FRAME_LENGTH)
+				throw new IOException("Frame too long : " + length);
+
+			buf[0] = (byte) (length >>> 24);
+			buf[1] = (byte) (length >>> 16);
+			buf[2] = (byte) (length >>> 8);
+			buf[3] = (byte) length;
+
+			return toByteArray();
+		}
+	}
+
+	/**
+	 * Writes the server ticket <code>serverTicket</code> to <code>out</code>.
+	 * @param out the output to write.
+	 * @param serverTicket the ticket to write.
+	 * @throws NullPointerException if <code>serverTicket</code> is null.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	static void writeTicket(final DataOutput out, final ServerTicket serverTicket) throws NullPointerException, IOException
+	{
+		out.writeLong(serverTicket.getTicketValue());
+	}
+
+	/**
+	 * Reads a server ticket from <code>in</code>.
+	 * @param in the input to read.
+	 * @return the ticket read.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	static ServerTicket readTicket(final DataInput in) throws IOException
+	{
+		return new ServerTicket(in.readLong());
+	}
+
+	/**
+	 * Writes the player mark <code>playerMark</code> to <code>out</code>.
+	 * @param out the output to write.
+	 * @param playerMark the mark to write.
+	 * @throws NullPointerException if <code>playerMark</code> is null.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	static void writePlayerMark(final DataOutput out, final PlayerMark playerMark) throws NullPointerException, IOException
+	{
+		// The mark hash code is its value.
+		out.writeShort(playerMark.hashCode());
+	}
+
+	/**
+	 * Reads a player mark from <code>in</code>.
+	 * @param in the input to read.
+	 * @return the mark read.
+	 * @throws IOException if an I/O error occurs or if the mark is unknown.
+	 */
+	static PlayerMark readPlayerMark(final DataInput in) throws IOException
+	{
+		int markValue = in.readUnsignedShort();
+
+		Iterator<PlayerMark> it = PlayerMark.getPlayerIterator();
+
+		while (it.hasNext())
+		{
+			PlayerMark playerMark = it.next();
+
+			if (playerMark.hashCode() == markValue)
+				return playerMark;
+		}
+
+		throw new IOException("Unknown player mark : " + markValue);
+	}
+
+	/**
+	 * Writes the column indexes <code>columns</code> to <code>out</code>.
+	 * @param out the output to write.
+	 * @param columns the column indexes to write, which may be null.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	static void writeColumns(final DataOutput out, final int[] columns) throws IOException
+	{
+		if (columns == null)
+		{
+			out.writeShort(-1);
+		}
+		else
+		{
+			out.writeShort(columns.length);
+
+			for (int col: columns)
+				out.writeShort(col);
+		}
+	}
+
+	/**
+	 * Reads column indexes from <code>in</code>.
+	 * @param in the input to read.
+	 * @return the column indexes read, which may be null.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	static int[] readColumns(final DataInput in) throws IOException
+	{
+		int length = in.readShort();
+
+		if (length < 0)
+			return null;
+
+		int[] result = new int[length];
+
+		for (int i = 0; i < length; i++)
+			result[i] = in.readShort();
+
+		return result;
+	}
+
+	/**
+	 * Writes the game model <code>gameModel</code> to <code>out</code>.
+	 * @param out the output to write.
+	 * @param gameModel the game model to write, which may be null.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	static void writeGameModel(final DataOutput out, final GameModel gameModel) throws IOException
+	{
+		out.writeBoolean(gameModel != null);
+
+		if (gameModel != null)
+		{
+			out.writeShort(gameModel.getRowCount());
+			out.writeShort(gameModel.getColCount());
+			out.writeShort(gameModel.getWinLineLength());
+			writePlayerMark(out, gameModel.getFirstPlayer());
+			writeColumns(out, gameModel.getPlayedColumns(0));
+		}
+	}
+
+	/**
+	 * Reads a game model from <code>in</code>.
+	 * @param in the input to read.
+	 * @return the game model read, which may be null.
+	 * @throws IOException if an I/O error occurs or if the game model is not valid.
+	 */
+	static GameModel readGameModel(final DataInput in) throws IOException
+	{
+		if (!in.readBoolean())
+			return null;
+
+		int rows = in.readShort();
+		int cols = in.readShort();
+		int winLength = in.readShort();
+		PlayerMark firstPlayer = readPlayerMark(in);
+		int[] columns = readColumns(in);
+
+		try
+		{
+			GameModel result = new GameModel(rows, cols, winLength, firstPlayer);
+
+			for (int col: columns)
+				result.play(col, result.getCurrentPlayer());
+
+			return result;
+		}
+		catch (RuntimeException e)
+		{
+			throw new IOException("Invalid game model : " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Writes the game player <code>gamePlayer</code> to <code>out</code>.
+	 * @param out the output to write.
+	 * @param gamePlayer the game player to write.
+	 * @throws NullPointerException if <code>gamePlayer</code> is null.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	static void writeGamePlayer(final DataOutput out, final GamePlayer gamePlayer) throws NullPointerException, IOException
+	{
+		out.writeUTF(gamePlayer.getName());
+		writePlayerMark(out, gamePlayer.getPlayerMark());
+		out.writeInt(gamePlayer.getScore());
+		out.writeInt(gamePlayer.getRating());
+	}
+
+	/**
+	 * Reads a game player from <code>in</code>. The player read cannot
+	 * be modified.
+	 * @param in the input to read.
+	 * @return the game player read.
+	 * @throws IOException if an I/O error occurs or if the player is not valid.
+	 */
+	static GamePlayer readGamePlayer(final DataInput in) throws IOException
+	{
+		String name = in.readUTF();
+		PlayerMark playerMark = readPlayerMark(in);
+		int score = in.readInt();
+		int rating = in.readInt();
+
+		try
+		{
+			return new UnmodifiableGamePlayer(new GamePlayerImpl(name, playerMark, score, rating));
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new IOException("Invalid game player : " + e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,1281 @@
+/*
+ * NioGameServer.java
+ *
+ * Created: 2026/10/19
+ *
+ * Copyright (C) 2026 Julien Aubin
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.gojul.fourinaline.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.gojul.fourinaline.model.GameModel.PlayerMark;
+import org.gojul.fourinaline.model.GameServer.PlayerDescriptor;
+import org.gojul.fourinaline.model.GameServer.ServerTicket;
+import org.gojul.fourinaline.model.GameServer.ServerTicketException;
+import org.gojul.fourinaline.model.GameServer.GameVersion;
+import org.gojul.fourinaline.model.GameServerImpl.ServerSnapshot;
+import org.gojul.fourinaline.model.NioGameProtocol.FrameOutputStream;
+
+/**
+ * The <code>NioGameServer</code> class serves a game server over a non blocking
+ * socket protocol, as an alternative to RMI. The clients connect to it using
+ * the <code>NioGameServerStub</code> class.<br/>
+ * All the connections are handled by a single thread, whatever their number.
+ * The calls that must wait, i.e. the calls of the <code>getGame</code>,
+ * <code>getMovesSince</code> and <code>awaitStateChange</code> methods, do not
+ * block this thread : they are parked, and resumed every time the state of the
+ * game server changes. Thus an idle client only costs a socket and a few bytes
+ * of memory, instead of a server thread blocked in an RMI call.<br/>
+ * The calls are subject to the admission control of the game servers, the
+ * source address of a call being the one of its connection.<br/>
+ * The tickets that are still used by a client when its connection is closed
+ * are released.<br/>
+ * Any connection may subscribe as a spectator of the game, without any ticket.
+ * Every time the game changes, each update is encoded once and the same bytes
+ * are queued for all the spectators : a spectator costs a buffer reference per
+ * update, whatever the size of the game. A spectator that does not read its
+ * updates fast enough does not slow the players down : once it has too many
+ * updates waiting, they're dropped and replaced by a snapshot of the game.
+ *
+ * @see org.gojul.fourinaline.model.NioGameProtocol
+ * @see org.gojul.fourinaline.model.NioGameServerStub
+ *
+ * @author Julien Aubin
+ */
+public final class NioGameServer implements Runnable
+{
+	/**
+	 * The default port of the server.
+	 */
+	public final static int DEFAULT_PORT = 1100;
+
+	/**
+	 * The size of the read buffer of a connection, which is enough for most frames.
+	 */
+	private final static int READ_BUFFER_SIZE = 512;
+
+	/**
+	 * The maximum number of bytes waiting to be written to a connection.
+	 * Beyond that the client is considered as not reading its responses
+	 * and the connection is closed.
+	 */
+	private final static int MAX_PENDING_OUTPUT = 1024 * 1024;
+
+	/**
+	 * The maximum number of updates waiting to be written to a spectator.
+	 * Beyond that the updates not written yet are replaced by a snapshot.
+	 */
+	private final static int MAX_SPECTATOR_BACKLOG = 8;
+
+	/**
+	 * The <code>Session</code> class contains the state of a client connection.
+	 *
+	 * @author Julien Aubin
+	 */
+	private final static class Session
+	{
+		/**
+		 * The connection channel.
+		 */
+		private SocketChannel channel;
+
+		/**
+		 * The connection selection key.
+		 */
+		private SelectionKey key;
+
+		/**
+		 * The source address of the connection.
+		 */
+		private String address;
+
+		/**
+		 * The read buffer. It is replaced by a bigger one for big frames.
+		 */
+		private ByteBuffer readBuffer;
+
+		/**
+		 * The buffers waiting to be written.
+		 */
+		private LinkedList<ByteBuffer> writeQueue;
+
+		/**
+		 * The number of bytes waiting to be written.
+		 */
+		private int pendingOutput;
+
+		/**
+		 * The tickets got by the client and not released yet.
+		 */
+		private Set<ServerTicket> tickets;
+
+		/**
+		 * The spectator updates of the write queue that are not fully
+		 * written yet, or null if the client is not a spectator.
+		 */
+		private LinkedList<ByteBuffer> spectatorUpdates;
+
+		/**
+		 * The game version of the latest update sent to the spectator.
+		 */
+		private long spectatorVersion;
+
+		/**
+		 * Boolean indicating whether the connection is closed or not.
+		 */
+		private boolean closed;
+
+		/**
+		 * Constructor.
+		 * @param socketChannel the connection channel.
+		 */
+		private Session(final SocketChannel socketChannel)
+		{
+			channel = socketChannel;
+			address = socketChannel.socket().getInetAddress().getHostAddress();
+			readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+			writeQueue = new LinkedList<ByteBuffer>();
+			tickets = new HashSet<ServerTicket>();
+			spectatorUpdates = null;
+			closed = false;
+		}
+	}
+
+	/**
+	 * The <code>ParkedCall</code> class is a call that waits for
+	 * a change of the server state.
+	 *
+	 * @author Julien Aubin
+	 */
+	private abstract static class ParkedCall
+	{
+		/**
+		 * The session of the call.
+		 */
+		private Session session;
+
+		/**
+		 * The request identifier.
+		 */
+		private int requestId;
+
+		/**
+		 * The operation code of the call.
+		 */
+		private byte code;
+
+		/**
+		 * The ticket of the calling client, or null if the call has no ticket.
+		 */
+		private ServerTicket serverTicket;
+
+		/**
+		 * The time at which the call has been received, in nanoseconds.
+		 */
+		private long startTime;
+
+		/**
+		 * The flight recorder event of the call, or null if it is not recorded.
+		 */
+		private Object flightEvent;
+
+		/**
+		 * The time at which the call ends whatever the server state,
+		 * or 0 if the call has no time out.
+		 */
+		private long deadline;
+
+		/**
+		 * Constructor.
+		 * @param callSession the session of the call.
+		 * @param id the request identifier.
+		 * @param operationCode the operation code of the call.
+		 * @param ticket the ticket of the calling client, or null if the call has no ticket.
+		 * @param callDeadline the time at which the call ends whatever the
+		 * server state, or 0 if the call has no time out.
+		 */
+		private ParkedCall(final Session callSession, final int id, final byte operationCode, final ServerTicket ticket, final long callDeadline)
+		{
+			session = callSession;
+			requestId = id;
+			code = operationCode;
+			serverTicket = ticket;
+			startTime = System.nanoTime();
+			flightEvent = FlightEvents.beginServerCall();
+			deadline = callDeadline;
+		}
+
+		/**
+		 * Attempts to complete the call. The call is completed if it
+		 * no longer has to wait or if it has expired.
+		 * @param now the current time.
+		 * @return the response frame of the call, or null if the
+		 * call must still wait.
+		 * @throws IOException if the response frame cannot be built.
+		 * @throws RuntimeException if the server throws an exception,
+		 * which is sent to the client.
+		 */
+		abstract FrameOutputStream tryComplete(final long now) throws IOException, RuntimeException;
+	}
+
+	/**
+	 * The served game server.
+	 */
+	private GameServerImpl gameServer;
+
+	/**
+	 * The channel that accepts the connections.
+	 */
+	private ServerSocketChannel serverChannel;
+
+	/**
+	 * The selector of the channels.
+	 */
+	private Selector selector;
+
+	/**
+	 * The calls that wait for a change of the server state.
+	 * Only used by the server thread.
+	 */
+	private List<ParkedCall> parkedCalls;
+
+	/**
+	 * The sessions of the spectators. Only used by the server thread.
+	 */
+	private List<Session> spectators;
+
+	/**
+	 * The admission control of the calls.
+	 */
+	private AdmissionControl admissionControl;
+
+	/**
+	 * The metrics of the calls.
+	 */
+	private ServerMetrics metrics;
+
+	/**
+	 * Boolean indicating whether the server state has changed since
+	 * the parked calls have been resumed.
+	 */
+	private AtomicBoolean stateChanged;
+
+	/**
+	 * The listener that wakes up the server thread when the
+	 * server state changes.
+	 */
+	private Runnable stateChangeListener;
+
+	/**
+	 * Boolean indicating whether the server is stopped or not.
+	 */
+	private volatile boolean stopped;
+
+	/**
+	 * Constructor. The server does not accept connections until
+	 * the <code>start</code> method is called.
+	 * @param server the game server to serve.
+	 * @param port the port on which the server listens, or 0 for
+	 * any free port.
+	 * @throws NullPointerException if <code>server</code> is null.
+	 * @throws IOException if the server cannot listen on <code>port</code>.
+	 */
+	public NioGameServer(final GameServerImpl server, final int port) throws NullPointerException, IOException
+	{
+		if (server == null)
+			throw new NullPointerException();
+
+		gameServer = server;
+		parkedCalls = new ArrayList<ParkedCall>();
+		spectators = new ArrayList<Session>();
+		admissionControl = AdmissionControl.getInstance();
+		metrics = ServerMetrics.getInstance();
+		stateChanged = new AtomicBoolean(false);
+		stopped = false;
+
+		selector = Selector.open();
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.socket().setReuseAddress(true);
+		serverChannel.socket().bind(new InetSocketAddress(port));
+		serverChannel.configureBlocking(false);
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+		stateChangeListener = new StateChangeListener(this);
+	}
+
+	/**
+	 * The <code>StateChangeListener</code> wakes up the server thread
+	 * when the state of the game server changes.
+	 *
+	 * @author Julien Aubin
+	 */
+	private final static class StateChangeListener implements Runnable
+	{
+		/**
+		 * The server to wake up.
+		 */
+		private NioGameServer nioServer;
+
+		/**
+		 * Constructor.
+		 * @param server the server to wake up.
+		 */
+		private StateChangeListener(final NioGameServer server)
+		{
+			nioServer = server;
+		}
+
+		/**
+		 * @see java.lang.Runnable#run()
+		 */
+		public void run()
+		{
+			// Several changes only wake up the selector once.
+			if (nioServer.stateChanged.compareAndSet(false, true))
+				nioServer.selector.wakeup();
+		}
+	}
+
+	/**
+	 * Returns the port on which the server listens.
+	 * @return the port on which the server listens.
+	 */
+	public int getPort()
+	{
+		return serverChannel.socket().getLocalPort();
+	}
+
+	/**
+	 * Starts the server thread.
+	 */
+	public void start()
+	{
+		gameServer.addStateChangeListener(stateChangeListener);
+
+		Thread thread = new Thread(this, "NioGameServer-" + getPort());
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stops the server. All the connections are closed.
+	 */
+	public void stop()
+	{
+		stopped = true;
+		selector.wakeup();
+	}
+
+	/**
+	 * @see java.lang.Runnable#run()
+	 */
+	public void run()
+	{
+		try
+		{
+			while (!stopped)
+			{
+				selector.select(getSelectTimeout());
+
+				Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+
+				while (it.hasNext())
+				{
+					SelectionKey key = it.next();
+					it.remove();
+
+					if (!key.isValid())
+						continue;
+
+					if (key.isAcceptable())
+						accept();
+					else
+					{
+						Session session = (Session) key.attachment();
+
+						try
+						{
+							if (key.isReadable())
+								read(session);
+
+							if (!session.closed && key.isWritable())
+								write(session);
+						}
+						catch (IOException e)
+						{
+							close(session);
+						}
+					}
+				}
+
+				boolean changed = stateChanged.getAndSet(false);
+
+				// The parked calls can only be completed by a change of the
+				// server state or by their deadline, not by the other I/O events.
+				if (changed || isParkedCallExpired())
+					resumeParkedCalls();
+
+				if (changed)
+					updateSpectators();
+			}
+		}
+		catch (Throwable t)
+		{
+			System.err.println("NIO game server failure : ");
+			t.printStackTrace();
+		}
+		finally
+		{
+			gameServer.removeStateChangeListener(stateChangeListener);
+
+			for (SelectionKey key: selector.keys())
+			{
+				if (key.attachment() != null)
+					close((Session) key.attachment());
+			}
+
+			try
+			{
+				serverChannel.close();
+				selector.close();
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Returns true if the deadline of one of the parked calls has passed,
+	 * false elsewhere.
+	 * @return true if the deadline of one of the parked calls has passed.
+	 */
+	private boolean isParkedCallExpired()
+	{
+		long now = System.currentTimeMillis();
+
+		for (ParkedCall call: parkedCalls)
+		{
+			if (call.deadline > 0 && call.deadline <= now)
+				return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Returns the time to wait for the selector, i.e. the time
+	 * until the first deadline of the parked calls, or 0 if there's
+	 * no deadline.
+	 * @return the time to wait for the selector.
+	 */
+	private long getSelectTimeout()
+	{
+		long deadline = Long.MAX_VALUE;
+
+		for (ParkedCall call: parkedCalls)
+		{
+			if (call.deadline > 0)
+				deadline = Math.min(deadline, call.deadline);
+		}
+
+		if (deadline == Long.MAX_VALUE)
+			return 0;
+
+		// A timeout of 0 means no timeout for the selector.
+		return Math.max(1, deadline - System.currentTimeMillis());
+	}
+
+	/**
+	 * Accepts a new connection.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	private void accept() throws IOException
+	{
+		SocketChannel channel = serverChannel.accept();
+
+		if (channel == null)
+			return;
+
+		channel.configureBlocking(false);
+		channel.socket().setTcpNoDelay(true);
+
+		Session session = new Session(channel);
+		session.key = channel.register(selector, SelectionKey.OP_READ, session);
+	}
+
+	/**
+	 * Closes the connection of the session <code>session</code>, and releases
+	 * the tickets that it still uses.
+	 * @param session the session to close.
+	 */
+	private void close(final Session session)
+	{
+		if (session.closed)
+			return;
+
+		session.closed = true;
+		session.key.cancel();
+
+		if (session.spectatorUpdates != null)
+			spectators.remove(session);
+
+		try
+		{
+			session.channel.close();
+		}
+		catch (IOException e)
+		{
+			// Nothing to do.
+		}
+
+		for (ServerTicket ticket: session.tickets)
+		{
+			try
+			{
+				gameServer.releaseTicket(ticket);
+			}
+			catch (Exception e)
+			{
+				// The ticket may already have been released.
+			}
+		}
+
+		session.tickets.clear();
+	}
+
+	/**
+	 * Reads the available data of the session <code>session</code>
+	 * and handles the complete frames.
+	 * @param session the session to read.
+	 * @throws IOException if an I/O error occurs or if the client
+	 * does not respect the protocol.
+	 */
+	private void read(final Session session) throws IOException
+	{
+		int read = session.channel.read(session.readBuffer);
+
+		if (read < 0)
+			throw new IOException("Connection closed");
+
+		metrics.bytesRead(ServerMetrics.NIO_TRANSPORT, read);
+
+		ByteBuffer buffer = session.readBuffer;
+		buffer.flip();
+
+		while (!session.closed && buffer.remaining() >= 4)
+		{
+			int length = buffer.getInt(buffer.position());
+
+			if (length < NioGameProtocol.HEADER_LENGTH - 4 || length > NioGameProtocol.MAX_FRAME_LENGTH)
+				throw new IOException("Invalid frame length : " + length);
+
+			if (buffer.remaining() < length + 4)
+			{
+				// The frame is not complete : the buffer must be able to contain it.
+				if (buffer.capacity() < length + 4)
+				{
+					ByteBuffer newBuffer = ByteBuffer.allocate(length + 4);
+					newBuffer.put(buffer);
+					session.readBuffer = newBuffer;
+					return;
+				}
+
+				break;
+			}
+
+			buffer.getInt();
+			byte[] frame = new byte[length];
+			buffer.get(frame);
+
+			handleRequest(session, new DataInputStream(new ByteArrayInputStream(frame)));
+		}
+
+		buffer.compact();
+
+		// The big buffers are only kept while they're needed.
+		if (buffer.capacity() > READ_BUFFER_SIZE && buffer.position() <= READ_BUFFER_SIZE)
+		{
+			buffer.flip();
+			session.readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+			session.readBuffer.put(buffer);
+		}
+	}
+
+	/**
+	 * Writes the pending data of the session <code>session</code>.
+	 * @param session the session to write.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	private void write(final Session session) throws IOException
+	{
+		while (!session.writeQueue.isEmpty())
+		{
+			ByteBuffer buffer = session.writeQueue.getFirst();
+			int written = session.channel.write(buffer);
+			session.pendingOutput -= written;
+			metrics.bytesWritten(ServerMetrics.NIO_TRANSPORT, written);
+
+			if (buffer.hasRemaining())
+				break;
+
+			session.writeQueue.removeFirst();
+
+			if (session.spectatorUpdates != null && !session.spectatorUpdates.isEmpty()
+				&& session.spectatorUpdates.getFirst() == buffer)
+				session.spectatorUpdates.removeFirst();
+		}
+
+		if (session.writeQueue.isEmpty())
+			session.key.interestOps(SelectionKey.OP_READ);
+		else
+			session.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+	}
+
+	/**
+	 * Sends the response frame <code>response</code> to the client of the
+	 * session <code>session</code>.
+	 * @param session the session to consider.
+	 * @param response the response to send.
+	 */
+	private void send(final Session session, final FrameOutputStream response)
+	{
+		if (session.closed)
+			return;
+
+		try
+		{
+			enqueue(session, ByteBuffer.wrap(response.toFrame()));
+		}
+		catch (IOException e)
+		{
+			close(session);
+		}
+	}
+
+	/**
+	 * Adds the buffer <code>buffer</code> to the write queue of the session
+	 * <code>session</code>, and writes it immediately if possible.
+	 * @param session the session to consider.
+	 * @param buffer the buffer to write.
+	 * @throws IOException if an I/O error occurs or if the client does
+	 * not read its responses.
+	 */
+	private void enqueue(final Session session, final ByteBuffer buffer) throws IOException
+	{
+		session.pendingOutput += buffer.remaining();
+
+		if (session.pendingOutput > MAX_PENDING_OUTPUT)
+			throw new IOException("Too many pending responses");
+
+		session.writeQueue.add(buffer);
+
+		write(session);
+	}
+
+	/**
+	 * Sends the spectator update frame <code>frame</code> to the client of the
+	 * session <code>session</code>. The frame bytes are shared, not copied.
+	 * @param session the session of the spectator.
+	 * @param frame the update frame to send.
+	 * @param gameVersion the game version of the update.
+	 */
+	private void sendUpdate(final Session session, final byte[] frame, final long gameVersion)
+	{
+		if (session.closed)
+			return;
+
+		ByteBuffer buffer = ByteBuffer.wrap(frame);
+
+		// The update is registered before being written, since
+		// it may be fully written immediately.
+		session.spectatorUpdates.add(buffer);
+		session.spectatorVersion = gameVersion;
+
+		try
+		{
+			enqueue(session, buffer);
+		}
+		catch (IOException e)
+		{
+			close(session);
+		}
+	}
+
+	/**
+	 * Removes from the write queue of the session <code>session</code> the spectator
+	 * updates that have not been written at all. An update that is partially
+	 * written is kept, since the frames must not be truncated.
+	 * @param session the session of the spectator.
+	 */
+	private static void dropUpdates(final Session session)
+	{
+		ByteBuffer partialUpdate = null;
+
+		for (ByteBuffer update: session.spectatorUpdates)
+		{
+			// The buffers are compared by identity, since different
+			// buffers may have the same content.
+			if (update.position() > 0)
+				partialUpdate = update;
+			else
+			{
+				Iterator<ByteBuffer> it = session.writeQueue.iterator();
+
+				while (it.hasNext())
+				{
+					if (it.next() == update)
+					{
+						it.remove();
+						session.pendingOutput -= update.remaining();
+						break;
+					}
+				}
+			}
+		}
+
+		session.spectatorUpdates.clear();
+
+		if (partialUpdate != null)
+			session.spectatorUpdates.add(partialUpdate);
+	}
+
+	/**
+	 * Sends the latest changes of the game to all the spectators. The update frames
+	 * are built once, and sent to all the spectators that need them : a delta from
+	 * the version known by the spectator if possible, a snapshot of the game elsewhere.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	private void updateSpectators() throws IOException
+	{
+		if (spectators.isEmpty())
+			return;
+
+		ServerSnapshot snapshot = gameServer.getSnapshot();
+		long gameVersion = snapshot.getGameVersion();
+
+		byte[] snapshotFrame = null;
+		Map<Long, byte[]> deltaFrames = new HashMap<Long, byte[]>();
+
+		// The sessions that fail are closed, and thus removed from the spectators.
+		for (Session session: new ArrayList<Session>(spectators))
+		{
+			if (session.spectatorVersion == gameVersion)
+				continue;
+
+			byte[] frame = null;
+
+			if (session.spectatorUpdates.size() >= MAX_SPECTATOR_BACKLOG)
+				dropUpdates(session);
+			else if (isDeltaPossible(session.spectatorVersion, gameVersion))
+			{
+				frame = deltaFrames.get(session.spectatorVersion);
+
+				if (frame == null)
+				{
+					frame = getDeltaFrame(snapshot, session.spectatorVersion);
+					deltaFrames.put(session.spectatorVersion, frame);
+				}
+			}
+
+			if (frame == null)
+			{
+				if (snapshotFrame == null)
+					snapshotFrame = getSnapshotFrame(snapshot);
+
+				frame = snapshotFrame;
+			}
+
+			sendUpdate(session, frame, gameVersion);
+		}
+	}
+
+	/**
+	 * Returns true if the game version <code>gameVersion</code> may be reached from
+	 * the game version <code>fromVersion</code> by playing columns, false elsewhere.
+	 * @param fromVersion the game version known by the spectator.
+	 * @param gameVersion the current game version.
+	 * @return true if a delta may be sent from <code>fromVersion</code> to <code>gameVersion</code>.
+	 */
+	private static boolean isDeltaPossible(final long fromVersion, final long gameVersion)
+	{
+		return fromVersion >= 0 && gameVersion >= 0
+			&& GameVersion.getGameNumber(fromVersion) == GameVersion.getGameNumber(gameVersion)
+			&& GameVersion.getPlayCount(fromVersion) < GameVersion.getPlayCount(gameVersion);
+	}
+
+	/**
+	 * Returns the spectator update frame that contains the snapshot <code>snapshot</code>.
+	 * @param snapshot the server snapshot to consider.
+	 * @return the spectator update frame that contains the snapshot <code>snapshot</code>.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	private static byte[] getSnapshotFrame(final ServerSnapshot snapshot) throws IOException
+	{
+		FrameOutputStream result = NioGameProtocol.newFrame(NioGameProtocol.SPECTATOR_UPDATE_ID, NioGameProtocol.OK);
+		result.data.writeByte(NioGameProtocol.SNAPSHOT_UPDATE);
+		result.data.writeLong(snapshot.getGameVersion());
+		NioGameProtocol.writeGameModel(result.data, snapshot.getGameModel());
+
+		return result.toFrame();
+	}
+
+	/**
+	 * Returns the spectator update frame that contains the columns played
+	 * in the game of <code>snapshot</code> since the version <code>fromVersion</code>.
+	 * @param snapshot the server snapshot to consider.
+	 * @param fromVersion the game version known by the spectator.
+	 * @return the spectator update frame of the columns played since <code>fromVersion</code>.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	private static byte[] getDeltaFrame(final ServerSnapshot snapshot, final long fromVersion) throws IOException
+	{
+		FrameOutputStream result = NioGameProtocol.newFrame(NioGameProtocol.SPECTATOR_UPDATE_ID, NioGameProtocol.OK);
+		result.data.writeByte(NioGameProtocol.DELTA_UPDATE);
+		result.data.writeLong(fromVersion);
+		result.data.writeLong(snapshot.getGameVersion());
+		NioGameProtocol.writeColumns(result.data, snapshot.getGameModel().getPlayedColumns(GameVersion.getPlayCount(fromVersion)));
+
+		return result.toFrame();
+	}
+
+	/**
+	 * Returns the response frame of the exception <code>t</code>.
+	 * @param requestId the identifier of the request that failed.
+	 * @param t the exception thrown.
+	 * @return the response frame of the exception <code>t</code>.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	private static FrameOutputStream getErrorResponse(final int requestId, final Throwable t) throws IOException
+	{
+		FrameOutputStream result = NioGameProtocol.newFrame(requestId, NioGameProtocol.getErrorStatus(t));
+		result.data.writeUTF(t.getMessage() == null ? "" : t.getMessage());
+
+		return result;
+	}
+
+	/**
+	 * Handles the request read from the stream <code>in</code>, which starts
+	 * after the frame length.
+	 * @param session the session of the request.
+	 * @param in the request stream.
+	 * @throws IOException if the request is not valid.
+	 */
+	private void handleRequest(final Session session, final DataInputStream in) throws IOException
+	{
+		long startTime = System.nanoTime();
+		Object flightEvent = FlightEvents.beginServerCall();
+		int requestId = in.readInt();
+		byte code = in.readByte();
+
+		FrameOutputStream response = NioGameProtocol.newFrame(requestId, NioGameProtocol.OK);
+		ServerTicket ticket = null;
+
+		try
+		{
+			admissionControl.admitAddressCall(session.address);
+
+			switch (code)
+			{
+				case NioGameProtocol.GET_TICKET:
+				{
+					ticket = gameServer.getTicket();
+					session.tickets.add(ticket);
+					NioGameProtocol.writeTicket(response.data, ticket);
+					break;
+				}
+				case NioGameProtocol.RELEASE_TICKET:
+				{
+					ticket = NioGameProtocol.readTicket(in);
+					gameServer.releaseTicket(ticket);
+					session.tickets.remove(ticket);
+					break;
+				}
+				case NioGameProtocol.NEW_GAME:
+					ticket = NioGameProtocol.readTicket(in);
+					gameServer.newGame(ticket);
+					break;
+				case NioGameProtocol.END_GAME:
+					ticket = NioGameProtocol.readTicket(in);
+					gameServer.endGame(ticket);
+					break;
+				case NioGameProtocol.IS_GAME_RUNNING:
+					response.data.writeBoolean(gameServer.isGameRunning());
+					break;
+				case NioGameProtocol.GET_STATE_VERSION:
+					response.data.writeLong(gameServer.getStateVersion());
+					break;
+				case NioGameProtocol.GET_PLAYERS:
+				{
+					Set<GamePlayer> players = gameServer.getPlayers();
+					response.data.writeShort(players.size());
+
+					for (GamePlayer player: players)
+						NioGameProtocol.writeGamePlayer(response.data, player);
+					break;
+				}
+				case NioGameProtocol.REGISTER_PLAYER:
+				{
+					String playerName = in.readUTF();
+					ticket = NioGameProtocol.readTicket(in);
+					PlayerDescriptor descriptor = gameServer.registerPlayer(playerName, ticket);
+					NioGameProtocol.writeGamePlayer(response.data, descriptor.getGamePlayer());
+					response.data.writeBoolean(descriptor.isGameOwner());
+					break;
+				}
+				case NioGameProtocol.GET_GAME_IMMEDIATELY:
+					NioGameProtocol.writeGameModel(response.data, gameServer.getGameImmediately());
+					break;
+				case NioGameProtocol.GET_GAME_VERSION:
+					response.data.writeLong(gameServer.getGameVersion());
+					break;
+				case NioGameProtocol.PLAY:
+				{
+					int colIndex = in.readShort();
+					PlayerMark playerMark = NioGameProtocol.readPlayerMark(in);
+					GameModel clientGameModel = NioGameProtocol.readGameModel(in);
+					ticket = NioGameProtocol.readTicket(in);
+					gameServer.play(colIndex, playerMark, clientGameModel, ticket);
+					break;
+				}
+				case NioGameProtocol.GET_GAME:
+				{
+					PlayerMark playerMark = NioGameProtocol.readPlayerMark(in);
+					ticket = NioGameProtocol.readTicket(in);
+
+					// The call is checked once, however many times it is resumed.
+					gameServer.checkTicket(ticket);
+					park(new GetGameCall(session, requestId, playerMark, ticket));
+					return;
+				}
+				case NioGameProtocol.GET_MOVES_SINCE:
+				{
+					PlayerMark playerMark = NioGameProtocol.readPlayerMark(in);
+					ticket = NioGameProtocol.readTicket(in);
+					gameServer.checkTicket(ticket);
+					park(new GetMovesSinceCall(session, requestId, code, playerMark, ticket, in.readLong()));
+					return;
+				}
+				case NioGameProtocol.PLAY_AND_AWAIT_TURN:
+				{
+					int colIndex = in.readShort();
+					PlayerMark playerMark = NioGameProtocol.readPlayerMark(in);
+					ticket = NioGameProtocol.readTicket(in);
+					long gameVersion = in.readLong();
+
+					// The call waits for the turn of the player like a getMovesSince call.
+					if (!gameServer.playOnVersion(colIndex, playerMark, gameVersion, ticket))
+					{
+						NioGameProtocol.writeColumns(response.data, null);
+						break;
+					}
+
+					park(new GetMovesSinceCall(session, requestId, code, playerMark, ticket, gameVersion));
+					return;
+				}
+				case NioGameProtocol.SUBSCRIBE:
+				{
+					if (session.spectatorUpdates != null)
+						throw new IllegalStateException("Already subscribed");
+
+					// The subscription is answered before the first update.
+					send(session, response);
+
+					if (session.closed)
+						return;
+
+					session.spectatorUpdates = new LinkedList<ByteBuffer>();
+					spectators.add(session);
+
+					ServerSnapshot snapshot = gameServer.getSnapshot();
+					sendUpdate(session, getSnapshotFrame(snapshot), snapshot.getGameVersion());
+					return;
+				}
+				case NioGameProtocol.AWAIT_STATE_CHANGE:
+				{
+					long sinceVersion = in.readLong();
+					long timeout = in.readLong();
+
+					if (timeout <= 0)
+						throw new IllegalArgumentException("Invalid timeout : " + timeout);
+
+					park(new AwaitStateChangeCall(session, requestId, sinceVersion, System.currentTimeMillis() + timeout));
+					return;
+				}
+				default:
+					throw new IOException("Unknown operation code : " + code);
+			}
+		}
+		catch (IOException e)
+		{
+			throw e;
+		}
+		catch (Exception e)
+		{
+			response = getErrorResponse(requestId, e);
+		}
+
+		send(session, response);
+		metrics.callCompleted(NioGameProtocol.getOperationName(code), System.nanoTime() - startTime);
+		FlightEvents.endServerCall(flightEvent, NioGameProtocol.getOperationName(code), gameServer.getServerName(), ticket, ServerMetrics.NIO_TRANSPORT);
+	}
+
+	/**
+	 * Completes the call <code>call</code> if it does not have to wait,
+	 * or parks it elsewhere.
+	 * @param call the call to consider.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	private void park(final ParkedCall call) throws IOException
+	{
+		if (!complete(call, System.currentTimeMillis()))
+			parkedCalls.add(call);
+	}
+
+	/**
+	 * Attempts to complete the call <code>call</code>, and sends its response
+	 * if it is completed.
+	 * @param call the call to consider.
+	 * @param now the current time.
+	 * @return true if the call is completed, false elsewhere.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	private boolean complete(final ParkedCall call, final long now) throws IOException
+	{
+		FrameOutputStream response;
+
+		try
+		{
+			response = call.tryComplete(now);
+		}
+		catch (RuntimeException e)
+		{
+			response = getErrorResponse(call.requestId, e);
+		}
+
+		if (response == null)
+			return false;
+
+		send(call.session, response);
+		metrics.callCompleted(NioGameProtocol.getOperationName(call.code), System.nanoTime() - call.startTime);
+		FlightEvents.endServerCall(call.flightEvent, NioGameProtocol.getOperationName(call.code), gameServer.getServerName(), call.serverTicket, ServerMetrics.NIO_TRANSPORT);
+
+		// The wait for the turn of the player is measured like in the game server.
+		if (call.code != NioGameProtocol.AWAIT_STATE_CHANGE)
+			metrics.turnWaited(System.nanoTime() - call.startTime);
+
+		return true;
+	}
+
+	/**
+	 * Resumes the parked calls, which are completed if they no longer have
+	 * to wait, or if their session has been closed.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	private void resumeParkedCalls() throws IOException
+	{
+		long now = System.currentTimeMillis();
+
+		Iterator<ParkedCall> it = parkedCalls.iterator();
+
+		while (it.hasNext())
+		{
+			ParkedCall call = it.next();
+
+			if (call.session.closed || complete(call, now))
+				it.remove();
+		}
+	}
+
+	/**
+	 * The <code>GetGameCall</code> class is a call of the <code>getGame</code> method.
+	 *
+	 * @author Julien Aubin
+	 */
+	private final class GetGameCall extends ParkedCall
+	{
+		/**
+		 * The mark of the player which requests the game.
+		 */
+		private PlayerMark playerMark;
+
+		/**
+		 * Constructor.
+		 * @param callSession the session of the call.
+		 * @param id the request identifier.
+		 * @param mark the mark of the player which requests the game.
+		 * @param ticket the ticket of the calling client.
+		 */
+		private GetGameCall(final Session callSession, final int id, final PlayerMark mark, final ServerTicket ticket)
+		{
+			super(callSession, id, NioGameProtocol.GET_GAME, ticket, 0);
+			playerMark = mark;
+		}
+
+		/**
+		 * @see org.gojul.fourinaline.model.NioGameServer.ParkedCall#tryComplete(long)
+		 */
+		@Override
+		FrameOutputStream tryComplete(final long now) throws IOException, RuntimeException
+		{
+			if (!gameServer.tryAcquireTurn(playerMark, super.serverTicket))
+				return null;
+
+			FrameOutputStream result = NioGameProtocol.newFrame(super.requestId, NioGameProtocol.OK);
+			NioGameProtocol.writeGameModel(result.data, gameServer.getGameImmediately());
+
+			return result;
+		}
+	}
+
+	/**
+	 * The <code>GetMovesSinceCall</code> class is a call of the <code>getMovesSince</code> method.
+	 *
+	 * @author Julien Aubin
+	 */
+	private final class GetMovesSinceCall extends ParkedCall
+	{
+		/**
+		 * The mark of the player which requests the plays.
+		 */
+		private PlayerMark playerMark;
+
+		/**
+		 * The game version of the client.
+		 */
+		private long sinceVersion;
+
+		/**
+		 * Constructor.
+		 * @param callSession the session of the call.
+		 * @param id the request identifier.
+		 * @param code the operation code of the call.
+		 * @param mark the mark of the player which requests the plays.
+		 * @param ticket the ticket of the calling client.
+		 * @param version the game version of the client.
+		 */
+		private GetMovesSinceCall(final Session callSession, final int id, final byte code, final PlayerMark mark, final ServerTicket ticket, final long version)
+		{
+			super(callSession, id, code, ticket, 0);
+			playerMark = mark;
+			sinceVersion = version;
+		}
+
+		/**
+		 * @see org.gojul.fourinaline.model.NioGameServer.ParkedCall#tryComplete(long)
+		 */
+		@Override
+		FrameOutputStream tryComplete(final long now) throws IOException, RuntimeException
+		{
+			if (!gameServer.tryAcquireTurn(playerMark, super.serverTicket, sinceVersion))
+				return null;
+
+			FrameOutputStream result = NioGameProtocol.newFrame(super.requestId, NioGameProtocol.OK);
+			NioGameProtocol.writeColumns(result.data, gameServer.getPlayedColumnsSince(sinceVersion));
+
+			return result;
+		}
+	}
+
+	/**
+	 * The <code>AwaitStateChangeCall</code> class is a call of the <code>awaitStateChange</code> method.
+	 *
+	 * @author Julien Aubin
+	 */
+	private final class AwaitStateChangeCall extends ParkedCall
+	{
+		/**
+		 * The state version known by the client.
+		 */
+		private long sinceVersion;
+
+		/**
+		 * Constructor.
+		 * @param callSession the session of the call.
+		 * @param id the request identifier.
+		 * @param version the state version known by the client.
+		 * @param callDeadline the time at which the call ends whatever the
+		 * server state.
+		 */
+		private AwaitStateChangeCall(final Session callSession, final int id, final long version, final long callDeadline)
+		{
+			super(callSession, id, NioGameProtocol.AWAIT_STATE_CHANGE, null, callDeadline);
+			sinceVersion = version;
+		}
+
+		/**
+		 * @see org.gojul.fourinaline.model.NioGameServer.ParkedCall#tryComplete(long)
+		 */
+		@Override
+		FrameOutputStream tryComplete(final long now) throws IOException, RuntimeException
+		{
+			long stateVersion = gameServer.getStateVersion();
+
+			if (stateVersion <= sinceVersion && now < super.deadline)
+				return null;
+
+			FrameOutputStream result = NioGameProtocol.newFrame(super.requestId, NioGameProtocol.OK);
+			result.data.writeLong(stateVersion);
+
+			return result;
+		}
+	}
+
+	public static void main(String[] args) throws Throwable
+	{
+		NioGameServer server = new NioGameServer(new GameServerImpl(), DEFAULT_PORT);
+		server.start();
+
+		System.out.println("NIO game daemon started on port " + server.getPort() + " !");
+
+		GameServer gameServer = new NioGameServerStub("127.0.0.1", server.getPort());
+		GameServer secondGameServer = new NioGameServerStub("127.0.0.1", server.getPort());
+
+		GameClient firstClient = new AIGameClient(gameServer, gameServer.getTicket(), "bougo", new DefaultEvalScore(), 4);
+
+		MiscUtils.startClientThread(firstClient);
+		MiscUtils.startClientThread(new AIGameClient(secondGameServer, secondGameServer.getTicket(), "bougoland", new DefaultEvalScore(), 4));
+
+		gameServer.newGame(firstClient.getTicket());
+
+		while (gameServer.isGameRunning())
+			Thread.sleep(100);
+
+		System.out.println(gameServer.getGameImmediately());
+
+		System.exit(0);
+	}
+}
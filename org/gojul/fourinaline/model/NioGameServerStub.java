@@ -0,0 +1,744 @@
+/*
+ * NioGameServerStub.java
+ *
+ * Created: 2026/10/19
+ *
+ * Copyright (C) 2026 Julien Aubin
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.gojul.fourinaline.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.rmi.RemoteException;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.gojul.fourinaline.model.GameModel.GameModelException;
+import org.gojul.fourinaline.model.GameModel.PlayerMark;
+import org.gojul.fourinaline.model.NioGameProtocol.FrameOutputStream;
+
+/**
+ * The <code>NioGameServerStub</code> class is the client side of the
+ * <code>NioGameServer</code> class. It implements the <code>GameServer</code>
+ * interface, so that the game clients may use it instead of an RMI stub
+ * without any change.<br/>
+ * All the calls share the same connection : the calls that wait for the
+ * server, like the <code>getGame</code> method, do not prevent the other
+ * threads from calling the server. Any connection failure is reported as
+ * a <code>RemoteException</code>, like for RMI.<br/>
+ * The waiting calls do not hold any monitor, so that they may run
+ * on virtual threads.<br/>
+ * Unlike RMI stubs, this stub cannot be serialized in order to be sent
+ * to another JVM.<br/>
+ * A stub may also subscribe as a spectator of the game, which requires no
+ * ticket : the spectator is then notified of every change of the game.
+ *
+ * @see org.gojul.fourinaline.model.NioGameServer
+ *
+ * @author Julien Aubin
+ */
+public final class NioGameServerStub implements GameServer, Runnable
+{
+	/**
+	 * The class serial version UID.
+	 */
+	final static long serialVersionUID = 1L;
+
+	/**
+	 * The <code>GameSpectator</code> interface is notified of the changes
+	 * of the game a stub has subscribed to.
+	 *
+	 * @author Julien Aubin
+	 */
+	public static interface GameSpectator
+	{
+		/**
+		 * Method called when the game changes. The changes may be coalesced,
+		 * and the spectators that read their updates too slowly only get the
+		 * latest state of the game.<br/>
+		 * This method is called by the thread that reads the server replies,
+		 * which waits for it : it must return quickly.
+		 * @param gameModel a copy of the game model, or null if there's no game.
+		 * @param gameVersion the game version, or -1 if there's no game.
+		 */
+		public void gameChanged(final GameModel gameModel, final long gameVersion);
+	}
+
+	/**
+	 * The <code>Reply</code> class is the reply to a request.
+	 *
+	 * @author Julien Aubin
+	 */
+	private final static class Reply
+	{
+		/**
+		 * The reply status.
+		 */
+		private byte status;
+
+		/**
+		 * The reply data.
+		 */
+		private DataInputStream data;
+
+		/**
+		 * The latch released when the reply is received or when
+		 * the connection fails.
+		 */
+		private CountDownLatch receivedLatch;
+
+		/**
+		 * Constructor.
+		 */
+		private Reply()
+		{
+			receivedLatch = new CountDownLatch(1);
+		}
+
+		/**
+		 * Returns the exception message of an error reply.
+		 * @return the exception message of an error reply.
+		 * @throws IOException if an I/O error occurs.
+		 */
+		private String getMessage() throws IOException
+		{
+			String message = data.readUTF();
+
+			return message.length() == 0 ? null : message;
+		}
+
+		/**
+		 * Returns the result data of the reply.
+		 * @return the result data of the reply.
+		 * @throws IOException if an I/O error occurs.
+		 * @throws RuntimeException if the reply is an error, in which case
+		 * the exception thrown by the server is thrown.
+		 */
+		private DataInputStream getResult() throws IOException, RuntimeException
+		{
+			if (status != NioGameProtocol.OK)
+				throw NioGameProtocol.getErrorException(status, getMessage());
+
+			return data;
+		}
+	}
+
+	/**
+	 * The connection socket.
+	 */
+	private transient Socket socket;
+
+	/**
+	 * The connection output.
+	 */
+	private transient DataOutputStream output;
+
+	/**
+	 * The lock that guards the connection output.
+	 */
+	private transient Lock outputLock;
+
+	/**
+	 * The connection input, read by the reader thread only.
+	 */
+	private transient DataInputStream input;
+
+	/**
+	 * The map that ties a request identifier to the reply expected.
+	 */
+	private transient Map<Integer, Reply> pendingReplies;
+
+	/**
+	 * The identifier of the next request.
+	 */
+	private transient AtomicInteger nextRequestId;
+
+	/**
+	 * The connection failure, or null if the connection works.
+	 */
+	private transient volatile IOException failure;
+
+	/**
+	 * The spectator of the game, or null if the stub has not subscribed.
+	 */
+	private transient volatile GameSpectator gameSpectator;
+
+	/**
+	 * The game model known by the spectator, read by the reader thread only.
+	 */
+	private transient GameModel spectatorModel;
+
+	/**
+	 * The game version known by the spectator, read by the reader thread only.
+	 */
+	private transient long spectatorVersion;
+
+	/**
+	 * Constructor.
+	 * @param host the host of the <code>NioGameServer</code>.
+	 * @param port the port of the <code>NioGameServer</code>.
+	 * @throws NullPointerException if <code>host</code> is null.
+	 * @throws IOException if the connection to the server fails.
+	 */
+	public NioGameServerStub(final String host, final int port) throws NullPointerException, IOException
+	{
+		if (host == null)
+			throw new NullPointerException();
+
+		socket = new Socket(host, port);
+		socket.setTcpNoDelay(true);
+
+		output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+		input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		outputLock = new ReentrantLock();
+		pendingReplies = new ConcurrentHashMap<Integer, Reply>();
+		nextRequestId = new AtomicInteger();
+		failure = null;
+		gameSpectator = null;
+		spectatorModel = null;
+		spectatorVersion = -1;
+
+		Thread thread = MiscUtils.getClientThreadFactory().newThread(this);
+		thread.setName("NioGameServerStub-" + host + ":" + port);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Closes the connection to the server. The calls that are
+	 * waiting for a reply throw a <code>RemoteException</code>.
+	 */
+	public void close()
+	{
+		try
+		{
+			socket.close();
+		}
+		catch (IOException e)
+		{
+			// Nothing to do.
+		}
+	}
+
+	/**
+	 * Reads the replies of the server.
+	 * @see java.lang.Runnable#run()
+	 */
+	public void run()
+	{
+		try
+		{
+			while (true)
+			{
+				int length = input.readInt();
+
+				if (length < NioGameProtocol.HEADER_LENGTH - 4 || length > NioGameProtocol.MAX_FRAME_LENGTH)
+					throw new IOException("Invalid frame length : " + length);
+
+				byte[] frame = new byte[length];
+				input.readFully(frame);
+
+				DataInputStream data = new DataInputStream(new ByteArrayInputStream(frame));
+				int requestId = data.readInt();
+
+				if (requestId == NioGameProtocol.SPECTATOR_UPDATE_ID)
+				{
+					data.readByte();
+					handleUpdate(data);
+					continue;
+				}
+
+				Reply reply = pendingReplies.remove(requestId);
+
+				if (reply != null)
+				{
+					reply.status = data.readByte();
+					reply.data = data;
+					reply.receivedLatch.countDown();
+				}
+			}
+		}
+		catch (IOException e)
+		{
+			failure = e;
+
+			// The replies registered after the failure has been set
+			// are never waited for.
+			for (Reply reply: pendingReplies.values())
+				reply.receivedLatch.countDown();
+
+			close();
+		}
+	}
+
+	/**
+	 * Applies the spectator update read from <code>data</code>, and notifies
+	 * the spectator.
+	 * @param data the update data.
+	 * @throws IOException if an I/O error occurs or if the update is not valid.
+	 */
+	private void handleUpdate(final DataInputStream data) throws IOException
+	{
+		GameSpectator spectator = gameSpectator;
+
+		if (spectator == null)
+			throw new IOException("Unexpected spectator update");
+
+		byte kind = data.readByte();
+
+		if (kind == NioGameProtocol.SNAPSHOT_UPDATE)
+		{
+			spectatorVersion = data.readLong();
+			spectatorModel = NioGameProtocol.readGameModel(data);
+		}
+		else if (kind == NioGameProtocol.DELTA_UPDATE)
+		{
+			long fromVersion = data.readLong();
+			long gameVersion = data.readLong();
+			int[] columns = NioGameProtocol.readColumns(data);
+
+			if (spectatorModel == null || fromVersion != spectatorVersion || columns == null)
+				throw new IOException("Invalid spectator update");
+
+			try
+			{
+				for (int col: columns)
+					spectatorModel.play(col, spectatorModel.getCurrentPlayer());
+			}
+			catch (RuntimeException e)
+			{
+				throw new IOException("Invalid spectator update : " + e.getMessage());
+			}
+
+			spectatorVersion = gameVersion;
+		}
+		else
+			throw new IOException("Unknown spectator update : " + kind);
+
+		try
+		{
+			spectator.gameChanged(spectatorModel == null ? null : new GameModel(spectatorModel), spectatorVersion);
+		}
+		catch (RuntimeException e)
+		{
+			// The spectator failure must not break the connection.
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Returns a new request frame.
+	 * @param code the operation code.
+	 * @return a new request frame.
+	 */
+	private FrameOutputStream newRequest(final byte code)
+	{
+		// The negative identifiers are reserved for the spectator updates.
+		return NioGameProtocol.newFrame(nextRequestId.getAndIncrement() & Integer.MAX_VALUE, code);
+	}
+
+	/**
+	 * Subscribes the spectator <code>spectator</code> to the game, which does not
+	 * require any ticket. The spectator is notified of the current state of the
+	 * game, and then of every change of the game until the stub is closed.
+	 * @param spectator the spectator to notify.
+	 * @throws NullPointerException if <code>spectator</code> is null.
+	 * @throws IllegalStateException if the stub has already subscribed.
+	 * @throws RemoteException if a remote error occurs while subscribing.
+	 */
+	public void subscribe(final GameSpectator spectator) throws NullPointerException, IllegalStateException, RemoteException
+	{
+		if (spectator == null)
+			throw new NullPointerException();
+
+		synchronized (this)
+		{
+			if (gameSpectator != null)
+				throw new IllegalStateException("Already subscribed");
+
+			// The spectator is set first, since the first update
+			// may be read before the reply is handled.
+			gameSpectator = spectator;
+		}
+
+		try
+		{
+			call(newRequest(NioGameProtocol.SUBSCRIBE)).getResult();
+		}
+		catch (IOException e)
+		{
+			throw getRemoteException(e);
+		}
+	}
+
+	/**
+	 * Sends the request <code>request</code> and waits for its reply.
+	 * @param request the request to send.
+	 * @return the reply of the request.
+	 * @throws IOException if the connection fails.
+	 */
+	private Reply call(final FrameOutputStream request) throws IOException
+	{
+		byte[] frame = request.toFrame();
+		Reply reply = new Reply();
+
+		pendingReplies.put(request.requestId, reply);
+
+		try
+		{
+			if (failure != null)
+				throw new RemoteException("Connection to the server lost", failure);
+
+			outputLock.lock();
+
+			try
+			{
+				output.write(frame);
+				output.flush();
+			}
+			finally
+			{
+				outputLock.unlock();
+			}
+
+			reply.receivedLatch.await();
+		}
+		catch (InterruptedException e)
+		{
+			throw new RuntimeException(e);
+		}
+		finally
+		{
+			pendingReplies.remove(request.requestId);
+		}
+
+		if (reply.data == null)
+			throw new RemoteException("Connection to the server lost", failure);
+
+		return reply;
+	}
+
+	/**
+	 * Returns the remote exception that matches the I/O exception <code>e</code>.
+	 * @param e the I/O exception.
+	 * @return the remote exception that matches the I/O exception <code>e</code>.
+	 */
+	private static RemoteException getRemoteException(final IOException e)
+	{
+		if (e instanceof RemoteException)
+			return (RemoteException) e;
+		else
+			return new RemoteException("Communication error with the server", e);
+	}
+
+	/**
+	 * @see org.gojul.fourinaline.model.GameServer#getTicket()
+	 */
+	public ServerTicket getTicket() throws ServerTicketException, RemoteException
+	{
+		try
+		{
+			return NioGameProtocol.readTicket(call(newRequest(NioGameProtocol.GET_TICKET)).getResult());
+		}
+		catch (IOException e)
+		{
+			throw getRemoteException(e);
+		}
+	}
+
+	/**
+	 * @see org.gojul.fourinaline.model.GameServer#releaseTicket(org.gojul.fourinaline.model.GameServer.ServerTicket)
+	 */
+	public void releaseTicket(final ServerTicket serverTicket) throws ServerTicketException, RemoteException, NullPointerException
+	{
+		try
+		{
+			FrameOutputStream request = newRequest(NioGameProtocol.RELEASE_TICKET);
+			NioGameProtocol.writeTicket(request.data, serverTicket);
+
+			call(request).getResult();
+		}
+		catch (IOException e)
+		{
+			throw getRemoteException(e);
+		}
+	}
+
+	/**
+	 * @see org.gojul.fourinaline.model.GameServer#newGame(org.gojul.fourinaline.model.GameServer.ServerTicket)
+	 */
+	public void newGame(final ServerTicket serverTicket) throws NullPointerException, ServerTicketException, RuntimeException, RemoteException
+	{
+		try
+		{
+			FrameOutputStream request = newRequest(NioGameProtocol.NEW_GAME);
+			NioGameProtocol.writeTicket(request.data, serverTicket);
+
+			call(request).getResult();
+		}
+		catch (IOException e)
+		{
+			throw getRemoteException(e);
+		}
+	}
+
+	/**
+	 * @see org.gojul.fourinaline.model.GameServer#endGame(org.gojul.fourinaline.model.GameServer.ServerTicket)
+	 */
+	public void endGame(final ServerTicket serverTicket) throws NullPointerException, ServerTicketException, RemoteException
+	{
+		try
+		{
+			FrameOutputStream request = newRequest(NioGameProtocol.END_GAME);
+			NioGameProtocol.writeTicket(request.data, serverTicket);
+
+			call(request).getResult();
+		}
+		catch (IOException e)
+		{
+			throw getRemoteException(e);
+		}
+	}
+
+	/**
+	 * @see org.gojul.fourinaline.model.GameServer#isGameRunning()
+	 */
+	public boolean isGameRunning() throws RemoteException
+	{
+		try
+		{
+			return call(newRequest(NioGameProtocol.IS_GAME_RUNNING)).getResult().readBoolean();
+		}
+		catch (IOException e)
+		{
+			throw getRemoteException(e);
+		}
+	}
+
+	/**
+	 * @see org.gojul.fourinaline.model.GameServer#getStateVersion()
+	 */
+	public long getStateVersion() throws RemoteException
+	{
+		try
+		{
+			return call(newRequest(NioGameProtocol.GET_STATE_VERSION)).getResult().readLong();
+		}
+		catch (IOException e)
+		{
+			throw getRemoteException(e);
+		}
+	}
+
+	/**
+	 * @see org.gojul.fourinaline.model.GameServer#awaitStateChange(long, long)
+	 */
+	public long awaitStateChange(final long sinceVersion, final long timeout) throws IllegalArgumentException, RuntimeException, RemoteException
+	{
+		try
+		{
+			FrameOutputStream request = newRequest(NioGameProtocol.AWAIT_STATE_CHANGE);
+			request.data.writeLong(sinceVersion);
+			request.data.writeLong(timeout);
+
+			return call(request).getResult().readLong();
+		}
+		catch (IOException e)
+		{
+			throw getRemoteException(e);
+		}
+	}
+
+	/**
+	 * @see org.gojul.fourinaline.model.GameServer#getPlayers()
+	 */
+	public Set<GamePlayer> getPlayers() throws RemoteException
+	{
+		try
+		{
+			DataInputStream in = call(newRequest(NioGameProtocol.GET_PLAYERS)).getResult();
+
+			int count = in.readShort();
+			Set<GamePlayer> result = new LinkedHashSet<GamePlayer>();
+
+			for (int i = 0; i < count; i++)
+				result.add(NioGameProtocol.readGamePlayer(in));
+
+			return result;
+		}
+		catch (IOException e)
+		{
+			throw getRemoteException(e);
+		}
+	}
+
+	/**
+	 * @see org.gojul.fourinaline.model.GameServer#registerPlayer(java.lang.String, org.gojul.fourinaline.model.GameServer.ServerTicket)
+	 */
+	public PlayerDescriptor registerPlayer(final String playerName, final ServerTicket serverTicket)
+		throws NullPointerException, PlayerRegisterException, ServerTicketException, RuntimeException, RemoteException
+	{
+		if (playerName == null)
+			throw new NullPointerException();
+
+		try
+		{
+			FrameOutputStream request = newRequest(NioGameProtocol.REGISTER_PLAYER);
+			request.data.writeUTF(playerName);
+			NioGameProtocol.writeTicket(request.data, serverTicket);
+
+			Reply reply = call(request);
+
+			if (reply.status == NioGameProtocol.PLAYER_REGISTER_ERROR)
+				throw new PlayerRegisterException(reply.getMessage());
+
+			DataInputStream in = reply.getResult();
+			GamePlayer gamePlayer = NioGameProtocol.readGamePlayer(in);
+
+			return new PlayerDescriptor(gamePlayer, in.readBoolean());
+		}
+		catch (IOException e)
+		{
+			throw getRemoteException(e);
+		}
+	}
+
+	/**
+	 * @see org.gojul.fourinaline.model.GameServer#getGameImmediately()
+	 */
+	public GameModel getGameImmediately() throws ServerTicketException, RemoteException
+	{
+		try
+		{
+			return NioGameProtocol.readGameModel(call(newRequest(NioGameProtocol.GET_GAME_IMMEDIATELY)).getResult());
+		}
+		catch (IOException e)
+		{
+			throw getRemoteException(e);
+		}
+	}
+
+	/**
+	 * @see org.gojul.fourinaline.model.GameServer#getGame(org.gojul.fourinaline.model.GameModel.PlayerMark, org.gojul.fourinaline.model.GameServer.ServerTicket)
+	 */
+	public GameModel getGame(final PlayerMark playerMark, final ServerTicket serverTicket) throws NullPointerException, ServerTicketException, RuntimeException, RemoteException
+	{
+		try
+		{
+			FrameOutputStream request = newRequest(NioGameProtocol.GET_GAME);
+			NioGameProtocol.writePlayerMark(request.data, playerMark);
+			NioGameProtocol.writeTicket(request.data, serverTicket);
+
+			return NioGameProtocol.readGameModel(call(request).getResult());
+		}
+		catch (IOException e)
+		{
+			throw getRemoteException(e);
+		}
+	}
+
+	/**
+	 * @see org.gojul.fourinaline.model.GameServer#getGameVersion()
+	 */
+	public long getGameVersion() throws RemoteException
+	{
+		try
+		{
+			return call(newRequest(NioGameProtocol.GET_GAME_VERSION)).getResult().readLong();
+		}
+		catch (IOException e)
+		{
+			throw getRemoteException(e);
+		}
+	}
+
+	/**
+	 * @see org.gojul.fourinaline.model.GameServer#getMovesSince(org.gojul.fourinaline.model.GameModel.PlayerMark, org.gojul.fourinaline.model.GameServer.ServerTicket, long)
+	 */
+	public int[] getMovesSince(final PlayerMark playerMark, final ServerTicket serverTicket, final long sinceVersion)
+		throws NullPointerException, ServerTicketException, RuntimeException, RemoteException
+	{
+		try
+		{
+			FrameOutputStream request = newRequest(NioGameProtocol.GET_MOVES_SINCE);
+			NioGameProtocol.writePlayerMark(request.data, playerMark);
+			NioGameProtocol.writeTicket(request.data, serverTicket);
+			request.data.writeLong(sinceVersion);
+
+			return NioGameProtocol.readColumns(call(request).getResult());
+		}
+		catch (IOException e)
+		{
+			throw getRemoteException(e);
+		}
+	}
+
+	/**
+	 * @see org.gojul.fourinaline.model.GameServer#play(int, org.gojul.fourinaline.model.GameModel.PlayerMark, org.gojul.fourinaline.model.GameModel, org.gojul.fourinaline.model.GameServer.ServerTicket)
+	 */
+	public void play(final int colIndex, final PlayerMark playerMark, final GameModel clientGameModel, final ServerTicket serverTicket)
+		throws NullPointerException, RemoteException, ServerTicketException, GameModelException
+	{
+		try
+		{
+			FrameOutputStream request = newRequest(NioGameProtocol.PLAY);
+			request.data.writeShort(colIndex);
+			NioGameProtocol.writePlayerMark(request.data, playerMark);
+			NioGameProtocol.writeGameModel(request.data, clientGameModel);
+			NioGameProtocol.writeTicket(request.data, serverTicket);
+
+			call(request).getResult();
+		}
+		catch (IOException e)
+		{
+			throw getRemoteException(e);
+		}
+	}
+
+	/**
+	 * @see org.gojul.fourinaline.model.GameServer#playAndAwaitTurn(int, org.gojul.fourinaline.model.GameModel.PlayerMark, long, org.gojul.fourinaline.model.GameServer.ServerTicket)
+	 */
+	public int[] playAndAwaitTurn(final int colIndex, final PlayerMark playerMark, final long gameVersion, final ServerTicket serverTicket)
+		throws NullPointerException, RemoteException, ServerTicketException, GameModelException, RuntimeException
+	{
+		try
+		{
+			FrameOutputStream request = newRequest(NioGameProtocol.PLAY_AND_AWAIT_TURN);
+			request.data.writeShort(colIndex);
+			NioGameProtocol.writePlayerMark(request.data, playerMark);
+			NioGameProtocol.writeTicket(request.data, serverTicket);
+			request.data.writeLong(gameVersion);
+
+			return NioGameProtocol.readColumns(call(request).getResult());
+		}
+		catch (IOException e)
+		{
+			throw getRemoteException(e);
+		}
+	}
+}
@@ -0,0 +1,307 @@
+/*
+ * ParameterizedEvalScore.java
+ *
+ * Created: 2026/10/19
+ *
+ * Copyright (C) 2026 Julien Aubin
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.gojul.fourinaline.model;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Properties;
+
+import org.gojul.fourinaline.model.AIGameClient.EvalScore;
+import org.gojul.fourinaline.model.GameModel.CellCoord;
+import org.gojul.fourinaline.model.GameModel.PlayerMark;
+
+/**
+ * The <code>ParameterizedEvalScore</code> class is a variant of the
+ * default evaluation function in which the score of a line is read from
+ * a weight table instead of being doubled for every chip.<br/>
+ * The score of a line that contains <code>n</code> chips of the player and
+ * no chip of the other players is <code>lineWeights[n - 1]</code>. The empty lines
+ * are not weighted, since they count as much for the player as for the next player.
+ * The default weights (2, 4, 8... up to the full line) make this class behave exactly
+ * like <code>DefaultEvalScore</code>.<br/>
+ * The weights can be stored to and loaded from a properties file, as
+ * produced by the <code>EvalScoreTuner</code> class.
+ *
+ * @see org.gojul.fourinaline.model.DefaultEvalScore
+ * @see org.gojul.fourinaline.model.EvalScoreTuner
+ *
+ * @author Julien Aubin
+ */
+public final class ParameterizedEvalScore implements EvalScore
+{
+
+	/**
+	 * The serial version UID.
+	 */
+	final static long serialVersionUID = 1;
+
+	/**
+	 * The property key prefix of the line weights, followed by the
+	 * number of chips of the player in the line.
+	 */
+	private final static String LINE_WEIGHT_KEY_PREFIX = "lineWeight.";
+
+	/**
+	 * The property key of the number of line weights.
+	 */
+	private final static String LINE_WEIGHT_COUNT_KEY = "lineWeightCount";
+
+	/**
+	 * The line weights, indexed by the number of chips of the player
+	 * in the line minus one.
+	 */
+	private int[] lineWeights;
+
+	/**
+	 * Constructor. Uses the weights of the default evaluation function
+	 * for the default game geometry.
+	 */
+	public ParameterizedEvalScore()
+	{
+		this(getDefaultLineWeights(new GameModel().getWinLineLength()));
+	}
+
+	/**
+	 * Constructor.
+	 * @param weights the line weights, indexed by the number of chips of the player
+	 * in the line minus one. The array is copied.
+	 * @throws NullPointerException if <code>weights</code> is null.
+	 * @throws IllegalArgumentException if <code>weights</code> is empty.
+	 */
+	public ParameterizedEvalScore(final int[] weights) throws NullPointerException, IllegalArgumentException
+	{
+		if (weights == null)
+			throw new NullPointerException();
+
+		if (weights.length == 0)
+			throw new IllegalArgumentException("No line weight");
+
+		lineWeights = weights.clone();
+	}
+
+	/**
+	 * Constructor.
+	 * @param weightFile the properties file that contains the weights.
+	 * @throws NullPointerException if <code>weightFile</code> is null.
+	 * @throws IOException if an I/O error occurs while reading the weights,
+	 * or if the weight file is not valid.
+	 */
+	public ParameterizedEvalScore(final File weightFile) throws NullPointerException, IOException
+	{
+		if (weightFile == null)
+			throw new NullPointerException();
+
+		InputStream is = new FileInputStream(weightFile);
+
+		try
+		{
+			lineWeights = readLineWeights(is);
+		}
+		finally
+		{
+			is.close();
+		}
+	}
+
+	/**
+	 * Returns the weights that make this evaluation function behave like
+	 * the default one for lines of length <code>winLength</code>.
+	 * @param winLength the number of cells to align in order to win.
+	 * @return the default line weights.
+	 */
+	public static int[] getDefaultLineWeights(final int winLength)
+	{
+		int[] result = new int[winLength];
+
+		// The score of a line doubles with each chip, an empty line scoring 1.
+		for (int i = 0; i < winLength; i++)
+			result[i] = 2 << i;
+
+		return result;
+	}
+
+	/**
+	 * Returns a copy of the line weights.
+	 * @return a copy of the line weights.
+	 */
+	public int[] getLineWeights()
+	{
+		return lineWeights.clone();
+	}
+
+	/**
+	 * Reads the line weights from the properties stream <code>is</code>.
+	 * @param is the input stream.
+	 * @return the line weights read.
+	 * @throws IOException if an I/O error occurs, or if the stream does
+	 * not contain valid weights.
+	 */
+	private static int[] readLineWeights(final InputStream is) throws IOException
+	{
+		Properties properties = new Properties();
+		properties.load(is);
+
+		try
+		{
+			int count = Integer.parseInt(properties.getProperty(LINE_WEIGHT_COUNT_KEY));
+
+			if (count <= 0)
+				throw new IOException("Invalid number of line weights : " + count);
+
+			int[] result = new int[count];
+
+			for (int i = 0; i < count; i++)
+				result[i] = Integer.parseInt(properties.getProperty(LINE_WEIGHT_KEY_PREFIX + (i + 1)));
+
+			return result;
+		}
+		catch (NumberFormatException e)
+		{
+			throw new IOException("Invalid weight file : " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Stores the line weights to the properties file <code>weightFile</code>.
+	 * @param weightFile the file to write.
+	 * @param comment the comment to put at the top of the file, may be null.
+	 * @throws NullPointerException if <code>weightFile</code> is null.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public void store(final File weightFile, final String comment) throws NullPointerException, IOException
+	{
+		if (weightFile == null)
+			throw new NullPointerException();
+
+		Properties properties = new Properties();
+		properties.setProperty(LINE_WEIGHT_COUNT_KEY, String.valueOf(lineWeights.length));
+
+		for (int i = 0; i < lineWeights.length; i++)
+			properties.setProperty(LINE_WEIGHT_KEY_PREFIX + (i + 1), String.valueOf(lineWeights[i]));
+
+		OutputStream os = new FileOutputStream(weightFile);
+
+		try
+		{
+			properties.store(os, comment);
+		}
+		finally
+		{
+			os.close();
+		}
+	}
+
+	/**
+	 * Computes the line features of the game model <code>gameModel</code> seen by the
+	 * player <code>playerMark</code> : <code>features[n - 1]</code> contains the number of
+	 * lines with <code>n</code> chips of the player and no other chip, minus the number
+	 * of lines with <code>n</code> chips of the next player and no other chip. The lines
+	 * with more chips than the array length are counted in its last cell.<br/>
+	 * The score of the game model is then the dot product of the features and of the
+	 * line weights.
+	 * @param gameModel the game model to consider.
+	 * @param playerMark the player mark to consider.
+	 * @param features the array to fill.
+	 * @throws NullPointerException if any of the method parameter is null.
+	 */
+	static void computeFeatures(final GameModel gameModel, final PlayerMark playerMark, final int[] features)
+		throws NullPointerException
+	{
+		if (gameModel == null || playerMark == null || features == null)
+			throw new NullPointerException();
+
+		PlayerMark nextMark = PlayerMark.getNextMark(playerMark);
+		int maxCount = features.length;
+
+		for (int i = 0; i < features.length; i++)
+			features[i] = 0;
+
+		for (List<CellCoord> line: gameModel.getAllLines())
+		{
+			int playerCount = 0;
+			int nextCount = 0;
+			int otherCount = 0;
+
+			for (CellCoord coord: line)
+			{
+				PlayerMark mark = gameModel.getCell(coord.getRowIndex(), coord.getColIndex());
+
+				if (mark != null)
+				{
+					if (mark.equals(playerMark))
+						playerCount++;
+					else if (mark.equals(nextMark))
+						nextCount++;
+					else
+						otherCount++;
+				}
+			}
+
+			// The empty lines are skipped, since they cancel out.
+			if (playerCount > 0 && nextCount == 0 && otherCount == 0)
+				features[Math.min(playerCount, maxCount) - 1]++;
+
+			if (nextCount > 0 && playerCount == 0 && otherCount == 0)
+				features[Math.min(nextCount, maxCount) - 1]--;
+		}
+	}
+
+	/**
+	 * @see org.gojul.fourinaline.model.AIGameClient.EvalScore#evaluate(org.gojul.fourinaline.model.GameModel, org.gojul.fourinaline.model.GameModel.PlayerMark)
+	 */
+	public int evaluate(final GameModel gameModel, final PlayerMark playerMark)
+		throws NullPointerException
+	{
+		if (gameModel == null || playerMark == null)
+			throw new NullPointerException();
+
+		int[] features = new int[lineWeights.length];
+		computeFeatures(gameModel, playerMark, features);
+
+		int result = 0;
+
+		for (int i = 0; i < features.length; i++)
+			result += features[i] * lineWeights[i];
+
+		return result;
+	}
+
+	public static void main(String[] args)
+	{
+		GameModel gameModel = new GameModel();
+		gameModel.play(3, gameModel.getCurrentPlayer());
+		gameModel.play(3, gameModel.getCurrentPlayer());
+		gameModel.play(4, gameModel.getCurrentPlayer());
+		gameModel.play(3, gameModel.getCurrentPlayer());
+
+		PlayerMark mark = gameModel.getCurrentPlayer();
+
+		// Both results must be equal.
+		System.out.println(new ParameterizedEvalScore().evaluate(gameModel, mark));
+		System.out.println(new DefaultEvalScore().evaluate(gameModel, mark));
+	}
+}
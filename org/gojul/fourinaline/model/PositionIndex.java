@@ -0,0 +1,1306 @@
+/*
+ * PositionIndex.java
+ *
+ * Created: 2026/10/19
+ *
+ * Copyright (C) 2026 Julien Aubin
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.gojul.fourinaline.model;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.gojul.fourinaline.model.GameModel.PlayerMark;
+
+/**
+ * The <code>PositionIndex</code> class indexes the positions reached by the games
+ * of a game record log, so that it tells quickly which games went through a given
+ * position, and how they ended.<br/>
+ * The games are indexed as they are appended to the log. The index entries tie the
+ * key of a position to a posting, which contains the game identifier, the column
+ * played from the position and the game winner. They are first put in an in-memory
+ * table. Once full, the table is sorted and written by a background thread to a run
+ * file, which is a sorted array of entries read through a memory mapping. The runs
+ * of the same size are merged in the background, so that a query only searches a
+ * few runs whatever the number of indexed games.<br/>
+ * The runs cover consecutive ranges of game identifiers. When the index is opened,
+ * it indexes again the games of the log which are not covered by its runs, so that
+ * the games of the in-memory table lost when the JVM stops are not lost.<br/>
+ * This class is thread-safe.
+ *
+ * @author Julien Aubin
+ */
+public final class PositionIndex implements Closeable
+{
+	/**
+	 * The usual name of the index directory, in the directory of the game record log.
+	 */
+	public final static String DIRECTORY_NAME = "positions";
+
+	/**
+	 * The magic number of the run files.
+	 */
+	private final static int RUN_MAGIC = 0x46345049;
+
+	/**
+	 * The version of the run format.
+	 */
+	private final static int RUN_VERSION = 1;
+
+	/**
+	 * The size of the header of the run files, in bytes.
+	 */
+	private final static int RUN_HEADER_SIZE = 40;
+
+	/**
+	 * The prefix of the run file names.
+	 */
+	private final static String RUN_PREFIX = "positions-";
+
+	/**
+	 * The suffix of the run file names.
+	 */
+	private final static String RUN_SUFFIX = ".run";
+
+	/**
+	 * The suffix of the run files being written.
+	 */
+	private final static String TEMP_SUFFIX = ".tmp";
+
+	/**
+	 * The number of entries of the in-memory tables.
+	 */
+	private final static int TABLE_SIZE = 1 << 20;
+
+	/**
+	 * The number of runs of the same level which are merged together.
+	 */
+	private final static int MERGE_FACTOR = 4;
+
+	/**
+	 * The maximum number of entries of a run, so that it can be mapped.
+	 */
+	private final static long MAX_RUN_SIZE = 1L << 26;
+
+	/**
+	 * The column stored in the postings of the final positions, and
+	 * when the column index does not fit in a posting.
+	 */
+	private final static int NO_COLUMN = 0xFF;
+
+	/**
+	 * The <code>PositionStatistics</code> class contains the outcomes of
+	 * the indexed games which went through a position.
+	 *
+	 * @author Julien Aubin
+	 */
+	public final static class PositionStatistics implements Serializable
+	{
+		/**
+		 * The serial version UID.
+		 */
+		final static long serialVersionUID = 1;
+
+		/**
+		 * The mark of the player to play in the position.
+		 */
+		private PlayerMark playerMark;
+
+		/**
+		 * The number of games.
+		 */
+		private int gameCount;
+
+		/**
+		 * The number of tie games.
+		 */
+		private int tieCount;
+
+		/**
+		 * The number of games won, indexed by the value of the winner mark.
+		 */
+		private int[] winCounts;
+
+		/**
+		 * The number of games in which a column was played from the position.
+		 */
+		private int[] columnGameCounts;
+
+		/**
+		 * The number of games won by the player to play after having played a column.
+		 */
+		private int[] columnWinCounts;
+
+		/**
+		 * The number of tie games after a column was played.
+		 */
+		private int[] columnTieCounts;
+
+		/**
+		 * Constructor.
+		 * @param mark the mark of the player to play in the position.
+		 * @param colCount the number of columns of the game tab.
+		 */
+		private PositionStatistics(final PlayerMark mark, final int colCount)
+		{
+			playerMark = mark;
+			gameCount = 0;
+			tieCount = 0;
+			winCounts = new int[256];
+			columnGameCounts = new int[colCount];
+			columnWinCounts = new int[colCount];
+			columnTieCounts = new int[colCount];
+		}
+
+		/**
+		 * Adds the game whose posting is <code>posting</code>.
+		 * @param posting the posting of the game.
+		 */
+		private void add(final long posting)
+		{
+			int column = getColumn(posting);
+			int winnerMark = getWinnerMark(posting);
+
+			gameCount++;
+
+			if (winnerMark == 0)
+				tieCount++;
+			else
+				winCounts[winnerMark]++;
+
+			if (column != NO_COLUMN && column < columnGameCounts.length)
+			{
+				columnGameCounts[column]++;
+
+				if (winnerMark == 0)
+					columnTieCounts[column]++;
+				else if (winnerMark == playerMark.hashCode())
+					columnWinCounts[column]++;
+			}
+		}
+
+		/**
+		 * Returns the mark of the player to play in the position.
+		 * @return the mark of the player to play in the position.
+		 */
+		public PlayerMark getPlayerMark()
+		{
+			return playerMark;
+		}
+
+		/**
+		 * Returns the number of games which went through the position.
+		 * @return the number of games which went through the position.
+		 */
+		public int getGameCount()
+		{
+			return gameCount;
+		}
+
+		/**
+		 * Returns the number of tie games.
+		 * @return the number of tie games.
+		 */
+		public int getTieCount()
+		{
+			return tieCount;
+		}
+
+		/**
+		 * Returns the number of games won by the player whose mark is
+		 * <code>mark</code>.
+		 * @param mark the player mark.
+		 * @return the number of games won by the player.
+		 */
+		public int getWinCount(final PlayerMark mark)
+		{
+			int markValue = mark.hashCode();
+
+			return markValue > 0 && markValue < winCounts.length ? winCounts[markValue] : 0;
+		}
+
+		/**
+		 * Returns the number of games in which the column <code>colIndex</code>
+		 * was played from the position.
+		 * @param colIndex the column index.
+		 * @return the number of games in which the column was played.
+		 * @throws ArrayIndexOutOfBoundsException if <code>colIndex</code> is not
+		 * a valid column index.
+		 */
+		public int getColumnGameCount(final int colIndex) throws ArrayIndexOutOfBoundsException
+		{
+			return columnGameCounts[colIndex];
+		}
+
+		/**
+		 * Returns the number of games won by the player to play after having
+		 * played the column <code>colIndex</code> from the position.
+		 * @param colIndex the column index.
+		 * @return the number of games won after having played the column.
+		 * @throws ArrayIndexOutOfBoundsException if <code>colIndex</code> is not
+		 * a valid column index.
+		 */
+		public int getColumnWinCount(final int colIndex) throws ArrayIndexOutOfBoundsException
+		{
+			return columnWinCounts[colIndex];
+		}
+
+		/**
+		 * Returns the number of tie games after the column <code>colIndex</code>
+		 * was played from the position.
+		 * @param colIndex the column index.
+		 * @return the number of tie games after the column was played.
+		 * @throws ArrayIndexOutOfBoundsException if <code>colIndex</code> is not
+		 * a valid column index.
+		 */
+		public int getColumnTieCount(final int colIndex) throws ArrayIndexOutOfBoundsException
+		{
+			return columnTieCounts[colIndex];
+		}
+
+		/**
+		 * @see java.lang.Object#toString()
+		 */
+		public String toString()
+		{
+			StringBuilder result = new StringBuilder();
+
+			result.append(gameCount).append(" games, ").append(tieCount).append(" ties");
+
+			for (int i = 1; i < winCounts.length; i++)
+			{
+				if (winCounts[i] > 0)
+					result.append(", ").append(winCounts[i]).append(" won by ").append(i);
+			}
+
+			result.append("\n");
+
+			for (int i = 0; i < columnGameCounts.length; i++)
+			{
+				if (columnGameCounts[i] > 0)
+					result.append("Column ").append(i).append(" : ").append(columnGameCounts[i]).append(" games, ")
+						.append(columnWinCounts[i]).append(" won by ").append(playerMark).append(", ")
+						.append(columnTieCounts[i]).append(" ties\n");
+			}
+
+			return result.toString();
+		}
+	}
+
+	/**
+	 * The <code>Table</code> class is an in-memory table of index entries.
+	 * The table is not sorted, and is immutable once full.
+	 *
+	 * @author Julien Aubin
+	 */
+	private final static class Table
+	{
+		/**
+		 * The position keys.
+		 */
+		private long[] keys;
+
+		/**
+		 * The postings.
+		 */
+		private long[] postings;
+
+		/**
+		 * The number of entries.
+		 */
+		private int size;
+
+		/**
+		 * The identifier of the first game covered by the table.
+		 */
+		private long minGameId;
+
+		/**
+		 * The identifier of the last game covered by the table.
+		 */
+		private long maxGameId;
+
+		/**
+		 * Constructor.
+		 * @param firstGameId the identifier of the first game covered by the table.
+		 */
+		private Table(final long firstGameId)
+		{
+			keys = new long[TABLE_SIZE];
+			postings = new long[TABLE_SIZE];
+			size = 0;
+			minGameId = firstGameId;
+			maxGameId = firstGameId - 1;
+		}
+
+		/**
+		 * Adds the postings of the entries of the table whose key is
+		 * <code>key</code> to <code>result</code>.
+		 * @param key the position key.
+		 * @param result the list of postings.
+		 */
+		private void find(final long key, final PostingList result)
+		{
+			for (int i = 0; i < size; i++)
+			{
+				if (keys[i] == key)
+					result.add(postings[i]);
+			}
+		}
+	}
+
+	/**
+	 * The <code>Run</code> class is a sorted array of index entries stored in a file.
+	 *
+	 * @author Julien Aubin
+	 */
+	private final static class Run
+	{
+		/**
+		 * The run file.
+		 */
+		private File file;
+
+		/**
+		 * The run level, which is the number of merges its entries went through.
+		 */
+		private int level;
+
+		/**
+		 * The number of entries.
+		 */
+		private long size;
+
+		/**
+		 * The identifier of the first game covered by the run.
+		 */
+		private long minGameId;
+
+		/**
+		 * The identifier of the last game covered by the run.
+		 */
+		private long maxGameId;
+
+		/**
+		 * The entries, as pairs of key and posting.
+		 */
+		private LongBuffer entries;
+
+		/**
+		 * Constructor. Maps the run file <code>runFile</code>.
+		 * @param runFile the run file.
+		 * @throws IOException if the file cannot be mapped or is not valid.
+		 */
+		private Run(final File runFile) throws IOException
+		{
+			RandomAccessFile in = new RandomAccessFile(runFile, "r");
+
+			try
+			{
+				// The mapping stays valid once the file is closed.
+				ByteBuffer buffer = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, in.length());
+
+				if (buffer.limit() < RUN_HEADER_SIZE || buffer.getInt() != RUN_MAGIC || buffer.getInt() != RUN_VERSION)
+					throw new IOException("Invalid run file " + runFile);
+
+				file = runFile;
+				level = buffer.getInt();
+				buffer.getInt();
+				size = buffer.getLong();
+				minGameId = buffer.getLong();
+				maxGameId = buffer.getLong();
+
+				if (buffer.remaining() != size * 16)
+					throw new IOException("Truncated run file " + runFile);
+
+				entries = buffer.slice().asLongBuffer();
+			}
+			finally
+			{
+				in.close();
+			}
+		}
+
+		/**
+		 * Adds the postings of the entries of the run whose key is
+		 * <code>key</code> to <code>result</code>.
+		 * @param key the position key.
+		 * @param result the list of postings.
+		 */
+		private void find(final long key, final PostingList result)
+		{
+			int low = 0;
+			int high = (int) size;
+
+			// Lower bound of the key.
+			while (low < high)
+			{
+				int middle = (low + high) >>> 1;
+
+				if (entries.get(2 * middle) < key)
+					low = middle + 1;
+				else
+					high = middle;
+			}
+
+			for (int i = low; i < size && entries.get(2 * i) == key; i++)
+				result.add(entries.get(2 * i + 1));
+		}
+	}
+
+	/**
+	 * The <code>PostingList</code> class is a growable array of postings.
+	 *
+	 * @author Julien Aubin
+	 */
+	private final static class PostingList
+	{
+		/**
+		 * The postings.
+		 */
+		private long[] postings;
+
+		/**
+		 * The number of postings.
+		 */
+		private int size;
+
+		/**
+		 * Constructor.
+		 */
+		private PostingList()
+		{
+			postings = new long[16];
+			size = 0;
+		}
+
+		/**
+		 * Adds the posting <code>posting</code>.
+		 * @param posting the posting to add.
+		 */
+		private void add(final long posting)
+		{
+			if (size == postings.length)
+				postings = Arrays.copyOf(postings, size * 2);
+
+			postings[size++] = posting;
+		}
+	}
+
+	/**
+	 * The index directory.
+	 */
+	private File directory;
+
+	/**
+	 * The indexed log.
+	 */
+	private GameRecordLog recordLog;
+
+	/**
+	 * The listener which indexes the games appended to the log.
+	 */
+	private GameRecordLog.RecordListener recordListener;
+
+	/**
+	 * The table which receives the entries of the indexed games.
+	 */
+	private Table currentTable;
+
+	/**
+	 * The full tables which are not written to a run yet.
+	 */
+	private List<Table> fullTables;
+
+	/**
+	 * The runs, sorted by game identifier. The list is replaced
+	 * rather than modified, so that it may be read without lock.
+	 */
+	private List<Run> runs;
+
+	/**
+	 * The identifier of the last indexed game.
+	 */
+	private long lastGameId;
+
+	/**
+	 * The executor that writes and merges the runs.
+	 */
+	private ExecutorService runExecutor;
+
+	/**
+	 * Constructor. Opens the index stored in the directory <code>indexDirectory</code>,
+	 * indexes the games of <code>log</code> it does not cover yet, and indexes then
+	 * the games appended to the log.
+	 * @param indexDirectory the index directory, which is created if it does not exist.
+	 * @param log the indexed log.
+	 * @throws NullPointerException if any of the method parameter is null.
+	 * @throws IOException if the index directory cannot be created.
+	 */
+	public PositionIndex(final File indexDirectory, final GameRecordLog log) throws NullPointerException, IOException
+	{
+		if (indexDirectory == null || log == null)
+			throw new NullPointerException();
+
+		if (!indexDirectory.isDirectory() && !indexDirectory.mkdirs())
+			throw new IOException("Cannot create the directory " + indexDirectory);
+
+		directory = indexDirectory;
+		recordLog = log;
+		fullTables = new ArrayList<Table>();
+		runs = loadRuns();
+		lastGameId = runs.isEmpty() ? 0 : runs.get(runs.size() - 1).maxGameId;
+		currentTable = new Table(lastGameId + 1);
+		runExecutor = Executors.newSingleThreadExecutor(new DaemonThreadFactory(Executors.defaultThreadFactory(), "PositionIndex"));
+
+		recordListener = new GameRecordLog.RecordListener()
+		{
+			/**
+			 * @see org.gojul.fourinaline.model.GameRecordLog.RecordListener#recordAppended(long, org.gojul.fourinaline.model.GameRecord)
+			 */
+			public void recordAppended(final long id, final GameRecord record)
+			{
+				addGame(id, record);
+			}
+		};
+
+		// The listener is registered before the log is read so that no game is
+		// missed, and waits for the end of the read since the index is locked.
+		synchronized (this)
+		{
+			recordLog.addRecordListener(recordListener);
+
+			for (Iterator<GameRecord> it = recordLog.read(lastGameId + 1); it.hasNext();)
+			{
+				GameRecord record = it.next();
+				addGame(record.getId(), record);
+			}
+		}
+
+		runExecutor.execute(new Runnable()
+		{
+			/**
+			 * @see java.lang.Runnable#run()
+			 */
+			public void run()
+			{
+				mergeRuns();
+			}
+		});
+	}
+
+	/**
+	 * Loads the runs of the index directory. The runs which are not valid, or are
+	 * covered by other runs, or do not follow the previous runs, are deleted.
+	 * @return the runs, sorted by game identifier.
+	 */
+	private List<Run> loadRuns()
+	{
+		File[] files = directory.listFiles(new FileFilter()
+		{
+			/**
+			 * @see java.io.FileFilter#accept(java.io.File)
+			 */
+			public boolean accept(final File file)
+			{
+				return file.getName().startsWith(RUN_PREFIX) && (file.getName().endsWith(RUN_SUFFIX) || file.getName().endsWith(TEMP_SUFFIX));
+			}
+		});
+
+		List<Run> loadedRuns = new ArrayList<Run>();
+
+		for (File file: files)
+		{
+			// A run file being written when the JVM stopped.
+			if (file.getName().endsWith(TEMP_SUFFIX))
+			{
+				file.delete();
+				continue;
+			}
+
+			try
+			{
+				loadedRuns.add(new Run(file));
+			}
+			catch (IOException e)
+			{
+				System.err.println("Deleting the run " + file + " : " + e.getMessage());
+				file.delete();
+			}
+		}
+
+		// The runs which cover the most games come first, so that
+		// the runs merged into them are then ignored.
+		Collections.sort(loadedRuns, new Comparator<Run>()
+		{
+			/**
+			 * @see java.util.Comparator#compare(java.lang.Object, java.lang.Object)
+			 */
+			public int compare(final Run run1, final Run run2)
+			{
+				if (run1.minGameId != run2.minGameId)
+					return run1.minGameId < run2.minGameId ? -1 : 1;
+
+				return run1.maxGameId > run2.maxGameId ? -1 : (run1.maxGameId == run2.maxGameId ? 0 : 1);
+			}
+		});
+
+		List<Run> result = new ArrayList<Run>();
+		long maxGameId = 0;
+
+		for (Run run: loadedRuns)
+		{
+			if (run.minGameId == maxGameId + 1)
+			{
+				result.add(run);
+				maxGameId = run.maxGameId;
+			}
+			else
+			{
+				run.file.delete();
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns the key of the position whose hash is <code>positionHash</code>
+	 * in a game tab of the given geometry.
+	 * @param positionHash the position hash, as returned by <code>GameModel.getPositionHash()</code>.
+	 * @param rowCount the number of rows of the game tab.
+	 * @param colCount the number of columns of the game tab.
+	 * @param winLineLength the length of the winning lines.
+	 * @return the key of the position.
+	 */
+	private static long getPositionKey(final long positionHash, final int rowCount, final int colCount, final int winLineLength)
+	{
+		return positionHash ^ (((long) rowCount << 32 | (long) colCount << 16 | winLineLength) * 0x9E3779B97F4A7C15L);
+	}
+
+	/**
+	 * Returns the posting of a game.
+	 * @param gameId the game identifier.
+	 * @param column the column played from the position, or <code>NO_COLUMN</code>.
+	 * @param winnerMark the value of the mark of the winner, or 0 in case of a tie.
+	 * @return the posting of the game.
+	 */
+	private static long getPosting(final long gameId, final int column, final int winnerMark)
+	{
+		return gameId << 16 | (column & 0xFF) << 8 | (winnerMark & 0xFF);
+	}
+
+	/**
+	 * Returns the game identifier of the posting <code>posting</code>.
+	 * @param posting the posting.
+	 * @return the game identifier.
+	 */
+	private static long getGameId(final long posting)
+	{
+		return posting >>> 16;
+	}
+
+	/**
+	 * Returns the column of the posting <code>posting</code>.
+	 * @param posting the posting.
+	 * @return the column.
+	 */
+	private static int getColumn(final long posting)
+	{
+		return (int) (posting >>> 8) & 0xFF;
+	}
+
+	/**
+	 * Returns the value of the winner mark of the posting <code>posting</code>.
+	 * @param posting the posting.
+	 * @return the value of the winner mark.
+	 */
+	private static int getWinnerMark(final long posting)
+	{
+		return (int) posting & 0xFF;
+	}
+
+	/**
+	 * Indexes the game <code>record</code>, stored with the identifier <code>id</code>.
+	 * The games already indexed are ignored.
+	 * @param id the game identifier.
+	 * @param record the game record.
+	 */
+	private synchronized void addGame(final long id, final GameRecord record)
+	{
+		if (id <= lastGameId || runExecutor.isShutdown())
+			return;
+
+		try
+		{
+			long[] hashes = record.getPositionHashes();
+			int[] columns = record.getPlayedColumns();
+
+			if (hashes.length > TABLE_SIZE)
+				throw new IllegalStateException("Too many plays");
+
+			// The entries of a game are all in the same table, so that
+			// the tables cover whole games.
+			if (currentTable.size + hashes.length > TABLE_SIZE)
+				flushTable();
+
+			for (int i = 0; i < hashes.length; i++)
+			{
+				int column = i < columns.length && columns[i] < NO_COLUMN ? columns[i] : NO_COLUMN;
+
+				currentTable.keys[currentTable.size] = getPositionKey(hashes[i], record.getRowCount(), record.getColCount(), record.getWinLineLength());
+				currentTable.postings[currentTable.size] = getPosting(id, column, record.getWinnerMark());
+				currentTable.size++;
+			}
+		}
+		catch (RuntimeException e)
+		{
+			System.err.println("Cannot index the game " + id + " : " + e);
+		}
+
+		lastGameId = id;
+		currentTable.maxGameId = id;
+	}
+
+	/**
+	 * Schedules the write of the current table to a run, and replaces it
+	 * by a new table.
+	 */
+	private synchronized void flushTable()
+	{
+		final Table table = currentTable;
+
+		fullTables.add(table);
+		currentTable = new Table(table.maxGameId + 1);
+
+		runExecutor.execute(new Runnable()
+		{
+			/**
+			 * @see java.lang.Runnable#run()
+			 */
+			public void run()
+			{
+				try
+				{
+					writeTable(table);
+					mergeRuns();
+				}
+				catch (IOException e)
+				{
+					// The table is kept in memory, and its games are
+					// indexed again when the index is opened again.
+					e.printStackTrace();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Sorts the table <code>table</code> and writes it to a run.
+	 * @param table the table to write.
+	 * @throws IOException if the run cannot be written.
+	 */
+	private void writeTable(final Table table) throws IOException
+	{
+		// The table is copied since it may be read while being sorted.
+		long[] keys = Arrays.copyOf(table.keys, table.size);
+		long[] postings = Arrays.copyOf(table.postings, table.size);
+
+		sort(keys, postings, 0, table.size);
+
+		File tempFile = new File(directory, getRunFileName(table.minGameId, table.maxGameId) + TEMP_SUFFIX);
+		FileOutputStream fileOut = new FileOutputStream(tempFile);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 16));
+
+		try
+		{
+			writeRunHeader(out, 0, table.size, table.minGameId, table.maxGameId);
+
+			for (int i = 0; i < table.size; i++)
+			{
+				out.writeLong(keys[i]);
+				out.writeLong(postings[i]);
+			}
+
+			out.flush();
+			fileOut.getFD().sync();
+		}
+		finally
+		{
+			out.close();
+		}
+
+		Run run = renameRun(tempFile);
+
+		synchronized (this)
+		{
+			List<Run> newRuns = new ArrayList<Run>(runs);
+			newRuns.add(run);
+
+			fullTables.remove(table);
+			runs = newRuns;
+		}
+	}
+
+	/**
+	 * Merges the consecutive runs of the same level, as long as
+	 * there are enough of them.
+	 */
+	private void mergeRuns()
+	{
+		while (!runExecutor.isShutdown())
+		{
+			List<Run> currentRuns;
+
+			synchronized (this)
+			{
+				currentRuns = runs;
+			}
+
+			int first = -1;
+			long mergedSize = 0;
+
+			// The runs are written by increasing game identifiers, and their
+			// level decreases along with their size, so that the runs of the
+			// same level follow each other.
+			for (int i = 0; first < 0 && i + MERGE_FACTOR <= currentRuns.size(); i++)
+			{
+				mergedSize = 0;
+
+				for (int j = i; j < i + MERGE_FACTOR && currentRuns.get(j).level == currentRuns.get(i).level; j++)
+				{
+					mergedSize += currentRuns.get(j).size;
+
+					if (j == i + MERGE_FACTOR - 1 && mergedSize <= MAX_RUN_SIZE)
+						first = i;
+				}
+			}
+
+			if (first < 0)
+				return;
+
+			List<Run> mergedRuns = currentRuns.subList(first, first + MERGE_FACTOR);
+
+			try
+			{
+				Run run = mergeRuns(mergedRuns, mergedSize);
+
+				synchronized (this)
+				{
+					List<Run> newRuns = new ArrayList<Run>(runs.subList(0, first));
+					newRuns.add(run);
+					newRuns.addAll(runs.subList(first + MERGE_FACTOR, runs.size()));
+
+					runs = newRuns;
+				}
+
+				// The queries in progress may still read the merged
+				// runs, whose mappings stay valid.
+				for (Run mergedRun: mergedRuns)
+					mergedRun.file.delete();
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Merges the runs <code>mergedRuns</code> into a new run.
+	 * @param mergedRuns the consecutive runs to merge.
+	 * @param size the number of entries of the runs to merge.
+	 * @return the new run.
+	 * @throws IOException if the new run cannot be written.
+	 */
+	private Run mergeRuns(final List<Run> mergedRuns, final long size) throws IOException
+	{
+		int runCount = mergedRuns.size();
+		LongBuffer[] entries = new LongBuffer[runCount];
+		long[] positions = new long[runCount];
+		Run firstRun = mergedRuns.get(0);
+		Run lastRun = mergedRuns.get(runCount - 1);
+
+		for (int i = 0; i < runCount; i++)
+			entries[i] = mergedRuns.get(i).entries.duplicate();
+
+		File tempFile = new File(directory, getRunFileName(firstRun.minGameId, lastRun.maxGameId) + TEMP_SUFFIX);
+		FileOutputStream fileOut = new FileOutputStream(tempFile);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 16));
+
+		try
+		{
+			writeRunHeader(out, firstRun.level + 1, size, firstRun.minGameId, lastRun.maxGameId);
+
+			for (long n = 0; n < size; n++)
+			{
+				int min = -1;
+
+				for (int i = 0; i < runCount; i++)
+				{
+					if (positions[i] < mergedRuns.get(i).size && (min < 0 || compare(entries[i], positions[i], entries[min], positions[min]) < 0))
+						min = i;
+				}
+
+				out.writeLong(entries[min].get((int) (2 * positions[min])));
+				out.writeLong(entries[min].get((int) (2 * positions[min] + 1)));
+				positions[min]++;
+			}
+
+			out.flush();
+			fileOut.getFD().sync();
+		}
+		finally
+		{
+			out.close();
+		}
+
+		return renameRun(tempFile);
+	}
+
+	/**
+	 * Compares the entry <code>index1</code> of <code>entries1</code> to the
+	 * entry <code>index2</code> of <code>entries2</code>.
+	 * @param entries1 the first entries.
+	 * @param index1 the index of the first entry.
+	 * @param entries2 the second entries.
+	 * @param index2 the index of the second entry.
+	 * @return a negative number, zero or a positive number if the first entry
+	 * is lower than, equal to or greater than the second one.
+	 */
+	private static int compare(final LongBuffer entries1, final long index1, final LongBuffer entries2, final long index2)
+	{
+		return compare(entries1.get((int) (2 * index1)), entries1.get((int) (2 * index1 + 1)),
+			entries2.get((int) (2 * index2)), entries2.get((int) (2 * index2 + 1)));
+	}
+
+	/**
+	 * Compares the entry <code>key1, posting1</code> to the entry <code>key2, posting2</code>.
+	 * @param key1 the key of the first entry.
+	 * @param posting1 the posting of the first entry.
+	 * @param key2 the key of the second entry.
+	 * @param posting2 the posting of the second entry.
+	 * @return a negative number, zero or a positive number if the first entry
+	 * is lower than, equal to or greater than the second one.
+	 */
+	private static int compare(final long key1, final long posting1, final long key2, final long posting2)
+	{
+		if (key1 != key2)
+			return key1 < key2 ? -1 : 1;
+
+		return posting1 < posting2 ? -1 : (posting1 == posting2 ? 0 : 1);
+	}
+
+	/**
+	 * Sorts the entries from <code>from</code> inclusive to <code>to</code>
+	 * exclusive of the parallel arrays <code>keys</code> and <code>postings</code>.
+	 * @param keys the keys of the entries.
+	 * @param postings the postings of the entries.
+	 * @param from the index of the first entry to sort.
+	 * @param to the index after the last entry to sort.
+	 */
+	private static void sort(final long[] keys, final long[] postings, final int from, final int to)
+	{
+		int low = from;
+		int high = to;
+
+		while (high - low > 16)
+		{
+			int middle = (low + high) >>> 1;
+			long pivotKey = keys[middle];
+			long pivotPosting = postings[middle];
+			int i = low;
+			int j = high - 1;
+
+			while (i <= j)
+			{
+				while (compare(keys[i], postings[i], pivotKey, pivotPosting) < 0)
+					i++;
+
+				while (compare(keys[j], postings[j], pivotKey, pivotPosting) > 0)
+					j--;
+
+				if (i <= j)
+				{
+					swap(keys, postings, i, j);
+					i++;
+					j--;
+				}
+			}
+
+			// The smaller part is sorted recursively, so that
+			// the recursion depth stays logarithmic.
+			if (j + 1 - low < high - i)
+			{
+				sort(keys, postings, low, j + 1);
+				low = i;
+			}
+			else
+			{
+				sort(keys, postings, i, high);
+				high = j + 1;
+			}
+		}
+
+		for (int i = low + 1; i < high; i++)
+		{
+			for (int j = i; j > low && compare(keys[j - 1], postings[j - 1], keys[j], postings[j]) > 0; j--)
+				swap(keys, postings, j - 1, j);
+		}
+	}
+
+	/**
+	 * Swaps the entries <code>i</code> and <code>j</code> of the parallel
+	 * arrays <code>keys</code> and <code>postings</code>.
+	 * @param keys the keys of the entries.
+	 * @param postings the postings of the entries.
+	 * @param i the index of the first entry.
+	 * @param j the index of the second entry.
+	 */
+	private static void swap(final long[] keys, final long[] postings, final int i, final int j)
+	{
+		long key = keys[i];
+		keys[i] = keys[j];
+		keys[j] = key;
+
+		long posting = postings[i];
+		postings[i] = postings[j];
+		postings[j] = posting;
+	}
+
+	/**
+	 * Writes the header of a run.
+	 * @param out the run output.
+	 * @param level the run level.
+	 * @param size the number of entries of the run.
+	 * @param minGameId the identifier of the first game covered by the run.
+	 * @param maxGameId the identifier of the last game covered by the run.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	private static void writeRunHeader(final DataOutputStream out, final int level, final long size, final long minGameId, final long maxGameId) throws IOException
+	{
+		out.writeInt(RUN_MAGIC);
+		out.writeInt(RUN_VERSION);
+		out.writeInt(level);
+		out.writeInt(0);
+		out.writeLong(size);
+		out.writeLong(minGameId);
+		out.writeLong(maxGameId);
+	}
+
+	/**
+	 * Returns the name of the run file which covers the games from
+	 * <code>minGameId</code> to <code>maxGameId</code>.
+	 * @param minGameId the identifier of the first game covered by the run.
+	 * @param maxGameId the identifier of the last game covered by the run.
+	 * @return the name of the run file.
+	 */
+	private static String getRunFileName(final long minGameId, final long maxGameId)
+	{
+		return String.format("%s%020d-%020d%s", RUN_PREFIX, minGameId, maxGameId, RUN_SUFFIX);
+	}
+
+	/**
+	 * Gives its final name to the run written to <code>tempFile</code>,
+	 * and maps it.
+	 * @param tempFile the run file being written.
+	 * @return the run.
+	 * @throws IOException if the run cannot be renamed or mapped.
+	 */
+	private static Run renameRun(final File tempFile) throws IOException
+	{
+		String tempName = tempFile.getName();
+		File runFile = new File(tempFile.getParentFile(), tempName.substring(0, tempName.length() - TEMP_SUFFIX.length()));
+
+		if (!tempFile.renameTo(runFile))
+			throw new IOException("Cannot rename the run " + tempFile);
+
+		return new Run(runFile);
+	}
+
+	/**
+	 * Returns the postings of the position of <code>gameModel</code>.
+	 * @param gameModel the game model.
+	 * @return the postings of the position.
+	 */
+	private PostingList find(final GameModel gameModel)
+	{
+		long key = getPositionKey(gameModel.getPositionHash(), gameModel.getRowCount(), gameModel.getColCount(), gameModel.getWinLineLength());
+		PostingList result = new PostingList();
+		List<Run> currentRuns;
+
+		// The tables and the runs are read at once, so that
+		// a table and the run it is written to are not both read.
+		synchronized (this)
+		{
+			currentRuns = runs;
+			currentTable.find(key, result);
+
+			for (Table table: fullTables)
+				table.find(key, result);
+		}
+
+		for (Run run: currentRuns)
+			run.find(key, result);
+
+		return result;
+	}
+
+	/**
+	 * Returns the identifiers of the indexed games which went through the
+	 * position of <code>gameModel</code>, in increasing order. Only the
+	 * <code>maxCount</code> last games are returned.
+	 * @param gameModel the game model.
+	 * @param maxCount the maximum number of identifiers returned.
+	 * @return the identifiers of the games which went through the position.
+	 * @throws NullPointerException if <code>gameModel</code> is null.
+	 * @throws IllegalArgumentException if <code>maxCount</code> is negative.
+	 */
+	public long[] getGameIds(final GameModel gameModel, final int maxCount) throws NullPointerException, IllegalArgumentException
+	{
+		if (maxCount < 0)
+			throw new IllegalArgumentException("Negative count : " + maxCount);
+
+		PostingList postings = find(gameModel);
+		long[] gameIds = new long[postings.size];
+
+		for (int i = 0; i < postings.size; i++)
+			gameIds[i] = getGameId(postings.postings[i]);
+
+		Arrays.sort(gameIds);
+
+		return Arrays.copyOfRange(gameIds, Math.max(0, gameIds.length - maxCount), gameIds.length);
+	}
+
+	/**
+	 * Returns the outcomes of the indexed games which went through the
+	 * position of <code>gameModel</code>.
+	 * @param gameModel the game model.
+	 * @return the outcomes of the games which went through the position.
+	 * @throws NullPointerException if <code>gameModel</code> is null.
+	 */
+	public PositionStatistics getStatistics(final GameModel gameModel) throws NullPointerException
+	{
+		PostingList postings = find(gameModel);
+		PositionStatistics result = new PositionStatistics(gameModel.getCurrentPlayer(), gameModel.getColCount());
+
+		for (int i = 0; i < postings.size; i++)
+			result.add(postings.postings[i]);
+
+		return result;
+	}
+
+	/**
+	 * Returns the identifier of the last indexed game.
+	 * @return the identifier of the last indexed game.
+	 */
+	public synchronized long getLastGameId()
+	{
+		return lastGameId;
+	}
+
+	/**
+	 * Stops indexing the games appended to the log, writes the current table
+	 * to a run, and waits for the end of the run writes.
+	 * @see java.io.Closeable#close()
+	 */
+	public void close()
+	{
+		recordLog.removeRecordListener(recordListener);
+
+		synchronized (this)
+		{
+			if (runExecutor.isShutdown())
+				return;
+
+			if (currentTable.size > 0)
+				flushTable();
+
+			runExecutor.shutdown();
+		}
+
+		try
+		{
+			runExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		}
+		catch (InterruptedException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Prints the outcomes of the games of a record directory which went through
+	 * a position of the usual game tab.<br/>
+	 * The first argument is the record directory, and the next ones are the
+	 * columns played from the empty game tab by the first player and then in turn.
+	 * @param args the program arguments.
+	 * @throws Throwable if an error occurs.
+	 */
+	public static void main(String[] args) throws Throwable
+	{
+		if (args.length == 0)
+		{
+			System.err.println("Usage : PositionIndex <record directory> [column...]");
+			System.exit(1);
+		}
+
+		GameRecordLog log = new GameRecordLog(new File(args[0]));
+		long startTime = System.currentTimeMillis();
+		PositionIndex index = new PositionIndex(new File(args[0], DIRECTORY_NAME), log);
+
+		System.out.println(index.getLastGameId() + " games indexed in " + (System.currentTimeMillis() - startTime) + " ms");
+
+		GameModel gameModel = new GameModel(6, 7, 4, PlayerMark.PLAYER_A_MARK);
+
+		for (int i = 1; i < args.length; i++)
+		{
+			int colIndex = Integer.parseInt(args[i]);
+			gameModel.play(colIndex, gameModel.getCurrentPlayer());
+		}
+
+		startTime = System.nanoTime();
+		PositionStatistics statistics = index.getStatistics(gameModel);
+
+		System.out.println(gameModel);
+		System.out.print(statistics);
+		System.out.println("Query time : " + (System.nanoTime() - startTime) / 1000 + " us");
+
+		index.close();
+		log.close();
+	}
+}
@@ -0,0 +1,371 @@
+/*
+ * RatingLeaderboard.java
+ *
+ * Created: 2026/10/19
+ *
+ * Copyright (C) 2026 Julien Aubin
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.gojul.fourinaline.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The <code>RatingLeaderboard</code> class sorts the players by decreasing
+ * rating, and by name for the players who have the same rating.<br/>
+ * It is an order statistic tree : a treap whose nodes know the size of their
+ * subtree, so that adding or removing a player and getting the rank of a player
+ * or the player at a given rank take a logarithmic time, without sorting the
+ * players again after each game.<br/>
+ * This class is not synchronized.
+ *
+ * @author Julien Aubin
+ */
+final class RatingLeaderboard
+{
+	/**
+	 * The <code>Node</code> class is a node of the treap.
+	 *
+	 * @author Julien Aubin
+	 */
+	private final static class Node
+	{
+		/**
+		 * The player name.
+		 */
+		private String name;
+
+		/**
+		 * The player rating.
+		 */
+		private double rating;
+
+		/**
+		 * The node priority, which is greater than the priority of its children.
+		 */
+		private int priority;
+
+		/**
+		 * The number of nodes of the subtree of this node.
+		 */
+		private int size;
+
+		/**
+		 * The left child, whose players are ranked before this one.
+		 */
+		private Node left;
+
+		/**
+		 * The right child, whose players are ranked after this one.
+		 */
+		private Node right;
+
+		/**
+		 * Constructor.
+		 * @param playerName the player name.
+		 * @param playerRating the player rating.
+		 * @param nodePriority the node priority.
+		 */
+		private Node(final String playerName, final double playerRating, final int nodePriority)
+		{
+			name = playerName;
+			rating = playerRating;
+			priority = nodePriority;
+			size = 1;
+			left = null;
+			right = null;
+		}
+	}
+
+	/**
+	 * The root of the treap, or null if the leaderboard is empty.
+	 */
+	private Node root;
+
+	/**
+	 * The random generator of the priorities.
+	 */
+	private Random random;
+
+	/**
+	 * Constructor.
+	 */
+	RatingLeaderboard()
+	{
+		root = null;
+		random = new Random();
+	}
+
+	/**
+	 * Returns the size of the subtree of <code>node</code>.
+	 * @param node the node to consider, which may be null.
+	 * @return the size of the subtree of <code>node</code>.
+	 */
+	private static int size(final Node node)
+	{
+		return node == null ? 0 : node.size;
+	}
+
+	/**
+	 * Updates the size of the subtree of <code>node</code>.
+	 * @param node the node to update.
+	 * @return <code>node</code>.
+	 */
+	private static Node update(final Node node)
+	{
+		node.size = 1 + size(node.left) + size(node.right);
+
+		return node;
+	}
+
+	/**
+	 * Compares the player <code>name</code> with the rating <code>rating</code>
+	 * to the player of the node <code>node</code>.
+	 * @param name the player name.
+	 * @param rating the player rating.
+	 * @param node the node to compare.
+	 * @return a negative value if the player is ranked before the player of
+	 * the node, 0 if it is the same player, a positive value elsewhere.
+	 */
+	private static int compare(final String name, final double rating, final Node node)
+	{
+		if (rating != node.rating)
+			return rating > node.rating ? -1 : 1;
+
+		return name.compareTo(node.name);
+	}
+
+	/**
+	 * Merges the treaps <code>first</code> and <code>second</code>, whose
+	 * players are all ranked before the players of <code>second</code>.
+	 * @param first the first treap, which may be null.
+	 * @param second the second treap, which may be null.
+	 * @return the merged treap.
+	 */
+	private static Node merge(final Node first, final Node second)
+	{
+		if (first == null)
+			return second;
+
+		if (second == null)
+			return first;
+
+		if (first.priority > second.priority)
+		{
+			first.right = merge(first.right, second);
+			return update(first);
+		}
+		else
+		{
+			second.left = merge(first, second.left);
+			return update(second);
+		}
+	}
+
+	/**
+	 * Adds the player <code>name</code> with the rating <code>rating</code>
+	 * under the node <code>node</code>.
+	 * @param node the root of the subtree, which may be null.
+	 * @param added the node of the player.
+	 * @return the new root of the subtree.
+	 */
+	private static Node add(final Node node, final Node added)
+	{
+		if (node == null)
+			return added;
+
+		if (added.priority > node.priority)
+		{
+			// The new node becomes the root of the subtree,
+			// which is split around it.
+			Node[] parts = split(node, added.name, added.rating);
+			added.left = parts[0];
+			added.right = parts[1];
+
+			return update(added);
+		}
+
+		if (compare(added.name, added.rating, node) < 0)
+			node.left = add(node.left, added);
+		else
+			node.right = add(node.right, added);
+
+		return update(node);
+	}
+
+	/**
+	 * Splits the subtree of <code>node</code> into the players ranked before
+	 * the player <code>name</code> with rating <code>rating</code>, and the others.
+	 * @param node the root of the subtree, which may be null.
+	 * @param name the player name.
+	 * @param rating the player rating.
+	 * @return the two parts of the subtree.
+	 */
+	private static Node[] split(final Node node, final String name, final double rating)
+	{
+		if (node == null)
+			return new Node[2];
+
+		if (compare(name, rating, node) > 0)
+		{
+			Node[] parts = split(node.right, name, rating);
+			node.right = parts[0];
+			parts[0] = update(node);
+
+			return parts;
+		}
+		else
+		{
+			Node[] parts = split(node.left, name, rating);
+			node.left = parts[1];
+			parts[1] = update(node);
+
+			return parts;
+		}
+	}
+
+	/**
+	 * Removes the player <code>name</code> with the rating <code>rating</code>
+	 * from the subtree of <code>node</code>.
+	 * @param node the root of the subtree, which may be null.
+	 * @param name the player name.
+	 * @param rating the player rating.
+	 * @return the new root of the subtree.
+	 */
+	private static Node remove(final Node node, final String name, final double rating)
+	{
+		if (node == null)
+			return null;
+
+		int comparison = compare(name, rating, node);
+
+		if (comparison == 0)
+			return merge(node.left, node.right);
+
+		if (comparison < 0)
+			node.left = remove(node.left, name, rating);
+		else
+			node.right = remove(node.right, name, rating);
+
+		return update(node);
+	}
+
+	/**
+	 * Adds the player <code>name</code> with the rating <code>rating</code>.
+	 * The player must not be in the leaderboard.
+	 * @param name the player name.
+	 * @param rating the player rating.
+	 */
+	void add(final String name, final double rating)
+	{
+		root = add(root, new Node(name, rating, random.nextInt()));
+	}
+
+	/**
+	 * Removes the player <code>name</code> with the rating <code>rating</code>.
+	 * @param name the player name.
+	 * @param rating the rating of the player in the leaderboard.
+	 */
+	void remove(final String name, final double rating)
+	{
+		root = remove(root, name, rating);
+	}
+
+	/**
+	 * Returns the number of players of the leaderboard.
+	 * @return the number of players of the leaderboard.
+	 */
+	int size()
+	{
+		return size(root);
+	}
+
+	/**
+	 * Returns the rank of the player <code>name</code> with the rating
+	 * <code>rating</code>, starting from 1.
+	 * @param name the player name.
+	 * @param rating the rating of the player in the leaderboard.
+	 * @return the rank of the player, or -1 if the player is not in the leaderboard.
+	 */
+	int getRank(final String name, final double rating)
+	{
+		Node node = root;
+		int before = 0;
+
+		while (node != null)
+		{
+			int comparison = compare(name, rating, node);
+
+			if (comparison == 0)
+				return before + size(node.left) + 1;
+
+			if (comparison < 0)
+			{
+				node = node.left;
+			}
+			else
+			{
+				before += size(node.left) + 1;
+				node = node.right;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Returns the names of the players ranked from <code>fromRank</code>,
+	 * starting from 1, in rank order.
+	 * @param fromRank the rank of the first player.
+	 * @param count the maximum number of players.
+	 * @return the names of the players.
+	 */
+	List<String> getNames(final int fromRank, final int count)
+	{
+		List<String> result = new ArrayList<String>();
+		addNames(root, fromRank - 1, count, result);
+
+		return result;
+	}
+
+	/**
+	 * Adds to <code>names</code> the names of the players of the subtree
+	 * of <code>node</code> ranked from <code>fromIndex</code> in the subtree,
+	 * until <code>names</code> contains <code>count</code> names.
+	 * @param node the root of the subtree, which may be null.
+	 * @param fromIndex the index of the first player in the subtree, starting from 0.
+	 * @param count the maximum number of names.
+	 * @param names the names.
+	 */
+	private static void addNames(final Node node, final int fromIndex, final int count, final List<String> names)
+	{
+		if (node == null || names.size() >= count)
+			return;
+
+		int leftSize = size(node.left);
+
+		// The left subtree is skipped when the first player is after it.
+		if (fromIndex < leftSize)
+			addNames(node.left, fromIndex, count, names);
+
+		if (fromIndex <= leftSize && names.size() < count)
+			names.add(node.name);
+
+		addNames(node.right, Math.max(0, fromIndex - leftSize - 1), count, names);
+	}
+}
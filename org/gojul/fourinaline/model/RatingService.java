@@ -0,0 +1,611 @@
+/*
+ * RatingService.java
+ *
+ * Created: 2026/10/19
+ *
+ * Copyright (C) 2026 Julien Aubin
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.gojul.fourinaline.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * The <code>RatingService</code> class maintains the Elo ratings of the players
+ * from the games stored in a game record log, along with a leaderboard of the
+ * players sorted by rating.<br/>
+ * The ratings are saved regularly to a snapshot file, which tells the identifier
+ * of the last game it takes into account. When the service starts, it loads the
+ * snapshot and replays the games stored afterwards, so that no game is lost if the
+ * JVM stops between two snapshots. If the snapshot cannot be read, all the games
+ * of the log are replayed.<br/>
+ * In games of more than two players, the winner beats every other player, and
+ * the other players draw against each other.<br/>
+ * This class is thread-safe.
+ *
+ * @author Julien Aubin
+ */
+public final class RatingService implements Closeable
+{
+	/**
+	 * The rating of a new player.
+	 */
+	public final static int INITIAL_RATING = 1500;
+
+	/**
+	 * The usual name of the snapshot file, in the directory of the game record log.
+	 */
+	public final static String SNAPSHOT_FILE_NAME = "ratings.snapshot";
+
+	/**
+	 * The maximum change of the rating of a player in a game.
+	 */
+	private final static double K_FACTOR = 32.0;
+
+	/**
+	 * The period of the snapshots, in milliseconds.
+	 */
+	private final static long SNAPSHOT_PERIOD = 60000;
+
+	/**
+	 * The magic number of the snapshot files.
+	 */
+	private final static int SNAPSHOT_MAGIC = 0x46345254;
+
+	/**
+	 * The version of the snapshot format.
+	 */
+	private final static int SNAPSHOT_VERSION = 1;
+
+	/**
+	 * The <code>PlayerRating</code> class contains the rating of a player.
+	 *
+	 * @author Julien Aubin
+	 */
+	public final static class PlayerRating implements Serializable
+	{
+		/**
+		 * The serial version UID.
+		 */
+		final static long serialVersionUID = 1;
+
+		/**
+		 * The player name.
+		 */
+		private String name;
+
+		/**
+		 * The player rating.
+		 */
+		private int rating;
+
+		/**
+		 * The number of games played by the player.
+		 */
+		private int gameCount;
+
+		/**
+		 * The player rank, starting from 1.
+		 */
+		private int rank;
+
+		/**
+		 * Constructor.
+		 * @param playerName the player name.
+		 * @param playerRating the player rating.
+		 * @param playerGameCount the number of games played by the player.
+		 * @param playerRank the player rank.
+		 */
+		private PlayerRating(final String playerName, final int playerRating, final int playerGameCount, final int playerRank)
+		{
+			name = playerName;
+			rating = playerRating;
+			gameCount = playerGameCount;
+			rank = playerRank;
+		}
+
+		/**
+		 * Returns the player name.
+		 * @return the player name.
+		 */
+		public String getName()
+		{
+			return name;
+		}
+
+		/**
+		 * Returns the player rating.
+		 * @return the player rating.
+		 */
+		public int getRating()
+		{
+			return rating;
+		}
+
+		/**
+		 * Returns the number of games played by the player.
+		 * @return the number of games played by the player.
+		 */
+		public int getGameCount()
+		{
+			return gameCount;
+		}
+
+		/**
+		 * Returns the player rank, starting from 1.
+		 * @return the player rank.
+		 */
+		public int getRank()
+		{
+			return rank;
+		}
+
+		/**
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString()
+		{
+			return rank + ". " + name + " " + rating + " (" + gameCount + " games)";
+		}
+	}
+
+	/**
+	 * The <code>PlayerState</code> class contains the rating of a player
+	 * as maintained by the service.
+	 *
+	 * @author Julien Aubin
+	 */
+	private final static class PlayerState
+	{
+		/**
+		 * The player rating.
+		 */
+		private double rating;
+
+		/**
+		 * The number of games played by the player.
+		 */
+		private int gameCount;
+
+		/**
+		 * Constructor.
+		 * @param playerRating the player rating.
+		 * @param playerGameCount the number of games played by the player.
+		 */
+		private PlayerState(final double playerRating, final int playerGameCount)
+		{
+			rating = playerRating;
+			gameCount = playerGameCount;
+		}
+	}
+
+	/**
+	 * The snapshot file.
+	 */
+	private File snapshotFile;
+
+	/**
+	 * The map that ties a player name to its state.
+	 */
+	private Map<String, PlayerState> players;
+
+	/**
+	 * The leaderboard of the players.
+	 */
+	private RatingLeaderboard leaderboard;
+
+	/**
+	 * The identifier of the last game taken into account.
+	 */
+	private long lastGameId;
+
+	/**
+	 * The log of the games.
+	 */
+	private GameRecordLog recordLog;
+
+	/**
+	 * The listener that takes into account the games appended to the log.
+	 */
+	private GameRecordLog.RecordListener recordListener;
+
+	/**
+	 * Boolean indicating whether the ratings have changed since the last snapshot.
+	 */
+	private boolean changed;
+
+	/**
+	 * The lock of the snapshot writes.
+	 */
+	private Object snapshotLock;
+
+	/**
+	 * The scheduler of the snapshots.
+	 */
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * Constructor. Loads the snapshot file <code>file</code>, and replays the
+	 * games of <code>log</code> that are not taken into account by the snapshot.
+	 * @param file the snapshot file, which may not exist yet.
+	 * @param log the log of the games.
+	 * @throws NullPointerException if any of the method parameter is null.
+	 */
+	public RatingService(final File file, final GameRecordLog log) throws NullPointerException
+	{
+		if (file == null || log == null)
+			throw new NullPointerException();
+
+		snapshotFile = file;
+		players = new HashMap<String, PlayerState>();
+		leaderboard = new RatingLeaderboard();
+		lastGameId = 0;
+		recordLog = log;
+		changed = false;
+		snapshotLock = new Object();
+
+		if (snapshotFile.exists())
+		{
+			try
+			{
+				loadSnapshot();
+			}
+			catch (IOException e)
+			{
+				System.err.println("Cannot read the rating snapshot " + snapshotFile + ", all the games are replayed : " + e);
+
+				players.clear();
+				leaderboard = new RatingLeaderboard();
+				lastGameId = 0;
+			}
+		}
+
+		recordListener = new GameRecordLog.RecordListener()
+		{
+			/**
+			 * @see org.gojul.fourinaline.model.GameRecordLog.RecordListener#recordAppended(long, org.gojul.fourinaline.model.GameRecord)
+			 */
+			public void recordAppended(final long id, final GameRecord record)
+			{
+				gameStored(id, record);
+			}
+		};
+
+		// The listener is registered before the log is read so that no game is
+		// missed, and waits for the end of the read since the service is locked.
+		// The log notifies every game on the disk in identifier order, even the
+		// games whose append has failed for the appending thread.
+		synchronized (this)
+		{
+			recordLog.addRecordListener(recordListener);
+
+			for (Iterator<GameRecord> it = recordLog.read(lastGameId + 1); it.hasNext();)
+			{
+				GameRecord record = it.next();
+				gameStored(record.getId(), record);
+			}
+		}
+
+		scheduler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory(Executors.defaultThreadFactory(), "RatingService"));
+		scheduler.scheduleWithFixedDelay(new Runnable()
+		{
+			/**
+			 * @see java.lang.Runnable#run()
+			 */
+			public void run()
+			{
+				try
+				{
+					snapshot();
+				}
+				catch (IOException e)
+				{
+					e.printStackTrace();
+				}
+			}
+		}, SNAPSHOT_PERIOD, SNAPSHOT_PERIOD, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Loads the snapshot file.
+	 * @throws IOException if the snapshot cannot be read or is not valid.
+	 */
+	private void loadSnapshot() throws IOException
+	{
+		CRC32 checksum = new CRC32();
+		DataInputStream in = new DataInputStream(new CheckedInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)), checksum));
+
+		try
+		{
+			if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION)
+				throw new IOException("Invalid snapshot header");
+
+			lastGameId = in.readLong();
+			int playerCount = in.readInt();
+
+			for (int i = 0; i < playerCount; i++)
+			{
+				String name = in.readUTF();
+				PlayerState state = new PlayerState(in.readDouble(), in.readInt());
+
+				players.put(name, state);
+				leaderboard.add(name, state.rating);
+			}
+
+			int expectedChecksum = (int) checksum.getValue();
+
+			if (in.readInt() != expectedChecksum)
+				throw new IOException("Invalid snapshot checksum");
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	/**
+	 * Saves the ratings to the snapshot file if they have changed since
+	 * the last snapshot. The snapshot is written to a temporary file which
+	 * then replaces the previous snapshot, so that a snapshot is never
+	 * partially written.
+	 * @throws IOException if the snapshot cannot be written.
+	 */
+	public void snapshot() throws IOException
+	{
+		synchronized (snapshotLock)
+		{
+			String[] names;
+			double[] ratings;
+			int[] gameCounts;
+			long gameId;
+
+			// The ratings are copied, so that the games are not
+			// held up while the snapshot is written.
+			synchronized (this)
+			{
+				if (!changed)
+					return;
+
+				names = players.keySet().toArray(new String[players.size()]);
+				ratings = new double[names.length];
+				gameCounts = new int[names.length];
+
+				for (int i = 0; i < names.length; i++)
+				{
+					PlayerState state = players.get(names[i]);
+					ratings[i] = state.rating;
+					gameCounts[i] = state.gameCount;
+				}
+
+				gameId = lastGameId;
+				changed = false;
+			}
+
+			File tempFile = new File(snapshotFile.getPath() + ".tmp");
+			FileOutputStream fileOut = new FileOutputStream(tempFile);
+			CRC32 checksum = new CRC32();
+			DataOutputStream out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(fileOut), checksum));
+
+			try
+			{
+				out.writeInt(SNAPSHOT_MAGIC);
+				out.writeInt(SNAPSHOT_VERSION);
+				out.writeLong(gameId);
+				out.writeInt(names.length);
+
+				for (int i = 0; i < names.length; i++)
+				{
+					out.writeUTF(names[i]);
+					out.writeDouble(ratings[i]);
+					out.writeInt(gameCounts[i]);
+				}
+
+				out.writeInt((int) checksum.getValue());
+				out.flush();
+				fileOut.getFD().sync();
+			}
+			catch (IOException e)
+			{
+				synchronized (this)
+				{
+					changed = true;
+				}
+
+				throw e;
+			}
+			finally
+			{
+				out.close();
+			}
+
+			// Some platforms do not replace an existing file when renaming.
+			if (!tempFile.renameTo(snapshotFile) && !(snapshotFile.delete() && tempFile.renameTo(snapshotFile)))
+				throw new IOException("Cannot replace the snapshot " + snapshotFile);
+		}
+	}
+
+	/**
+	 * Takes into account the game <code>record</code>, stored with the identifier
+	 * <code>id</code>. The games must be given in identifier order, and the games
+	 * already taken into account are ignored.
+	 * @param id the identifier of the game in the log.
+	 * @param record the game record.
+	 */
+	private synchronized void gameStored(final long id, final GameRecord record)
+	{
+		if (id <= lastGameId)
+			return;
+
+		updateRatings(record);
+		lastGameId = id;
+		changed = true;
+	}
+
+	/**
+	 * Updates the ratings of the players of the game <code>record</code>.
+	 * @param record the game record.
+	 */
+	private void updateRatings(final GameRecord record)
+	{
+		int playerCount = record.getPlayerCount();
+
+		if (playerCount < 2)
+			return;
+
+		PlayerState[] states = new PlayerState[playerCount];
+		double[] changes = new double[playerCount];
+
+		for (int i = 0; i < playerCount; i++)
+		{
+			String name = record.getPlayerName(i);
+			states[i] = players.get(name);
+
+			if (states[i] == null)
+			{
+				states[i] = new PlayerState(INITIAL_RATING, 0);
+				players.put(name, states[i]);
+				leaderboard.add(name, INITIAL_RATING);
+			}
+		}
+
+		// Every pair of players is rated as a game of its own, whose
+		// weight is shared among the opponents of each player.
+		for (int i = 0; i < playerCount; i++)
+		{
+			for (int j = i + 1; j < playerCount; j++)
+			{
+				double expectedScore = 1.0 / (1.0 + Math.pow(10.0, (states[j].rating - states[i].rating) / 400.0));
+				double score = 0.5;
+
+				if (record.getWinnerMark() == record.getPlayerMark(i))
+					score = 1.0;
+				else if (record.getWinnerMark() == record.getPlayerMark(j))
+					score = 0.0;
+
+				double change = K_FACTOR * (score - expectedScore) / (playerCount - 1);
+				changes[i] += change;
+				changes[j] -= change;
+			}
+		}
+
+		for (int i = 0; i < playerCount; i++)
+		{
+			String name = record.getPlayerName(i);
+
+			leaderboard.remove(name, states[i].rating);
+			states[i].rating += changes[i];
+			states[i].gameCount++;
+			leaderboard.add(name, states[i].rating);
+		}
+	}
+
+	/**
+	 * Returns the rating of the player <code>name</code>, or the initial
+	 * rating if the player has not played any game yet.
+	 * @param name the player name.
+	 * @return the rating of the player <code>name</code>.
+	 */
+	public synchronized int getRating(final String name)
+	{
+		PlayerState state = players.get(name);
+
+		return state == null ? INITIAL_RATING : (int) Math.round(state.rating);
+	}
+
+	/**
+	 * Returns the rating of the player <code>name</code>, or null if the player
+	 * has not played any game yet.
+	 * @param name the player name.
+	 * @return the rating of the player <code>name</code>.
+	 */
+	public synchronized PlayerRating getPlayerRating(final String name)
+	{
+		PlayerState state = players.get(name);
+
+		if (state == null)
+			return null;
+
+		return new PlayerRating(name, (int) Math.round(state.rating), state.gameCount, leaderboard.getRank(name, state.rating));
+	}
+
+	/**
+	 * Returns the ratings of the players ranked from <code>fromRank</code>,
+	 * starting from 1, in rank order.
+	 * @param fromRank the rank of the first player.
+	 * @param count the maximum number of players.
+	 * @return the ratings of the players.
+	 * @throws IllegalArgumentException if <code>fromRank</code> is smaller than 1
+	 * or if <code>count</code> is negative.
+	 */
+	public synchronized List<PlayerRating> getLeaderboard(final int fromRank, final int count) throws IllegalArgumentException
+	{
+		if (fromRank < 1 || count < 0)
+			throw new IllegalArgumentException("Invalid range : " + fromRank + ", " + count);
+
+		List<PlayerRating> result = new ArrayList<PlayerRating>();
+		int rank = fromRank;
+
+		for (String name: leaderboard.getNames(fromRank, count))
+		{
+			PlayerState state = players.get(name);
+			result.add(new PlayerRating(name, (int) Math.round(state.rating), state.gameCount, rank++));
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns the number of rated players.
+	 * @return the number of rated players.
+	 */
+	public synchronized int getPlayerCount()
+	{
+		return players.size();
+	}
+
+	/**
+	 * Stops the snapshots, and saves the ratings a last time.
+	 * @throws IOException if the snapshot cannot be written.
+	 * @see java.io.Closeable#close()
+	 */
+	public void close() throws IOException
+	{
+		recordLog.removeRecordListener(recordListener);
+		scheduler.shutdownNow();
+		snapshot();
+	}
+}
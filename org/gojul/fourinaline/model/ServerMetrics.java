@@ -0,0 +1,851 @@
+/*
+ * ServerMetrics.java
+ *
+ * Created: 2026/10/19
+ *
+ * Copyright (C) 2026 Julien Aubin
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.gojul.fourinaline.model;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.rmi.server.RMIServerSocketFactory;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.gojul.fourinaline.model.GameServer.ServerTicket;
+
+/**
+ * The <code>ServerMetrics</code> class collects the metrics of the game servers
+ * of the JVM : the number of games and players, the moves played, the latency of
+ * each method called remotely, the time the players wait for their turn and the
+ * number of bytes exchanged with the clients.<br/>
+ * The metrics are exported through JMX, and as plain text by an HTTP endpoint
+ * that may be scraped by a monitoring system. The latencies are recorded in
+ * <code>LatencyHistogram</code> instances, which do not lock.<br/>
+ * The RMI calls are measured by exporting the servers through a proxy, whose
+ * connections count the bytes of the serialized calls. The NIO server measures
+ * its calls itself.
+ *
+ * @author Julien Aubin
+ */
+public final class ServerMetrics implements ServerMetricsMBean
+{
+	/**
+	 * The property that contains the port of the HTTP endpoint,
+	 * or 0 to disable it. Defaults to <code>DEFAULT_HTTP_PORT</code>.
+	 */
+	public final static String HTTP_PORT_PROPERTY = "org.gojul.fourinaline.metricsPort";
+	
+	/**
+	 * The default port of the HTTP endpoint.
+	 */
+	public final static int DEFAULT_HTTP_PORT = 1101;
+	
+	/**
+	 * The path of the HTTP endpoint.
+	 */
+	public final static String HTTP_PATH = "/metrics";
+	
+	/**
+	 * The name under which the metrics are exported through JMX.
+	 */
+	public final static String MBEAN_NAME = "org.gojul.fourinaline:type=ServerMetrics";
+	
+	/**
+	 * The name of the RMI transport.
+	 */
+	final static String RMI_TRANSPORT = "rmi";
+	
+	/**
+	 * The name of the NIO transport.
+	 */
+	final static String NIO_TRANSPORT = "nio";
+	
+	/**
+	 * The quantiles of the latencies that are exported.
+	 */
+	private final static double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+	
+	/**
+	 * The metrics instance, created on first use.
+	 */
+	private static ServerMetrics instance = null;
+	
+	/**
+	 * The <code>RateMeter</code> class counts events per second
+	 * over the last minute.
+	 *
+	 * @author Julien Aubin
+	 */
+	private final static class RateMeter
+	{
+		/**
+		 * The number of seconds over which the rate is computed.
+		 */
+		private final static int WINDOW = 60;
+		
+		/**
+		 * The number of events of each second of the window.
+		 */
+		private AtomicLongArray counts;
+		
+		/**
+		 * The second that matches each slot of the window.
+		 */
+		private AtomicLongArray seconds;
+		
+		/**
+		 * Constructor.
+		 */
+		private RateMeter()
+		{
+			counts = new AtomicLongArray(WINDOW);
+			seconds = new AtomicLongArray(WINDOW);
+		}
+		
+		/**
+		 * Counts an event. An event that occurs while its slot
+		 * is recycled may be lost, which is fine for a rate.
+		 */
+		private void mark()
+		{
+			long second = System.currentTimeMillis() / 1000;
+			int slot = (int) (second % WINDOW);
+			long slotSecond = seconds.get(slot);
+			
+			if (slotSecond != second && seconds.compareAndSet(slot, slotSecond, second))
+				counts.set(slot, 0);
+			
+			counts.incrementAndGet(slot);
+		}
+		
+		/**
+		 * Returns the average number of events per second over the window.
+		 * @return the average number of events per second.
+		 */
+		private double getRate()
+		{
+			long second = System.currentTimeMillis() / 1000;
+			long total = 0;
+			
+			for (int i = 0; i < WINDOW; i++)
+			{
+				if (second - seconds.get(i) < WINDOW)
+					total += counts.get(i);
+			}
+			
+			return (double) total / WINDOW;
+		}
+	}
+	
+	/**
+	 * The <code>MeteredInvocationHandler</code> class measures the
+	 * latency of the calls of a server exported through a proxy.<br/>
+	 * The calls of the game servers are also recorded in the flight recorder.
+	 *
+	 * @author Julien Aubin
+	 */
+	private final static class MeteredInvocationHandler implements InvocationHandler
+	{
+		/**
+		 * The measured server.
+		 */
+		private Object server;
+		
+		/**
+		 * The measured server if it is a game server, null elsewhere.
+		 */
+		private GameServerImpl gameServer;
+		
+		/**
+		 * Constructor.
+		 * @param measuredServer the measured server.
+		 */
+		private MeteredInvocationHandler(final Object measuredServer)
+		{
+			server = measuredServer;
+			gameServer = measuredServer instanceof GameServerImpl ? (GameServerImpl) measuredServer : null;
+		}
+		
+		/**
+		 * Returns the ticket among the call arguments <code>args</code>,
+		 * or null if there's none.
+		 * @param args the call arguments, which may be null.
+		 * @return the ticket among the call arguments.
+		 */
+		private static ServerTicket getTicket(final Object[] args)
+		{
+			if (args != null)
+			{
+				for (Object arg: args)
+				{
+					if (arg instanceof ServerTicket)
+						return (ServerTicket) arg;
+				}
+			}
+			
+			return null;
+		}
+
+		/**
+		 * @see java.lang.reflect.InvocationHandler#invoke(java.lang.Object, java.lang.reflect.Method, java.lang.Object[])
+		 */
+		public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable
+		{
+			long start = System.nanoTime();
+			Object flightEvent = gameServer != null ? FlightEvents.beginServerCall() : null;
+			
+			try
+			{
+				return method.invoke(server, args);
+			}
+			catch (InvocationTargetException e)
+			{
+				throw e.getCause();
+			}
+			finally
+			{
+				if (method.getDeclaringClass() != Object.class)
+				{
+					getInstance().callCompleted(method.getName(), System.nanoTime() - start);
+					
+					if (flightEvent != null)
+						FlightEvents.endServerCall(flightEvent, method.getName(), gameServer.getServerName(), getTicket(args), RMI_TRANSPORT);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * The <code>CountingServerSocketFactory</code> class creates the server
+	 * sockets of the RMI calls, whose connections count the bytes exchanged.
+	 *
+	 * @author Julien Aubin
+	 */
+	private final static class CountingServerSocketFactory implements RMIServerSocketFactory
+	{
+		/**
+		 * @see java.rmi.server.RMIServerSocketFactory#createServerSocket(int)
+		 */
+		public ServerSocket createServerSocket(final int port) throws IOException
+		{
+			return new ServerSocket(port)
+			{
+				/**
+				 * @see java.net.ServerSocket#accept()
+				 */
+				@Override
+				public Socket accept() throws IOException
+				{
+					Socket result = new CountingSocket();
+					implAccept(result);
+					
+					return result;
+				}
+			};
+		}
+	}
+	
+	/**
+	 * The <code>CountingSocket</code> class is a socket that counts
+	 * the bytes it reads and writes.
+	 *
+	 * @author Julien Aubin
+	 */
+	private final static class CountingSocket extends Socket
+	{
+		/**
+		 * @see java.net.Socket#getInputStream()
+		 */
+		@Override
+		public InputStream getInputStream() throws IOException
+		{
+			return new FilterInputStream(super.getInputStream())
+			{
+				/**
+				 * @see java.io.FilterInputStream#read()
+				 */
+				@Override
+				public int read() throws IOException
+				{
+					int result = super.read();
+					
+					if (result >= 0)
+						getInstance().bytesRead(RMI_TRANSPORT, 1);
+					
+					return result;
+				}
+				
+				/**
+				 * @see java.io.FilterInputStream#read(byte[], int, int)
+				 */
+				@Override
+				public int read(final byte[] b, final int off, final int len) throws IOException
+				{
+					int result = super.read(b, off, len);
+					
+					if (result > 0)
+						getInstance().bytesRead(RMI_TRANSPORT, result);
+					
+					return result;
+				}
+			};
+		}
+		
+		/**
+		 * @see java.net.Socket#getOutputStream()
+		 */
+		@Override
+		public OutputStream getOutputStream() throws IOException
+		{
+			return new FilterOutputStream(super.getOutputStream())
+			{
+				/**
+				 * @see java.io.FilterOutputStream#write(int)
+				 */
+				@Override
+				public void write(final int b) throws IOException
+				{
+					out.write(b);
+					getInstance().bytesWritten(RMI_TRANSPORT, 1);
+				}
+				
+				/**
+				 * @see java.io.FilterOutputStream#write(byte[], int, int)
+				 */
+				@Override
+				public void write(final byte[] b, final int off, final int len) throws IOException
+				{
+					out.write(b, off, len);
+					getInstance().bytesWritten(RMI_TRANSPORT, len);
+				}
+			};
+		}
+	}
+	
+	/**
+	 * The <code>MetricsHandler</code> class serves the metrics
+	 * over HTTP as plain text.
+	 *
+	 * @author Julien Aubin
+	 */
+	private final static class MetricsHandler implements HttpHandler
+	{
+		/**
+		 * @see com.sun.net.httpserver.HttpHandler#handle(com.sun.net.httpserver.HttpExchange)
+		 */
+		public void handle(final HttpExchange exchange) throws IOException
+		{
+			byte[] body = getInstance().getMetricsText().getBytes("UTF-8");
+			
+			exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+			exchange.sendResponseHeaders(200, body.length);
+			
+			OutputStream out = exchange.getResponseBody();
+			
+			try
+			{
+				out.write(body);
+			}
+			finally
+			{
+				out.close();
+			}
+		}
+	}
+	
+	/**
+	 * The game servers in use. The servers are weakly referenced,
+	 * so that a server that is not released properly is not leaked.
+	 */
+	private Map<GameServerImpl, Boolean> gameServers;
+	
+	/**
+	 * The servers exported through a metered proxy, tied to their proxy.
+	 * The proxies must be strongly referenced as long as their servers are used.
+	 */
+	private ConcurrentMap<Remote, Remote> meteredServers;
+	
+	/**
+	 * The socket factory of the servers exported through a metered proxy.
+	 */
+	private RMIServerSocketFactory serverSocketFactory;
+	
+	/**
+	 * The map that ties a method name to its latencies.
+	 */
+	private ConcurrentMap<String, LatencyHistogram> callLatencies;
+	
+	/**
+	 * The time the players wait for their turn.
+	 */
+	private LatencyHistogram turnWaits;
+	
+	/**
+	 * The number of moves played.
+	 */
+	private AtomicLong moveCount;
+	
+	/**
+	 * The rate of the moves played.
+	 */
+	private RateMeter moveRate;
+	
+	/**
+	 * The map that ties a transport to the number of bytes it has read.
+	 */
+	private Map<String, AtomicLong> bytesRead;
+	
+	/**
+	 * The map that ties a transport to the number of bytes it has written.
+	 */
+	private Map<String, AtomicLong> bytesWritten;
+	
+	/**
+	 * Constructor.
+	 */
+	private ServerMetrics()
+	{
+		gameServers = new WeakHashMap<GameServerImpl, Boolean>();
+		meteredServers = new ConcurrentHashMap<Remote, Remote>();
+		serverSocketFactory = new CountingServerSocketFactory();
+		callLatencies = new ConcurrentHashMap<String, LatencyHistogram>();
+		turnWaits = new LatencyHistogram();
+		moveCount = new AtomicLong();
+		moveRate = new RateMeter();
+		
+		bytesRead = new TreeMap<String, AtomicLong>();
+		bytesWritten = new TreeMap<String, AtomicLong>();
+		
+		for (String transport: new String[] {RMI_TRANSPORT, NIO_TRANSPORT})
+		{
+			bytesRead.put(transport, new AtomicLong());
+			bytesWritten.put(transport, new AtomicLong());
+		}
+	}
+	
+	/**
+	 * Returns the metrics instance. The metrics are exported through
+	 * JMX when the instance is created.
+	 * @return the metrics instance.
+	 */
+	static synchronized ServerMetrics getInstance()
+	{
+		if (instance == null)
+		{
+			instance = new ServerMetrics();
+			
+			try
+			{
+				ManagementFactory.getPlatformMBeanServer().registerMBean(instance, new ObjectName(MBEAN_NAME));
+			}
+			catch (JMException e)
+			{
+				// The metrics are just not exported.
+				e.printStackTrace();
+			}
+		}
+		
+		return instance;
+	}
+	
+	/**
+	 * Starts the HTTP endpoint of the metrics on the port set by the
+	 * <code>HTTP_PORT_PROPERTY</code> property, unless it is disabled.
+	 * The endpoint is served by a daemon thread.
+	 * @return true if the endpoint is started, false if it is disabled.
+	 * @throws IOException if the endpoint cannot listen on its port.
+	 */
+	public static boolean startHttpServer() throws IOException
+	{
+		int port = Integer.getInteger(HTTP_PORT_PROPERTY, DEFAULT_HTTP_PORT).intValue();
+		
+		if (port <= 0)
+			return false;
+		
+		HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+		server.createContext(HTTP_PATH, new MetricsHandler());
+		server.setExecutor(Executors.newSingleThreadExecutor(new DaemonThreadFactory(Executors.defaultThreadFactory(), "ServerMetrics-http")));
+		server.start();
+		
+		// The metrics are exported through JMX as well.
+		getInstance();
+		
+		System.out.println("Metrics available at http://localhost:" + port + HTTP_PATH);
+		
+		return true;
+	}
+	
+	/**
+	 * Exports the server <code>server</code> through RMI, behind a proxy that
+	 * measures the latency of its calls and the bytes they exchange.
+	 * @param server the server to export.
+	 * @param interfaces the remote interfaces of the server.
+	 * @return the stub of the server.
+	 * @throws RemoteException if the server cannot be exported.
+	 */
+	Remote export(final Remote server, final Class<?>... interfaces) throws RemoteException
+	{
+		Remote proxy = (Remote) Proxy.newProxyInstance(server.getClass().getClassLoader(), interfaces, new MeteredInvocationHandler(server));
+		
+		// The proxy is only weakly referenced by RMI.
+		meteredServers.put(server, proxy);
+		
+		return UnicastRemoteObject.exportObject(proxy, 0, null, serverSocketFactory);
+	}
+	
+	/**
+	 * Forgets the proxy of the server <code>server</code>, which is no longer used.
+	 * @param server the server exported by the <code>export</code> method.
+	 */
+	void forget(final Remote server)
+	{
+		meteredServers.remove(server);
+	}
+	
+	/**
+	 * Registers the game server <code>gameServer</code>, which is in use.
+	 * @param gameServer the game server to register.
+	 */
+	void serverCreated(final GameServerImpl gameServer)
+	{
+		synchronized (gameServers)
+		{
+			gameServers.put(gameServer, Boolean.TRUE);
+		}
+	}
+	
+	/**
+	 * Unregisters the game server <code>gameServer</code>, which is no longer used.
+	 * @param gameServer the game server to unregister.
+	 */
+	void serverReleased(final GameServerImpl gameServer)
+	{
+		synchronized (gameServers)
+		{
+			gameServers.remove(gameServer);
+		}
+	}
+	
+	/**
+	 * Counts a move played.
+	 */
+	void movePlayed()
+	{
+		moveCount.incrementAndGet();
+		moveRate.mark();
+	}
+	
+	/**
+	 * Records the time a player has waited for their turn.
+	 * @param nanos the wait time in nanoseconds.
+	 */
+	void turnWaited(final long nanos)
+	{
+		turnWaits.record(nanos);
+	}
+	
+	/**
+	 * Records the latency of a call of the method <code>methodName</code>.
+	 * @param methodName the name of the method called.
+	 * @param nanos the latency of the call in nanoseconds.
+	 */
+	void callCompleted(final String methodName, final long nanos)
+	{
+		LatencyHistogram histogram = callLatencies.get(methodName);
+		
+		if (histogram == null)
+		{
+			LatencyHistogram newHistogram = new LatencyHistogram();
+			histogram = callLatencies.putIfAbsent(methodName, newHistogram);
+			
+			if (histogram == null)
+				histogram = newHistogram;
+		}
+		
+		histogram.record(nanos);
+	}
+	
+	/**
+	 * Counts the bytes read by the transport <code>transport</code>.
+	 * @param transport the name of the transport.
+	 * @param count the number of bytes read.
+	 */
+	void bytesRead(final String transport, final long count)
+	{
+		bytesRead.get(transport).addAndGet(count);
+	}
+	
+	/**
+	 * Counts the bytes written by the transport <code>transport</code>.
+	 * @param transport the name of the transport.
+	 * @param count the number of bytes written.
+	 */
+	void bytesWritten(final String transport, final long count)
+	{
+		bytesWritten.get(transport).addAndGet(count);
+	}
+	
+	/**
+	 * Returns a copy of the game servers in use.
+	 * @return a copy of the game servers in use.
+	 */
+	private List<GameServerImpl> getGameServers()
+	{
+		synchronized (gameServers)
+		{
+			return new ArrayList<GameServerImpl>(gameServers.keySet());
+		}
+	}
+
+	/**
+	 * @see org.gojul.fourinaline.model.ServerMetricsMBean#getGameServerCount()
+	 */
+	public int getGameServerCount()
+	{
+		synchronized (gameServers)
+		{
+			return gameServers.size();
+		}
+	}
+
+	/**
+	 * @see org.gojul.fourinaline.model.ServerMetricsMBean#getRunningGameCount()
+	 */
+	public int getRunningGameCount()
+	{
+		int result = 0;
+		
+		for (GameServerImpl gameServer: getGameServers())
+		{
+			if (gameServer.getSnapshot().isGameRunning())
+				result++;
+		}
+		
+		return result;
+	}
+
+	/**
+	 * @see org.gojul.fourinaline.model.ServerMetricsMBean#getRegisteredPlayerCount()
+	 */
+	public int getRegisteredPlayerCount()
+	{
+		int result = 0;
+		
+		for (GameServerImpl gameServer: getGameServers())
+			result += gameServer.getPlayerCount();
+		
+		return result;
+	}
+
+	/**
+	 * @see org.gojul.fourinaline.model.ServerMetricsMBean#getMoveCount()
+	 */
+	public long getMoveCount()
+	{
+		return moveCount.get();
+	}
+
+	/**
+	 * @see org.gojul.fourinaline.model.ServerMetricsMBean#getMovesPerSecond()
+	 */
+	public double getMovesPerSecond()
+	{
+		return moveRate.getRate();
+	}
+
+	/**
+	 * @see org.gojul.fourinaline.model.ServerMetricsMBean#getTurnWaitP99Micros()
+	 */
+	public long getTurnWaitP99Micros()
+	{
+		return turnWaits.getQuantile(0.99);
+	}
+	
+	/**
+	 * Returns the byte counts of <code>counts</code> as strings.
+	 * @param counts the byte counts per transport.
+	 * @return the byte counts as strings.
+	 */
+	private static String[] toStrings(final Map<String, AtomicLong> counts)
+	{
+		List<String> result = new ArrayList<String>();
+		
+		for (Map.Entry<String, AtomicLong> entry: counts.entrySet())
+			result.add(entry.getKey() + "=" + entry.getValue().get());
+		
+		return result.toArray(new String[result.size()]);
+	}
+
+	/**
+	 * @see org.gojul.fourinaline.model.ServerMetricsMBean#getBytesRead()
+	 */
+	public String[] getBytesRead()
+	{
+		return toStrings(bytesRead);
+	}
+
+	/**
+	 * @see org.gojul.fourinaline.model.ServerMetricsMBean#getBytesWritten()
+	 */
+	public String[] getBytesWritten()
+	{
+		return toStrings(bytesWritten);
+	}
+
+	/**
+	 * @see org.gojul.fourinaline.model.ServerMetricsMBean#getCallLatencies()
+	 */
+	public String[] getCallLatencies()
+	{
+		List<String> result = new ArrayList<String>();
+		
+		for (Map.Entry<String, LatencyHistogram> entry: new TreeMap<String, LatencyHistogram>(callLatencies).entrySet())
+		{
+			LatencyHistogram histogram = entry.getValue();
+			StringBuilder sb = new StringBuilder(entry.getKey());
+			
+			sb.append(" count=").append(histogram.getCount());
+			
+			for (double quantile: QUANTILES)
+				sb.append(" p").append(formatQuantile(quantile * 100)).append("=").append(histogram.getQuantile(quantile)).append("us");
+			
+			sb.append(" max=").append(histogram.getMax()).append("us");
+			
+			result.add(sb.toString());
+		}
+		
+		return result.toArray(new String[result.size()]);
+	}
+	
+	/**
+	 * Returns the quantile <code>quantile</code> formatted without useless digits.
+	 * @param quantile the quantile to format.
+	 * @return the formatted quantile.
+	 */
+	private static String formatQuantile(final double quantile)
+	{
+		if (quantile == Math.floor(quantile))
+			return Long.toString((long) quantile);
+		else
+			return Double.toString(quantile);
+	}
+	
+	/**
+	 * Appends the histogram <code>histogram</code> with name <code>name</code>
+	 * and labels <code>labels</code> to <code>sb</code>, as a summary.
+	 * @param sb the text to append to.
+	 * @param name the metric name.
+	 * @param labels the metric labels, or an empty string.
+	 * @param histogram the histogram to append.
+	 */
+	private static void appendSummary(final StringBuilder sb, final String name, final String labels, final LatencyHistogram histogram)
+	{
+		String separator = labels.length() == 0 ? "" : ",";
+		
+		for (double quantile: QUANTILES)
+		{
+			sb.append(name).append("{").append(labels).append(separator).append("quantile=\"").append(formatQuantile(quantile))
+				.append("\"} ").append(histogram.getQuantile(quantile)).append('\n');
+		}
+		
+		String suffix = labels.length() == 0 ? " " : "{" + labels + "} ";
+		
+		sb.append(name).append("_max").append(suffix).append(histogram.getMax()).append('\n');
+		sb.append(name).append("_sum").append(suffix).append(histogram.getSum()).append('\n');
+		sb.append(name).append("_count").append(suffix).append(histogram.getCount()).append('\n');
+	}
+
+	/**
+	 * @see org.gojul.fourinaline.model.ServerMetricsMBean#getMetricsText()
+	 */
+	public String getMetricsText()
+	{
+		StringBuilder sb = new StringBuilder();
+		
+		sb.append("# TYPE fourinaline_game_servers gauge\n");
+		sb.append("fourinaline_game_servers ").append(getGameServerCount()).append('\n');
+		sb.append("# TYPE fourinaline_running_games gauge\n");
+		sb.append("fourinaline_running_games ").append(getRunningGameCount()).append('\n');
+		sb.append("# TYPE fourinaline_registered_players gauge\n");
+		sb.append("fourinaline_registered_players ").append(getRegisteredPlayerCount()).append('\n');
+		sb.append("# TYPE fourinaline_moves_total counter\n");
+		sb.append("fourinaline_moves_total ").append(getMoveCount()).append('\n');
+		sb.append("# TYPE fourinaline_moves_per_second gauge\n");
+		sb.append("fourinaline_moves_per_second ").append(String.format(Locale.US, "%.3f", getMovesPerSecond())).append('\n');
+		
+		sb.append("# TYPE fourinaline_call_latency_micros summary\n");
+		
+		for (Map.Entry<String, LatencyHistogram> entry: new TreeMap<String, LatencyHistogram>(callLatencies).entrySet())
+			appendSummary(sb, "fourinaline_call_latency_micros", "method=\"" + entry.getKey() + "\"", entry.getValue());
+		
+		sb.append("# TYPE fourinaline_turn_wait_micros summary\n");
+		appendSummary(sb, "fourinaline_turn_wait_micros", "", turnWaits);
+		
+		sb.append("# TYPE fourinaline_bytes_read_total counter\n");
+		
+		for (Map.Entry<String, AtomicLong> entry: bytesRead.entrySet())
+			sb.append("fourinaline_bytes_read_total{transport=\"").append(entry.getKey()).append("\"} ").append(entry.getValue().get()).append('\n');
+		
+		sb.append("# TYPE fourinaline_bytes_written_total counter\n");
+		
+		for (Map.Entry<String, AtomicLong> entry: bytesWritten.entrySet())
+			sb.append("fourinaline_bytes_written_total{transport=\"").append(entry.getKey()).append("\"} ").append(entry.getValue().get()).append('\n');
+		
+		AdmissionControl admissionControl = AdmissionControl.getInstance();
+		
+		sb.append("# TYPE fourinaline_admitted_calls_total counter\n");
+		sb.append("fourinaline_admitted_calls_total ").append(admissionControl.getAdmittedCallCount()).append('\n');
+		sb.append("# TYPE fourinaline_rejected_calls_total counter\n");
+		sb.append("fourinaline_rejected_calls_total{reason=\"ticket\"} ").append(admissionControl.getRejectedTicketCallCount()).append('\n');
+		sb.append("fourinaline_rejected_calls_total{reason=\"address\"} ").append(admissionControl.getRejectedAddressCallCount()).append('\n');
+		sb.append("fourinaline_rejected_calls_total{reason=\"game_creation\"} ").append(admissionControl.getRejectedGameCreationCount()).append('\n');
+		
+		return sb.toString();
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ * ServerMetricsMBean.java
+ *
+ * Created: 2026/10/19
+ *
+ * Copyright (C) 2026 Julien Aubin
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.gojul.fourinaline.model;
+
+/**
+ * The <code>ServerMetricsMBean</code> interface exports the metrics
+ * of the game servers through JMX.
+ *
+ * @author Julien Aubin
+ */
+public interface ServerMetricsMBean
+{
+	/**
+	 * Returns the number of game servers in use.
+	 * @return the number of game servers in use.
+	 */
+	public int getGameServerCount();
+	
+	/**
+	 * Returns the number of games running.
+	 * @return the number of games running.
+	 */
+	public int getRunningGameCount();
+	
+	/**
+	 * Returns the number of players registered on the game servers.
+	 * @return the number of players registered.
+	 */
+	public int getRegisteredPlayerCount();
+	
+	/**
+	 * Returns the number of moves played.
+	 * @return the number of moves played.
+	 */
+	public long getMoveCount();
+	
+	/**
+	 * Returns the average number of moves played per second over the last minute.
+	 * @return the number of moves played per second.
+	 */
+	public double getMovesPerSecond();
+	
+	/**
+	 * Returns the 99th percentile of the time the players waited for
+	 * their turn, in microseconds.
+	 * @return the 99th percentile of the turn wait times.
+	 */
+	public long getTurnWaitP99Micros();
+	
+	/**
+	 * Returns the number of bytes received by the servers, per transport.
+	 * @return the number of bytes received, per transport.
+	 */
+	public String[] getBytesRead();
+	
+	/**
+	 * Returns the number of bytes sent by the servers, per transport.
+	 * @return the number of bytes sent, per transport.
+	 */
+	public String[] getBytesWritten();
+	
+	/**
+	 * Returns the latency summary of each method of the servers called remotely.
+	 * @return the latency summary of each method.
+	 */
+	public String[] getCallLatencies();
+	
+	/**
+	 * Returns all the metrics in the plain text format of the HTTP endpoint.
+	 * @return all the metrics in plain text.
+	 */
+	public String getMetricsText();
+}
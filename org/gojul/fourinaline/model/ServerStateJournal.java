@@ -0,0 +1,994 @@
+/*
+ * ServerStateJournal.java
+ *
+ * Created: 2026/10/19
+ *
+ * Copyright (C) 2026 Julien Aubin
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.gojul.fourinaline.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import org.gojul.fourinaline.model.GameServer.ServerTicket;
+
+/**
+ * The <code>ServerStateJournal</code> class saves the states of the game servers
+ * of a global server, so that the games are restored when the JVM restarts.<br/>
+ * Every time the state of a game server changes, the change is appended to a
+ * journal : the frequent changes, i.e. the plays and the tickets given to the
+ * clients, are appended as deltas of a few bytes, and the other ones as the new
+ * state of the server. The journal is written by a single thread which forces
+ * many changes to the disk at once, and the changes do not wait for it, so that
+ * the games never wait for the disk. The changes made just before a crash may
+ * therefore be lost, in which case the clients resynchronize with the restored
+ * state as with any state they have missed.<br/>
+ * The journal only grows until the next snapshot. A snapshot copies the latest
+ * states of the servers, which are immutable, and switches to a new journal at
+ * the same time, which only takes the time of copying a map. The snapshot is then
+ * written while the games go on, and the previous snapshot and journals are
+ * deleted. The states are restored by reading the last snapshot and the journals
+ * written after it.<br/>
+ * The journal and snapshot files are numbered by generation : the snapshot of
+ * generation <code>n</code> contains the states which precede the changes of the
+ * journals of generation <code>n</code> and later.<br/>
+ * This class is thread-safe.
+ *
+ * @author Julien Aubin
+ */
+final class ServerStateJournal implements Closeable
+{
+	/**
+	 * The system property that contains the directory where the states of
+	 * the game servers are saved. The states are not saved if it is not set.
+	 */
+	public final static String DIRECTORY_PROPERTY = "org.gojul.fourinaline.stateDirectory";
+
+	/**
+	 * The system property that contains the period of the snapshots in seconds.
+	 * The default period is 30 seconds.
+	 */
+	public final static String SNAPSHOT_PERIOD_PROPERTY = "org.gojul.fourinaline.stateSnapshotPeriod";
+
+	/**
+	 * The magic number of the journals.
+	 */
+	private final static int JOURNAL_MAGIC = 0x4634534A;
+
+	/**
+	 * The magic number of the snapshots.
+	 */
+	private final static int SNAPSHOT_MAGIC = 0x46345353;
+
+	/**
+	 * The version of the journal and snapshot formats.
+	 */
+	private final static int VERSION = 1;
+
+	/**
+	 * The size of the journal header, i.e. of its magic number and version.
+	 */
+	private final static int JOURNAL_HEADER_SIZE = 8;
+
+	/**
+	 * The size of the entry header, i.e. of its length and checksum.
+	 */
+	private final static int ENTRY_HEADER_SIZE = 8;
+
+	/**
+	 * The type of the entries which contain the new state of a server.
+	 */
+	private final static byte STATE_ENTRY = 1;
+
+	/**
+	 * The type of the entries which tell that a server has been deleted.
+	 */
+	private final static byte DELETE_ENTRY = 2;
+
+	/**
+	 * The type of the entries which contain a play of the current game of a server.
+	 */
+	private final static byte PLAY_ENTRY = 3;
+
+	/**
+	 * The type of the entries which tell that a server has given a ticket to a client.
+	 */
+	private final static byte TICKET_ENTRY = 4;
+
+	/**
+	 * The prefix of the journal file names.
+	 */
+	private final static String JOURNAL_PREFIX = "journal-";
+
+	/**
+	 * The suffix of the journal file names.
+	 */
+	private final static String JOURNAL_SUFFIX = ".log";
+
+	/**
+	 * The prefix of the snapshot file names.
+	 */
+	private final static String SNAPSHOT_PREFIX = "snapshot-";
+
+	/**
+	 * The suffix of the snapshot file names.
+	 */
+	private final static String SNAPSHOT_SUFFIX = ".snap";
+
+	/**
+	 * The suffix of the snapshot files being written.
+	 */
+	private final static String TEMP_SUFFIX = ".tmp";
+
+	/**
+	 * The directory of the journals and snapshots.
+	 */
+	private File directory;
+
+	/**
+	 * The map that ties a server name to the latest state of the server.
+	 */
+	private Map<String, GameServerState> states;
+
+	/**
+	 * The states restored when the journal was opened.
+	 */
+	private List<GameServerState> restoredStates;
+
+	/**
+	 * The entries appended and not written yet, and the generations
+	 * of the journals to switch to, in order.
+	 */
+	private List<Object> pendingEntries;
+
+	/**
+	 * The generation of the last requested journal.
+	 */
+	private long generation;
+
+	/**
+	 * The generation of the journal being written.
+	 */
+	private long journalGeneration;
+
+	/**
+	 * The channel of the journal being written.
+	 * Only used by the writer thread once the journal is open.
+	 */
+	private FileChannel journalChannel;
+
+	/**
+	 * The number of entries appended.
+	 */
+	private long appendedCount;
+
+	/**
+	 * The number of entries appended when the last snapshot was taken.
+	 */
+	private long snapshotCount;
+
+	/**
+	 * The error that occurred while writing the journal, or null if there's none.
+	 * The states are no longer saved once an error has occurred.
+	 */
+	private IOException failure;
+
+	/**
+	 * Boolean indicating whether the journal is closed.
+	 */
+	private boolean closed;
+
+	/**
+	 * The lock of the snapshot writes.
+	 */
+	private Object snapshotLock;
+
+	/**
+	 * The thread that writes the journal.
+	 */
+	private Thread writerThread;
+
+	/**
+	 * The scheduler of the snapshots.
+	 */
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * Constructor. Restores the states saved in the directory <code>stateDirectory</code>,
+	 * and saves them in a new snapshot.
+	 * @param stateDirectory the directory of the journals and snapshots, which is
+	 * created if it does not exist.
+	 * @throws NullPointerException if <code>stateDirectory</code> is null.
+	 * @throws IOException if the directory cannot be created, or the new snapshot
+	 * or journal cannot be written.
+	 */
+	ServerStateJournal(final File stateDirectory) throws NullPointerException, IOException
+	{
+		if (stateDirectory == null)
+			throw new NullPointerException();
+
+		if (!stateDirectory.isDirectory() && !stateDirectory.mkdirs())
+			throw new IOException("Cannot create the directory " + stateDirectory);
+
+		directory = stateDirectory;
+		states = new LinkedHashMap<String, GameServerState>();
+		pendingEntries = new ArrayList<Object>();
+		failure = null;
+		closed = false;
+		snapshotLock = new Object();
+
+		File[] snapshots = listFiles(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+		File[] journals = listFiles(JOURNAL_PREFIX, JOURNAL_SUFFIX);
+		long snapshotGeneration = 0;
+
+		// The last valid snapshot is used. If there's none, all the journals are replayed.
+		for (int i = snapshots.length - 1; i >= 0 && snapshotGeneration == 0; i--)
+		{
+			try
+			{
+				loadSnapshot(snapshots[i]);
+				snapshotGeneration = getGeneration(snapshots[i], SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+			}
+			catch (IOException e)
+			{
+				System.err.println("Cannot read the server snapshot " + snapshots[i] + " : " + e);
+				states.clear();
+			}
+		}
+
+		for (File journal: journals)
+		{
+			if (getGeneration(journal, JOURNAL_PREFIX, JOURNAL_SUFFIX) >= snapshotGeneration)
+				replayJournal(journal);
+		}
+
+		restoredStates = new ArrayList<GameServerState>(states.values());
+
+		generation = snapshotGeneration;
+
+		if (snapshots.length > 0)
+			generation = Math.max(generation, getGeneration(snapshots[snapshots.length - 1], SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX));
+
+		if (journals.length > 0)
+			generation = Math.max(generation, getGeneration(journals[journals.length - 1], JOURNAL_PREFIX, JOURNAL_SUFFIX));
+
+		// The restored states are saved at once, so that the
+		// previous journals are no longer needed.
+		generation++;
+		writeSnapshot(generation, restoredStates);
+		openJournal(generation);
+		deleteFiles(generation);
+
+		writerThread = new DaemonThreadFactory(Executors.defaultThreadFactory(), "ServerStateJournal").newThread(new Runnable()
+		{
+			/**
+			 * @see java.lang.Runnable#run()
+			 */
+			public void run()
+			{
+				writeEntries();
+			}
+		});
+		writerThread.start();
+
+		long snapshotPeriod = Integer.getInteger(SNAPSHOT_PERIOD_PROPERTY, 30).intValue() * 1000L;
+
+		scheduler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory(Executors.defaultThreadFactory(), "ServerStateJournal-snapshot"));
+		scheduler.scheduleWithFixedDelay(new Runnable()
+		{
+			/**
+			 * @see java.lang.Runnable#run()
+			 */
+			public void run()
+			{
+				try
+				{
+					snapshot();
+				}
+				catch (IOException e)
+				{
+					e.printStackTrace();
+				}
+			}
+		}, snapshotPeriod, snapshotPeriod, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Returns the files of the directory whose name starts with <code>prefix</code>
+	 * and ends with <code>suffix</code>, sorted by generation.
+	 * @param prefix the prefix of the file names.
+	 * @param suffix the suffix of the file names.
+	 * @return the files of the directory.
+	 */
+	private File[] listFiles(final String prefix, final String suffix)
+	{
+		File[] result = directory.listFiles(new FileFilter()
+		{
+			/**
+			 * @see java.io.FileFilter#accept(java.io.File)
+			 */
+			public boolean accept(final File file)
+			{
+				return file.getName().startsWith(prefix) && file.getName().endsWith(suffix);
+			}
+		});
+
+		if (result == null)
+			return new File[0];
+
+		// The generations are padded, so that the names are sorted like them.
+		Arrays.sort(result);
+
+		return result;
+	}
+
+	/**
+	 * Returns the generation of the file <code>file</code>.
+	 * @param file the file.
+	 * @param prefix the prefix of the file name.
+	 * @param suffix the suffix of the file name.
+	 * @return the generation of the file.
+	 */
+	private static long getGeneration(final File file, final String prefix, final String suffix)
+	{
+		String name = file.getName();
+
+		return Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+	}
+
+	/**
+	 * Returns the file of generation <code>fileGeneration</code>.
+	 * @param fileGeneration the generation of the file.
+	 * @param prefix the prefix of the file name.
+	 * @param suffix the suffix of the file name.
+	 * @return the file.
+	 */
+	private File getFile(final long fileGeneration, final String prefix, final String suffix)
+	{
+		return new File(directory, prefix + String.format("%020d", Long.valueOf(fileGeneration)) + suffix);
+	}
+
+	/**
+	 * Loads the states of the snapshot <code>snapshot</code>.
+	 * @param snapshot the snapshot file.
+	 * @throws IOException if the snapshot cannot be read or is not valid.
+	 */
+	private void loadSnapshot(final File snapshot) throws IOException
+	{
+		CRC32 checksum = new CRC32();
+		DataInputStream in = new DataInputStream(new CheckedInputStream(new BufferedInputStream(new FileInputStream(snapshot)), checksum));
+
+		try
+		{
+			if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != VERSION)
+				throw new IOException("Invalid snapshot header");
+
+			int stateCount = in.readInt();
+
+			for (int i = 0; i < stateCount; i++)
+			{
+				GameServerState state = GameServerState.read(in);
+				states.put(state.getServerName(), state);
+			}
+
+			int expectedChecksum = (int) checksum.getValue();
+
+			if (in.readInt() != expectedChecksum)
+				throw new IOException("Invalid snapshot checksum");
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	/**
+	 * Replays the entries of the journal <code>journal</code>. The entries after
+	 * the first invalid one are ignored, since they have not been acknowledged.
+	 * @param journal the journal file.
+	 */
+	private void replayJournal(final File journal)
+	{
+		try
+		{
+			RandomAccessFile file = new RandomAccessFile(journal, "r");
+			byte[] content = new byte[(int) file.length()];
+
+			try
+			{
+				file.readFully(content);
+			}
+			finally
+			{
+				file.close();
+			}
+
+			ByteBuffer buffer = ByteBuffer.wrap(content);
+
+			if (buffer.limit() < JOURNAL_HEADER_SIZE || buffer.getInt() != JOURNAL_MAGIC || buffer.getInt() != VERSION)
+				return;
+
+			CRC32 checksum = new CRC32();
+
+			while (buffer.remaining() >= ENTRY_HEADER_SIZE)
+			{
+				int length = buffer.getInt(buffer.position());
+
+				if (length <= 0 || length > buffer.remaining() - ENTRY_HEADER_SIZE)
+					return;
+
+				checksum.reset();
+				checksum.update(content, buffer.position() + ENTRY_HEADER_SIZE, length);
+
+				if ((int) checksum.getValue() != buffer.getInt(buffer.position() + 4))
+					return;
+
+				DataInputStream in = new DataInputStream(new ByteArrayInputStream(content, buffer.position() + ENTRY_HEADER_SIZE, length));
+				byte entryType = in.readByte();
+
+				if (entryType == STATE_ENTRY)
+				{
+					GameServerState state = GameServerState.read(in);
+					states.put(state.getServerName(), state);
+				}
+				else if (entryType == DELETE_ENTRY)
+				{
+					states.remove(in.readUTF());
+				}
+				else
+				{
+					replayDelta(entryType, in);
+				}
+
+				buffer.position(buffer.position() + ENTRY_HEADER_SIZE + length);
+			}
+		}
+		catch (IOException e)
+		{
+			System.err.println("Cannot read the server journal " + journal + " : " + e);
+		}
+	}
+
+	/**
+	 * Applies the delta entry of type <code>entryType</code> read from <code>in</code>
+	 * to the state of its server. The deltas which do not follow the state of their
+	 * server are ignored.
+	 * @param entryType the type of the entry.
+	 * @param in the input to read the entry from.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	private void replayDelta(final byte entryType, final DataInputStream in) throws IOException
+	{
+		String serverName = in.readUTF();
+		GameServerState state = states.get(serverName);
+
+		try
+		{
+			if (entryType == PLAY_ENTRY)
+			{
+				int gameNumber = in.readInt();
+				int playCount = in.readUnsignedShort();
+				int column = in.readUnsignedShort();
+
+				if (state != null)
+					states.put(serverName, state.withPlay(gameNumber, playCount, column));
+			}
+			else if (entryType == TICKET_ENTRY)
+			{
+				long ticketValue = in.readLong();
+
+				if (state != null)
+					states.put(serverName, state.withTicketUsed(ticketValue));
+			}
+			else
+			{
+				throw new IOException("Invalid entry type : " + entryType);
+			}
+		}
+		catch (IllegalStateException e)
+		{
+			System.err.println("Ignored a journal entry : " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Writes the snapshot of generation <code>snapshotGeneration</code>, which contains
+	 * the states <code>snapshotStates</code>. The snapshot is written to a temporary
+	 * file which is then renamed, so that a snapshot is never partially written.
+	 * @param snapshotGeneration the generation of the snapshot.
+	 * @param snapshotStates the states of the snapshot.
+	 * @throws IOException if the snapshot cannot be written.
+	 */
+	private void writeSnapshot(final long snapshotGeneration, final Collection<GameServerState> snapshotStates) throws IOException
+	{
+		File snapshotFile = getFile(snapshotGeneration, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+		File tempFile = new File(snapshotFile.getPath() + TEMP_SUFFIX);
+		FileOutputStream fileOut = new FileOutputStream(tempFile);
+		CRC32 checksum = new CRC32();
+		DataOutputStream out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(fileOut, 1 << 16), checksum));
+
+		try
+		{
+			out.writeInt(SNAPSHOT_MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(snapshotStates.size());
+
+			for (GameServerState state: snapshotStates)
+				state.write(out);
+
+			out.writeInt((int) checksum.getValue());
+			out.flush();
+			fileOut.getFD().sync();
+		}
+		finally
+		{
+			out.close();
+		}
+
+		if (!tempFile.renameTo(snapshotFile))
+			throw new IOException("Cannot rename the snapshot " + tempFile);
+	}
+
+	/**
+	 * Deletes the journals and snapshots older than the generation
+	 * <code>fileGeneration</code>, and the snapshots partially written.
+	 * @param fileGeneration the generation of the last snapshot.
+	 */
+	private void deleteFiles(final long fileGeneration)
+	{
+		for (File file: listFiles(JOURNAL_PREFIX, JOURNAL_SUFFIX))
+		{
+			if (getGeneration(file, JOURNAL_PREFIX, JOURNAL_SUFFIX) < fileGeneration)
+				file.delete();
+		}
+
+		for (File file: listFiles(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX))
+		{
+			if (getGeneration(file, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX) < fileGeneration)
+				file.delete();
+		}
+
+		for (File file: listFiles(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX + TEMP_SUFFIX))
+			file.delete();
+	}
+
+	/**
+	 * Creates the journal of generation <code>newGeneration</code>, after
+	 * having closed the current one.
+	 * @param newGeneration the generation of the journal.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	private void openJournal(final long newGeneration) throws IOException
+	{
+		if (journalChannel != null)
+			journalChannel.close();
+
+		journalChannel = new RandomAccessFile(getFile(newGeneration, JOURNAL_PREFIX, JOURNAL_SUFFIX), "rw").getChannel();
+		journalChannel.truncate(0);
+
+		ByteBuffer header = ByteBuffer.allocate(JOURNAL_HEADER_SIZE);
+		header.putInt(JOURNAL_MAGIC);
+		header.putInt(VERSION);
+		header.flip();
+
+		while (header.hasRemaining())
+			journalChannel.write(header);
+
+		journalChannel.force(true);
+
+		// The snapshot waits for the switch to delete the previous journal.
+		synchronized (this)
+		{
+			journalGeneration = newGeneration;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Returns the states restored when the journal was opened.
+	 * @return the states restored when the journal was opened.
+	 */
+	Collection<GameServerState> getRestoredStates()
+	{
+		return restoredStates;
+	}
+
+	/**
+	 * Saves the new state <code>state</code> of a game server. The state is written
+	 * afterwards by the writer thread.<br/>
+	 * If the journal cannot be written, the state is not saved and the error
+	 * is reported once, so that the games go on anyway.
+	 * @param state the new state of the game server.
+	 * @throws NullPointerException if <code>state</code> is null.
+	 */
+	void stateChanged(final GameServerState state) throws NullPointerException
+	{
+		if (state == null)
+			throw new NullPointerException();
+
+		ByteArrayOutputStream bytes = newEntry(STATE_ENTRY);
+
+		try
+		{
+			state.write(new DataOutputStream(bytes));
+		}
+		catch (IOException e)
+		{
+			// Can't happen since the entry is written in memory.
+			throw new RuntimeException(e);
+		}
+
+		append(state.getServerName(), state, bytes);
+	}
+
+	/**
+	 * Saves that the column <code>column</code> has been played in the game number
+	 * <code>gameNumber</code> of the game server which has for name <code>serverName</code>,
+	 * after <code>playCount</code> plays. The state of the server must have been saved
+	 * before, and the play must not end the game, since the scores are not saved.<br/>
+	 * The play is written afterwards by the writer thread.
+	 * @param serverName the server name.
+	 * @param gameNumber the number of the game.
+	 * @param playCount the number of plays of the game before the play.
+	 * @param column the column played.
+	 * @throws NullPointerException if <code>serverName</code> is null.
+	 */
+	void playPerformed(final String serverName, final int gameNumber, final int playCount, final int column)
+		throws NullPointerException
+	{
+		if (serverName == null)
+			throw new NullPointerException();
+
+		ByteArrayOutputStream bytes = newEntry(PLAY_ENTRY);
+		DataOutputStream out = new DataOutputStream(bytes);
+
+		try
+		{
+			out.writeUTF(serverName);
+			out.writeInt(gameNumber);
+			out.writeShort(playCount);
+			out.writeShort(column);
+		}
+		catch (IOException e)
+		{
+			// Can't happen since the entry is written in memory.
+			throw new RuntimeException(e);
+		}
+
+		synchronized (this)
+		{
+			GameServerState state = states.get(serverName);
+
+			// Can't fail since the changes of a server are appended in order.
+			if (state != null)
+				append(serverName, state.withPlay(gameNumber, playCount, column), bytes);
+		}
+	}
+
+	/**
+	 * Saves that the game server which has for name <code>serverName</code> has given
+	 * the ticket <code>ticket</code> to a client. The state of the server must have
+	 * been saved before.<br/>
+	 * The change is written afterwards by the writer thread.
+	 * @param serverName the server name.
+	 * @param ticket the ticket given to the client.
+	 * @throws NullPointerException if any of the method parameter is null.
+	 */
+	void ticketUsed(final String serverName, final ServerTicket ticket) throws NullPointerException
+	{
+		if (serverName == null || ticket == null)
+			throw new NullPointerException();
+
+		ByteArrayOutputStream bytes = newEntry(TICKET_ENTRY);
+		DataOutputStream out = new DataOutputStream(bytes);
+
+		try
+		{
+			out.writeUTF(serverName);
+			out.writeLong(ticket.getTicketValue());
+		}
+		catch (IOException e)
+		{
+			// Can't happen since the entry is written in memory.
+			throw new RuntimeException(e);
+		}
+
+		synchronized (this)
+		{
+			GameServerState state = states.get(serverName);
+
+			// Can't fail since the changes of a server are appended in order.
+			if (state != null)
+				append(serverName, state.withTicketUsed(ticket.getTicketValue()), bytes);
+		}
+	}
+
+	/**
+	 * Saves that the game server which has for name <code>serverName</code>
+	 * has been deleted. The deletion is written afterwards by the writer thread.
+	 * @param serverName the server name.
+	 * @throws NullPointerException if <code>serverName</code> is null.
+	 */
+	void serverDeleted(final String serverName) throws NullPointerException
+	{
+		if (serverName == null)
+			throw new NullPointerException();
+
+		ByteArrayOutputStream bytes = newEntry(DELETE_ENTRY);
+
+		try
+		{
+			new DataOutputStream(bytes).writeUTF(serverName);
+		}
+		catch (IOException e)
+		{
+			// Can't happen since the entry is written in memory.
+			throw new RuntimeException(e);
+		}
+
+		append(serverName, null, bytes);
+	}
+
+	/**
+	 * Returns a new entry of type <code>entryType</code>, which starts
+	 * with room for the entry header.
+	 * @param entryType the type of the entry.
+	 * @return the new entry.
+	 */
+	private static ByteArrayOutputStream newEntry(final byte entryType)
+	{
+		ByteArrayOutputStream result = new ByteArrayOutputStream(64);
+
+		result.write(new byte[ENTRY_HEADER_SIZE], 0, ENTRY_HEADER_SIZE);
+		result.write(entryType);
+
+		return result;
+	}
+
+	/**
+	 * Appends the entry <code>entry</code> to the journal, and hands it to the
+	 * writer thread without waiting until it is on the disk.
+	 * @param serverName the name of the game server.
+	 * @param state the state of the game server once the entry is applied,
+	 * or null if it has been deleted.
+	 * @param entry the entry, which starts with room for the entry header.
+	 */
+	private void append(final String serverName, final GameServerState state, final ByteArrayOutputStream entry)
+	{
+		ByteBuffer buffer = ByteBuffer.wrap(entry.toByteArray());
+		CRC32 checksum = new CRC32();
+		checksum.update(buffer.array(), ENTRY_HEADER_SIZE, buffer.limit() - ENTRY_HEADER_SIZE);
+		buffer.putInt(0, buffer.limit() - ENTRY_HEADER_SIZE);
+		buffer.putInt(4, (int) checksum.getValue());
+
+		synchronized (this)
+		{
+			if (closed || failure != null)
+				return;
+
+			// The map is updated under the lock, so that the snapshots
+			// are consistent with the journal switches.
+			if (state == null)
+				states.remove(serverName);
+			else
+				states.put(serverName, state);
+
+			pendingEntries.add(buffer);
+			appendedCount++;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Writes the appended entries until the journal is closed.
+	 */
+	private void writeEntries()
+	{
+		while (true)
+		{
+			List<Object> batch;
+
+			synchronized (this)
+			{
+				try
+				{
+					while (pendingEntries.isEmpty() && !closed)
+						wait();
+				}
+				catch (InterruptedException e)
+				{
+					// The writer thread is never interrupted.
+				}
+
+				if (pendingEntries.isEmpty())
+					return;
+
+				batch = pendingEntries;
+				pendingEntries = new ArrayList<Object>();
+			}
+
+			IOException error = null;
+
+			try
+			{
+				List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+
+				for (Object entry: batch)
+				{
+					if (entry instanceof ByteBuffer)
+					{
+						buffers.add((ByteBuffer) entry);
+					}
+					else
+					{
+						// The entries which precede a switch belong to the previous journal.
+						writeBatch(buffers);
+						buffers.clear();
+						openJournal(((Long) entry).longValue());
+					}
+				}
+
+				writeBatch(buffers);
+			}
+			catch (IOException e)
+			{
+				error = e;
+			}
+
+			if (error != null)
+			{
+				synchronized (this)
+				{
+					failure = error;
+					notifyAll();
+				}
+
+				System.err.println("Cannot write the server journal, the server states are no longer saved : " + error);
+			}
+		}
+	}
+
+	/**
+	 * Writes the entries <code>batch</code> to the current journal and forces them to the disk.
+	 * @param batch the entries to write.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	private void writeBatch(final List<ByteBuffer> batch) throws IOException
+	{
+		if (batch.isEmpty())
+			return;
+
+		long batchSize = 0;
+
+		for (ByteBuffer buffer: batch)
+			batchSize += buffer.remaining();
+
+		ByteBuffer[] buffers = batch.toArray(new ByteBuffer[batch.size()]);
+		long written = 0;
+
+		while (written < batchSize)
+			written += journalChannel.write(buffers);
+
+		// The metadata are forced too, since the size of the journal changes.
+		journalChannel.force(true);
+	}
+
+	/**
+	 * Saves the latest states of the game servers to a new snapshot if they
+	 * have changed since the last snapshot, and deletes the previous snapshot
+	 * and journals. The games only wait for the states to be copied.
+	 * @throws IOException if the snapshot cannot be written.
+	 */
+	void snapshot() throws IOException
+	{
+		synchronized (snapshotLock)
+		{
+			List<GameServerState> snapshotStates;
+			long snapshotGeneration;
+
+			// The new journal starts with the first change which is
+			// not taken into account by the snapshot.
+			synchronized (this)
+			{
+				if (closed || failure != null || appendedCount == snapshotCount)
+					return;
+
+				snapshotStates = new ArrayList<GameServerState>(states.values());
+				snapshotGeneration = ++generation;
+				snapshotCount = appendedCount;
+				pendingEntries.add(Long.valueOf(snapshotGeneration));
+				notifyAll();
+			}
+
+			writeSnapshot(snapshotGeneration, snapshotStates);
+
+			// The previous journal is deleted once it is closed.
+			synchronized (this)
+			{
+				try
+				{
+					while (journalGeneration < snapshotGeneration && failure == null && !closed)
+						wait();
+				}
+				catch (InterruptedException e)
+				{
+					throw new RuntimeException(e);
+				}
+
+				if (journalGeneration < snapshotGeneration)
+					return;
+			}
+
+			deleteFiles(snapshotGeneration);
+		}
+	}
+
+	/**
+	 * Closes the journal once the entries appended so far are written.
+	 * @throws IOException if the journal cannot be closed.
+	 * @see java.io.Closeable#close()
+	 */
+	public void close() throws IOException
+	{
+		scheduler.shutdownNow();
+
+		synchronized (this)
+		{
+			if (closed)
+				return;
+
+			closed = true;
+			notifyAll();
+		}
+
+		try
+		{
+			writerThread.join();
+		}
+		catch (InterruptedException e)
+		{
+			throw new RuntimeException(e);
+		}
+
+		journalChannel.close();
+	}
+}